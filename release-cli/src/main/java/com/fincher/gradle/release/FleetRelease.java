@@ -0,0 +1,275 @@
+package com.fincher.gradle.release;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Releases many repositories together from a manifest. Each line of the manifest is a repository directory, relative
+ * to the manifest, followed by a release type and any number of <code>option=value</code> pairs that override the
+ * options of that repository, for example:
+ *
+ * <pre>
+ * # repository  release type  options
+ * service-a     MINOR
+ * service-b     PATCH         tagPrefix=v versionFile=pom.xml versionKeyValue=project/version
+ * library-c     MANUAL        releaseVersion=2.0.0
+ * </pre>
+ *
+ * The release runs in waves on a bounded executor. The first wave is a dry run of prepare in every repository, which
+ * checks the branch, the working tree, the version and the tags on origin without modifying anything. The second wave
+ * commits and tags the release in every repository and the third wave sets the new version and pushes. A wave only
+ * starts if every repository succeeded in the previous wave, so that nothing is pushed unless every repository was
+ * prepared. A report of the result and timings of each repository is written when the release completes
+ *
+ * @author Brian Fincher
+ *
+ */
+final class FleetRelease {
+
+    /** The options that a manifest line may set for its repository */
+    static final List<String> ENTRY_OPTIONS = List.of("versionFile", "versionKeyValue", "requiredBranchRegex",
+            "gitBackend", "releaseVersion", "tagPrefix", "newVersion");
+
+    private static final List<String> PREPARE_FORWARDED = List.of("versionFile", "versionKeyValue",
+            "requiredBranchRegex", "gitBackend", "gitRepositoryUsername", "gitRepositoryPassword",
+            "gitRepositorySshPrivateKeyFile", "gitRepositorySshPassphrase", "releaseType", "releaseVersion",
+            "tagPrefix");
+    private static final List<String> FINALIZE_FORWARDED = List.of("versionFile", "versionKeyValue",
+            "requiredBranchRegex", "gitBackend", "gitRepositoryUsername", "gitRepositoryPassword",
+            "gitRepositorySshPrivateKeyFile", "gitRepositorySshPassphrase", "newVersion");
+
+    /** A wave of the release */
+    enum Wave {
+        PREFLIGHT("prepare", PREPARE_FORWARDED, true),
+        PREPARE("prepare", PREPARE_FORWARDED, false),
+        FINALIZE("finalize", FINALIZE_FORWARDED, false);
+
+        private final String command;
+        private final List<String> forwardedOptions;
+        private final boolean dryRun;
+
+        Wave(String command, List<String> forwardedOptions, boolean dryRun) {
+            this.command = command;
+            this.forwardedOptions = forwardedOptions;
+            this.dryRun = dryRun;
+        }
+    }
+
+    /** A repository of the manifest and the result of its release */
+    static final class Entry {
+        private final String name;
+        private final Map<String, String> options;
+        private final long[] millis = new long[Wave.values().length];
+        private Wave completed;
+        private Wave failed;
+        private String detail = "";
+        private String output = "";
+
+        Entry(String name, Map<String, String> options) {
+            this.name = name;
+            this.options = options;
+        }
+    }
+
+    private final List<Entry> entries;
+    private final int parallelism;
+    private final PrintStream out;
+    private final Map<String, String> environment;
+
+    /**
+     * Constructs a new FleetRelease
+     *
+     * @param entries The repositories to release
+     * @param parallelism The maximum number of repositories released at once
+     * @param out The stream to which the report is written
+     * @param environment The environment from which secrets are read
+     */
+    FleetRelease(List<Entry> entries, int parallelism, PrintStream out, Map<String, String> environment) {
+        this.entries = entries;
+        this.parallelism = parallelism;
+        this.out = out;
+        this.environment = environment;
+    }
+
+    /**
+     * Read a manifest
+     *
+     * @param manifest The manifest file
+     * @param options The options given for every repository. Options on a manifest line take precedence
+     * @return A repository for each line of the manifest
+     * @throws IOException If an error occurs reading the manifest
+     * @throws IllegalArgumentException If a line of the manifest is invalid
+     */
+    static List<Entry> readManifest(Path manifest, Map<String, String> options) throws IOException {
+        Path baseDir = manifest.toAbsolutePath().normalize().getParent();
+        List<Entry> entries = new ArrayList<>();
+        List<String> lines = Files.readAllLines(manifest);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            String[] fields = line.split("\\s+");
+            if (fields.length < 2) {
+                throw new IllegalArgumentException(String.format(
+                        "Line %d of %s must be a repository directory followed by a release type", i + 1, manifest));
+            }
+
+            Map<String, String> entryOptions = new LinkedHashMap<>(options);
+            entryOptions.put("projectDir", baseDir.resolve(fields[0]).normalize().toString());
+            entryOptions.put("releaseType", fields[1]);
+            for (int j = 2; j < fields.length; j++) {
+                int equalsIndex = fields[j].indexOf('=');
+                String name = equalsIndex < 0 ? fields[j] : fields[j].substring(0, equalsIndex);
+                if (equalsIndex < 0 || !ENTRY_OPTIONS.contains(name)) {
+                    throw new IllegalArgumentException(
+                            String.format("Line %d of %s has an invalid option %s. Expected one of %s", i + 1,
+                                    manifest, fields[j], ENTRY_OPTIONS));
+                }
+                entryOptions.put(name, fields[j].substring(equalsIndex + 1));
+            }
+            entries.add(new Entry(fields[0], entryOptions));
+        }
+
+        if (entries.isEmpty()) {
+            throw new IllegalArgumentException(String.format("%s does not contain any repositories", manifest));
+        }
+        return entries;
+    }
+
+    /**
+     * Release every repository and write the report
+     *
+     * @return True if every repository was released
+     * @throws InterruptedException If interrupted while waiting for a wave to complete
+     */
+    boolean run() throws InterruptedException {
+        long[] waveMillis = new long[Wave.values().length];
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, entries.size()));
+        try {
+            for (Wave wave : Wave.values()) {
+                long start = System.nanoTime();
+                List<Future<?>> futures = new ArrayList<>();
+                for (Entry entry : entries) {
+                    futures.add(executor.submit(() -> release(entry, wave)));
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException(e.getCause());
+                    }
+                }
+                waveMillis[wave.ordinal()] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                if (entries.stream().anyMatch(entry -> entry.failed != null)) {
+                    break;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        report(waveMillis);
+        return entries.stream().allMatch(entry -> entry.completed == Wave.FINALIZE);
+    }
+
+    // Each repository is released by its own CLI so that its output is kept separate
+    private void release(Entry entry, Wave wave) {
+        List<String> args = new ArrayList<>();
+        args.add(wave.command);
+        args.add("--projectDir=" + entry.options.get("projectDir"));
+        for (String name : wave.forwardedOptions) {
+            if (entry.options.containsKey(name)) {
+                args.add("--" + name + "=" + entry.options.get(name));
+            }
+        }
+        if (wave.dryRun) {
+            args.add("--dryRun");
+        }
+
+        ByteArrayOutputStream releaseOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream releaseErr = new ByteArrayOutputStream();
+        long start = System.nanoTime();
+        int exitCode = new ReleaseCli(new PrintStream(releaseOut, true, StandardCharsets.UTF_8),
+                new PrintStream(releaseErr, true, StandardCharsets.UTF_8), environment)
+                .run(args.toArray(new String[0]));
+        entry.millis[wave.ordinal()] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        String output = releaseOut.toString(StandardCharsets.UTF_8);
+        String error = releaseErr.toString(StandardCharsets.UTF_8);
+        if (exitCode == ReleaseCli.EXIT_SUCCESS) {
+            entry.completed = wave;
+            if (wave == Wave.PREPARE) {
+                entry.detail = lastLine(output);
+            }
+        } else {
+            entry.failed = wave;
+            entry.detail = lastLine(error);
+            entry.output = output + error;
+        }
+    }
+
+    private void report(long[] waveMillis) {
+        int nameWidth = "Repository".length();
+        for (Entry entry : entries) {
+            nameWidth = Math.max(nameWidth, entry.name.length());
+        }
+        String format = "%-" + nameWidth + "s  %-18s  %10s  %10s  %10s  %s%n";
+
+        out.printf(format, "Repository", "Result", "Preflight", "Prepare", "Finalize", "Detail");
+        for (Entry entry : entries) {
+            out.printf(format, entry.name, result(entry), millis(entry, Wave.PREFLIGHT), millis(entry, Wave.PREPARE),
+                    millis(entry, Wave.FINALIZE), entry.detail);
+        }
+        out.printf("Released %d of %d repositories. Preflight took %d ms, prepare %d ms and finalize %d ms%n",
+                entries.stream().filter(entry -> entry.completed == Wave.FINALIZE).count(), entries.size(),
+                waveMillis[Wave.PREFLIGHT.ordinal()], waveMillis[Wave.PREPARE.ordinal()],
+                waveMillis[Wave.FINALIZE.ordinal()]);
+
+        for (Entry entry : entries) {
+            if (entry.failed != null) {
+                out.printf("%n%s failed during %s:%n%s", entry.name, entry.failed.name().toLowerCase(Locale.ROOT),
+                        entry.output);
+            }
+        }
+    }
+
+    private static String result(Entry entry) {
+        if (entry.failed != null) {
+            return "FAILED " + entry.failed;
+        } else if (entry.completed == null) {
+            return "NOT STARTED";
+        } else if (entry.completed == Wave.PREFLIGHT) {
+            return "VERIFIED";
+        } else if (entry.completed == Wave.PREPARE) {
+            return "TAGGED, NOT PUSHED";
+        }
+        return "RELEASED";
+    }
+
+    private static String millis(Entry entry, Wave wave) {
+        boolean ran = entry.failed == wave || (entry.completed != null && entry.completed.compareTo(wave) >= 0);
+        return ran ? entry.millis[wave.ordinal()] + " ms" : "-";
+    }
+
+    private static String lastLine(String text) {
+        String[] lines = text.strip().split("\\R");
+        return lines[lines.length - 1];
+    }
+}
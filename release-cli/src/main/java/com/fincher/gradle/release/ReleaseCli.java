@@ -0,0 +1,335 @@
+package com.fincher.gradle.release;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TextProgressMonitor;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+
+/**
+ * A command line interface that performs the same release steps as the prepareRelease and finalizeRelease tasks
+ * without starting Gradle. The options have the same names as the task options and extension properties. Secrets may
+ * be passed through the environment so that they do not appear on the command line.
+ * 
+ * <pre>
+ * release prepare --releaseType PATCH
+ * release finalize --gitRepositorySshPrivateKeyFile ~/.ssh/id_rsa
+ * release fleet --manifest repositories.txt --parallelism 8
+ * </pre>
+ * 
+ * @author Brian Fincher
+ *
+ */
+public final class ReleaseCli {
+
+    static final int EXIT_SUCCESS = 0;
+    static final int EXIT_FAILURE = 1;
+    static final int EXIT_USAGE = 2;
+
+    static final String PASSWORD_ENV = "RELEASE_GIT_PASSWORD";
+    static final String SSH_PRIVATE_KEY_ENV = "RELEASE_GIT_SSH_PRIVATE_KEY";
+    static final String SSH_PASSPHRASE_ENV = "RELEASE_GIT_SSH_PASSPHRASE";
+
+    private static final Set<String> COMMON_OPTIONS = Set.of("projectDir", "versionFile", "versionKeyValue",
+            "requiredBranchRegex", "gitBackend", "gitRepositoryUsername", "gitRepositoryPassword",
+            "gitRepositorySshPrivateKeyFile", "gitRepositorySshPassphrase");
+    private static final Set<String> PREPARE_OPTIONS = Set.of("releaseType", "releaseVersion", "tagPrefix",
+            "skipRemoteTagCheck");
+    private static final Set<String> FINALIZE_OPTIONS = Set.of("newVersion");
+    private static final Set<String> FLEET_OPTIONS = Set.of("manifest", "parallelism", "tagPrefix");
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final String DRY_RUN = "dryRun";
+    private static final String SKIP_REMOTE_TAG_CHECK = "skipRemoteTagCheck";
+    // options that take no value
+    private static final Set<String> FLAGS = Set.of(DRY_RUN, SKIP_REMOTE_TAG_CHECK);
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: release <prepare|finalize|fleet> [options]",
+            "",
+            "Options:",
+            "  --projectDir <dir>                 The directory to release. Default is the current directory",
+            "  --versionFile <file>               The file containing the version. Default is gradle.properties",
+            "  --versionKeyValue <keys>           The comma separated keys of the version. Default is version",
+            "  --requiredBranchRegex <regex>      The branch being released must match. Default is "
+                    + ReleaseSteps.DEFAULT_BRANCH_PATTERN,
+            "  --gitBackend <jgit|native>         The git implementation. Default is jgit",
+            "  --dryRun                           Preview the release without modifying anything",
+            "  --gitRepositoryUsername <name>     The HTTPS user name",
+            "  --gitRepositoryPassword <password> The HTTPS password. Or set " + PASSWORD_ENV,
+            "  --gitRepositorySshPrivateKeyFile <file>",
+            "                                     The SSH private key. Or set " + SSH_PRIVATE_KEY_ENV
+                    + " to the key",
+            "  --gitRepositorySshPassphrase <passphrase>",
+            "                                     The SSH key pass phrase. Or set " + SSH_PASSPHRASE_ENV,
+            "",
+            "prepare options:",
+            "  --releaseType <type>               One of MAJOR, MINOR, PATCH, MANUAL",
+            "  --releaseVersion <version>         The release version. Only used with MANUAL",
+            "  --tagPrefix <prefix>               The prefix of the release tag",
+            "  --skipRemoteTagCheck               Do not check that the release tag does not exist on origin",
+            "",
+            "finalize options:",
+            "  --newVersion <version>             The version after the release",
+            "",
+            "fleet options:",
+            "  --manifest <file>                  Lines of <repository dir> <release type> [option=value ...]",
+            "                                     where option is one of",
+            "                                     " + String.join(", ", FleetRelease.ENTRY_OPTIONS),
+            "  --parallelism <count>              The number of repositories released at once. Default is "
+                    + DEFAULT_PARALLELISM,
+            "  --tagPrefix <prefix>               The prefix of the release tags");
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final ReleaseSteps.Log log;
+    private final Map<String, String> environment;
+
+    ReleaseCli(PrintStream out, PrintStream err, Map<String, String> environment) {
+        this.out = out;
+        this.err = err;
+        this.environment = environment;
+        log = new ReleaseSteps.Log() {
+            @Override
+            public void lifecycle(String message) {
+                out.println(message);
+            }
+
+            @Override
+            public void warn(String message) {
+                err.println("release: " + message);
+            }
+        };
+    }
+
+    /**
+     * Runs the CLI and exits with 0 on success, 1 if the release failed or 2 if the arguments are invalid
+     * 
+     * @param args The command line arguments
+     */
+    public static void main(String[] args) {
+        System.exit(new ReleaseCli(System.out, System.err, System.getenv()).run(args));
+    }
+
+    /**
+     * Run a release command
+     * 
+     * @param args The command and its options
+     * @return The exit code
+     */
+    int run(String... args) {
+        if (args.length == 0 || args[0].equals("--help") || args[0].equals("-h")) {
+            out.println(USAGE);
+            return args.length == 0 ? EXIT_USAGE : EXIT_SUCCESS;
+        }
+
+        String command = args[0];
+        Map<String, String> options;
+        try {
+            if (command.equals("prepare")) {
+                options = parseOptions(args, PREPARE_OPTIONS);
+            } else if (command.equals("finalize")) {
+                options = parseOptions(args, FINALIZE_OPTIONS);
+            } else if (command.equals("fleet")) {
+                options = parseOptions(args, FLEET_OPTIONS);
+            } else {
+                throw new IllegalArgumentException("Unknown command " + command);
+            }
+        } catch (IllegalArgumentException e) {
+            err.println("release: " + e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        try {
+            if (command.equals("prepare")) {
+                prepare(options);
+            } else if (command.equals("finalize")) {
+                finalizeRelease(options);
+            } else {
+                return fleet(options) ? EXIT_SUCCESS : EXIT_FAILURE;
+            }
+            return EXIT_SUCCESS;
+        } catch (IllegalArgumentException | IllegalStateException | IOException | GitAPIException e) {
+            err.println("release: " + e.getMessage());
+            return EXIT_FAILURE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            err.println("release: interrupted");
+            return EXIT_FAILURE;
+        }
+    }
+
+    private void prepare(Map<String, String> options) throws IOException, GitAPIException {
+        ReleaseType releaseType;
+        String releaseTypeOption = options.get("releaseType");
+        if (releaseTypeOption == null) {
+            throw new IllegalArgumentException("--releaseType must be specified");
+        }
+        try {
+            releaseType = ReleaseType.valueOf(releaseTypeOption.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(String.format(
+                    "Unknown release type %s. Expected one of MAJOR, MINOR, PATCH, MANUAL", releaseTypeOption), e);
+        }
+
+        GitCredentials credentials = createCredentials(options);
+        try (Release release = openRelease(options)) {
+            String tagPrefix = options.getOrDefault("tagPrefix", "");
+            boolean skipRemoteTagCheck = Boolean.parseBoolean(options.get(SKIP_REMOTE_TAG_CHECK));
+            ReleaseSteps.prepareOrSkip(release.backend, release.version, release.versionFilePath, releaseType,
+                    options.get("releaseVersion"), tagPrefix, release.backend::getTagsByCommit,
+                    () -> ReleaseSteps.getRemoteTags(release.backend, tagPrefix, credentials, skipRemoteTagCheck,
+                            log),
+                    log);
+        }
+    }
+
+    private void finalizeRelease(Map<String, String> options) throws IOException, GitAPIException {
+        GitCredentials credentials = createCredentials(options);
+        try (Release release = openRelease(options)) {
+            ReleaseSteps.finalizeOrBundle(release.backend, release.version, release.versionFilePath,
+                    options.get("newVersion"), "", release.backend::getTagsByCommit, null, false, null, false,
+                    credentials, NullProgressMonitor.INSTANCE, log);
+        }
+    }
+
+    private boolean fleet(Map<String, String> options) throws IOException, InterruptedException {
+        String manifest = options.remove("manifest");
+        if (manifest == null) {
+            throw new IllegalArgumentException("--manifest must be specified");
+        }
+        if (options.containsKey("projectDir") || options.containsKey(DRY_RUN)) {
+            throw new IllegalArgumentException("--projectDir and --dryRun cannot be used with fleet");
+        }
+
+        int parallelism = DEFAULT_PARALLELISM;
+        String parallelismOption = options.remove("parallelism");
+        if (parallelismOption != null) {
+            try {
+                parallelism = Integer.parseInt(parallelismOption);
+            } catch (NumberFormatException e) {
+                parallelism = 0;
+            }
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("--parallelism must be a positive number");
+            }
+        }
+
+        List<FleetRelease.Entry> entries = FleetRelease.readManifest(Paths.get(manifest), options);
+        return new FleetRelease(entries, parallelism, out, environment).run();
+    }
+
+    private GitCredentials createCredentials(Map<String, String> options) {
+        String keyFile = options.get("gitRepositorySshPrivateKeyFile");
+        GitCredentials credentials = new GitCredentials(options.get("gitRepositoryUsername"),
+                options.getOrDefault("gitRepositoryPassword", environment.get(PASSWORD_ENV)),
+                environment.get(SSH_PRIVATE_KEY_ENV),
+                keyFile == null ? null : new File(keyFile),
+                options.getOrDefault("gitRepositorySshPassphrase", environment.get(SSH_PASSPHRASE_ENV)));
+        credentials.validate();
+        return credentials;
+    }
+
+    private Release openRelease(Map<String, String> options) throws IOException, GitAPIException {
+        Path projectDir = Paths.get(options.getOrDefault("projectDir", ".")).toAbsolutePath().normalize();
+        Path versionFile = options.containsKey("versionFile") ? projectDir.resolve(options.get("versionFile"))
+                : projectDir.resolve("gradle.properties");
+        GitBackend.Type type = GitBackend.Type.parse(options.getOrDefault("gitBackend", "jgit"));
+
+        Repository repo = new FileRepositoryBuilder().findGitDir(projectDir.toFile()).setMustExist(true).build();
+        Release release = new Release(repo);
+        try {
+            Path workTree = repo.getWorkTree().toPath().toAbsolutePath().normalize();
+            release.version = VersionFile.load(versionFile, options.getOrDefault("versionKeyValue", "version"));
+            release.versionFilePath = workTree.relativize(versionFile.toAbsolutePath().normalize()).toString();
+
+            // JGit writes progress to stderr itself, so the operation and unit are not needed
+            GitBackend.MonitorFactory monitors = (operation, unit) -> new TextProgressMonitor(
+                    new PrintWriter(new OutputStreamWriter(err, StandardCharsets.UTF_8)));
+            GitBackend backend;
+            if (type == GitBackend.Type.NATIVE) {
+                backend = new NativeGitBackend(workTree, "git", monitors);
+            } else {
+                release.git = new Git(repo);
+                backend = new JGitBackend(repo, release.git, monitors);
+            }
+
+            if (Boolean.parseBoolean(options.get(DRY_RUN))) {
+                backend = new DryRunGitBackend(backend, repo, out::println);
+            }
+            release.backend = backend;
+
+            ReleaseSteps.verifyCanRelease(backend,
+                    options.getOrDefault("requiredBranchRegex", ReleaseSteps.DEFAULT_BRANCH_PATTERN));
+            return release;
+        } catch (IOException | GitAPIException | RuntimeException e) {
+            release.close();
+            throw e;
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args, Set<String> commandOptions) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument " + args[i]);
+            }
+
+            String name = args[i].substring(2);
+            String value;
+            int equalsIndex = name.indexOf('=');
+            if (equalsIndex != -1) {
+                value = name.substring(equalsIndex + 1);
+                name = name.substring(0, equalsIndex);
+            } else if (FLAGS.contains(name)) {
+                value = "true";
+            } else if (i + 1 < args.length) {
+                value = args[++i];
+            } else {
+                throw new IllegalArgumentException("Missing value for --" + name);
+            }
+
+            if (!name.equals(DRY_RUN) && !COMMON_OPTIONS.contains(name) && !commandOptions.contains(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name);
+            }
+            options.put(name, value);
+        }
+        return options;
+    }
+
+    /** The repository and version file being released */
+    private static final class Release implements AutoCloseable {
+        private final Repository repo;
+        private Git git;
+        private GitBackend backend;
+        private VersionFile version;
+        private String versionFilePath;
+
+        Release(Repository repo) {
+            this.repo = repo;
+        }
+
+        @Override
+        public void close() {
+            if (git != null) {
+                git.close();
+            }
+            repo.close();
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.URIish;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReleaseCliTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path workDir;
+    private Path remoteDir;
+    private ByteArrayOutputStream out;
+    private ByteArrayOutputStream err;
+    private ReleaseCli cli;
+
+    @BeforeEach
+    public void beforeEach() throws Exception {
+        workDir = tempDir.resolve("work");
+        remoteDir = tempDir.resolve("remote.git");
+        createRepository(workDir, remoteDir);
+
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+        cli = new ReleaseCli(new PrintStream(out, true, StandardCharsets.UTF_8),
+                new PrintStream(err, true, StandardCharsets.UTF_8), Collections.emptyMap());
+    }
+
+    @Test
+    void testPrepareAndFinalize() throws Exception {
+        assertEquals(ReleaseCli.EXIT_SUCCESS,
+                cli.run("prepare", "--releaseType", "MINOR", "--tagPrefix", "v", "--projectDir", workDir.toString()),
+                err::toString);
+        assertEquals("0.1.0", readVersion());
+
+        // a retried prepare does nothing
+        assertEquals(ReleaseCli.EXIT_SUCCESS,
+                cli.run("prepare", "--releaseType", "MINOR", "--tagPrefix", "v", "--projectDir", workDir.toString()),
+                err::toString);
+        assertEquals("0.1.0", readVersion());
+        assertTrue(out.toString().contains("HEAD is already released as v0.1.0"), out::toString);
+
+        assertEquals(ReleaseCli.EXIT_SUCCESS, cli.run("finalize", "--projectDir=" + workDir), err::toString);
+        assertEquals("0.1.1-SNAPSHOT", readVersion());
+
+        try (Git git = Git.open(workDir.toFile()); Git remote = Git.open(remoteDir.toFile())) {
+            assertNotNull(remote.getRepository().exactRef(Constants.R_TAGS + "v0.1.0"));
+            assertEquals(git.getRepository().resolve(Constants.HEAD),
+                    remote.getRepository().resolve(Constants.R_HEADS + "master"));
+        }
+    }
+
+    @Test
+    void testDryRun() throws Exception {
+        ObjectId head;
+        try (Git git = Git.open(workDir.toFile())) {
+            head = git.getRepository().resolve(Constants.HEAD);
+        }
+
+        assertEquals(ReleaseCli.EXIT_SUCCESS,
+                cli.run("prepare", "--releaseType", "PATCH", "--dryRun", "--projectDir", workDir.toString()),
+                err::toString);
+        assertTrue(out.toString().contains("Dry run: tag"), out::toString);
+        assertEquals("0.0.1-SNAPSHOT", readVersion());
+
+        try (Git git = Git.open(workDir.toFile())) {
+            assertEquals(head, git.getRepository().resolve(Constants.HEAD));
+            assertNull(git.getRepository().exactRef(Constants.R_TAGS + "0.0.1"));
+        }
+    }
+
+    @Test
+    void testWrongBranch() throws Exception {
+        assertEquals(ReleaseCli.EXIT_FAILURE, cli.run("prepare", "--releaseType", "PATCH", "--requiredBranchRegex",
+                "release", "--projectDir", workDir.toString()));
+        assertTrue(err.toString().contains("Expected branch name to match pattern"), err::toString);
+        assertEquals("0.0.1-SNAPSHOT", readVersion());
+    }
+
+    @Test
+    void testUnreachableOrigin() throws Exception {
+        try (Git git = Git.open(workDir.toFile())) {
+            StoredConfig config = git.getRepository().getConfig();
+            config.setString("remote", "origin", "url", tempDir.resolve("missing.git").toUri().toString());
+            config.save();
+        }
+        assertEquals(ReleaseCli.EXIT_FAILURE,
+                cli.run("prepare", "--releaseType", "PATCH", "--projectDir", workDir.toString()));
+        assertTrue(err.toString().contains("Unable to check the tags on origin"), err::toString);
+        assertEquals("0.0.1-SNAPSHOT", readVersion());
+
+        assertEquals(ReleaseCli.EXIT_SUCCESS, cli.run("prepare", "--releaseType", "PATCH", "--skipRemoteTagCheck",
+                "--projectDir", workDir.toString()), err::toString);
+        assertEquals("0.0.1", readVersion());
+    }
+
+    @Test
+    void testUsage() {
+        assertEquals(ReleaseCli.EXIT_USAGE, cli.run());
+        assertEquals(ReleaseCli.EXIT_USAGE, cli.run("publish"));
+        assertEquals(ReleaseCli.EXIT_USAGE, cli.run("prepare", "--newVersion", "1.0.0"));
+        assertEquals(ReleaseCli.EXIT_USAGE, cli.run("prepare", "--releaseType"));
+        assertEquals(ReleaseCli.EXIT_FAILURE, cli.run("prepare", "--releaseType", "HUGE"));
+        assertEquals(ReleaseCli.EXIT_SUCCESS, cli.run("--help"));
+    }
+
+    @Test
+    void testFleet() throws Exception {
+        for (String name : List.of("a", "b", "c")) {
+            createRepository(tempDir.resolve(name), tempDir.resolve(name + ".git"));
+        }
+        Path manifest = tempDir.resolve("fleet.txt");
+        Files.write(manifest, List.of("# repository type options", "a MINOR", "b PATCH tagPrefix=b-",
+                "c MANUAL releaseVersion=2.0.0 newVersion=2.1.0-SNAPSHOT"));
+
+        assertEquals(ReleaseCli.EXIT_SUCCESS,
+                cli.run("fleet", "--manifest", manifest.toString(), "--parallelism", "2"), out::toString);
+        assertTrue(out.toString().contains("Released 3 of 3 repositories"), out::toString);
+        assertEquals("0.1.1-SNAPSHOT", readVersion(tempDir.resolve("a")));
+        assertEquals("0.0.2-SNAPSHOT", readVersion(tempDir.resolve("b")));
+        assertEquals("2.1.0-SNAPSHOT", readVersion(tempDir.resolve("c")));
+
+        try (Git remote = Git.open(tempDir.resolve("b.git").toFile())) {
+            assertNotNull(remote.getRepository().exactRef(Constants.R_TAGS + "b-0.0.1"));
+        }
+    }
+
+    @Test
+    void testFleetPreflightFailure() throws Exception {
+        createRepository(tempDir.resolve("a"), tempDir.resolve("a.git"));
+        createRepository(tempDir.resolve("b"), tempDir.resolve("b.git"));
+        Files.writeString(tempDir.resolve("b").resolve("gradle.properties"), "version = 0.0.2-SNAPSHOT\n");
+        Path manifest = tempDir.resolve("fleet.txt");
+        Files.write(manifest, List.of("a MINOR", "b MINOR"));
+
+        assertEquals(ReleaseCli.EXIT_FAILURE, cli.run("fleet", "--manifest", manifest.toString()));
+        assertTrue(out.toString().contains("FAILED PREFLIGHT"), out::toString);
+        assertTrue(out.toString().contains("Released 0 of 2 repositories"), out::toString);
+
+        // no repository is modified when any repository fails its preflight
+        assertEquals("0.0.1-SNAPSHOT", readVersion(tempDir.resolve("a")));
+        try (Git git = Git.open(tempDir.resolve("a").toFile())) {
+            assertTrue(git.tagList().call().isEmpty());
+        }
+    }
+
+    @Test
+    void testNoGradleApi() {
+        assertThrows(ClassNotFoundException.class, () -> Class.forName("org.gradle.api.Project"));
+    }
+
+    private String readVersion() throws IOException {
+        return readVersion(workDir);
+    }
+
+    private static String readVersion(Path dir) throws IOException {
+        return VersionFile.load(dir.resolve("gradle.properties"), "version").toString();
+    }
+
+    private static void createRepository(Path dir, Path remote) throws Exception {
+        Files.createDirectories(dir);
+        Git.init().setBare(true).setDirectory(remote.toFile()).setInitialBranch("master").call().close();
+        try (Git git = Git.init().setDirectory(dir.toFile()).setInitialBranch("master").call()) {
+            Files.writeString(dir.resolve("gradle.properties"), "version = 0.0.1-SNAPSHOT\n");
+            git.add().addFilepattern("gradle.properties").call();
+            git.commit().setMessage("initial").call();
+            git.remoteAdd().setName("origin").setUri(new URIish(remote.toUri().toString())).call();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.TestReporter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import com.fincher.gradle.release.SyntheticRepository.PackLayout;
+
+/**
+ * Runs prepareRelease and finalizeRelease against large synthetic repositories and asserts on the wall-clock time and
+ * peak heap usage of the release. These tests are run by the scaleTest task rather than by check. The largest
+ * scenarios can be skipped with the scaleTest.maxFileCount and scaleTest.maxTagCount system properties.
+ *
+ * @author Brian Fincher
+ *
+ */
+@Tag("scale")
+class ReleaseScaleTest {
+
+    private static final long MAX_FILE_COUNT = Long.getLong("scaleTest.maxFileCount", Long.MAX_VALUE);
+    private static final long MAX_TAG_COUNT = Long.getLong("scaleTest.maxTagCount", Long.MAX_VALUE);
+    private static final String RELEASE_VERSION = "0.1.0";
+
+    private Path testDir;
+
+    @BeforeEach
+    public void beforeEach() throws IOException {
+        testDir = Paths.get("build", "scaleTest");
+        if (Files.exists(testDir)) {
+            try (Stream<Path> paths = Files.walk(testDir)) {
+                paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+        Files.createDirectories(testDir);
+    }
+
+    @ParameterizedTest(name = "{0} files")
+    @CsvSource({ "10000, 30, 512", "100000, 120, 1024", "1000000, 900, 3072" })
+    void testFileCount(int fileCount, int maxSeconds, int maxHeapMb, TestReporter reporter) throws Exception {
+        assumeTrue(fileCount <= MAX_FILE_COUNT, "fileCount exceeds scaleTest.maxFileCount");
+        runRelease(SyntheticRepository.builder().fileCount(fileCount).historyDepth(10), maxSeconds, maxHeapMb,
+                reporter);
+    }
+
+    @ParameterizedTest(name = "{0} tags")
+    @CsvSource({ "10000, 30, 512", "100000, 120, 1024" })
+    void testTagCount(int tagCount, int maxSeconds, int maxHeapMb, TestReporter reporter) throws Exception {
+        assumeTrue(tagCount <= MAX_TAG_COUNT, "tagCount exceeds scaleTest.maxTagCount");
+        runRelease(SyntheticRepository.builder().fileCount(1000).historyDepth(100).tagCount(tagCount), maxSeconds,
+                maxHeapMb, reporter);
+    }
+
+    @ParameterizedTest
+    @EnumSource(PackLayout.class)
+    void testPackLayout(PackLayout packLayout, TestReporter reporter) throws Exception {
+        runRelease(SyntheticRepository.builder().fileCount(10000).historyDepth(50).tagCount(1000)
+                .packLayout(packLayout), 60, 512, reporter);
+    }
+
+    // The time and peak heap of each release are published to the test report
+    private void runRelease(SyntheticRepository repository, int maxSeconds, int maxHeapMb, TestReporter reporter)
+            throws Exception {
+        Path remoteDir = testDir.resolve("remote.git");
+        Path workDir = testDir.resolve("work");
+
+        try (Git git = repository.buildWorkingCopy(remoteDir, workDir)) {
+            Project project = ProjectBuilder.builder().withProjectDir(workDir.toFile()).build();
+            project.getPluginManager().apply(ReleasePlugin.class);
+
+            PrepareReleaseTask prepareRelease = (PrepareReleaseTask) project.getTasks().getByName("prepareRelease");
+            prepareRelease.setReleaseType(ReleaseType.MINOR);
+            FinalizeReleaseTask finalizeRelease = (FinalizeReleaseTask) project.getTasks()
+                    .getByName("finalizeRelease");
+
+            List<MemoryPoolMXBean> heapPools = resetPeakHeapUsage();
+            long start = System.nanoTime();
+
+            prepareRelease.releaseTaskAction();
+            finalizeRelease.releaseTaskAction();
+
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            long peakHeapMb = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum()
+                    / (1024 * 1024);
+            reporter.publishEntry(Map.of("repository", repository.getCacheKey(), "elapsedMillis",
+                    String.valueOf(elapsedMillis), "peakHeapMb", String.valueOf(peakHeapMb)));
+
+            verifyRelease(git, remoteDir);
+            assertTrue(elapsedMillis <= TimeUnit.SECONDS.toMillis(maxSeconds),
+                    String.format("Release took %d ms, expected at most %d s", elapsedMillis, maxSeconds));
+            assertTrue(peakHeapMb <= maxHeapMb,
+                    String.format("Peak heap was %d MB, expected at most %d MB", peakHeapMb, maxHeapMb));
+        }
+    }
+
+    private static void verifyRelease(Git git, Path remoteDir) throws IOException, GitAPIException {
+        WorkingTreeStatus.verifyNoUncommitedChanges(git, NullProgressMonitor.INSTANCE);
+
+        try (Git remote = Git.open(remoteDir.toFile())) {
+            Repository remoteRepo = remote.getRepository();
+            assertNotNull(remoteRepo.exactRef(Constants.R_TAGS + RELEASE_VERSION));
+            assertEquals(git.getRepository().resolve(Constants.HEAD),
+                    remoteRepo.resolve(Constants.R_HEADS + SyntheticRepository.BRANCH));
+        }
+    }
+
+    private static List<MemoryPoolMXBean> resetPeakHeapUsage() {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .collect(Collectors.toList());
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        return heapPools;
+    }
+}
@@ -0,0 +1,329 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand.ResetType;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEditor.PathEdit;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.internal.storage.file.ObjectDirectory;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TagBuilder;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.util.FS;
+
+/**
+ * Generates synthetic git repositories for scale testing the release tasks. A generated repository is a bare
+ * repository that is cached under <code>build/syntheticRepos</code> (or the directory given by the
+ * <code>syntheticRepoCacheDir</code> system property) and is reused by later runs with the same parameters.
+ *
+ * <pre>
+ * The first commit contains a gradle.properties, build.gradle, settings.gradle and fileCount other files.
+ * Each later commit modifies one of those files until the history reaches historyDepth commits.
+ * tagCount annotated tags are spread over the commits in the history.
+ * </pre>
+ *
+ * @author Brian Fincher
+ *
+ */
+final class SyntheticRepository {
+
+    /** How the objects of a generated repository are stored */
+    enum PackLayout {
+        /** Every object is a loose object */
+        LOOSE,
+        /** All objects are in a single pack */
+        SINGLE_PACK,
+        /** The objects of each commit are in their own pack */
+        PACK_PER_COMMIT;
+    }
+
+    static final String BRANCH = "master";
+    static final String INITIAL_VERSION = "0.0.1-SNAPSHOT";
+
+    private static final PersonIdent AUTHOR = new PersonIdent("Synthetic Author", "synthetic@example.com", 0, 0);
+
+    private int fileCount = 100;
+    private int filesPerDirectory = 100;
+    private int historyDepth = 1;
+    private int tagCount = 0;
+    private PackLayout packLayout = PackLayout.SINGLE_PACK;
+
+    private SyntheticRepository() {
+    }
+
+    static SyntheticRepository builder() {
+        return new SyntheticRepository();
+    }
+
+    SyntheticRepository fileCount(int fileCount) {
+        this.fileCount = fileCount;
+        return this;
+    }
+
+    SyntheticRepository filesPerDirectory(int filesPerDirectory) {
+        this.filesPerDirectory = filesPerDirectory;
+        return this;
+    }
+
+    SyntheticRepository historyDepth(int historyDepth) {
+        this.historyDepth = historyDepth;
+        return this;
+    }
+
+    SyntheticRepository tagCount(int tagCount) {
+        this.tagCount = tagCount;
+        return this;
+    }
+
+    SyntheticRepository packLayout(PackLayout packLayout) {
+        this.packLayout = packLayout;
+        return this;
+    }
+
+    /**
+     * Get the cached bare repository for this configuration, generating it first if it does not yet exist
+     *
+     * @return The directory of the bare repository
+     * @throws IOException If an error occurs generating the repository
+     */
+    Path build() throws IOException {
+        Path cacheDir = Paths.get(System.getProperty("syntheticRepoCacheDir", "build/syntheticRepos"));
+        Path repoDir = cacheDir.resolve(getCacheKey());
+        if (Files.isDirectory(repoDir)) {
+            return repoDir;
+        }
+
+        Files.createDirectories(cacheDir);
+        Path tempDir = Files.createTempDirectory(cacheDir, getCacheKey());
+        generate(tempDir);
+        Files.move(tempDir, repoDir, StandardCopyOption.ATOMIC_MOVE);
+        return repoDir;
+    }
+
+    /**
+     * Builds the cached repository and sets up a copy of it to be released. A copy of the cached bare repository is
+     * made at remoteDir and a working tree that uses it as the origin is checked out at workDir
+     *
+     * @param remoteDir The directory for the bare remote repository
+     * @param workDir The directory for the working tree
+     * @return The Git object for the working tree
+     * @throws IOException If an error occurs copying the repository
+     * @throws GitAPIException If an error occurs checking out the working tree
+     */
+    Git buildWorkingCopy(Path remoteDir, Path workDir) throws IOException, GitAPIException {
+        Path template = build();
+        copyDirectory(template, remoteDir);
+        Path gitDir = workDir.resolve(Constants.DOT_GIT);
+        copyDirectory(template, gitDir);
+
+        FileBasedConfig config = new FileBasedConfig(gitDir.resolve(Constants.CONFIG).toFile(), FS.DETECTED);
+        try {
+            config.load();
+        } catch (ConfigInvalidException e) {
+            throw new IOException(e);
+        }
+        config.setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_KEY_BARE, false);
+        config.setString(ConfigConstants.CONFIG_REMOTE_SECTION, "origin", ConfigConstants.CONFIG_KEY_URL,
+                remoteDir.toUri().toString());
+        config.setString(ConfigConstants.CONFIG_REMOTE_SECTION, "origin", "fetch",
+                "+refs/heads/*:refs/remotes/origin/*");
+        config.save();
+
+        Git git = Git.open(workDir.toFile());
+        git.reset().setMode(ResetType.HARD).setRef(Constants.HEAD).call();
+        return git;
+    }
+
+    String getCacheKey() {
+        return String.format(Locale.ROOT, "files%d-perdir%d-depth%d-tags%d-%s", fileCount, filesPerDirectory,
+                historyDepth, tagCount, packLayout.name().toLowerCase(Locale.ROOT));
+    }
+
+    private void generate(Path dir) throws IOException {
+        try (Repository repo = Git.init().setDirectory(dir.toFile()).setBare(true).setInitialBranch(BRANCH)
+                .call().getRepository()) {
+            List<ObjectId> commits = new ArrayList<>(historyDepth);
+            DirCache index = DirCache.newInCore();
+
+            ObjectInserter inserter = newInserter(repo);
+            try {
+                writeInitialTree(index, inserter);
+                commits.add(insertCommit(inserter, index.writeTree(inserter), null, "initial commit"));
+
+                for (int i = 1; i < historyDepth; i++) {
+                    if (packLayout == PackLayout.PACK_PER_COMMIT) {
+                        inserter.flush();
+                        inserter.close();
+                        inserter = newInserter(repo);
+                    }
+
+                    int fileIndex = (int) ((long) i * 7919 % fileCount);
+                    modifyFile(index, inserter, fileIndex, i);
+                    commits.add(insertCommit(inserter, index.writeTree(inserter), commits.get(i - 1),
+                            "modify file " + fileIndex));
+                }
+
+                List<ReceiveCommand> tagCommands = insertTags(inserter, commits);
+                inserter.flush();
+
+                updateRefs(repo, commits.get(commits.size() - 1), tagCommands);
+            } finally {
+                inserter.close();
+            }
+        } catch (GitAPIException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private ObjectInserter newInserter(Repository repo) {
+        if (packLayout == PackLayout.LOOSE) {
+            return repo.newObjectInserter();
+        }
+        return ((ObjectDirectory) repo.getObjectDatabase()).newPackInserter();
+    }
+
+    private void writeInitialTree(DirCache index, ObjectInserter inserter) throws IOException {
+        DirCacheBuilder builder = index.builder();
+        builder.add(newEntry("gradle.properties", inserter, "version = " + INITIAL_VERSION + "\n"));
+        builder.add(newEntry("build.gradle", inserter, "plugins {\n  id('com.fincher.release')\n}\n"));
+        builder.add(newEntry("settings.gradle", inserter, ""));
+
+        for (int i = 0; i < fileCount; i++) {
+            builder.add(newEntry(filePath(i), inserter, fileContent(i, 0)));
+        }
+        builder.finish();
+    }
+
+    private void modifyFile(DirCache index, ObjectInserter inserter, int fileIndex, int revision)
+            throws IOException {
+        ObjectId blobId = insertBlob(inserter, fileContent(fileIndex, revision));
+        DirCacheEditor editor = index.editor();
+        editor.add(new PathEdit(filePath(fileIndex)) {
+            @Override
+            public void apply(DirCacheEntry entry) {
+                entry.setFileMode(FileMode.REGULAR_FILE);
+                entry.setObjectId(blobId);
+            }
+        });
+        editor.finish();
+    }
+
+    private ObjectId insertCommit(ObjectInserter inserter, ObjectId treeId, ObjectId parent, String message)
+            throws IOException {
+        CommitBuilder commit = new CommitBuilder();
+        commit.setTreeId(treeId);
+        if (parent != null) {
+            commit.setParentId(parent);
+        }
+        commit.setAuthor(AUTHOR);
+        commit.setCommitter(AUTHOR);
+        commit.setMessage(message);
+        return inserter.insert(commit);
+    }
+
+    private List<ReceiveCommand> insertTags(ObjectInserter inserter, List<ObjectId> commits) throws IOException {
+        List<ReceiveCommand> commands = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            String name = "history-" + i;
+            TagBuilder tag = new TagBuilder();
+            tag.setTag(name);
+            tag.setObjectId(commits.get(i % commits.size()), Constants.OBJ_COMMIT);
+            tag.setTagger(AUTHOR);
+            tag.setMessage(name);
+            ObjectId tagId = inserter.insert(tag);
+            commands.add(new ReceiveCommand(ObjectId.zeroId(), tagId, Constants.R_TAGS + name));
+        }
+        return commands;
+    }
+
+    private static void updateRefs(Repository repo, ObjectId head, List<ReceiveCommand> tagCommands)
+            throws IOException {
+        RefUpdate branchUpdate = repo.updateRef(Constants.R_HEADS + BRANCH);
+        branchUpdate.setNewObjectId(head);
+        RefUpdate.Result result = branchUpdate.update();
+        if (result != RefUpdate.Result.NEW) {
+            throw new IOException("Unable to create branch " + BRANCH + ": " + result);
+        }
+
+        if (!tagCommands.isEmpty()) {
+            BatchRefUpdate batch = repo.getRefDatabase().newBatchUpdate();
+            batch.setAtomic(true);
+            batch.addCommand(tagCommands);
+            try (RevWalk walk = new RevWalk(repo)) {
+                batch.execute(walk, NullProgressMonitor.INSTANCE);
+            }
+
+            for (ReceiveCommand command : tagCommands) {
+                if (command.getResult() != ReceiveCommand.Result.OK) {
+                    throw new IOException("Unable to create tag " + command.getRefName() + ": "
+                            + command.getResult());
+                }
+            }
+        }
+    }
+
+    private static DirCacheEntry newEntry(String path, ObjectInserter inserter, String content)
+            throws IOException {
+        DirCacheEntry entry = new DirCacheEntry(path);
+        entry.setFileMode(FileMode.REGULAR_FILE);
+        entry.setObjectId(insertBlob(inserter, content));
+        return entry;
+    }
+
+    private static ObjectId insertBlob(ObjectInserter inserter, String content) throws IOException {
+        return inserter.insert(Constants.OBJ_BLOB, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String filePath(int fileIndex) {
+        return String.format(Locale.ROOT, "src/dir%d/file%d.txt", fileIndex / filesPerDirectory, fileIndex);
+    }
+
+    private static String fileContent(int fileIndex, int revision) {
+        return String.format(Locale.ROOT, "file %d revision %d\n", fileIndex, revision);
+    }
+
+    private static void copyDirectory(Path source, Path dest) throws IOException {
+        try (Stream<Path> paths = Files.walk(source)) {
+            paths.forEach(path -> {
+                try {
+                    Path target = dest.resolve(source.relativize(path).toString());
+                    if (Files.isDirectory(path)) {
+                        Files.createDirectories(target);
+                    } else {
+                        Files.copy(path, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
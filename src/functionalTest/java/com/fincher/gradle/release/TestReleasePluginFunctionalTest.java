@@ -1,21 +1,35 @@
 package com.fincher.gradle.release;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.nio.file.Paths;
 import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.eclipse.jgit.api.AddCommand;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.notes.Note;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.gradle.testkit.runner.BuildResult;
 import org.gradle.testkit.runner.GradleRunner;
 import org.junit.jupiter.api.BeforeEach;
@@ -230,6 +244,536 @@ class TestReleasePluginFunctionalTest {
         verifyFinalizeReleaseResults("1.0.1-SNAPSHOT");
     }
 
+    @Test
+    void testNativeGitBackend() throws IOException, GitAPIException {
+        Files.write(buildFile, Lists.newArrayList("plugins {", "  id('com.fincher.release')", "}", "", "release {",
+                "    gitBackend = 'native'", "}"));
+        gitAddAndCommit("build.gradle", "use the native git backend");
+
+        // native git requires an identity to commit
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString("user", null, "name", "Test User");
+        config.setString("user", null, "email", "test@example.com");
+        config.save();
+
+        // native git terminates commit messages with a new line
+        runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        assertEquals("0.1.0", getVersionFromFile());
+        assertEquals("\"Set version for release to 0.1.0\"",
+                git.log().call().iterator().next().getFullMessage().trim());
+        assertNotNull(git.getRepository().exactRef("refs/tags/0.1.0"));
+        AbstractReleaseTask.verifyNoUncommitedChanges(git);
+
+        runWithArguments("finalizeRelease");
+        assertEquals("0.1.1-SNAPSHOT", getVersionFromFile());
+        assertEquals("\"Set version after release to 0.1.1-SNAPSHOT\"",
+                git.log().call().iterator().next().getFullMessage().trim());
+        AbstractReleaseTask.verifyNoUncommitedChanges(git);
+
+        try (Git remote = Git.open(gitRepoBareDir.toFile())) {
+            assertEquals(git.getRepository().resolve(Constants.HEAD),
+                    remote.getRepository().resolve("refs/heads/master"));
+            assertNotNull(remote.getRepository().exactRef("refs/tags/0.1.0"));
+        }
+    }
+
+    @Test
+    void testDryRun() throws IOException, GitAPIException {
+        ObjectId head = git.getRepository().resolve(Constants.HEAD);
+
+        BuildResult result = runWithArguments("prepareRelease", "--releaseType", "MAJOR", "--dryRun");
+        assertTrue(result.getOutput().contains("Dry run: tag"));
+        assertEquals("0.0.1-SNAPSHOT", getVersionFromFile());
+        assertEquals(head, git.getRepository().resolve(Constants.HEAD));
+        assertTrue(git.tagList().call().isEmpty());
+        AbstractReleaseTask.verifyNoUncommitedChanges(git);
+
+        result = runWithArguments("finalizeRelease", "--dryRun");
+        assertTrue(result.getOutput().contains("Dry run: push refs/heads/master:refs/heads/master"));
+        assertEquals("0.0.1-SNAPSHOT", getVersionFromFile());
+        assertEquals(head, git.getRepository().resolve(Constants.HEAD));
+        AbstractReleaseTask.verifyNoUncommitedChanges(git);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "classloader", "process" })
+    void testWorkerIsolation(String isolation) throws IOException, GitAPIException {
+        Files.write(buildFile, Lists.newArrayList("plugins {", "  id('com.fincher.release')", "}", "", "release {",
+                "    workerIsolation = '" + isolation + "'", "    workerMaxHeapSize = '256m'", "}", "",
+                "tasks.named('prepareRelease') {",
+                "    doLast { println \"Released \" + releasedVersion.get() }", "}"));
+        gitAddAndCommit("build.gradle", "run the release in a worker");
+
+        BuildResult result = runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        verifyPrepareReleaseResults(result, "0.1.0");
+        assertTrue(result.getOutput().contains("Released 0.1.0"), result.getOutput());
+
+        runWithArguments("finalizeRelease");
+        verifyFinalizeReleaseResults("0.1.1-SNAPSHOT");
+        try (Git remote = Git.open(gitRepoBareDir.toFile())) {
+            assertNotNull(remote.getRepository().exactRef("refs/tags/0.1.0"));
+        }
+    }
+
+    @Test
+    void testResumePrepareRelease() throws IOException, GitAPIException {
+        runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        ObjectId releaseCommit = git.getRepository().resolve(Constants.HEAD);
+
+        // simulate a crash after the version commit but before the tag
+        Path journal = git.getRepository().getDirectory().toPath().resolve(ReleaseJournal.getPath("gradle.properties"));
+        List<String> entries = Files.readAllLines(journal);
+        assertEquals("COMMITTED\t" + releaseCommit.name() + "\t0.1.0", entries.get(1));
+        Files.write(journal, entries.subList(0, 2));
+        git.tagDelete().setTags("0.1.0").call();
+
+        BuildResult result = runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        verifyPrepareReleaseResults(result, "0.1.0");
+        assertEquals(releaseCommit, git.getRepository().resolve(Constants.HEAD));
+        assertEquals(releaseCommit, git.getRepository().getRefDatabase()
+                .peel(git.getRepository().exactRef("refs/tags/0.1.0")).getPeeledObjectId());
+
+    }
+
+    @Test
+    void testPrepareReleaseOfReleasedHead() throws IOException, GitAPIException {
+        Files.write(buildFile, Lists.newArrayList("plugins {", "  id('com.fincher.release')", "}", "",
+                "prepareRelease {", "    tagPrefix = 'v'", "    doLast {",
+                "        println \"Released version ${releasedVersion.get()}\"", "    }", "}"));
+        gitAddAndCommit("build.gradle", "print the release version");
+
+        BuildResult result = runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        assertTrue(result.getOutput().contains("Released version 0.1.0"), result.getOutput());
+        ObjectId releaseCommit = git.getRepository().resolve(Constants.HEAD);
+
+        // a retry of the same release does not bump the version again
+        result = runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        assertEquals(releaseCommit, git.getRepository().resolve(Constants.HEAD));
+        assertTrue(result.getOutput().contains("HEAD is already released as v0.1.0"), result.getOutput());
+        assertTrue(result.getOutput().contains("Released version 0.1.0"), result.getOutput());
+        verifyPrepareReleaseResults(result, "0.1.0", "v");
+    }
+
+    @Test
+    void testRemoteTagCollision() throws IOException, GitAPIException {
+        // another clone already released 0.1.0
+        git.tag().setName("0.1.0").setMessage("0.1.0").call();
+        git.push().setPushTags().call();
+        git.tagDelete().setTags("0.1.0").call();
+        ObjectId head = git.getRepository().resolve(Constants.HEAD);
+
+        BuildResult result = runWithArgumentsAndFail("prepareRelease", "--releaseType", "MINOR");
+        assertTrue(result.getOutput().contains("Tag 0.1.0 already exists on origin"), result.getOutput());
+        assertEquals("0.0.1-SNAPSHOT", getVersionFromFile());
+        assertEquals(head, git.getRepository().resolve(Constants.HEAD));
+        AbstractReleaseTask.verifyNoUncommitedChanges(git);
+
+        runWithArguments("prepareRelease", "--releaseType", "MAJOR");
+        assertEquals("1.0.0", getVersionFromFile());
+    }
+
+    @Test
+    void testRemoteTagCheckWithUnreachableOrigin() throws IOException, GitAPIException {
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString("remote", "origin", "url", projectDir.resolve("missing.git").toUri().toString());
+        config.save();
+
+        BuildResult result = runWithArgumentsAndFail("prepareRelease", "--releaseType", "MINOR");
+        assertTrue(result.getOutput().contains("Unable to check the tags on origin"), result.getOutput());
+        assertEquals("0.0.1-SNAPSHOT", getVersionFromFile());
+
+        result = runWithArguments("prepareRelease", "--releaseType", "MINOR", "--skipRemoteTagCheck");
+        assertTrue(result.getOutput().contains("not checked for a collision"), result.getOutput());
+        assertEquals("0.1.0", getVersionFromFile());
+    }
+
+    @Test
+    void testOriginMovedBeforeFinalizeRelease() throws IOException, GitAPIException, InterruptedException {
+        useGitBackendProperty();
+        git.push().call();
+
+        int minor = 1;
+        for (String backend : List.of("jgit", "native")) {
+            Path cloneDir = cloneOrigin("testOriginMovedBeforeFinalizeRelease-" + backend);
+            runner.withProjectDir(cloneDir.toFile());
+            runWithArguments("prepareRelease", "--releaseType", "MINOR", "-PreleaseGitBackend=" + backend);
+
+            // another clone pushes a change while the release is being built
+            git.pull().call();
+            Files.writeString(projectDir.resolve(backend + ".txt"), backend);
+            gitAddAndCommit(backend + ".txt", "add " + backend);
+            git.push().call();
+
+            List<String> releaseCommit = runGit(cloneDir, "rev-parse", "HEAD");
+            BuildResult result = runWithArgumentsAndFail("finalizeRelease", "-PreleaseGitBackend=" + backend);
+            assertTrue(result.getOutput().contains("origin/master has moved since the release was prepared"),
+                    result.getOutput());
+            assertEquals(releaseCommit, runGit(cloneDir, "rev-parse", "HEAD"));
+            String release = "0." + minor + ".0";
+            assertEquals(release, VersionFile.load(cloneDir.resolve("gradle.properties"), versionKeyValue).toString());
+
+            // the release is rebased onto origin and prepared again
+            runGit(cloneDir, "tag", "-d", release);
+            runGit(cloneDir, "reset", "--quiet", "--hard", "HEAD~1");
+            runGit(cloneDir, "pull", "--quiet", "--ff-only", "origin", "master");
+            runWithArguments("prepareRelease", "--releaseType", "MINOR", "-PreleaseGitBackend=" + backend);
+            runWithArguments("finalizeRelease", "-PreleaseGitBackend=" + backend);
+            try (Git remote = Git.open(gitRepoBareDir.toFile())) {
+                assertEquals(runGit(cloneDir, "rev-parse", "HEAD").get(0),
+                        remote.getRepository().resolve("refs/heads/master").name());
+                assertNotNull(remote.getRepository().exactRef("refs/tags/" + release));
+            }
+            minor++;
+        }
+
+        // another clone releases first, so the version of the release is out of date
+        Path cloneDir = cloneOrigin("testOriginMovedBeforeFinalizeRelease-abort");
+        runner.withProjectDir(cloneDir.toFile());
+        runWithArguments("prepareRelease", "--releaseType", "MAJOR");
+        git.pull().call();
+        runner.withProjectDir(projectDir.toFile());
+        runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        runWithArguments("finalizeRelease");
+
+        runner.withProjectDir(cloneDir.toFile());
+        List<String> releaseCommit = runGit(cloneDir, "rev-parse", "HEAD");
+        BuildResult result = runWithArgumentsAndFail("finalizeRelease");
+        assertTrue(result.getOutput().contains("Unable to push the release because origin/master has changed "
+                + "gradle.properties since the release was prepared"), result.getOutput());
+        assertEquals(releaseCommit, runGit(cloneDir, "rev-parse", "HEAD"));
+    }
+
+    @Test
+    void testParallelMultiProjectRelease() throws IOException, GitAPIException {
+        Files.writeString(settingsFile, "include 'a', 'b'");
+        Files.writeString(buildFile, "");
+        for (String name : List.of("a", "b")) {
+            Path subprojectDir = Files.createDirectories(projectDir.resolve(name));
+            Files.write(subprojectDir.resolve("build.gradle"), Lists.newArrayList("plugins {",
+                    "  id('com.fincher.release')", "}", "", "release {", "    tagPrefix = '" + name + "-'", "}"));
+            Files.writeString(subprojectDir.resolve("gradle.properties"), "version = 1.0.0-SNAPSHOT");
+        }
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("add subprojects").call();
+
+        runWithArguments("prepareRelease", "--releaseType", "MINOR", "--parallel");
+        AbstractReleaseTask.verifyNoUncommitedChanges(git);
+        for (String name : List.of("a", "b")) {
+            assertEquals("1.1.0", VersionFile.load(projectDir.resolve(name).resolve("gradle.properties"),
+                    versionKeyValue).toString());
+            assertNotNull(git.getRepository().exactRef("refs/tags/" + name + "-1.1.0"));
+        }
+
+        runWithArguments("finalizeRelease", "--parallel");
+        AbstractReleaseTask.verifyNoUncommitedChanges(git);
+        try (Git remote = Git.open(gitRepoBareDir.toFile())) {
+            assertEquals(git.getRepository().resolve(Constants.HEAD),
+                    remote.getRepository().resolve("refs/heads/master"));
+            assertNotNull(remote.getRepository().exactRef("refs/tags/a-1.1.0"));
+            assertNotNull(remote.getRepository().exactRef("refs/tags/b-1.1.0"));
+        }
+        for (String name : List.of("a", "b")) {
+            assertEquals("1.1.1-SNAPSHOT", VersionFile.load(projectDir.resolve(name).resolve("gradle.properties"),
+                    versionKeyValue).toString());
+        }
+    }
+
+    @Test
+    void testSequentialMultiProjectReleaseWithSharedTagPrefix() throws IOException, GitAPIException {
+        Files.writeString(settingsFile, "include 'a', 'b'");
+        Files.writeString(buildFile, "");
+        Map<String, String> versions = Map.of("a", "1.0.0-SNAPSHOT", "b", "2.0.0-SNAPSHOT");
+        for (String name : List.of("a", "b")) {
+            Path subprojectDir = Files.createDirectories(projectDir.resolve(name));
+            Files.write(subprojectDir.resolve("build.gradle"), Lists.newArrayList("plugins {",
+                    "  id('com.fincher.release')", "}", "", "release {", "    tagPrefix = 'v'", "}"));
+            Files.writeString(subprojectDir.resolve("gradle.properties"), "version = " + versions.get(name));
+        }
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("add subprojects").call();
+
+        runWithArguments(":a:prepareRelease", "--releaseType", "MINOR");
+        assertEquals(git.getRepository().resolve(Constants.HEAD), git.getRepository().getRefDatabase()
+                .peel(git.getRepository().exactRef("refs/tags/v1.1.0")).getPeeledObjectId());
+
+        // HEAD has the release tag of a, which is not a release of b
+        BuildResult result = runWithArguments(":b:prepareRelease", "--releaseType", "MINOR");
+        assertFalse(result.getOutput().contains("HEAD is already released"), result.getOutput());
+        AbstractReleaseTask.verifyNoUncommitedChanges(git);
+        assertEquals("1.1.0", VersionFile.load(projectDir.resolve("a/gradle.properties"), versionKeyValue).toString());
+        assertEquals("2.1.0", VersionFile.load(projectDir.resolve("b/gradle.properties"), versionKeyValue).toString());
+        assertEquals(git.getRepository().resolve(Constants.HEAD), git.getRepository().getRefDatabase()
+                .peel(git.getRepository().exactRef("refs/tags/v2.1.0")).getPeeledObjectId());
+
+        // a retry of b skips its own release
+        result = runWithArguments(":b:prepareRelease", "--releaseType", "MINOR");
+        assertTrue(result.getOutput().contains("HEAD is already released as v2.1.0"), result.getOutput());
+    }
+
+    @Test
+    void testFileSystemMonitor() throws IOException, GitAPIException {
+        Files.writeString(settingsFile, "include 'a', 'b'");
+        Files.writeString(buildFile, "");
+        for (String name : List.of("a", "b")) {
+            Path subprojectDir = Files.createDirectories(projectDir.resolve(name));
+            Files.write(subprojectDir.resolve("build.gradle"),
+                    Lists.newArrayList("plugins {", "  id('com.fincher.release')", "}", "", "release {",
+                            "    tagPrefix = '" + name + "-'", "    fileSystemMonitor = true", "}"));
+            Files.writeString(subprojectDir.resolve("gradle.properties"), "version = 1.0.0-SNAPSHOT");
+        }
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("add subprojects").call();
+
+        runWithArguments("prepareRelease", "--releaseType", "MINOR", "--parallel");
+        AbstractReleaseTask.verifyNoUncommitedChanges(git);
+        for (String name : List.of("a", "b")) {
+            assertNotNull(git.getRepository().exactRef("refs/tags/" + name + "-1.1.0"));
+        }
+
+        Files.writeString(projectDir.resolve("a").resolve("build.gradle"), "// modified", StandardOpenOption.APPEND);
+        BuildResult result = runWithArgumentsAndFail("finalizeRelease", "--parallel");
+        assertTrue(result.getOutput().contains("Unable to release with uncommitted changes"), result.getOutput());
+
+        git.checkout().addPath("a/build.gradle").call();
+        runWithArguments("finalizeRelease", "--parallel");
+        AbstractReleaseTask.verifyNoUncommitedChanges(git);
+        for (String name : List.of("a", "b")) {
+            assertEquals("1.1.1-SNAPSHOT", VersionFile.load(projectDir.resolve(name).resolve("gradle.properties"),
+                    versionKeyValue).toString());
+        }
+    }
+
+    @Test
+    void testReleaseBundle() throws IOException, GitAPIException {
+        runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        BuildResult result = runWithArguments("finalizeRelease", "--bundle", "build/release.bundle");
+        assertTrue(result.getOutput().contains("Bundled refs/tags/0.1.0"), result.getOutput());
+        verifyFinalizeReleaseResults("0.1.1-SNAPSHOT");
+        assertTrue(Files.exists(projectDir.resolve("build/release.bundle.sha256")));
+        try (Git remote = Git.open(gitRepoBareDir.toFile())) {
+            assertNull(remote.getRepository().resolve("refs/heads/master"));
+        }
+
+        runWithArguments("applyReleaseBundle", "--bundle", "build/release.bundle", "--repositoryDir",
+                gitRepoBareDir.toAbsolutePath().toString());
+        try (Git remote = Git.open(gitRepoBareDir.toFile())) {
+            assertEquals(git.getRepository().resolve(Constants.HEAD),
+                    remote.getRepository().resolve("refs/heads/master"));
+            assertNotNull(remote.getRepository().exactRef("refs/tags/0.1.0"));
+        }
+    }
+
+    @Test
+    void testArtifactChecksums() throws IOException, GitAPIException {
+        Files.write(buildFile, Lists.newArrayList("plugins {", "  id('com.fincher.release')", "}", "", "release {",
+                "    artifacts.from('build/dist')", "}"));
+        gitAddAndCommit("build.gradle", "record the artifact checksums");
+
+        // the artifacts are built after the release is prepared, so they are not recorded in the release tag
+        runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        try (RevWalk walk = new RevWalk(git.getRepository())) {
+            RevTag tag = walk.parseTag(git.getRepository().resolve("refs/tags/0.1.0"));
+            assertEquals("0.1.0", tag.getFullMessage().trim());
+        }
+
+        Path artifact = Files.createDirectories(projectDir.resolve("build/dist")).resolve("app.jar");
+        Files.writeString(artifact, "app");
+        String checksum = ArtifactManifest.sha256(artifact) + "  build/dist/app.jar";
+        runWithArguments("finalizeRelease");
+        try (Git remote = Git.open(gitRepoBareDir.toFile()); RevWalk walk = new RevWalk(remote.getRepository())) {
+            RevCommit released = walk.parseCommit(remote.getRepository().resolve("0.1.0^{commit}"));
+            Note note = remote.notesShow().setNotesRef(GitBackend.NOTES_REF).setObjectId(released).call();
+            assertNotNull(note);
+            assertEquals(checksum + "\n", new String(remote.getRepository().open(note.getData()).getBytes(),
+                    StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testVerifyLfsObjects() throws IOException, GitAPIException {
+        Files.write(buildFile, Lists.newArrayList("plugins {", "  id('com.fincher.release')", "}", "", "release {",
+                "    verifyLfsObjects = true", "}"));
+        Path object = Files.createDirectories(projectDir.resolve("build")).resolve("image.bin");
+        Files.writeString(object, "a large binary");
+        String oid = ArtifactManifest.sha256(object);
+        Files.writeString(projectDir.resolve("image.bin"), String.format(
+                "version https://git-lfs.github.com/spec/v1\noid sha256:%s\nsize %d\n", oid, Files.size(object)));
+        git.add().addFilepattern("build.gradle").addFilepattern("image.bin").call();
+        git.commit().setMessage("add a file tracked by LFS").call();
+
+        runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        BuildResult result = runWithArgumentsAndFail("finalizeRelease");
+        assertTrue(result.getOutput().contains("1 LFS objects are missing"), result.getOutput());
+        assertEquals("0.1.0", getVersionFromFile());
+
+        // git-lfs stores the objects of a local origin in its git directory
+        Path stored = gitRepoBareDir.resolve("lfs/objects").resolve(oid.substring(0, 2)).resolve(oid.substring(2, 4))
+                .resolve(oid);
+        Files.createDirectories(stored.getParent());
+        Files.copy(object, stored);
+        result = runWithArguments("finalizeRelease");
+        assertTrue(result.getOutput().contains("Verified that origin stores 1 LFS objects"), result.getOutput());
+        verifyFinalizeReleaseResults("0.1.1-SNAPSHOT");
+    }
+
+    @Test
+    void testReleaseTrain() throws IOException, GitAPIException {
+        // native git requires an identity to commit
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString("user", null, "name", "Test User");
+        config.setString("user", null, "email", "test@example.com");
+        config.save();
+
+        Files.writeString(gradlePropertiesFile, versionKeyValue + " = 0.2.0-SNAPSHOT");
+        gitAddAndCommit(versionFile.getFileName().toString(), "update version");
+        // the feature branch does not match the default train branch regular expression
+        for (String branch : List.of("1.x", "2.x", "feature")) {
+            String major = branch.equals("feature") ? "9" : branch.substring(0, 1);
+            git.checkout().setCreateBranch(true).setName(branch).setStartPoint("master").call();
+            Files.writeString(gradlePropertiesFile, versionKeyValue + " = " + major + ".2.0-SNAPSHOT");
+            gitAddAndCommit(versionFile.getFileName().toString(), "maintenance version");
+        }
+        git.checkout().setName("master").call();
+
+        runWithArguments("releaseTrain");
+        runWithArguments("releaseTrain", "--releaseType", "MINOR");
+
+        assertEquals("0.3.1-SNAPSHOT", getVersionFromFile());
+        AbstractReleaseTask.verifyNoUncommitedChanges(git);
+        try (Git remote = Git.open(gitRepoBareDir.toFile())) {
+            for (String branch : List.of("master", "1.x", "2.x")) {
+                String major = branch.equals("master") ? "0" : branch.substring(0, 1);
+                assertNotNull(remote.getRepository().exactRef("refs/tags/" + major + ".2.0"));
+                assertNotNull(remote.getRepository().exactRef("refs/tags/" + major + ".3.0"));
+                assertEquals(git.getRepository().resolve("refs/heads/" + branch),
+                        remote.getRepository().resolve("refs/heads/" + branch));
+            }
+            assertNull(remote.getRepository().resolve("refs/heads/feature"));
+        }
+        assertEquals("1.3.1-SNAPSHOT", VersionFile
+                .load(projectDir.resolve("build/releaseTrain/1.x/gradle.properties"), versionKeyValue).toString());
+    }
+
+    @Test
+    void testShallowClone() throws IOException, GitAPIException, InterruptedException {
+        useGitBackendProperty();
+        runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        runWithArguments("finalizeRelease");
+        runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        runWithArguments("finalizeRelease");
+
+        // a shallow clone is released without fetching any more of its history
+        Path cloneDir = cloneOrigin("testShallowClone", "--depth", "1");
+        runner.withProjectDir(cloneDir.toFile());
+        runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        runWithArguments("finalizeRelease");
+        try (Git clone = Git.open(cloneDir.toFile()); Git remote = Git.open(gitRepoBareDir.toFile())) {
+            assertEquals(clone.getRepository().resolve(Constants.HEAD),
+                    remote.getRepository().resolve("refs/heads/master"));
+            assertNotNull(remote.getRepository().exactRef("refs/tags/0.3.0"));
+            assertEquals(3, Lists.newArrayList(clone.log().call()).size());
+        }
+
+        // to write a bundle, the history of a shallow clone is deepened as far as the previous release
+        int minor = 3;
+        for (String backend : List.of("jgit", "native")) {
+            cloneDir = cloneOrigin("testShallowClone-" + backend, "--depth", "1");
+            runner.withProjectDir(cloneDir.toFile());
+            runWithArguments("prepareRelease", "--releaseType", "MINOR", "-PreleaseGitBackend=" + backend);
+            BuildResult result = runWithArguments("finalizeRelease", "--bundle", "build/release.bundle",
+                    "-PreleaseGitBackend=" + backend);
+
+            try (Git clone = Git.open(cloneDir.toFile()); Git remote = Git.open(gitRepoBareDir.toFile())) {
+                String previousRelease = "0." + minor + ".0";
+                assertTrue(result.getOutput().contains(String.format("Bundled prerequisite %s %s",
+                        remote.getRepository().resolve(previousRelease + "^{commit}").name(), previousRelease)),
+                        result.getOutput());
+                assertFalse(clone.getRepository().getObjectDatabase().getShallowCommits().isEmpty());
+                assertFalse(clone.getRepository().getObjectDatabase()
+                        .has(remote.getRepository().resolve("0." + (minor - 1) + ".0^{commit}")));
+            }
+
+            runWithArguments("applyReleaseBundle", "--bundle", "build/release.bundle", "--repositoryDir",
+                    gitRepoBareDir.toAbsolutePath().toString());
+            minor++;
+            try (Git remote = Git.open(gitRepoBareDir.toFile())) {
+                assertNotNull(remote.getRepository().exactRef("refs/tags/0." + minor + ".0"));
+            }
+        }
+    }
+
+    @Test
+    void testPartialClone() throws IOException, GitAPIException, InterruptedException {
+        useGitBackendProperty();
+        runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        runWithArguments("finalizeRelease");
+        for (String comment : List.of("// first", "// second")) {
+            Files.writeString(buildFile, Files.readString(buildFile) + System.lineSeparator() + comment);
+            gitAddAndCommit("build.gradle", "change the build");
+        }
+        git.push().call();
+        try (Git remote = Git.open(gitRepoBareDir.toFile())) {
+            StoredConfig config = remote.getRepository().getConfig();
+            config.setBoolean("uploadpack", null, "allowFilter", true);
+            config.save();
+        }
+
+        // only the blob of the first change of the build since the previous release is fetched to write the bundle
+        Path cloneDir = cloneOrigin("testPartialClone", "--filter=blob:none");
+        runner.withProjectDir(cloneDir.toFile());
+        int missing = countMissingObjects(cloneDir);
+        assertTrue(missing > 1, Integer.toString(missing));
+        runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        assertEquals(missing, countMissingObjects(cloneDir));
+        runWithArguments("finalizeRelease", "--bundle", "build/release.bundle", "-PreleaseGitBackend=native");
+        assertEquals(missing - 1, countMissingObjects(cloneDir));
+
+        runWithArguments("applyReleaseBundle", "--bundle", "build/release.bundle", "--repositoryDir",
+                gitRepoBareDir.toAbsolutePath().toString());
+        try (Git clone = Git.open(cloneDir.toFile()); Git remote = Git.open(gitRepoBareDir.toFile())) {
+            assertEquals(clone.getRepository().resolve(Constants.HEAD),
+                    remote.getRepository().resolve("refs/heads/master"));
+            assertNotNull(remote.getRepository().exactRef("refs/tags/0.2.0"));
+        }
+
+        // a partial clone is released and pushed without fetching any blobs
+        runWithArguments("prepareRelease", "--releaseType", "MINOR");
+        runWithArguments("finalizeRelease");
+        assertEquals(missing - 1, countMissingObjects(cloneDir));
+        try (Git clone = Git.open(cloneDir.toFile()); Git remote = Git.open(gitRepoBareDir.toFile())) {
+            assertEquals(clone.getRepository().resolve(Constants.HEAD),
+                    remote.getRepository().resolve("refs/heads/master"));
+            assertNotNull(remote.getRepository().exactRef("refs/tags/0.3.0"));
+        }
+    }
+
+    @Test
+    void testBuildCacheLease() throws IOException {
+        Path baseDir = createEmptyDir(Paths.get("build", "testBuildCache"));
+        Path leaseFile = projectDir.resolve(".gradle/buildCacheLease.properties");
+
+        BuildResult result = runWithArguments("-q", "acquireBuildCache", "--baseDir",
+                baseDir.toAbsolutePath().toString(),
+                "--cacheName", "test", "--poolSize", "2");
+        Path slot = Paths.get(result.getOutput().trim());
+        assertEquals(baseDir.resolve("test-1").toAbsolutePath(), slot);
+        assertTrue(Files.exists(slot.resolve(BuildCacheLeaseManager.LEASE_FILE)));
+        assertTrue(Files.exists(leaseFile));
+
+        runWithArguments("releaseBuildCache");
+        assertTrue(Files.notExists(slot.resolve(BuildCacheLeaseManager.LEASE_FILE)));
+        assertTrue(Files.notExists(leaseFile));
+
+        // the same project is given the slot that it warmed
+        result = runWithArguments("acquireBuildCache", "--baseDir", baseDir.toAbsolutePath().toString(),
+                "--cacheName", "test", "--poolSize", "2");
+        assertTrue(result.getOutput().contains(String.format("Build cache %s was a HIT", slot)), result.getOutput());
+        assertTrue(result.getOutput().contains("1 hits, 0 partial hits, 1 misses"), result.getOutput());
+        // without an owner process the lease is only reclaimed once it expires
+        assertTrue(result.getOutput().contains("expires after 120 minutes"), result.getOutput());
+        runWithArguments("releaseBuildCache");
+    }
+
     private void verifyPrepareReleaseResults(BuildResult buildResult, String expectedVersion)
             throws IOException, GitAPIException {
         verifyPrepareReleaseResults(buildResult, expectedVersion, "");
@@ -257,6 +801,43 @@ class TestReleasePluginFunctionalTest {
 
     }
 
+    // Allows the git backend to be chosen for each build with -PreleaseGitBackend
+    private void useGitBackendProperty() throws IOException, GitAPIException {
+        Files.write(buildFile, Lists.newArrayList("plugins {", "  id('com.fincher.release')", "}", "", "release {",
+                "    gitBackend = findProperty('releaseGitBackend') ?: 'jgit'", "}"));
+        gitAddAndCommit("build.gradle", "choose the git backend with a property");
+    }
+
+    // Clones origin with native git, which creates the shallow and partial clones that CI servers use
+    private Path cloneOrigin(String name, String... options) throws IOException, InterruptedException {
+        Path cloneDir = recursivelyDeleteDir(Paths.get("build", name)).toAbsolutePath();
+        List<String> clone = Lists.newArrayList("clone", "--quiet");
+        clone.addAll(List.of(options));
+        clone.add(gitRepoBareDir.toAbsolutePath().toUri().toString());
+        clone.add(cloneDir.toString());
+        runGit(Paths.get("build").toAbsolutePath(), clone.toArray(new String[0]));
+
+        // native git requires an identity to commit
+        runGit(cloneDir, "config", "user.name", "Test User");
+        runGit(cloneDir, "config", "user.email", "test@example.com");
+        return cloneDir;
+    }
+
+    private static int countMissingObjects(Path dir) throws IOException, InterruptedException {
+        return (int) runGit(dir, "rev-list", "--objects", "--all", "--missing=print").stream()
+                .filter(line -> line.startsWith("?")).count();
+    }
+
+    private static List<String> runGit(Path dir, String... args) throws IOException, InterruptedException {
+        List<String> command = Lists.newArrayList("git");
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).directory(dir.toFile()).redirectErrorStream(true).start();
+        List<String> output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).lines()
+                .collect(Collectors.toList());
+        assertEquals(0, process.waitFor(), String.join(System.lineSeparator(), output));
+        return output;
+    }
+
     private String getVersionFromFile() throws IOException {
         return VersionFile.load(versionFile, versionKeyValue).toString();
     }
@@ -0,0 +1,88 @@
+package com.fincher.gradle.release;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.transport.URIish;
+
+/**
+ * Creates the git repositories used by the benchmarks
+ *
+ * @author Brian Fincher
+ *
+ */
+final class BenchmarkRepositories {
+
+    private static final int FILES_PER_DIR = 100;
+
+    private BenchmarkRepositories() {
+    }
+
+    static Path createTempDir(String prefix) throws IOException {
+        return Files.createTempDirectory(prefix);
+    }
+
+    /**
+     * Creates a repository with a single commit containing a gradle.properties file and the given number of other
+     * files, spread over sub directories
+     */
+    static Git createRepository(Path dir, int fileCount) throws IOException, GitAPIException {
+        Git git = Git.init().setDirectory(dir.toFile()).setInitialBranch("master").call();
+        Files.writeString(dir.resolve("gradle.properties"), "version = 1.0.0-SNAPSHOT\n");
+
+        for (int i = 0; i < fileCount; i++) {
+            Path subDir = dir.resolve("dir" + i / FILES_PER_DIR);
+            Files.createDirectories(subDir);
+            Files.writeString(subDir.resolve("file" + i + ".txt"), "content of file " + i + "\n");
+        }
+
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("initial commit").call();
+        return git;
+    }
+
+    /** Creates a bare repository under dir and a clone of it that has the given number of files committed */
+    static Git createClone(Path dir, int fileCount) throws IOException, GitAPIException {
+        Path bareDir = dir.resolve("bare.git");
+        Path cloneDir = dir.resolve("clone");
+
+        Git.init().setDirectory(bareDir.toFile()).setBare(true).setInitialBranch("master").call().close();
+        Git git = createRepository(cloneDir, fileCount);
+        git.remoteAdd().setName("origin").setUri(new URIish(bareDir.toUri().toURL())).call();
+
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, "master", "remote", "origin");
+        config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, "master", "merge", "refs/heads/master");
+        config.save();
+
+        git.push().call();
+        return git;
+    }
+
+    /** Sets the patch version in gradle.properties and commits it. Returns the new version */
+    static String commitVersion(Git git, Path workTree, int patch) throws IOException, GitAPIException {
+        VersionFile version = VersionFile.load(workTree.resolve("gradle.properties"), "version");
+        SemanticVersion current = version.getVersion();
+        version.setVersion(SemanticVersion.of(current.getMajor(), current.getMinor(), patch, ""));
+        version.save();
+
+        String newVersion = version.toString();
+        git.add().addFilepattern("gradle.properties").call();
+        git.commit().setMessage("Set version for release to " + newVersion).call();
+        return newVersion;
+    }
+
+    static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks the prepareRelease write path: modify the version file, add it to the index, commit and create an
+ * annotated tag
+ *
+ * @author Brian Fincher
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CommitAndTagBenchmark {
+
+    @Param({ "100", "10000" })
+    int fileCount;
+
+    private Path dir;
+    private Git git;
+    private int patch;
+
+    @Setup
+    public void setup() throws IOException, GitAPIException {
+        dir = BenchmarkRepositories.createTempDir("commitAndTagBenchmark");
+        git = BenchmarkRepositories.createRepository(dir, fileCount);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        git.close();
+        BenchmarkRepositories.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public void commitAndTag() throws IOException, GitAPIException {
+        String newVersion = BenchmarkRepositories.commitVersion(git, dir, ++patch);
+        git.tag().setName(newVersion).setMessage(newVersion).setAnnotated(true).call();
+    }
+}
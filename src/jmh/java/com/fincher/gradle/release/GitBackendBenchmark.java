@@ -0,0 +1,84 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the JGit and native git backends on the same synthetic repository
+ *
+ * @author Brian Fincher
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GitBackendBenchmark {
+
+    @Param({ "jgit", "native" })
+    String backendType;
+
+    @Param({ "10000", "100000" })
+    int fileCount;
+
+    private Path dir;
+    private Git git;
+    private GitBackend backend;
+    private int patch;
+
+    @Setup
+    public void setup() throws IOException, GitAPIException {
+        dir = BenchmarkRepositories.createTempDir("gitBackendBenchmark");
+        Path workTree = dir.resolve("work");
+        git = SyntheticRepository.builder().fileCount(fileCount).historyDepth(10)
+                .buildWorkingCopy(dir.resolve("remote.git"), workTree);
+
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString("user", null, "name", "Benchmark");
+        config.setString("user", null, "email", "benchmark@example.com");
+        config.save();
+
+        GitBackend.MonitorFactory monitors = (operation, unit) -> NullProgressMonitor.INSTANCE;
+        if (GitBackend.Type.parse(backendType) == GitBackend.Type.NATIVE) {
+            backend = new NativeGitBackend(workTree, "git", monitors);
+        } else {
+            backend = new JGitBackend(git.getRepository(), git, monitors);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        git.close();
+        BenchmarkRepositories.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public void verifyNoUncommitedChanges() throws IOException, GitAPIException {
+        backend.verifyNoUncommitedChanges();
+    }
+
+    @Benchmark
+    public void commitTagAndPush() throws IOException, GitAPIException {
+        String newVersion = "0.0." + ++patch;
+        String commit = backend.commit("gradle.properties",
+                ("version = " + newVersion + "\n").getBytes(StandardCharsets.UTF_8),
+                "Set version for release to " + newVersion);
+        backend.tag(newVersion, commit, newVersion);
+        backend.push(GitCredentials.NONE);
+    }
+}
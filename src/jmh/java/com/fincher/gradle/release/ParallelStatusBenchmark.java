@@ -0,0 +1,68 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the parallel uncommitted changes check with the single threaded status of JGit, which is the parallelism
+ * of 1. A dirty working tree has a modified file in its last directory
+ *
+ * @author Brian Fincher
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelStatusBenchmark {
+
+    @Param({ "10000", "100000" })
+    int fileCount;
+
+    @Param({ "1", "4", "16" })
+    int parallelism;
+
+    @Param({ "false", "true" })
+    boolean dirty;
+
+    private Path dir;
+    private Git git;
+
+    @Setup
+    public void setup() throws IOException, GitAPIException {
+        dir = BenchmarkRepositories.createTempDir("parallelStatusBenchmark");
+        git = BenchmarkRepositories.createRepository(dir, fileCount);
+        if (dirty) {
+            Files.writeString(dir.resolve("dir" + (fileCount - 1) / 100).resolve("file" + (fileCount - 1) + ".txt"),
+                    "modified\n");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        git.close();
+        BenchmarkRepositories.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public boolean hasUncommittedChanges() throws IOException, GitAPIException {
+        if (parallelism == 1) {
+            return git.status().setProgressMonitor(NullProgressMonitor.INSTANCE).call().hasUncommittedChanges();
+        }
+        return ParallelWorkingTreeStatus.hasUncommittedChanges(git, NullProgressMonitor.INSTANCE, parallelism);
+    }
+}
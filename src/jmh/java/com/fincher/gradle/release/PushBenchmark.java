@@ -0,0 +1,54 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks the finalizeRelease push of a new commit and tag to a local bare repository over file://
+ *
+ * @author Brian Fincher
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PushBenchmark {
+
+    private Path dir;
+    private Git git;
+    private int patch;
+
+    @Setup
+    public void setup() throws IOException, GitAPIException {
+        dir = BenchmarkRepositories.createTempDir("pushBenchmark");
+        git = BenchmarkRepositories.createClone(dir, 1000);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        git.close();
+        BenchmarkRepositories.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public void pushCommitAndTag() throws IOException, GitAPIException {
+        Path workTree = git.getRepository().getWorkTree().toPath();
+        String newVersion = BenchmarkRepositories.commitVersion(git, workTree, ++patch);
+        git.tag().setName(newVersion).setMessage(newVersion).setAnnotated(true).call();
+
+        git.push().call();
+        git.push().setPushTags().setForce(true).call();
+    }
+}
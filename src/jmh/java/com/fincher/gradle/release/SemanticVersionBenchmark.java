@@ -0,0 +1,81 @@
+package com.fincher.gradle.release;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmarks parsing, sorting and searching the versions of large numbers of release tags
+ *
+ * @author Brian Fincher
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SemanticVersionBenchmark {
+
+    @Param({ "1000", "50000" })
+    int tagCount;
+
+    private List<String> tags;
+    private SemanticVersion[] sorted;
+    private SemanticVersion[] versions;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        String[] suffixes = { "", "", "", "-SNAPSHOT", "-rc.1", "-rc.2", "-beta.11", "+build.7" };
+        tags = new ArrayList<>(tagCount);
+        for (int i = 0; i < tagCount; i++) {
+            tags.add(String.format("v%d.%d.%d%s", random.nextInt(20), random.nextInt(50), random.nextInt(100),
+                    suffixes[random.nextInt(suffixes.length)]));
+        }
+        versions = parseAll();
+        sorted = versions.clone();
+        Arrays.sort(sorted);
+    }
+
+    @Benchmark
+    public SemanticVersion[] parse() {
+        return parseAll();
+    }
+
+    @Benchmark
+    public SemanticVersion[] sort() {
+        SemanticVersion[] copy = versions.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    @Benchmark
+    public int search() {
+        int found = 0;
+        for (SemanticVersion version : versions) {
+            if (Arrays.binarySearch(sorted, version) >= 0) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private SemanticVersion[] parseAll() {
+        SemanticVersion[] parsed = new SemanticVersion[tags.size()];
+        for (int i = 0; i < parsed.length; i++) {
+            String tag = tags.get(i);
+            parsed[i] = SemanticVersion.parse(tag, 1, tag.length());
+        }
+        return parsed;
+    }
+}
@@ -0,0 +1,53 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks the uncommitted changes check across repositories of various sizes
+ *
+ * @author Brian Fincher
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StatusBenchmark {
+
+    @Param({ "100", "1000", "10000" })
+    int fileCount;
+
+    private Path dir;
+    private Git git;
+
+    @Setup
+    public void setup() throws IOException, GitAPIException {
+        dir = BenchmarkRepositories.createTempDir("statusBenchmark");
+        git = BenchmarkRepositories.createRepository(dir, fileCount);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        git.close();
+        BenchmarkRepositories.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public void verifyNoUncommitedChanges() throws GitAPIException {
+        WorkingTreeStatus.verifyNoUncommitedChanges(git, NullProgressMonitor.INSTANCE);
+    }
+}
@@ -0,0 +1,81 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Benchmarks loading, modifying and saving version files of various sizes. The version line is placed in the middle of
+ * the file.
+ *
+ * @author Brian Fincher
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VersionFileBenchmark {
+
+    @Param({ "10", "1000", "100000" })
+    int lineCount;
+
+    private Path dir;
+    private Path file;
+    private VersionFile loaded;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        dir = BenchmarkRepositories.createTempDir("versionFileBenchmark");
+        file = dir.resolve("gradle.properties");
+
+        List<String> lines = new ArrayList<>(lineCount + 1);
+        for (int i = 0; i < lineCount; i++) {
+            if (i == lineCount / 2) {
+                lines.add("version = 1.2.3-SNAPSHOT");
+            }
+            lines.add("someProperty" + i + " = someValue" + i);
+        }
+        Files.write(file, lines);
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() throws IOException {
+        loaded = VersionFile.load(file, "version");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        BenchmarkRepositories.deleteRecursively(dir);
+    }
+
+    @Benchmark
+    public VersionFile load() throws IOException {
+        return VersionFile.load(file, "version");
+    }
+
+    @Benchmark
+    public VersionFile replace() {
+        loaded.setVersion(loaded.getVersion().incrementMinor());
+        return loaded;
+    }
+
+    @Benchmark
+    public VersionFile save() throws IOException {
+        loaded.save();
+        return loaded;
+    }
+}
@@ -4,23 +4,32 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+
+import javax.inject.Inject;
 
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ProgressMonitor;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.transport.CredentialsProvider;
+import org.gradle.api.Action;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+import org.gradle.workers.WorkQueue;
+import org.gradle.workers.WorkerExecutor;
 
 /**
  * Parent for other release tasks
@@ -42,11 +51,11 @@ public abstract class AbstractReleaseTask extends DefaultTask {
         Git initGit(Repository repo);
     }
 
-    protected Repository repo;
-    protected Git git;
+    protected GitBackend backend;
     protected VersionFile version;
     protected String relativeVersionFile;
     protected java.util.Optional<CredentialsProvider> credentialsProvider;
+    protected boolean dryRun;
     private JGitRepoFactory repoFactory;
     private JGitFactory gitFactory;
 
@@ -56,7 +65,9 @@ public abstract class AbstractReleaseTask extends DefaultTask {
     }
 
     /**
-     * The file that contains the version property. Defaults to gradle.properties
+     * The file that contains the version property. Defaults to gradle.properties. Files ending in <code>.toml</code>,
+     * <code>.xml</code> and <code>.json</code> are parsed as TOML, XML and JSON. Every other file contains
+     * <code>key = value</code> lines
      * 
      * @return The file that contains the version property. Defaults to gradle.properties
      */
@@ -66,7 +77,10 @@ public abstract class AbstractReleaseTask extends DefaultTask {
 
     /**
      * The key in the version key value pair. For example, <code>"myProectVersion = 1.0.0"</code> would have a
-     * versionKeyValue of <code>myProectVersion</code>
+     * versionKeyValue of <code>myProectVersion</code>. Several keys can be separated by commas, for example
+     * <code>version, apiVersion</code>. The version is read from the first key and every key is set to the released
+     * version. TOML keys are prefixed by their table, for example <code>versions.myProject</code>. XML and JSON keys
+     * are slash separated paths, for example <code>project/version</code>
      * 
      * @return The key in the version key value pair. Defaults to "version"
      */
@@ -84,6 +98,125 @@ public abstract class AbstractReleaseTask extends DefaultTask {
     @Optional
     public abstract Property<String> getRequiredBranchRegex();
 
+    /**
+     * The git implementation used to perform the release. One of <code>jgit</code> or <code>native</code>. Default is
+     * <code>jgit</code>. The <code>native</code> backend runs the git executable, which can be much faster on very
+     * large repositories
+     * 
+     * @return The git implementation used to perform the release
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getGitBackend();
+
+    /**
+     * If this repository is HTTPS and authentication is required, this property contains the authentication user name
+     * 
+     * @return the authentication user name
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getGitRepositoryUsername();
+
+    /**
+     * If this repository is HTTPS and authentication is required, this property contains the authentication password
+     * 
+     * @return the authentication password
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getGitRepositoryPassword();
+
+    /**
+     * If this repository is SSH, this property contains the SSH private key
+     * 
+     * @return the SSH private key
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getGitRepositorySshPrivateKey();
+
+    /**
+     * If this repository is SSH, this property contains the file containing the SSH private key
+     * 
+     * @return the file containing the SSH private key
+     */
+    @InputFile
+    @Optional
+    public abstract Property<File> getGitRepositorySshPrivateKeyFile();
+
+    /**
+     * If this repository is SSH and the SSH private key contains the pass phrase.
+     * 
+     * @return The SSH private key pass phrase
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getGitRepositorySshPassphrase();
+
+    /**
+     * The isolation of the worker that performs the git status, commit, tag and push of the release. One of
+     * <code>none</code>, <code>classloader</code> or <code>process</code>. Default is <code>none</code>, which performs
+     * the release directly in the task action. The <code>classloader</code> and <code>process</code> isolations open
+     * a new repository for each release and release its memory when the release completes
+     * 
+     * @return The isolation of the worker that performs the release
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getWorkerIsolation();
+
+    /**
+     * The maximum heap size of the worker process, for example <code>2g</code>. Only used with the
+     * <code>process</code> worker isolation
+     * 
+     * @return The maximum heap size of the worker process
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getWorkerMaxHeapSize();
+
+    /**
+     * The number of threads that check the working tree for uncommitted changes with the JGit backend. With more than
+     * one thread, the index is split into shards by top level directory that are checked in parallel, and the check
+     * stops as soon as any shard finds a change. Default is 1, which uses the single threaded status of JGit
+     * 
+     * @return The number of threads that check the working tree for uncommitted changes
+     */
+    @Input
+    @Optional
+    public abstract Property<Integer> getStatusParallelism();
+
+    /**
+     * If true, the working tree is watched for changes with inotify from the first release check of the build, so that
+     * later checks of the build, such as the check of finalizeRelease after prepareRelease or the checks of the other
+     * projects in the repository, only stamp the files that changed. Only supported on Linux and ignored elsewhere
+     * 
+     * @return True to monitor the working tree for changes. Default is false
+     */
+    @Input
+    @Optional
+    public abstract Property<Boolean> getFileSystemMonitor();
+
+    /**
+     * The build service that shares repositories and cached repository state between release tasks. If not set, each
+     * task opens its own repository
+     * 
+     * @return The shared repository service
+     */
+    @Internal
+    public abstract Property<ReleaseRepositoryService> getRepositoryService();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    @Option(option = "dryRun",
+            description = "Validate and preview the release commit, tag and push "
+                    + "without modifying the working tree or the repository")
+    void setDryRun(boolean dryRun) {
+        this.dryRun = dryRun;
+    }
+
     /**
      * The main task action
      * 
@@ -94,28 +227,130 @@ public abstract class AbstractReleaseTask extends DefaultTask {
     public void releaseTaskAction() throws GitAPIException, IOException {
 
         Project project = getProject();
-        Path projectDir = project.getProjectDir().toPath();
 
-        version = VersionFile.load(getProject(), getVersionFile(), getVersionKeyValue());
+        version = loadVersionFile(project, getVersionFile(), getVersionKeyValue());
 
-        relativeVersionFile = projectDir.relativize(version.getFile()).toString();
+        backend = createGitBackend();
 
-        repo = repoFactory.initGitRepo();
-        git = gitFactory.initGit(repo);
+        // the project may be in a subdirectory of the repository
+        relativeVersionFile = backend.getWorkTree().toAbsolutePath().normalize()
+                .relativize(version.getFile().toAbsolutePath().normalize()).toString();
 
-        verifyNoUncommitedChanges();
+        ReleaseSteps.verifyCanRelease(backend, requiredBranchPattern(), workingTreeMonitor());
+    }
 
-        String branch = repo.getBranch();
-        final String branchPattern;
-        if (getProject().getProperties().containsKey("requiredBranchRegex")) {
-            branchPattern = (String) getProject().getProperties().get("requiredBranchRegex");
+    /**
+     * True if the release is performed by a worker rather than directly by the task action
+     * 
+     * @return True if the worker isolation is not <code>none</code>
+     */
+    protected boolean runsInWorker() {
+        return ReleaseWorkAction.Isolation.parse(getWorkerIsolation().getOrElse("none"))
+                != ReleaseWorkAction.Isolation.NONE;
+    }
+
+    /**
+     * Perform the release in a worker and wait for it to complete. The worker holds the repository exclusively, so
+     * that the writes of other release tasks of the same repository are not interleaved with it
+     * 
+     * @param operation Either {@link ReleaseSteps#PREPARE} or {@link ReleaseSteps#FINALIZE}
+     * @param configure Configures the parameters that are specific to the operation
+     * @return The version written by the worker
+     * @throws IOException If an error occurs reading the result of the worker
+     * @throws GitAPIException Not thrown. Declared by the coordinator of the repository
+     */
+    protected String runInWorker(String operation, Action<ReleaseWorkAction.Parameters> configure)
+            throws IOException, GitAPIException {
+        Project project = getProject();
+        ReleaseWorkAction.Isolation isolation = ReleaseWorkAction.Isolation
+                .parse(getWorkerIsolation().getOrElse("none"));
+        WorkQueue queue;
+        if (isolation == ReleaseWorkAction.Isolation.PROCESS) {
+            queue = getWorkerExecutor().processIsolation(spec -> {
+                if (getWorkerMaxHeapSize().isPresent()) {
+                    spec.getForkOptions().setMaxHeapSize(getWorkerMaxHeapSize().get());
+                }
+            });
         } else {
-            branchPattern = getRequiredBranchRegex().getOrElse("^(master)|(main)$");
+            queue = getWorkerExecutor().classLoaderIsolation();
         }
-        if (!Pattern.compile(branchPattern).matcher(branch).matches()) {
-            String errorMsg = String.format("Expected branch name to match pattern %s but was %s", branchPattern,
-                    branch);
-            throw new IllegalStateException(errorMsg);
+
+        Path gitDir = findGitDir();
+        Path resultFile = getTemporaryDir().toPath().resolve("result");
+        Files.deleteIfExists(resultFile);
+
+        RepositoryWriteCoordinator.Operation<Void> release = () -> {
+            queue.submit(ReleaseWorkAction.class, params -> {
+                params.getOperation().set(operation);
+                params.getGitDir().set(gitDir.toFile());
+                params.getVersionFile()
+                        .set(getVersionFile().getOrElse(new File(project.getProjectDir(), "gradle.properties")));
+                params.getVersionKeyValue().set(getVersionKeyValue().getOrElse("version"));
+                params.getRequiredBranchRegex().set(requiredBranchPattern());
+                params.getGitBackend().set(getGitBackend().getOrElse("jgit"));
+                params.getStatusParallelism().set(getStatusParallelism().getOrElse(1));
+                params.getDryRun().set(dryRun);
+                params.getGitRepositoryUsername().set(getGitRepositoryUsername());
+                params.getGitRepositoryPassword().set(getGitRepositoryPassword());
+                params.getGitRepositorySshPrivateKey().set(getGitRepositorySshPrivateKey());
+                params.getGitRepositorySshPrivateKeyFile().set(getGitRepositorySshPrivateKeyFile().getOrNull());
+                params.getGitRepositorySshPassphrase().set(getGitRepositorySshPassphrase());
+                params.getResultFile().set(resultFile.toFile());
+                configure.execute(params);
+            });
+            queue.await();
+            return null;
+        };
+
+        if (getRepositoryService().isPresent() && !dryRun) {
+            ReleaseRepositoryService service = getRepositoryService().get();
+            service.getCoordinator(gitDir).write(release);
+            service.tagsChanged(gitDir);
+        } else {
+            release.run();
+        }
+
+        return Files.readString(resultFile);
+    }
+
+    /**
+     * Get the names of every tag keyed by the id of the commit that each tag points to. The tags are cached in the
+     * shared repository service if it is available
+     * 
+     * @return The tag names of each tagged commit
+     * @throws IOException If an error occurs reading the tags
+     */
+    protected Map<String, List<String>> loadTagsByCommit() throws IOException {
+        if (getRepositoryService().isPresent()) {
+            return getRepositoryService().get().getTagsByCommit(backend);
+        }
+        return backend.getTagsByCommit();
+    }
+
+    /**
+     * Create the credentials used to authenticate with origin from the credential properties
+     * 
+     * @return The credentials
+     * @throws IllegalStateException If the credential properties are inconsistent
+     */
+    protected GitCredentials createCredentials() {
+        GitCredentials credentials = new GitCredentials(getGitRepositoryUsername().getOrNull(),
+                getGitRepositoryPassword().getOrNull(),
+                getGitRepositorySshPrivateKey().getOrNull(),
+                getGitRepositorySshPrivateKeyFile().getOrNull(),
+                getGitRepositorySshPassphrase().getOrNull());
+        credentials.validate();
+        return credentials;
+    }
+
+    /**
+     * Discard any cached tags after this task creates a tag
+     * 
+     * @throws IOException If an error occurs locating the git directory
+     */
+    protected void tagsChanged() throws IOException {
+        if (getRepositoryService().isPresent()) {
+            getRepositoryService().get().tagsChanged(backend);
         }
     }
 
@@ -129,54 +364,105 @@ public abstract class AbstractReleaseTask extends DefaultTask {
         gitFactory = factory;
     }
 
+    /**
+     * Load the version file configured for a project
+     *
+     * @param project The project
+     * @param fileProperty The version file. Defaults to gradle.properties in the project directory
+     * @param versionKeyValue The key of the version. Defaults to "version"
+     * @return The loaded version file
+     * @throws IOException If an error occurs reading the version file
+     */
+    static VersionFile loadVersionFile(Project project, Property<File> fileProperty, Property<String> versionKeyValue)
+            throws IOException {
+        Path file = fileProperty.getOrElse(new File(project.getProjectDir(), "gradle.properties")).toPath();
+        return VersionFile.load(file, versionKeyValue.getOrElse("version"));
+    }
+
     protected static String replaceGroup(String source, Matcher matcher, String group, String replacement) {
         return new StringBuilder(source).replace(matcher.start(group), matcher.end(group), replacement).toString();
     }
 
-    private Repository initGitRepo() throws IOException {
-        Path dirToSearch = getProject().getProjectDir().toPath();
-        Path testDir = dirToSearch.resolve(".git");
-        Path gitDir = null;
+    private String requiredBranchPattern() {
+        if (getProject().getProperties().containsKey("requiredBranchRegex")) {
+            return (String) getProject().getProperties().get("requiredBranchRegex");
+        }
+        return getRequiredBranchRegex().getOrElse(ReleaseSteps.DEFAULT_BRANCH_PATTERN);
+    }
 
-        for (int i = 0; i < 5; i++) {
-            if (Files.exists(testDir) && Files.isDirectory(testDir)) {
-                gitDir = testDir;
-                break;
-            }
+    private WorkingTreeMonitor workingTreeMonitor() throws IOException {
+        if (!getFileSystemMonitor().getOrElse(false) || dryRun || !getRepositoryService().isPresent()) {
+            return null;
+        }
+        return getRepositoryService().get().getMonitor(backend);
+    }
+
+    private GitBackend createGitBackend() throws IOException {
+        GitBackend.Type type = GitBackend.Type.parse(getGitBackend().getOrElse("jgit"));
+        GitBackend.MonitorFactory monitors = (operation, unit) -> new GradleProgressMonitor(getLogger(), operation,
+                unit);
+
+        Repository repo = null;
+        GitBackend gitBackend;
+        if (type == GitBackend.Type.NATIVE) {
+            gitBackend = new NativeGitBackend(findGitDir().getParent(), "git", monitors);
+        } else {
+            repo = repoFactory.initGitRepo();
+            gitBackend = new JGitBackend(repo, gitFactory.initGit(repo), monitors, getStatusParallelism().getOrElse(1));
         }
 
-        if (gitDir == null) {
-            getProject().getLogger().error("Unable to find .git directory");
-            throw new GradleException("Unable to find .git directory");
+        if (dryRun) {
+            if (repo == null) {
+                repo = repoFactory.initGitRepo();
+            }
+            gitBackend = new DryRunGitBackend(gitBackend, repo, getLogger()::lifecycle);
+        } else if (getRepositoryService().isPresent()) {
+            gitBackend = getRepositoryService().get().coordinate(gitBackend);
         }
 
+        return gitBackend;
+    }
+
+    private Repository initGitRepo() throws IOException {
+        Path gitDir = findGitDir();
+        if (getRepositoryService().isPresent()) {
+            return getRepositoryService().get().getRepository(gitDir);
+        }
         return new FileRepositoryBuilder().setGitDir(gitDir.toFile()).build();
     }
 
-    protected void overrideVersion(String versionOverride) {
-        Pattern p = Pattern.compile(VersionFile.VERSION_PATTERN_STR);
-        Matcher m = p.matcher(versionOverride);
-        if (!m.find()) {
-            String errorMsg = String.format("The version of %s does not match the pattern %s", versionOverride,
-                    VersionFile.VERSION_PATTERN_STR);
-            throw new IllegalArgumentException(errorMsg);
+    /**
+     * Find the git directory of the repository that contains the project. The project may be in a subdirectory of the
+     * repository
+     * 
+     * @return The git directory
+     * @throws GradleException If the project is not in a git repository
+     */
+    protected Path findGitDir() {
+        Path dirToSearch = getProject().getProjectDir().toPath().toAbsolutePath();
+
+        for (int i = 0; i < 5 && dirToSearch != null; i++) {
+            Path testDir = dirToSearch.resolve(".git");
+            if (Files.exists(testDir) && Files.isDirectory(testDir)) {
+                return testDir;
+            }
+            dirToSearch = dirToSearch.getParent();
         }
 
-        version.replaceMajor(m.group(VersionFile.MAJOR_GROUP));
-        version.replaceMinor(m.group(VersionFile.MINOR_GROUP));
-        version.replacePatch(m.group(VersionFile.PATCH_GROUP));
-        version.replaceSuffix(m.group(VersionFile.SUFFIX_GROUP));
+        getProject().getLogger().error("Unable to find .git directory");
+        throw new GradleException("Unable to find .git directory");
     }
 
-    protected void verifyNoUncommitedChanges() throws GitAPIException {
-        verifyNoUncommitedChanges(git);
+    protected void verifyNoUncommitedChanges() throws GitAPIException, IOException {
+        backend.verifyNoUncommitedChanges();
     }
 
     protected static void verifyNoUncommitedChanges(Git git) throws GitAPIException {
-        Status status = git.status().call();
-        if (status.hasUncommittedChanges()) {
-            throw new IllegalStateException("Unable to release with uncommitted changes");
-        }
+        verifyNoUncommitedChanges(git, NullProgressMonitor.INSTANCE);
+    }
+
+    protected static void verifyNoUncommitedChanges(Git git, ProgressMonitor monitor) throws GitAPIException {
+        WorkingTreeStatus.verifyNoUncommitedChanges(git, monitor);
     }
 
 }
@@ -0,0 +1,176 @@
+package com.fincher.gradle.release;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.UntrackedTask;
+import org.gradle.api.tasks.options.Option;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Leases the warmest free Gradle user home directory of a build cache pool for this project and prints its path. This
+ * replaces the getBuildCache script, for example
+ * 
+ * <pre>
+ * gradle -q acquireBuildCache --baseDir /cache --cacheName default --ownerPid $AGENT_PID
+ * </pre>
+ * 
+ * <p>The lease is written to the lease file so that it can be released by releaseBuildCache
+ * 
+ * @author Brian Fincher
+ *
+ */
+@UntrackedTask(because = "A lease is held outside of the build")
+public abstract class AcquireBuildCacheTask extends DefaultTask {
+
+    private long ownerPid = BuildCacheLease.NO_PID;
+    private String dependencyHash = null;
+
+    /**
+     * The directory that contains the Gradle user home directories of the pool
+     * 
+     * @return The directory that contains the Gradle user home directories of the pool
+     */
+    @Internal
+    public abstract Property<File> getBuildCacheBaseDir();
+
+    /**
+     * The name of the pool. The Gradle user home directories are named <code>name-1</code> through
+     * <code>name-poolSize</code>
+     * 
+     * @return The name of the pool. Default is "default"
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getBuildCacheName();
+
+    /**
+     * The number of Gradle user home directories in the pool
+     * 
+     * @return The number of Gradle user home directories in the pool. Default is 9
+     */
+    @Input
+    @Optional
+    public abstract Property<Integer> getBuildCachePoolSize();
+
+    /**
+     * How long a lease is held before it may be reclaimed even if its owner is still running or is on another host
+     * 
+     * @return The lease expiration in minutes. Default is one day, or two hours if no owner process is given
+     */
+    @Input
+    @Optional
+    public abstract Property<Long> getBuildCacheLeaseExpirationMinutes();
+
+    /**
+     * Identifies the project when choosing the warmest Gradle user home directory
+     * 
+     * @return Identifies the project. Default is the name of the root project
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getBuildCacheProject();
+
+    /**
+     * The files whose content determines the dependencies held in a Gradle user home directory, such as dependency
+     * lock files and version catalogs. A directory that served the project with the same content is preferred
+     * 
+     * @return The files whose content determines the dependencies of the project. Missing files are ignored
+     */
+    @Internal
+    public abstract ConfigurableFileCollection getDependencyLockFiles();
+
+    /**
+     * The file to which the lease is written
+     * 
+     * @return The file to which the lease is written
+     */
+    @Internal
+    public abstract Property<File> getLeaseFile();
+
+    @Option(option = "baseDir", description = "The directory that contains the Gradle user home directories")
+    void setBaseDir(String baseDir) {
+        getBuildCacheBaseDir().set(getProject().file(baseDir));
+    }
+
+    @Option(option = "cacheName", description = "The name of the build cache pool")
+    void setCacheName(String cacheName) {
+        getBuildCacheName().set(cacheName);
+    }
+
+    @Option(option = "poolSize", description = "The number of Gradle user home directories in the pool")
+    void setPoolSize(String poolSize) {
+        getBuildCachePoolSize().set(Integer.valueOf(poolSize));
+    }
+
+    @Option(option = "dependencyHash", description = "A hash of the dependencies of the project. "
+            + "Overrides the hash of the dependency lock files")
+    void setDependencyHash(String dependencyHash) {
+        this.dependencyHash = dependencyHash;
+    }
+
+    @Option(option = "ownerPid", description = "The id of the process that owns the lease, for example the CI agent. "
+            + "The lease is reclaimed once that process is no longer running")
+    void setOwnerPid(String ownerPid) {
+        this.ownerPid = Long.parseLong(ownerPid);
+    }
+
+    /**
+     * The main task action
+     * 
+     * @throws IOException If an error occurs reading or writing the leases
+     */
+    @TaskAction
+    public void acquire() throws IOException {
+        Duration expiration = getBuildCacheLeaseExpirationMinutes().map(Duration::ofMinutes)
+                .getOrElse(ownerPid == BuildCacheLease.NO_PID ? BuildCacheLeaseManager.DEFAULT_UNOWNED_EXPIRATION
+                        : BuildCacheLeaseManager.DEFAULT_EXPIRATION);
+        if (ownerPid == BuildCacheLease.NO_PID) {
+            getLogger().warn("No --ownerPid was given, so the build cache lease is held until it is released or "
+                    + "expires after {} minutes", expiration.toMinutes());
+        }
+
+        BuildCacheLeaseManager manager = new BuildCacheLeaseManager(getBuildCacheBaseDir().get().toPath(),
+                getBuildCacheName().getOrElse("default"),
+                getBuildCachePoolSize().getOrElse(BuildCacheLeaseManager.DEFAULT_POOL_SIZE), expiration);
+
+        String project = getBuildCacheProject().getOrElse(getProject().getRootProject().getName());
+        String hash = dependencyHash == null ? hashDependencyLockFiles() : dependencyHash;
+
+        BuildCacheLease lease = manager.acquire(ownerPid, project, hash);
+        lease.write(getLeaseFile().get().toPath());
+        getLogger().info("Acquired build cache lease {}", lease);
+        getLogger().lifecycle("Build cache {} was a {} for {} with dependencies {} ({})", lease.getSlot(),
+                lease.getWarmth(), project, hash, manager.getStatistics());
+        getLogger().quiet(lease.getSlot().toString());
+    }
+
+    private String hashDependencyLockFiles() throws IOException {
+        Path rootDir = getProject().getRootDir().toPath();
+        List<File> files = getDependencyLockFiles().getFiles().stream().filter(File::isFile)
+                .sorted(Comparator.comparing(File::getPath)).collect(Collectors.toList());
+
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (File file : files) {
+            hasher.putString(rootDir.relativize(file.toPath().toAbsolutePath()).toString(), StandardCharsets.UTF_8);
+            hasher.putBytes(Files.readAllBytes(file.toPath()));
+        }
+        return hasher.hash().toString().substring(0, 16);
+    }
+}
@@ -0,0 +1,78 @@
+package com.fincher.gradle.release;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.UntrackedTask;
+import org.gradle.api.tasks.options.Option;
+
+/**
+ * Applies a git bundle written by <code>finalizeRelease --bundle</code> to a repository, for example a mirror of
+ * origin in an environment that the released repository cannot push to. The bundle is verified against its checksum
+ * manifest before it is applied. Its branches are fast forwarded and its tags are created, for example
+ * 
+ * <pre>
+ * gradle applyReleaseBundle --bundle release.bundle --repositoryDir /git/mirror.git
+ * </pre>
+ * 
+ * @author Brian Fincher
+ *
+ */
+@UntrackedTask(because = "The bundle is applied to a git repository")
+public abstract class ApplyReleaseBundleTask extends DefaultTask {
+
+    /**
+     * The bundle written by finalizeRelease
+     * 
+     * @return The bundle written by finalizeRelease
+     */
+    @InputFile
+    public abstract Property<File> getBundleFile();
+
+    /**
+     * The repository to which the bundle is applied. Either a bare repository or a directory within a working tree
+     * 
+     * @return The repository to which the bundle is applied. Default is the repository of the project
+     */
+    @Internal
+    public abstract Property<File> getRepositoryDir();
+
+    @Option(option = "bundle", description = "The bundle written by finalizeRelease")
+    void setBundle(String bundle) {
+        getBundleFile().set(getProject().file(bundle));
+    }
+
+    @Option(option = "repositoryDir", description = "The repository to which the bundle is applied")
+    void setRepositoryDirectory(String repositoryDir) {
+        getRepositoryDir().set(getProject().file(repositoryDir));
+    }
+
+    /**
+     * The main task action
+     * 
+     * @throws IOException If an error occurs reading the bundle or the repository
+     * @throws GitAPIException If the bundle cannot be fetched, for example if its prerequisites are missing
+     */
+    @TaskAction
+    public void apply() throws IOException, GitAPIException {
+        File repositoryDir = getRepositoryDir().get();
+        FileRepositoryBuilder builder = new FileRepositoryBuilder().findGitDir(repositoryDir);
+        if (builder.getGitDir() == null) {
+            throw new IllegalStateException(String.format("%s is not in a git repository", repositoryDir));
+        }
+
+        try (Repository repo = builder.setMustExist(true).build()) {
+            ReleaseBundle.apply(repo, getBundleFile().get().toPath(),
+                    new GradleProgressMonitor(getLogger(), "apply", "objects"))
+                    .forEach(result -> getLogger().lifecycle("Applied {}", result));
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Creates a manifest of the SHA-256 checksums of the artifacts of a release, in the format of <code>sha256sum</code>,
+ * so that consumers of the release can verify the artifacts they receive. The artifacts are hashed in parallel, each
+ * read through memory mapped windows rather than copied through a heap buffer. The checksums are cached by the size
+ * and modification time of each artifact, so an artifact that has not changed since it was last hashed is not read
+ * again
+ *
+ * @author Brian Fincher
+ *
+ */
+final class ArtifactManifest {
+
+    // mapping the whole of a large artifact could exhaust the address space of a 32 bit JVM
+    private static final long MAP_SIZE = 64L * 1024 * 1024;
+
+    private ArtifactManifest() {
+    }
+
+    /** The cached checksum of an artifact */
+    private static final class Checksum {
+        private final long size;
+        private final long modified;
+        private final String sha256;
+
+        Checksum(long size, long modified, String sha256) {
+            this.size = size;
+            this.modified = modified;
+            this.sha256 = sha256;
+        }
+    }
+
+    /**
+     * Create the manifest of a set of artifacts
+     *
+     * @param baseDir The directory to which the names of the artifacts in the manifest are relative
+     * @param artifacts The artifacts
+     * @param cacheFile The file in which the checksums are cached between releases
+     * @param parallelism The maximum number of artifacts hashed at once
+     * @return A line of the checksum and name of each artifact, ordered by name
+     * @throws IOException If an error occurs reading an artifact or the cache
+     */
+    static String create(Path baseDir, Collection<Path> artifacts, Path cacheFile, int parallelism)
+            throws IOException {
+        Map<String, Checksum> cache = readCache(cacheFile);
+        Map<String, Checksum> checksums = new HashMap<>();
+        Map<String, Future<String>> hashes = new HashMap<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism));
+        try {
+            for (Path artifact : artifacts) {
+                String key = artifact.toAbsolutePath().normalize().toString();
+                long size = Files.size(artifact);
+                long modified = Files.getLastModifiedTime(artifact).toMillis();
+                Checksum cached = cache.get(key);
+                if (cached != null && cached.size == size && cached.modified == modified) {
+                    checksums.put(key, cached);
+                } else {
+                    checksums.put(key, new Checksum(size, modified, null));
+                    hashes.put(key, executor.submit(() -> sha256(artifact)));
+                }
+            }
+
+            for (Map.Entry<String, Future<String>> hash : hashes.entrySet()) {
+                Checksum checksum = checksums.get(hash.getKey());
+                checksums.put(hash.getKey(), new Checksum(checksum.size, checksum.modified, hash.getValue().get()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing the artifacts");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // artifacts of other releases are kept in the cache while they exist
+        Map<String, Checksum> updatedCache = new HashMap<>(checksums);
+        cache.forEach((path, checksum) -> {
+            if (!updatedCache.containsKey(path) && Files.exists(Path.of(path))) {
+                updatedCache.put(path, checksum);
+            }
+        });
+        writeCache(cacheFile, updatedCache);
+
+        Map<String, String> manifest = new TreeMap<>();
+        Path base = baseDir.toAbsolutePath().normalize();
+        for (Map.Entry<String, Checksum> checksum : checksums.entrySet()) {
+            manifest.put(base.relativize(Path.of(checksum.getKey())).toString().replace('\\', '/'),
+                    checksum.getValue().sha256);
+        }
+        StringBuilder text = new StringBuilder();
+        manifest.forEach((name, sha256) -> text.append(sha256).append("  ").append(name).append('\n'));
+        return text.toString();
+    }
+
+    /**
+     * Compute the SHA-256 checksum of a file. Every SHA-256 of a file, such as the checksum of a release bundle or
+     * the content of an LFS object, is computed here
+     *
+     * @param file The file
+     * @return The checksum in lower case hex
+     * @throws IOException If an error occurs reading the file
+     */
+    static String sha256(Path file) throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_SIZE) {
+                hasher.putBytes(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(MAP_SIZE, size - position)));
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    // Each line of the cache is the size, modification time, checksum and absolute path of an artifact
+    private static Map<String, Checksum> readCache(Path cacheFile) throws IOException {
+        Map<String, Checksum> cache = new HashMap<>();
+        if (!Files.exists(cacheFile)) {
+            return cache;
+        }
+        for (String line : Files.readAllLines(cacheFile, StandardCharsets.UTF_8)) {
+            String[] fields = line.split("\t", 4);
+            if (fields.length == 4) {
+                try {
+                    cache.put(fields[3], new Checksum(Long.parseLong(fields[0]), Long.parseLong(fields[1]),
+                            fields[2]));
+                } catch (NumberFormatException e) {
+                    // a corrupt line is hashed again
+                }
+            }
+        }
+        return cache;
+    }
+
+    private static void writeCache(Path cacheFile, Map<String, Checksum> checksums) throws IOException {
+        List<String> lines = new ArrayList<>();
+        checksums.forEach((path, checksum) -> lines
+                .add(String.join("\t", Long.toString(checksum.size), Long.toString(checksum.modified),
+                        checksum.sha256, path)));
+        if (cacheFile.getParent() != null) {
+            Files.createDirectories(cacheFile.getParent());
+        }
+        Files.write(cacheFile, lines, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,188 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Properties;
+
+/**
+ * A lease of one Gradle user home slot from a build cache pool. The lease identifies its owner by a random token and
+ * by the host and process that own it, so that a lease can be released only by its owner and can be reclaimed once
+ * its owner has died. The lease records when it expires, so that every build reclaims it after the expiration its
+ * owner was given rather than after its own
+ *
+ * @author Brian Fincher
+ *
+ */
+final class BuildCacheLease {
+
+    /** How warm a leased slot was for the project that leased it */
+    enum Warmth {
+        /** The slot last served the project with the same dependencies */
+        HIT,
+        /** The slot served the project but with other dependencies */
+        PARTIAL,
+        /** The slot has not recently served the project */
+        MISS;
+    }
+
+    /** The process id recorded when a lease has no owning process */
+    static final long NO_PID = -1;
+
+    private static final String SLOT = "slot";
+    private static final String CACHE_NAME = "cacheName";
+    private static final String TOKEN = "token";
+    private static final String HOST = "host";
+    private static final String PID = "pid";
+    private static final String ACQUIRED = "acquired";
+    private static final String EXPIRES = "expires";
+    private static final String WARMTH = "warmth";
+
+    private final Path slot;
+    private final String cacheName;
+    private final String token;
+    private final String host;
+    private final long pid;
+    private final Instant acquired;
+    private final Instant expires;
+    private final Warmth warmth;
+
+    BuildCacheLease(Path slot, String cacheName, String token, String host, long pid, Instant acquired,
+            Instant expires, Warmth warmth) {
+        this.slot = slot;
+        this.cacheName = cacheName;
+        this.token = token;
+        this.host = host;
+        this.pid = pid;
+        this.acquired = acquired;
+        this.expires = expires;
+        this.warmth = warmth;
+    }
+
+    /**
+     * Read a lease
+     *
+     * @param file The file containing the lease
+     * @return The lease or null if the file does not exist
+     * @throws IOException If an error occurs reading the lease
+     */
+    static BuildCacheLease read(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        try {
+            Instant acquired = Instant.parse(properties.getProperty(ACQUIRED));
+            // a lease written before the expiration was recorded has the default expiration
+            String expires = properties.getProperty(EXPIRES);
+            return new BuildCacheLease(Paths.get(properties.getProperty(SLOT)), properties.getProperty(CACHE_NAME),
+                    properties.getProperty(TOKEN), properties.getProperty(HOST),
+                    Long.parseLong(properties.getProperty(PID)), acquired,
+                    expires == null ? acquired.plus(BuildCacheLeaseManager.DEFAULT_EXPIRATION) : Instant.parse(expires),
+                    Warmth.valueOf(properties.getProperty(WARMTH, Warmth.MISS.name())));
+        } catch (RuntimeException e) {
+            throw new IOException(String.format("Unable to parse the lease in %s", file), e);
+        }
+    }
+
+    /**
+     * Atomically write the lease to a file. The file is either replaced by the complete lease or left unchanged
+     *
+     * @param file The file to write
+     * @throws IOException If an error occurs writing the lease
+     */
+    void write(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(SLOT, slot.toString());
+        properties.setProperty(CACHE_NAME, cacheName);
+        properties.setProperty(TOKEN, token);
+        properties.setProperty(HOST, host);
+        properties.setProperty(PID, String.valueOf(pid));
+        properties.setProperty(ACQUIRED, acquired.toString());
+        properties.setProperty(EXPIRES, expires.toString());
+        properties.setProperty(WARMTH, warmth.name());
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tempFile = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(),
+                ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                properties.store(out, null);
+            }
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * @return The leased Gradle user home directory
+     */
+    Path getSlot() {
+        return slot;
+    }
+
+    /**
+     * @return The name of the build cache pool
+     */
+    String getCacheName() {
+        return cacheName;
+    }
+
+    /**
+     * @return The random token that identifies the lease
+     */
+    String getToken() {
+        return token;
+    }
+
+    /**
+     * @return The host that owns the lease
+     */
+    String getHost() {
+        return host;
+    }
+
+    /**
+     * @return The id of the process that owns the lease or {@link #NO_PID}
+     */
+    long getPid() {
+        return pid;
+    }
+
+    /**
+     * @return When the lease was acquired
+     */
+    Instant getAcquired() {
+        return acquired;
+    }
+
+    /**
+     * @return When the lease may be reclaimed even if its owner is still running or is on another host
+     */
+    Instant getExpires() {
+        return expires;
+    }
+
+    /**
+     * @return How warm the slot was for the project that leased it
+     */
+    Warmth getWarmth() {
+        return warmth;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s (token %s, host %s, pid %d, acquired %s, expires %s, %s)", slot, token, host, pid,
+                acquired, expires, warmth);
+    }
+}
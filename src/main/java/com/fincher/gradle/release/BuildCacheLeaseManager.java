@@ -0,0 +1,244 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Leases Gradle user home directories from a fixed size pool so that concurrent builds do not share, or cold start, a
+ * Gradle user home. The slots of a pool named <code>cacheName</code> are the directories
+ * <code>cacheName-1</code> through <code>cacheName-poolSize</code> of the base directory. Each leased slot contains a
+ * lease file. The lease files are only read and written while holding an exclusive file lock on the pool, so
+ * concurrent builds on the same or on different hosts sharing the base directory never lease the same slot. A lease is
+ * reclaimed if the process that owns it is no longer running on this host or if it has expired. A lease expires
+ * after the expiration given to the build that acquired it, not that of the build that finds it. Each slot records
+ * the projects it has recently served so that a project is given the slot that is warmest for it
+ *
+ * @author Brian Fincher
+ *
+ */
+class BuildCacheLeaseManager {
+
+    static final String LEASE_FILE = ".lease";
+    static final int DEFAULT_POOL_SIZE = 9;
+    static final Duration DEFAULT_EXPIRATION = Duration.ofDays(1);
+    // a lease without an owner process cannot be reclaimed when a crashed build exits, so it expires sooner
+    static final Duration DEFAULT_UNOWNED_EXPIRATION = Duration.ofHours(2);
+
+    private static final Duration LOCK_TIMEOUT = Duration.ofMinutes(1);
+    private static final long LOCK_RETRY_MILLIS = 100;
+
+    // FileChannel locks are held by the JVM, so builds in the same JVM are serialized with a monitor as well
+    private static final Object JVM_LOCK = new Object();
+
+    private final Path baseDir;
+    private final String cacheName;
+    private final int poolSize;
+    private final Duration expiration;
+    private final String host;
+    private final Clock clock;
+
+    /**
+     * Constructs a new BuildCacheLeaseManager
+     *
+     * @param baseDir The directory that contains the slots
+     * @param cacheName The name of the pool
+     * @param poolSize The number of slots in the pool
+     * @param expiration How long the leases acquired by this manager are held before they may be reclaimed even if
+     *            their owner is still running or is on another host
+     */
+    BuildCacheLeaseManager(Path baseDir, String cacheName, int poolSize, Duration expiration) {
+        this(baseDir, cacheName, poolSize, expiration, getLocalHostName(), Clock.systemUTC());
+    }
+
+    // For testing purposes
+    BuildCacheLeaseManager(Path baseDir, String cacheName, int poolSize, Duration expiration, String host,
+            Clock clock) {
+        Preconditions.checkArgument(poolSize > 0, "The build cache pool size must be positive");
+        this.baseDir = baseDir;
+        this.cacheName = cacheName;
+        this.poolSize = poolSize;
+        this.expiration = expiration;
+        this.host = host;
+        this.clock = clock;
+    }
+
+    /**
+     * Lease the warmest free slot for a project. A slot that served the project with the same dependencies is
+     * preferred, then one that served the project with other dependencies, most recently served first. Otherwise the
+     * least recently used slot is leased. Slots whose lease is stale are reclaimed
+     *
+     * @param ownerPid The id of the process that owns the lease, or {@link BuildCacheLease#NO_PID} if the lease only
+     *            ends when it is released or expires
+     * @param project Identifies the project that will use the slot
+     * @param dependencyHash A hash of the dependencies of the project, for example of its dependency lock files
+     * @return The lease
+     * @throws IOException If an error occurs reading or writing the leases
+     * @throws IllegalStateException If every slot is leased
+     */
+    BuildCacheLease acquire(long ownerPid, String project, String dependencyHash) throws IOException {
+        return withPoolLock(baseDir, cacheName, () -> {
+            Instant now = clock.instant();
+            Path bestSlot = null;
+            BuildCacheSlotHistory bestHistory = null;
+            BuildCacheLease.Warmth bestWarmth = null;
+
+            for (int i = 1; i <= poolSize; i++) {
+                Path slot = baseDir.resolve(cacheName + "-" + i);
+                BuildCacheLease current = BuildCacheLease.read(slot.resolve(LEASE_FILE));
+                if (current != null && !isStale(current, now)) {
+                    continue;
+                }
+
+                BuildCacheSlotHistory history = BuildCacheSlotHistory.read(slot);
+                BuildCacheLease.Warmth warmth = history.getWarmth(project, dependencyHash);
+                if (bestSlot == null || isWarmer(warmth, history, bestWarmth, bestHistory, project)) {
+                    bestSlot = slot;
+                    bestHistory = history;
+                    bestWarmth = warmth;
+                }
+            }
+
+            if (bestSlot == null) {
+                throw new IllegalStateException(String.format("All %d slots of build cache %s in %s are leased",
+                        poolSize, cacheName, baseDir));
+            }
+
+            Files.createDirectories(bestSlot);
+            BuildCacheLease lease = new BuildCacheLease(bestSlot.toAbsolutePath(), cacheName,
+                    UUID.randomUUID().toString(), host, ownerPid, now, now.plus(expiration), bestWarmth);
+            lease.write(bestSlot.resolve(LEASE_FILE));
+
+            bestHistory.record(project, dependencyHash, now);
+            bestHistory.write(bestSlot);
+
+            Path statisticsFile = getStatisticsFile(baseDir, cacheName);
+            BuildCacheStatistics statistics = BuildCacheStatistics.read(statisticsFile);
+            statistics.record(bestWarmth);
+            statistics.write(statisticsFile);
+            return lease;
+        });
+    }
+
+    /**
+     * Get the hit and miss statistics of the pool
+     *
+     * @return The statistics of every lease of the pool
+     * @throws IOException If an error occurs reading the statistics
+     */
+    BuildCacheStatistics getStatistics() throws IOException {
+        return withPoolLock(baseDir, cacheName, () -> BuildCacheStatistics.read(getStatisticsFile(baseDir,
+                cacheName)));
+    }
+
+    /**
+     * Release a lease. The lease is only released if it is still held. If it was reclaimed and leased again, the new
+     * lease is left in place
+     *
+     * @param lease The lease to release
+     * @return true if the lease was released, false if it was no longer held
+     * @throws IOException If an error occurs reading or deleting the lease
+     */
+    static boolean release(BuildCacheLease lease) throws IOException {
+        return withPoolLock(lease.getSlot().getParent(), lease.getCacheName(), () -> {
+            Path leaseFile = lease.getSlot().resolve(LEASE_FILE);
+            BuildCacheLease current = BuildCacheLease.read(leaseFile);
+            if (current == null || !current.getToken().equals(lease.getToken())) {
+                return false;
+            }
+            Files.delete(leaseFile);
+            return true;
+        });
+    }
+
+    // A lease whose owner has died on this host is reclaimed at once. Otherwise it is held until it expires
+    private boolean isStale(BuildCacheLease lease, Instant now) {
+        // The liveness of a process can only be checked on its own host
+        if (lease.getPid() != BuildCacheLease.NO_PID && lease.getHost().equals(host)
+                && !ProcessHandle.of(lease.getPid()).map(ProcessHandle::isAlive).orElse(false)) {
+            return true;
+        }
+        return !lease.getExpires().isAfter(now);
+    }
+
+    private static boolean isWarmer(BuildCacheLease.Warmth warmth, BuildCacheSlotHistory history,
+            BuildCacheLease.Warmth bestWarmth, BuildCacheSlotHistory bestHistory, String project) {
+        if (warmth != bestWarmth) {
+            // HIT is declared before PARTIAL, which is declared before MISS
+            return warmth.compareTo(bestWarmth) < 0;
+        }
+
+        if (warmth == BuildCacheLease.Warmth.MISS) {
+            // evict the least recently used slot
+            return history.getLastUsed().isBefore(bestHistory.getLastUsed());
+        }
+        return history.getLastServed(project).isAfter(bestHistory.getLastServed(project));
+    }
+
+    private static Path getStatisticsFile(Path baseDir, String cacheName) {
+        return baseDir.resolve("." + cacheName + ".statistics");
+    }
+
+    private static <T> T withPoolLock(Path baseDir, String cacheName, LockedAction<T> action) throws IOException {
+        Files.createDirectories(baseDir);
+        Path lockFile = baseDir.resolve("." + cacheName + ".lock");
+
+        synchronized (JVM_LOCK) {
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE)) {
+                FileLock lock = lock(channel, lockFile);
+                try {
+                    return action.run();
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+
+    private static FileLock lock(FileChannel channel, Path lockFile) throws IOException {
+        long deadline = System.nanoTime() + LOCK_TIMEOUT.toNanos();
+        while (true) {
+            FileLock lock = channel.tryLock();
+            if (lock != null) {
+                return lock;
+            }
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException(String.format("Timed out waiting for the lock on %s", lockFile));
+            }
+            try {
+                TimeUnit.MILLISECONDS.sleep(LOCK_RETRY_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the lock on " + lockFile);
+            }
+        }
+    }
+
+    private static String getLocalHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
+
+    /** An action performed while holding the pool lock */
+    @FunctionalInterface
+    private static interface LockedAction<T> {
+        T run() throws IOException;
+    }
+}
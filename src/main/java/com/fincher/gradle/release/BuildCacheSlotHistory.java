@@ -0,0 +1,148 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The projects and dependency hashes that a Gradle user home slot has recently served. A slot that has served the same
+ * project with the same dependencies already holds its dependencies and build cache entries, so the lease manager
+ * prefers it. The history is stored in the slot, one entry per line
+ *
+ * @author Brian Fincher
+ *
+ */
+final class BuildCacheSlotHistory {
+
+    static final String HISTORY_FILE = ".history";
+
+    /** The number of project and dependency hash combinations remembered by each slot */
+    static final int MAX_ENTRIES = 16;
+
+    private final List<Entry> entries;
+
+    private BuildCacheSlotHistory(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    /**
+     * Read the history of a slot
+     *
+     * @param slot The slot
+     * @return The history. Empty if the slot has never been leased
+     * @throws IOException If an error occurs reading the history
+     */
+    static BuildCacheSlotHistory read(Path slot) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(slot.resolve(HISTORY_FILE), StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t");
+                if (fields.length == 3) {
+                    entries.add(new Entry(fields[1], fields[2], Instant.parse(fields[0])));
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // never leased
+        }
+        return new BuildCacheSlotHistory(entries);
+    }
+
+    /**
+     * Atomically write the history to a slot
+     *
+     * @param slot The slot
+     * @throws IOException If an error occurs writing the history
+     */
+    void write(Path slot) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Entry entry : entries) {
+            sb.append(entry.served).append('\t').append(entry.project).append('\t').append(entry.dependencyHash)
+                    .append('\n');
+        }
+
+        Path tempFile = Files.createTempFile(slot, HISTORY_FILE, ".tmp");
+        try {
+            Files.writeString(tempFile, sb, StandardCharsets.UTF_8);
+            Files.move(tempFile, slot.resolve(HISTORY_FILE), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * Get how warm the slot is for a project
+     *
+     * @param project The project
+     * @param dependencyHash The hash of the dependencies of the project
+     * @return HIT if the slot served the project with the same dependencies, PARTIAL if it served the project with
+     *         other dependencies, otherwise MISS
+     */
+    BuildCacheLease.Warmth getWarmth(String project, String dependencyHash) {
+        BuildCacheLease.Warmth warmth = BuildCacheLease.Warmth.MISS;
+        for (Entry entry : entries) {
+            if (entry.project.equals(project)) {
+                if (entry.dependencyHash.equals(dependencyHash)) {
+                    return BuildCacheLease.Warmth.HIT;
+                }
+                warmth = BuildCacheLease.Warmth.PARTIAL;
+            }
+        }
+        return warmth;
+    }
+
+    /**
+     * Get when the slot last served a project
+     *
+     * @param project The project
+     * @return When the slot last served the project or {@link Instant#MIN} if it never did
+     */
+    Instant getLastServed(String project) {
+        return entries.stream().filter(entry -> entry.project.equals(project)).map(entry -> entry.served)
+                .max(Comparator.naturalOrder()).orElse(Instant.MIN);
+    }
+
+    /**
+     * Get when the slot last served any project
+     *
+     * @return When the slot was last used or {@link Instant#MIN} if it was never used
+     */
+    Instant getLastUsed() {
+        return entries.stream().map(entry -> entry.served).max(Comparator.naturalOrder()).orElse(Instant.MIN);
+    }
+
+    /**
+     * Record that the slot is serving a project. Only the most recently served entries are kept
+     *
+     * @param project The project
+     * @param dependencyHash The hash of the dependencies of the project
+     * @param served When the slot was leased
+     */
+    void record(String project, String dependencyHash, Instant served) {
+        entries.removeIf(entry -> entry.project.equals(project) && entry.dependencyHash.equals(dependencyHash));
+        entries.add(new Entry(project, dependencyHash, served));
+        entries.sort(Comparator.comparing((Entry entry) -> entry.served).reversed());
+        while (entries.size() > MAX_ENTRIES) {
+            entries.remove(entries.size() - 1);
+        }
+    }
+
+    private static final class Entry {
+        private final String project;
+        private final String dependencyHash;
+        private final Instant served;
+
+        Entry(String project, String dependencyHash, Instant served) {
+            this.project = project;
+            this.dependencyHash = dependencyHash;
+            this.served = served;
+        }
+    }
+}
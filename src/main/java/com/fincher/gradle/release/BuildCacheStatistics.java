@@ -0,0 +1,101 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * The number of warm hits, partial hits and misses of the leases of a build cache pool
+ *
+ * @author Brian Fincher
+ *
+ */
+final class BuildCacheStatistics {
+
+    private long hits;
+    private long partialHits;
+    private long misses;
+
+    /**
+     * Read the statistics of a pool
+     *
+     * @param file The statistics file
+     * @return The statistics. All zero if the file does not exist
+     * @throws IOException If an error occurs reading the statistics
+     */
+    static BuildCacheStatistics read(Path file) throws IOException {
+        BuildCacheStatistics statistics = new BuildCacheStatistics();
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        } catch (NoSuchFileException e) {
+            return statistics;
+        }
+
+        statistics.hits = Long.parseLong(properties.getProperty("hits", "0"));
+        statistics.partialHits = Long.parseLong(properties.getProperty("partialHits", "0"));
+        statistics.misses = Long.parseLong(properties.getProperty("misses", "0"));
+        return statistics;
+    }
+
+    /**
+     * Atomically write the statistics
+     *
+     * @param file The statistics file
+     * @throws IOException If an error occurs writing the statistics
+     */
+    void write(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("hits", String.valueOf(hits));
+        properties.setProperty("partialHits", String.valueOf(partialHits));
+        properties.setProperty("misses", String.valueOf(misses));
+
+        Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(tempFile)) {
+                properties.store(out, null);
+            }
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    void record(BuildCacheLease.Warmth warmth) {
+        switch (warmth) {
+        case HIT:
+            hits++;
+            break;
+        case PARTIAL:
+            partialHits++;
+            break;
+        default:
+            misses++;
+            break;
+        }
+    }
+
+    long getHits() {
+        return hits;
+    }
+
+    long getPartialHits() {
+        return partialHits;
+    }
+
+    long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public String toString() {
+        long total = hits + partialHits + misses;
+        return String.format("%d hits, %d partial hits, %d misses, %d%% hit rate", hits, partialHits, misses,
+                total == 0 ? 0 : hits * 100 / total);
+    }
+}
@@ -0,0 +1,152 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+/**
+ * A git backend that coordinates its access to the repository with the other release tasks of a build through a
+ * {@link RepositoryWriteCoordinator}. This allows the release tasks of projects that share a repository to run in
+ * parallel
+ *
+ * @author Brian Fincher
+ *
+ */
+class CoordinatedGitBackend implements GitBackend {
+
+    private final GitBackend delegate;
+    private final RepositoryWriteCoordinator coordinator;
+
+    /**
+     * Constructs a new CoordinatedGitBackend
+     *
+     * @param delegate The backend that performs the git operations
+     * @param coordinator The coordinator shared by every backend of the repository
+     */
+    CoordinatedGitBackend(GitBackend delegate, RepositoryWriteCoordinator coordinator) {
+        this.delegate = delegate;
+        this.coordinator = coordinator;
+    }
+
+    @Override
+    public String getBranch() throws IOException {
+        return delegate.getBranch();
+    }
+
+    @Override
+    public String getHead() throws IOException {
+        return delegate.getHead();
+    }
+
+    @Override
+    public String getTaggedCommit(String name) throws IOException {
+        return delegate.getTaggedCommit(name);
+    }
+
+    @Override
+    public Map<String, List<String>> getTagsByCommit() throws IOException {
+        return delegate.getTagsByCommit();
+    }
+
+    @Override
+    public Set<String> getRemoteTags(String prefix, GitCredentials credentials) throws IOException, GitAPIException {
+        return delegate.getRemoteTags(prefix, credentials);
+    }
+
+    @Override
+    public String fetchBranch(GitCredentials credentials) throws IOException, GitAPIException {
+        return coordinator.write(() -> delegate.fetchBranch(credentials));
+    }
+
+    @Override
+    public String getMergeBase(String commit1, String commit2) throws IOException {
+        return delegate.getMergeBase(commit1, commit2);
+    }
+
+    @Override
+    public boolean isModified(String path, String from, String to) throws IOException {
+        return delegate.isModified(path, from, to);
+    }
+
+    @Override
+    public Path getWorkTree() throws IOException {
+        return delegate.getWorkTree();
+    }
+
+    @Override
+    public Path getGitDir() throws IOException {
+        return delegate.getGitDir();
+    }
+
+    @Override
+    public boolean isShallow() throws IOException {
+        return delegate.isShallow();
+    }
+
+    @Override
+    public void deepen(int depth, GitCredentials credentials) throws IOException, GitAPIException {
+        coordinator.write(() -> {
+            delegate.deepen(depth, credentials);
+            return null;
+        });
+    }
+
+    @Override
+    public void fetchMissingObjects(String since, GitCredentials credentials) throws IOException, GitAPIException {
+        coordinator.write(() -> {
+            delegate.fetchMissingObjects(since, credentials);
+            return null;
+        });
+    }
+
+    @Override
+    public Map<String, Long> getLfsObjects(Collection<String> since, GitCredentials credentials) throws IOException {
+        return delegate.getLfsObjects(since, credentials);
+    }
+
+    @Override
+    public URI getLfsEndpoint() throws IOException {
+        return delegate.getLfsEndpoint();
+    }
+
+    // Another task's commit would otherwise be seen as an uncommitted change while its files are being written
+    @Override
+    public void verifyNoUncommitedChanges() throws IOException, GitAPIException {
+        coordinator.read(() -> {
+            delegate.verifyNoUncommitedChanges();
+            return null;
+        });
+    }
+
+    @Override
+    public String commit(Map<String, byte[]> files, String message) throws IOException, GitAPIException {
+        return coordinator.commit(delegate, files, message);
+    }
+
+    @Override
+    public void tag(String name, String commit, String message) throws IOException, GitAPIException {
+        coordinator.write(() -> {
+            delegate.tag(name, commit, message);
+            return null;
+        });
+    }
+
+    @Override
+    public void addNote(String commit, String message) throws IOException, GitAPIException {
+        coordinator.write(() -> {
+            delegate.addNote(commit, message);
+            return null;
+        });
+    }
+
+    @Override
+    public List<String> push(GitCredentials credentials) throws IOException, GitAPIException {
+        return coordinator.write(() -> delegate.push(credentials));
+    }
+}
@@ -0,0 +1,185 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+
+/**
+ * A git backend used for dry runs. The branch and status checks are performed by the real backend. Commits and tags
+ * are made in memory by an {@link InMemoryRelease} and notes, fetches and pushes are only described. Each operation
+ * is reported to a consumer as a preview of the release
+ *
+ * @author Brian Fincher
+ *
+ */
+class DryRunGitBackend implements GitBackend {
+
+    private final GitBackend delegate;
+    private final Repository repo;
+    private final InMemoryRelease release;
+    private final Consumer<String> preview;
+    private boolean noted;
+
+    /**
+     * Constructs a new DryRunGitBackend
+     *
+     * @param delegate The real backend used for the branch and status checks
+     * @param repo The repository being released
+     * @param preview Receives a description of each operation
+     * @throws IOException If an error occurs reading HEAD
+     */
+    DryRunGitBackend(GitBackend delegate, Repository repo, Consumer<String> preview) throws IOException {
+        this.delegate = delegate;
+        this.repo = repo;
+        this.release = new InMemoryRelease(repo);
+        this.preview = preview;
+    }
+
+    @Override
+    public String getBranch() throws IOException {
+        return delegate.getBranch();
+    }
+
+    @Override
+    public String getHead() {
+        return release.getHead().name();
+    }
+
+    @Override
+    public String getTaggedCommit(String name) throws IOException {
+        Ref ref = release.getRepository().exactRef(Constants.R_TAGS + name);
+        if (ref == null) {
+            return delegate.getTaggedCommit(name);
+        }
+        return JGitBackend.peel(release.getRepository().getRefDatabase(), ref).name();
+    }
+
+    @Override
+    public Map<String, List<String>> getTagsByCommit() throws IOException {
+        Map<String, List<String>> tags = delegate.getTagsByCommit();
+        JGitBackend.addTagsByCommit(release.getRepository().getRefDatabase(), tags);
+        return tags;
+    }
+
+    @Override
+    public Set<String> getRemoteTags(String prefix, GitCredentials credentials) throws IOException, GitAPIException {
+        return delegate.getRemoteTags(prefix, credentials);
+    }
+
+    // The release is checked against the branch on origin as of the last fetch
+    @Override
+    public String fetchBranch(GitCredentials credentials) throws IOException {
+        String branch = getBranch();
+        preview.accept(String.format("Dry run: fetch %s%s from origin", Constants.R_HEADS, branch));
+        ObjectId remoteHead = repo.resolve(Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/" + branch);
+        return remoteHead == null ? null : remoteHead.name();
+    }
+
+    // The in memory commits are on top of the real HEAD and are not on origin, so they share its merge base
+    @Override
+    public String getMergeBase(String commit1, String commit2) throws IOException {
+        String head = getHead();
+        return delegate.getMergeBase(commit1.equals(head) ? delegate.getHead() : commit1,
+                commit2.equals(head) ? delegate.getHead() : commit2);
+    }
+
+    @Override
+    public boolean isModified(String path, String from, String to) throws IOException {
+        return delegate.isModified(path, from, to);
+    }
+
+    @Override
+    public Path getWorkTree() throws IOException {
+        return delegate.getWorkTree();
+    }
+
+    // A dry run must not write the release journal
+    @Override
+    public Path getGitDir() {
+        return null;
+    }
+
+    @Override
+    public boolean isShallow() throws IOException {
+        return delegate.isShallow();
+    }
+
+    @Override
+    public void deepen(int depth, GitCredentials credentials) throws IOException {
+        preview.accept(String.format("Dry run: deepen %s to %d commits", getBranch(), depth));
+    }
+
+    @Override
+    public void fetchMissingObjects(String since, GitCredentials credentials) {
+        preview.accept(String.format("Dry run: fetch the missing objects since %s", since));
+    }
+
+    // The commits of the release only change the version file, so the pointer files are read from the real HEAD. The
+    // blobs that a partial clone omitted are fetched, as git would when they are read, but no ref is changed
+    @Override
+    public Map<String, Long> getLfsObjects(Collection<String> since, GitCredentials credentials) throws IOException {
+        List<String> realCommits = new ArrayList<>();
+        for (String commit : since) {
+            if (repo.getObjectDatabase().has(ObjectId.fromString(commit))) {
+                realCommits.add(commit);
+            }
+        }
+        return delegate.getLfsObjects(realCommits, credentials);
+    }
+
+    @Override
+    public URI getLfsEndpoint() throws IOException {
+        return delegate.getLfsEndpoint();
+    }
+
+    @Override
+    public void verifyNoUncommitedChanges() throws IOException, GitAPIException {
+        delegate.verifyNoUncommitedChanges();
+    }
+
+    @Override
+    public String commit(Map<String, byte[]> files, String message) throws IOException {
+        ObjectId commitId = release.commit(files, message);
+        preview.accept(String.format("Dry run: commit %s %s: %s", commitId.name(), String.join(" ", files.keySet()),
+                message));
+        return commitId.name();
+    }
+
+    @Override
+    public void tag(String name, String commit, String message) throws IOException {
+        ObjectId tagId = release.tag(name, ObjectId.fromString(commit), message);
+        preview.accept(String.format("Dry run: tag %s %s", tagId.name(), name));
+    }
+
+    @Override
+    public void addNote(String commit, String message) {
+        noted = true;
+        preview.accept(String.format("Dry run: note %s in %s:%n%s", commit, NOTES_REF, message));
+    }
+
+    @Override
+    public List<String> push(GitCredentials credentials) {
+        String remoteUrl = repo.getConfig().getString(ConfigConstants.CONFIG_REMOTE_SECTION, "origin",
+                ConfigConstants.CONFIG_KEY_URL);
+        release.getPushRefSpecs()
+                .forEach(refSpec -> preview.accept(String.format("Dry run: push %s to %s", refSpec, remoteUrl)));
+        if (noted) {
+            preview.accept(String.format("Dry run: push %s:%s to %s", NOTES_REF, NOTES_REF, remoteUrl));
+        }
+        return Collections.emptyList();
+    }
+}
@@ -2,277 +2,122 @@ package com.fincher.gradle.release;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.Objects;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
 
-import org.eclipse.jgit.api.GitCommand;
-import org.eclipse.jgit.api.PushCommand;
-import org.eclipse.jgit.api.TransportCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.lib.ConfigConstants;
-import org.eclipse.jgit.lib.StoredConfig;
-import org.eclipse.jgit.transport.PushResult;
-import org.eclipse.jgit.transport.RemoteConfig;
-import org.eclipse.jgit.transport.SshTransport;
-import org.eclipse.jgit.transport.URIish;
-import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
-import org.eclipse.jgit.transport.ssh.jsch.JschConfigSessionFactory;
-import org.eclipse.jgit.util.FS;
-import org.gradle.api.logging.Logger;
+import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
-import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.options.Option;
 
-import com.google.common.base.Preconditions;
-import com.jcraft.jsch.JSch;
-import com.jcraft.jsch.JSchException;
-
 public abstract class FinalizeReleaseTask extends AbstractReleaseTask {
 
     private String newVersionOverride = null;
 
-    /**
-     * If this repository is HTTPS and authentication is required, this property contains the authentication user name
-     * 
-     * @return the authentication user name
-     */
-    @Input
-    @Optional
-    public abstract Property<String> getGitRepositoryUsername();
+    @Option(option = "newVersion", description = "Sets the new release value.   "
+            + "If the prepareRelease set the release version to 1.0.1, "
+            + "the default new release value would be 1.0.1-SNAPSHOT")
+    void setNewVersion(String newVersion) {
+        newVersionOverride = newVersion;
+    }
+
+    @Option(option = "bundle", description = "Writes the release to this git bundle instead of pushing it to origin")
+    void setBundle(String bundle) {
+        getBundleFile().set(getProject().file(bundle));
+    }
 
     /**
-     * If this repository is HTTPS and authentication is required, this property contains the authentication password
+     * Gets the optional prefix of the release tags. Only used to find the release tags that are written to a bundle or
+     * whose artifact checksums are recorded. Default is no prefix
      * 
-     * @return the authentication password
+     * @return the optional prefix of the release tags
      */
     @Input
     @Optional
-    public abstract Property<String> getGitRepositoryPassword();
+    public abstract Property<String> getTagPrefix();
 
     /**
-     * If this repository is SSH, this property contains the SSH private key
+     * The git bundle to which the release is written instead of pushing it to origin, for example when origin cannot be
+     * reached. The bundle contains the released branch, the release tag and the artifact checksum notes, and requires
+     * the commit of the previous release tag, so that it only contains the commits since the previous release. A
+     * shallow clone is deepened from origin until the previous release tag is found, and a partial clone only fetches
+     * the blobs that the bundle needs. A checksum manifest named after the bundle with a <code>.sha256</code>
+     * extension is written next to it. The bundle is applied to another repository by the applyReleaseBundle task
      * 
-     * @return the SSH private key
+     * @return The git bundle to which the release is written
      */
-    @Input
-    @Optional
-    public abstract Property<String> getGitRepositorySshPrivateKey();
+    @Internal
+    public abstract Property<File> getBundleFile();
 
     /**
-     * If this repository is SSH, this property contains the file containing the SSH private key
+     * If true, the LFS objects referenced by the pointer files committed since the previous release are verified to be
+     * stored by the LFS server of origin before the release is pushed. The objects are checked with batch requests, so
+     * nothing is uploaded or downloaded. Only a username and password are sent to the LFS server
      * 
-     * @return the file containing the SSH private key
+     * @return True to verify the LFS objects before pushing. Default is false
      */
-    @InputFile
+    @Input
     @Optional
-    public abstract Property<File> getGitRepositorySshPrivateKeyFile();
+    public abstract Property<Boolean> getVerifyLfsObjects();
 
     /**
-     * If this repository is SSH and the SSH private key contains the pass phrase.
+     * The artifacts of the release, such as the jars that are published. The SHA-256 checksum of each artifact is
+     * recorded in a note of the released commit, in the format of <code>sha256sum</code>. The artifacts are
+     * hashed when the release is finalized rather than recorded in the release tag when it is prepared, because they
+     * are usually built between the two tasks. Directories are replaced by the files they contain
      * 
-     * @return The SSH private key pass phrase
+     * @return The artifacts of the release. Default is none
      */
-    @Input
+    @InputFiles
     @Optional
-    public abstract Property<String> getGitRepositorySshPassphrase();
-
-    @Option(option = "newVersion", description = "Sets the new release value.   "
-            + "If the prepareRelease set the release version to 1.0.1, "
-            + "the default new release value would be 1.0.1-SNAPSHOT")
-    void setNewVersion(String newVersion) {
-        newVersionOverride = newVersion;
-    }
+    public abstract ConfigurableFileCollection getArtifacts();
 
     @Override
     public void releaseTaskAction() throws IOException, GitAPIException {
-        super.releaseTaskAction();
-        validateRepositoryAuthenticationParams();
-
-        if (newVersionOverride == null) {
-            version.replacePatch(String.valueOf(Integer.parseInt(version.getPatch()) + 1));
-            version.replaceSuffix("-SNAPSHOT");
-        } else {
-            overrideVersion(newVersionOverride);
-        }
-
-        version.save();
-
-        git.add().addFilepattern(relativeVersionFile).call();
-
-        String newVersion = version.toString();
-        git.commit().setMessage(String.format("\"Set version after release to %s\"", newVersion)).call();
-
-        StoredConfig config = repo.getConfig();
-        Objects.requireNonNull(config, "config is null");
-        String branch = repo.getBranch();
-        config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, branch, "remote", "origin");
-        config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, branch, "merge", "refs/heads/" + branch);
-        config.save();
-
-        executePushCommand(git.push());
-        executePushCommand(git.push().setPushTags().setForce(true));
-    }
-
-    protected Iterable<PushResult> executePushCommand(PushCommand command) throws GitAPIException, IOException {
-        Iterable<PushResult> pushResult = executeTransportCommand(command);
-        Logger logger = getLogger();
-        String branch = repo.getBranch();
-        pushResult.forEach(result -> logger.lifecycle("Pushed {} {} branch: {} updates: {}",
-                result.getMessages(),
-                result.getURI(),
-                branch,
-                result.getRemoteUpdates()));
-        return pushResult;
-    }
-
-    @SuppressWarnings("rawtypes")
-    protected <T> T executeTransportCommand(TransportCommand<? extends GitCommand, T> command)
-            throws GitAPIException {
-
-        if (getGitRepositorySshPrivateKey().isPresent() || getGitRepositorySshPrivateKeyFile().isPresent()) {
-            return executeTransportCommandSsh(command);
-        }
-
-        if (getGitRepositoryUsername().isPresent()) {
-            command.setCredentialsProvider(new UsernamePasswordCredentialsProvider(getGitRepositoryUsername().get(),
-                    getGitRepositoryPassword().get()));
-        }
-
-        return command.call();
-    }
-
-    @SuppressWarnings("rawtypes")
-    protected <T> T executeTransportCommandSsh(TransportCommand<? extends GitCommand, T> command)
-            throws GitAPIException {
-        CustomSshSessionFactory sshSessionFactory = new CustomSshSessionFactory();
-
-        command.setTransportConfigCallback(transport -> {
-            SshTransport sshTransport = (SshTransport) transport;
-            sshTransport.setSshSessionFactory(sshSessionFactory);
-        });
-
-        JSch.setConfig("StrictHostKeyChecking", "no");
-
-        return command.call();
-    }
-
-    private void validateRepositoryAuthenticationParams() {
-        boolean isUsernameSet = getGitRepositoryUsername().isPresent();
-        boolean isPasswordSet = getGitRepositoryPassword().isPresent();
-        boolean isPrivateKeySet = getGitRepositorySshPrivateKey().isPresent();
-        boolean isPrivateKeyFileSet = getGitRepositorySshPrivateKeyFile().isPresent();
-        boolean isPrivateKeyPassphraseSet = getGitRepositorySshPassphrase().isPresent();
-
-        if (isUsernameSet) {
-            Preconditions.checkState(isPasswordSet,
-                    "Git repository username is set but not Git password");
-            final String duplicateErrorMsg = "Both username/password and SSH authentication parameters cannot be set";
-
-            Preconditions.checkState(!isPrivateKeySet, duplicateErrorMsg);
-            Preconditions.checkState(!isPrivateKeyFileSet, duplicateErrorMsg);
-            Preconditions.checkState(!isPrivateKeyPassphraseSet, duplicateErrorMsg);
+        String manifest = createArtifactManifest();
+        if (runsInWorker()) {
+            runInWorker(ReleaseSteps.FINALIZE, params -> {
+                params.getNewVersion().set(newVersionOverride);
+                params.getTagPrefix().set(getTagPrefix().getOrElse(""));
+                params.getBundleFile().set(getBundleFile().getOrNull());
+                params.getArtifactManifest().set(manifest);
+                params.getVerifyLfsObjects().set(getVerifyLfsObjects().getOrElse(false));
+            });
             return;
-        } else {
-            Preconditions.checkState(!isPasswordSet,
-                    "Git repository password is set but not Git username");
-        }
-
-        if (isPrivateKeyPassphraseSet) {
-            Preconditions.checkState(
-                    getGitRepositorySshPrivateKey().isPresent() || getGitRepositorySshPrivateKeyFile().isPresent(),
-                    "SSH passphrase is set but not the SSH private key");
         }
 
-        if (isPrivateKeySet) {
-            Preconditions.checkState(!isUsernameSet,
-                    "Both SSH private Key and username cannot be set");
-            Preconditions.checkState(!isPasswordSet,
-                    "Both SSH private Key and password cannot be set");
-            Preconditions.checkState(!isPrivateKeyFileSet,
-                    "Both SSH private Key and SSH private key file parameters cannot be set");
-            return;
-        }
-
-        if (isPrivateKeyFileSet) {
-            Preconditions.checkState(!isUsernameSet,
-                    "Both SSH private Key and username cannot be set");
-            Preconditions.checkState(!isPasswordSet,
-                    "Both SSH private Key and password cannot be set");
-            Preconditions.checkState(!isPrivateKeySet,
-                    "Both SSH private Key and SSH private key file parameters cannot be set");
-        }
+        super.releaseTaskAction();
+        String tagPrefix = getTagPrefix().getOrElse("");
+        ReleaseSteps.finalizeOrBundle(backend, version, relativeVersionFile, newVersionOverride, tagPrefix,
+                this::loadTagsByCommit, manifest, getVerifyLfsObjects().getOrElse(false),
+                getBundleFile().isPresent() ? getBundleFile().get().toPath() : null, dryRun, createCredentials(),
+                new GradleProgressMonitor(getLogger(), "bundle", "objects"), new GradleReleaseLog(getLogger()));
     }
 
-    private class CustomSshSessionFactory extends JschConfigSessionFactory {
-
-        private final String privateKeyFile;
-        private final byte[] privateKey;
-        private final String passphrase;
-
-        CustomSshSessionFactory() {
-            passphrase = getGitRepositorySshPassphrase().getOrNull();
-
-            if (getGitRepositorySshPrivateKeyFile().isPresent()) {
-                privateKeyFile = getGitRepositorySshPrivateKeyFile().get().toPath().toString();
-                privateKey = null;
-            } else {
-                privateKey = getGitRepositorySshPrivateKey().get().getBytes();
-                privateKeyFile = null;
-            }
-        }
-
-        @Override
-        protected JSch createDefaultJSch(FS fs) throws JSchException {
-            JSch defaultJSch = super.createDefaultJSch(fs);
-            try {
-                defaultJSch.setKnownHosts(getSshKey());
-            } catch (InterruptedException ie) {
-                Thread.currentThread().interrupt();
-                throw new JSchException(ie.getMessage(), ie);
-            } catch (IOException | GitAPIException e) {
-                throw new JSchException(e.getMessage(), e);
-            }
-
-            if (privateKeyFile != null) {
-                if (passphrase == null) {
-                    defaultJSch.addIdentity(privateKeyFile);
-                } else {
-                    defaultJSch.addIdentity(privateKeyFile, passphrase);
-                }
-            } else {
-                if (passphrase == null) {
-                    defaultJSch.addIdentity("key", privateKey, (byte[]) null, null);
-                } else {
-                    defaultJSch.addIdentity("key", privateKey, (byte[]) null, passphrase.getBytes());
-                }
-            }
-
-            return defaultJSch;
+    /**
+     * Create the manifest of the SHA-256 checksums of the artifacts. The artifacts are hashed in parallel and their
+     * checksums are cached in the build directory, so artifacts that have not changed are not hashed again
+     * 
+     * @return The manifest, or null if there are no artifacts
+     * @throws IOException If an error occurs reading the artifacts
+     */
+    private String createArtifactManifest() throws IOException {
+        List<Path> artifacts = getArtifacts().getAsFileTree().getFiles().stream().map(File::toPath)
+                .collect(Collectors.toList());
+        if (artifacts.isEmpty()) {
+            return null;
         }
 
-        private InputStream getSshKey() throws IOException, GitAPIException, InterruptedException {
-            java.util.Optional<URIish> uri =
-                    git.remoteList().call().stream()
-                            .filter(remote -> remote.getName().equals("origin"))
-                            .map(RemoteConfig::getURIs)
-                            .map(list -> list.iterator().next())
-                            .findFirst();
-
-            if (uri.isPresent()) {
-                uri.get().getHost();
-                final String[] keyscanCommand = { "ssh-keyscan", uri.get().getHost() };
-                final Process p = new ProcessBuilder(keyscanCommand).start();
-                p.waitFor();
-                if (p.exitValue() == 0) {
-                    return p.getInputStream();
-                } else {
-                    throw new AssertionError("Bad return code from ssh-keyscan");
-                }
-            } else {
-                throw new AssertionError("Unable to find remote host");
-            }
-        }
+        Path cacheFile = getProject().getLayout().getBuildDirectory().file("release/artifactChecksums.txt").get()
+                .getAsFile().toPath();
+        String manifest = ArtifactManifest.create(findGitDir().getParent(), artifacts, cacheFile,
+                Runtime.getRuntime().availableProcessors());
+        getLogger().info("Artifact checksums:{}{}", System.lineSeparator(), manifest);
+        return manifest;
     }
 }
@@ -0,0 +1,268 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+/**
+ * The git operations performed by the release tasks
+ *
+ * @author Brian Fincher
+ *
+ */
+interface GitBackend {
+
+    /** The available backends */
+    enum Type {
+        /** Use JGit. This is the default */
+        JGIT,
+        /** Run the native git executable */
+        NATIVE;
+
+        static Type parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(
+                        String.format("Unknown git backend %s. Expected one of jgit or native", value), e);
+            }
+        }
+    }
+
+    /** The ref of the notes that record the artifact checksums of each release */
+    static final String NOTES_REF = "refs/notes/release-artifacts";
+
+    /** Creates the progress monitors used to report the progress of long running git operations */
+    @FunctionalInterface
+    static interface MonitorFactory {
+        ProgressMonitor create(String operation, String unit);
+    }
+
+    /**
+     * Get the name of the current branch
+     *
+     * @return The name of the current branch
+     * @throws IOException If an error occurs reading HEAD
+     */
+    String getBranch() throws IOException;
+
+    /**
+     * Get the id of the commit at HEAD
+     *
+     * @return The id of the commit at HEAD or null if there are no commits
+     * @throws IOException If an error occurs reading HEAD
+     */
+    String getHead() throws IOException;
+
+    /**
+     * Get the id of the commit that a tag points to
+     *
+     * @param name The tag name
+     * @return The id of the peeled commit or null if the tag does not exist
+     * @throws IOException If an error occurs reading the tag
+     */
+    String getTaggedCommit(String name) throws IOException;
+
+    /**
+     * Get the names of every tag, keyed by the id of the commit that each tag points to. Annotated tags are peeled
+     *
+     * @return The tag names of each tagged commit
+     * @throws IOException If an error occurs reading the tags
+     */
+    Map<String, List<String>> getTagsByCommit() throws IOException;
+
+    /**
+     * Get the names of the tags on origin that start with a prefix. Only the refs under
+     * <code>refs/tags/&lt;prefix&gt;</code> are requested, so that the cost does not grow with the number of other tags
+     * on origin
+     *
+     * @param prefix The prefix of the tag names
+     * @param credentials The credentials used to authenticate with origin
+     * @return The names of the matching tags or an empty set if there is no origin
+     * @throws IOException If an error occurs contacting origin
+     * @throws GitAPIException If an error occurs contacting origin
+     */
+    Set<String> getRemoteTags(String prefix, GitCredentials credentials) throws IOException, GitAPIException;
+
+    /**
+     * Get the id of the commit of the current branch on origin. Only <code>refs/heads/&lt;branch&gt;</code> is
+     * requested. If that commit is not in the repository, only the branch is fetched into
+     * <code>refs/remotes/origin/&lt;branch&gt;</code>, without tags, and the local HEAD is offered as the common
+     * commit, so that the negotiation with origin ends within a few round trips
+     *
+     * @param credentials The credentials used to authenticate with origin
+     * @return The id of the commit or null if there is no origin or origin does not have the branch
+     * @throws IOException If an error occurs contacting origin
+     * @throws GitAPIException If an error occurs contacting origin
+     */
+    String fetchBranch(GitCredentials credentials) throws IOException, GitAPIException;
+
+    /**
+     * Get the best common ancestor of two commits
+     *
+     * @param commit1 The id of the first commit
+     * @param commit2 The id of the second commit
+     * @return The id of the common ancestor or null if the commits have no common history in the repository
+     * @throws IOException If an error occurs reading the commits
+     */
+    String getMergeBase(String commit1, String commit2) throws IOException;
+
+    /**
+     * Determine whether a file differs between two commits. Only the trees of the commits are compared, so the blobs
+     * of the file are not read
+     *
+     * @param path The path of the file relative to the root of the working tree, using / as the separator
+     * @param from The id of the first commit
+     * @param to The id of the second commit
+     * @return True if the file was added, removed or modified
+     * @throws IOException If an error occurs reading the commits
+     */
+    boolean isModified(String path, String from, String to) throws IOException;
+
+    /**
+     * Get the root of the working tree. Paths passed to {@link #commit(String, byte[], String)} are relative to it
+     *
+     * @return The root of the working tree
+     * @throws IOException If an error occurs locating the working tree
+     */
+    Path getWorkTree() throws IOException;
+
+    /**
+     * Get the git directory, in which the release journal is stored
+     *
+     * @return The git directory or null if the backend must not write to it
+     * @throws IOException If an error occurs locating the git directory
+     */
+    Path getGitDir() throws IOException;
+
+    /**
+     * Determine whether the repository is a shallow clone, whose history ends at the commits that it was cloned with
+     *
+     * @return True if the repository is a shallow clone
+     * @throws IOException If an error occurs reading the repository
+     */
+    boolean isShallow() throws IOException;
+
+    /**
+     * Fetch more of the history of the current branch from origin into a shallow clone, together with the tags that
+     * point into it. In a partial clone the filter of the clone applies to the fetch, so the blobs of the history are
+     * not fetched
+     *
+     * @param depth The number of commits below the tip of the branch on origin that the history is deepened to
+     * @param credentials The credentials used to authenticate with origin
+     * @throws IOException If an error occurs fetching
+     * @throws GitAPIException If an error occurs fetching
+     */
+    void deepen(int depth, GitCredentials credentials) throws IOException, GitAPIException;
+
+    /**
+     * Fetch the objects of the commits after a commit, up to and including HEAD, that the filter of a partial clone
+     * omitted. The objects are fetched in a single request rather than one at a time as they are read. Does nothing if
+     * the repository is not a partial clone
+     *
+     * @param since The commit whose objects are not needed, or null if the objects of the whole history are needed
+     * @param credentials The credentials used to authenticate with the remote from which the repository was cloned
+     * @throws IOException If an error occurs fetching
+     * @throws GitAPIException If an error occurs fetching
+     */
+    void fetchMissingObjects(String since, GitCredentials credentials) throws IOException, GitAPIException;
+
+    /**
+     * Get the LFS objects referenced by the pointer files of the commits reachable from HEAD but not from any of a set
+     * of commits. Only the blobs that are small enough to be a pointer file are read, so the content of the files
+     * tracked by LFS is neither smudged nor downloaded. In a partial clone, the blobs that the filter omitted are
+     * fetched in a single request, because their size is not known until they are fetched
+     *
+     * @param since The commits whose pointer files are excluded, such as the commits of the previous releases
+     * @param credentials The credentials used to authenticate with the remote from which the repository was cloned
+     * @return The size of each referenced object, keyed by its SHA-256
+     * @throws IOException If an error occurs reading the commits or fetching the omitted blobs
+     */
+    Map<String, Long> getLfsObjects(Collection<String> since, GitCredentials credentials) throws IOException;
+
+    /**
+     * Get the LFS endpoint of origin. <code>lfs.url</code> and <code>remote.origin.lfsurl</code> are read from the
+     * configuration of the repository and then from the <code>.lfsconfig</code> file of the working tree. If neither
+     * is set, the endpoint is derived from the URL of origin
+     *
+     * @return The endpoint or null if there is no origin
+     * @throws IOException If an error occurs reading the configuration
+     */
+    URI getLfsEndpoint() throws IOException;
+
+    /**
+     * Verify that the working tree has no uncommitted changes
+     *
+     * @throws IOException If an error occurs computing the status
+     * @throws GitAPIException If an error occurs computing the status
+     * @throws IllegalStateException If there are uncommitted changes
+     */
+    void verifyNoUncommitedChanges() throws IOException, GitAPIException;
+
+    /**
+     * Write the given content to a file in the working tree and commit it
+     *
+     * @param path The path of the file relative to the root of the working tree
+     * @param content The new content of the file
+     * @param message The commit message
+     * @return The id of the new commit
+     * @throws IOException If an error occurs writing the file or the commit
+     * @throws GitAPIException If an error occurs writing the commit
+     */
+    default String commit(String path, byte[] content, String message) throws IOException, GitAPIException {
+        return commit(Map.of(path, content), message);
+    }
+
+    /**
+     * Write the given content to files in the working tree and commit them together
+     *
+     * @param files The new content of each file, keyed by the path of the file relative to the root of the working
+     *            tree
+     * @param message The commit message
+     * @return The id of the new commit
+     * @throws IOException If an error occurs writing the files or the commit
+     * @throws GitAPIException If an error occurs writing the commit
+     */
+    String commit(Map<String, byte[]> files, String message) throws IOException, GitAPIException;
+
+    /**
+     * Create an annotated tag of a commit. The commit is named explicitly because HEAD may have moved on when the
+     * release tasks of a build commit to the same repository in parallel
+     *
+     * @param name The tag name
+     * @param commit The id of the commit to tag
+     * @param message The tag message
+     * @throws IOException If an error occurs creating the tag
+     * @throws GitAPIException If an error occurs creating the tag
+     */
+    void tag(String name, String commit, String message) throws IOException, GitAPIException;
+
+    /**
+     * Add a note to a commit in {@link #NOTES_REF}, replacing any existing note of the commit. The notes are pushed
+     * with the current branch
+     *
+     * @param commit The id of the commit
+     * @param message The note
+     * @throws IOException If an error occurs writing the note
+     * @throws GitAPIException If an error occurs writing the note
+     */
+    void addNote(String commit, String message) throws IOException, GitAPIException;
+
+    /**
+     * Push the current branch, all tags and the notes of {@link #NOTES_REF} to origin. Tags are force pushed
+     *
+     * @param credentials The credentials used to authenticate with origin
+     * @return A description of the result of each push
+     * @throws IOException If an error occurs pushing
+     * @throws GitAPIException If an error occurs pushing
+     */
+    List<String> push(GitCredentials credentials) throws IOException, GitAPIException;
+}
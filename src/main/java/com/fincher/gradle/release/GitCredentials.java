@@ -0,0 +1,94 @@
+package com.fincher.gradle.release;
+
+import java.io.File;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * The credentials used to authenticate with a remote repository. Either a username and password or an SSH private
+ * key (with an optional pass phrase) may be set. Any value may be null
+ *
+ * @author Brian Fincher
+ *
+ */
+final class GitCredentials {
+
+    static final GitCredentials NONE = new GitCredentials(null, null, null, null, null);
+
+    private final String username;
+    private final String password;
+    private final String sshPrivateKey;
+    private final File sshPrivateKeyFile;
+    private final String sshPassphrase;
+
+    GitCredentials(String username, String password, String sshPrivateKey, File sshPrivateKeyFile,
+            String sshPassphrase) {
+        this.username = username;
+        this.password = password;
+        this.sshPrivateKey = sshPrivateKey;
+        this.sshPrivateKeyFile = sshPrivateKeyFile;
+        this.sshPassphrase = sshPassphrase;
+    }
+
+    String getUsername() {
+        return username;
+    }
+
+    String getPassword() {
+        return password;
+    }
+
+    String getSshPrivateKey() {
+        return sshPrivateKey;
+    }
+
+    File getSshPrivateKeyFile() {
+        return sshPrivateKeyFile;
+    }
+
+    String getSshPassphrase() {
+        return sshPassphrase;
+    }
+
+    boolean isSsh() {
+        return sshPrivateKey != null || sshPrivateKeyFile != null;
+    }
+
+    /**
+     * Verify that the credentials are consistent. Either a username and password or SSH parameters may be set, but
+     * not both
+     *
+     * @throws IllegalStateException If the credentials are inconsistent
+     */
+    void validate() {
+        boolean isUsernameSet = username != null;
+        boolean isPasswordSet = password != null;
+        boolean isPrivateKeySet = sshPrivateKey != null;
+        boolean isPrivateKeyFileSet = sshPrivateKeyFile != null;
+        boolean isPrivateKeyPassphraseSet = sshPassphrase != null;
+
+        if (isUsernameSet) {
+            Preconditions.checkState(isPasswordSet,
+                    "Git repository username is set but not Git password");
+            final String duplicateErrorMsg = "Both username/password and SSH authentication parameters cannot be set";
+
+            Preconditions.checkState(!isPrivateKeySet, duplicateErrorMsg);
+            Preconditions.checkState(!isPrivateKeyFileSet, duplicateErrorMsg);
+            Preconditions.checkState(!isPrivateKeyPassphraseSet, duplicateErrorMsg);
+            return;
+        } else {
+            Preconditions.checkState(!isPasswordSet,
+                    "Git repository password is set but not Git username");
+        }
+
+        if (isPrivateKeyPassphraseSet) {
+            Preconditions.checkState(isPrivateKeySet || isPrivateKeyFileSet,
+                    "SSH passphrase is set but not the SSH private key");
+        }
+
+        if (isPrivateKeySet) {
+            Preconditions.checkState(!isPrivateKeyFileSet,
+                    "Both SSH private Key and SSH private key file parameters cannot be set");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.fincher.gradle.release;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.gradle.api.logging.Logger;
+
+/**
+ * A JGit progress monitor that reports the progress and throughput of a git operation to the Gradle build output.
+ * Progress is reported at most once per second while a task is running and the final rate is reported when each task
+ * completes.
+ *
+ * @author Brian Fincher
+ *
+ */
+class GradleProgressMonitor implements ProgressMonitor {
+
+    private static final long REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Logger logger;
+    private final String operation;
+    private final String unit;
+
+    private String taskTitle;
+    private int totalWork;
+    private long completed;
+    private long taskStartNanos;
+    private long lastReportNanos;
+
+    /**
+     * Constructs a new GradleProgressMonitor
+     *
+     * @param logger The logger to which progress is reported
+     * @param operation The name of the git operation, for example "status"
+     * @param unit The unit of work being counted, for example "files"
+     */
+    GradleProgressMonitor(Logger logger, String operation, String unit) {
+        this.logger = logger;
+        this.operation = operation;
+        this.unit = unit;
+    }
+
+    @Override
+    public void start(int totalTasks) {
+        // nothing to do. Each task is reported individually
+    }
+
+    @Override
+    public void beginTask(String title, int totalWork) {
+        this.taskTitle = title;
+        this.totalWork = totalWork;
+        completed = 0;
+        taskStartNanos = System.nanoTime();
+        lastReportNanos = taskStartNanos;
+    }
+
+    @Override
+    public void update(int completedWork) {
+        completed += completedWork;
+
+        long now = System.nanoTime();
+        if (now - lastReportNanos >= REPORT_INTERVAL_NANOS) {
+            lastReportNanos = now;
+            if (totalWork == UNKNOWN) {
+                logger.lifecycle("git {} {}: {} {} ({} {}/s)", operation, taskTitle, completed, unit,
+                        rate(now), unit);
+            } else {
+                logger.lifecycle("git {} {}: {}/{} {} ({} {}/s)", operation, taskTitle, completed, totalWork, unit,
+                        rate(now), unit);
+            }
+        }
+    }
+
+    @Override
+    public void endTask() {
+        long now = System.nanoTime();
+        logger.lifecycle("git {} {}: {} {} in {} ms ({} {}/s)", operation, taskTitle, completed, unit,
+                TimeUnit.NANOSECONDS.toMillis(now - taskStartNanos), rate(now), unit);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return Thread.currentThread().isInterrupted();
+    }
+
+    // Durations are always reported by endTask
+    @Override
+    public void showDuration(boolean enabled) {
+        // not configurable
+    }
+
+    long getCompleted() {
+        return completed;
+    }
+
+    private long rate(long now) {
+        long elapsedNanos = Math.max(now - taskStartNanos, 1);
+        return completed * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+}
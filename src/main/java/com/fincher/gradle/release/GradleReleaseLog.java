@@ -0,0 +1,33 @@
+package com.fincher.gradle.release;
+
+import org.gradle.api.logging.Logger;
+
+/**
+ * Reports the progress of the release steps to the Gradle build output
+ *
+ * @author Brian Fincher
+ *
+ */
+class GradleReleaseLog implements ReleaseSteps.Log {
+
+    private final Logger logger;
+
+    /**
+     * Constructs a new GradleReleaseLog
+     *
+     * @param logger The logger to which the messages are written
+     */
+    GradleReleaseLog(Logger logger) {
+        this.logger = logger;
+    }
+
+    @Override
+    public void lifecycle(String message) {
+        logger.lifecycle(message);
+    }
+
+    @Override
+    public void warn(String message) {
+        logger.warn(message);
+    }
+}
@@ -0,0 +1,209 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TagBuilder;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+
+/**
+ * Performs the commit and tag of a release against an in memory (DFS) repository layered over the real repository.
+ * This allows a release to be validated and previewed without modifying the working tree or the real repository.
+ * Objects are read from the real repository and all new objects and refs are written to the in memory repository.
+ * Only the trees along the path to the modified file are rewritten. All other trees and blobs are referenced by id.
+ *
+ * @author Brian Fincher
+ *
+ */
+class InMemoryRelease implements AutoCloseable {
+
+    private final Repository source;
+    private final InMemoryRepository repo;
+    private final String branch;
+    private final PersonIdent person;
+    private ObjectId head;
+
+    /**
+     * Constructs a new InMemoryRelease starting from the current HEAD of the source repository
+     *
+     * @param source The repository being released
+     * @throws IOException If an error occurs reading HEAD from the source repository
+     */
+    InMemoryRelease(Repository source) throws IOException {
+        this.source = source;
+        repo = new InMemoryRepository(new DfsRepositoryDescription("dry-run"));
+        branch = source.getBranch();
+        person = new PersonIdent(source);
+        head = source.resolve(Constants.HEAD);
+        if (head == null) {
+            throw new IllegalStateException("Unable to resolve HEAD");
+        }
+    }
+
+    /**
+     * Commit new content for a file on top of the current head
+     *
+     * @param path The path of the file relative to the repository root, using / as the separator
+     * @param content The new content of the file
+     * @param message The commit message
+     * @return The id of the new commit
+     * @throws IOException If an error occurs reading or writing objects
+     */
+    ObjectId commit(String path, byte[] content, String message) throws IOException {
+        return commit(Map.of(path, content), message);
+    }
+
+    /**
+     * Commit new content for files on top of the current head
+     *
+     * @param files The new content of each file, keyed by the path of the file relative to the repository root,
+     *            using / as the separator
+     * @param message The commit message
+     * @return The id of the new commit
+     * @throws IOException If an error occurs reading or writing objects
+     */
+    ObjectId commit(Map<String, byte[]> files, String message) throws IOException {
+        try (ObjectReader reader = source.newObjectReader();
+                RevWalk walk = new RevWalk(reader);
+                ObjectInserter inserter = repo.newObjectInserter()) {
+            Map<String, ObjectId> blobIds = new HashMap<>();
+            for (Map.Entry<String, byte[]> file : files.entrySet()) {
+                blobIds.put(file.getKey(), inserter.insert(Constants.OBJ_BLOB, file.getValue()));
+            }
+            Set<String> replaced = new HashSet<>();
+            ObjectId treeId = replaceInTree(reader, inserter, walk.parseCommit(head).getTree(), "", blobIds,
+                    replaced);
+            for (String path : files.keySet()) {
+                if (!replaced.contains(path)) {
+                    throw new IllegalStateException(String.format("%s is not committed in HEAD", path));
+                }
+            }
+
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(treeId);
+            commit.setParentId(head);
+            commit.setAuthor(person);
+            commit.setCommitter(person);
+            commit.setMessage(message);
+            ObjectId commitId = inserter.insert(commit);
+            inserter.flush();
+
+            updateRef(Constants.R_HEADS + branch, commitId);
+            head = commitId;
+            return commitId;
+        }
+    }
+
+    /**
+     * Create an annotated tag of a commit
+     *
+     * @param name The tag name
+     * @param commit The id of the commit, which is either in the source repository or committed in memory
+     * @param message The tag message
+     * @return The id of the tag object
+     * @throws IOException If an error occurs writing the tag
+     * @throws IllegalStateException If the tag already exists in the source repository
+     */
+    ObjectId tag(String name, ObjectId commit, String message) throws IOException {
+        String refName = Constants.R_TAGS + name;
+        if (source.exactRef(refName) != null) {
+            throw new IllegalStateException(String.format("Tag %s already exists", name));
+        }
+
+        try (ObjectInserter inserter = repo.newObjectInserter()) {
+            TagBuilder tag = new TagBuilder();
+            tag.setTag(name);
+            tag.setObjectId(commit, Constants.OBJ_COMMIT);
+            tag.setTagger(person);
+            tag.setMessage(message);
+            ObjectId tagId = inserter.insert(tag);
+            inserter.flush();
+
+            updateRef(refName, tagId);
+            return tagId;
+        }
+    }
+
+    /**
+     * Get the ref specs that would be used to push the release
+     *
+     * @return The branch ref spec and the forced tags ref spec
+     */
+    List<RefSpec> getPushRefSpecs() {
+        String branchRef = Constants.R_HEADS + branch;
+        return List.of(new RefSpec(branchRef + ":" + branchRef),
+                new RefSpec(Constants.R_TAGS + "*:" + Constants.R_TAGS + "*").setForceUpdate(true));
+    }
+
+    /**
+     * @return The id of the current head, including any in memory commit
+     */
+    ObjectId getHead() {
+        return head;
+    }
+
+    /**
+     * @return The in memory repository holding the new commits, tags and refs
+     */
+    InMemoryRepository getRepository() {
+        return repo;
+    }
+
+    @Override
+    public void close() {
+        repo.close();
+    }
+
+    private void updateRef(String refName, ObjectId id) throws IOException {
+        RefUpdate update = repo.updateRef(refName);
+        update.setNewObjectId(id);
+        RefUpdate.Result result = update.forceUpdate();
+        if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FORCED) {
+            throw new IOException(String.format("Unable to update %s: %s", refName, result));
+        }
+    }
+
+    // Only the trees that contain a replaced file are read and rewritten
+    private static ObjectId replaceInTree(ObjectReader reader, ObjectInserter inserter, ObjectId treeId,
+            String treePath, Map<String, ObjectId> blobIds, Set<String> replaced) throws IOException {
+        TreeFormatter formatter = new TreeFormatter();
+
+        for (CanonicalTreeParser parser = new CanonicalTreeParser(null, reader, treeId); !parser.eof(); parser
+                .next()) {
+            String name = parser.getEntryPathString();
+            String path = treePath + name;
+            FileMode mode = parser.getEntryFileMode();
+
+            if (blobIds.containsKey(path)) {
+                formatter.append(name, mode, blobIds.get(path));
+                replaced.add(path);
+            } else if (mode == FileMode.TREE
+                    && blobIds.keySet().stream().anyMatch(blobPath -> blobPath.startsWith(path + "/"))) {
+                formatter.append(name, mode, replaceInTree(reader, inserter, parser.getEntryObjectId(), path + "/",
+                        blobIds, replaced));
+            } else {
+                formatter.append(name, mode, parser.getEntryObjectId());
+            }
+        }
+
+        return formatter.insertTo(inserter);
+    }
+}
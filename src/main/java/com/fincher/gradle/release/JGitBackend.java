@@ -0,0 +1,517 @@
+package com.fincher.gradle.release;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.eclipse.jgit.api.AddCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.GitCommand;
+import org.eclipse.jgit.api.PushCommand;
+import org.eclipse.jgit.api.TransportCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.Config;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefDatabase;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
+import org.eclipse.jgit.revwalk.ObjectWalk;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.transport.FetchConnection;
+import org.eclipse.jgit.transport.PushResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteConfig;
+import org.eclipse.jgit.transport.SshTransport;
+import org.eclipse.jgit.transport.TagOpt;
+import org.eclipse.jgit.transport.Transport;
+import org.eclipse.jgit.transport.URIish;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.transport.ssh.jsch.JschConfigSessionFactory;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.eclipse.jgit.util.FS;
+
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+
+/**
+ * A git backend that uses JGit
+ *
+ * @author Brian Fincher
+ *
+ */
+class JGitBackend implements GitBackend {
+
+    private final Repository repo;
+    private final Git git;
+    private final MonitorFactory monitors;
+    private final int statusParallelism;
+
+    JGitBackend(Repository repo, Git git, MonitorFactory monitors) {
+        this(repo, git, monitors, 1);
+    }
+
+    /**
+     * Constructs a new JGitBackend
+     *
+     * @param repo The repository
+     * @param git The git object of the repository
+     * @param monitors Creates the progress monitors of long running operations
+     * @param statusParallelism The number of threads that check the working tree for uncommitted changes. The status
+     *            of JGit is used if it is one
+     */
+    JGitBackend(Repository repo, Git git, MonitorFactory monitors, int statusParallelism) {
+        this.repo = repo;
+        this.git = git;
+        this.monitors = monitors;
+        this.statusParallelism = statusParallelism;
+    }
+
+    Repository getRepository() {
+        return repo;
+    }
+
+    @Override
+    public String getBranch() throws IOException {
+        return repo.getBranch();
+    }
+
+    @Override
+    public String getHead() throws IOException {
+        ObjectId head = repo.resolve(Constants.HEAD);
+        return head == null ? null : head.name();
+    }
+
+    @Override
+    public String getTaggedCommit(String name) throws IOException {
+        Ref ref = repo.exactRef(Constants.R_TAGS + name);
+        return ref == null ? null : peel(repo.getRefDatabase(), ref).name();
+    }
+
+    @Override
+    public Map<String, List<String>> getTagsByCommit() throws IOException {
+        Map<String, List<String>> tags = new HashMap<>();
+        addTagsByCommit(repo.getRefDatabase(), tags);
+        return tags;
+    }
+
+    @Override
+    public Set<String> getRemoteTags(String prefix, GitCredentials credentials) throws IOException {
+        if (!hasOrigin()) {
+            return Collections.emptySet();
+        }
+
+        // the ref prefix is sent to the server with protocol v2, so other refs are not advertised
+        String refPrefix = Constants.R_TAGS + prefix;
+        try (Transport transport = openOrigin(credentials);
+                FetchConnection connection = transport.openFetch(Collections.emptyList(), refPrefix)) {
+            Set<String> tags = new HashSet<>();
+            for (Ref ref : connection.getRefs()) {
+                if (ref.getName().startsWith(refPrefix)) {
+                    tags.add(ref.getName().substring(Constants.R_TAGS.length()));
+                }
+            }
+            return tags;
+        }
+    }
+
+    @Override
+    public String fetchBranch(GitCredentials credentials) throws IOException, GitAPIException {
+        if (!hasOrigin()) {
+            return null;
+        }
+
+        String branch = repo.getBranch();
+        String branchRef = Constants.R_HEADS + branch;
+        Ref remoteRef;
+        try (Transport transport = openOrigin(credentials);
+                FetchConnection connection = transport.openFetch(Collections.emptyList(), branchRef)) {
+            remoteRef = connection.getRef(branchRef);
+        }
+        if (remoteRef == null || repo.getObjectDatabase().has(remoteRef.getObjectId())) {
+            return remoteRef == null ? null : remoteRef.getObjectId().name();
+        }
+
+        // JGit offers the tips of the local refs, which include HEAD, as the common commits
+        verifyNotPartialClone();
+        String trackingRef = Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/" + branch;
+        executeTransportCommand(git.fetch().setRemote(Constants.DEFAULT_REMOTE_NAME)
+                .setRefSpecs(new RefSpec("+" + branchRef + ":" + trackingRef)).setTagOpt(TagOpt.NO_TAGS)
+                .setProgressMonitor(monitors.create("fetch", "objects")), credentials);
+        Ref fetched = repo.exactRef(trackingRef);
+        return fetched == null ? null : fetched.getObjectId().name();
+    }
+
+    @Override
+    public String getMergeBase(String commit1, String commit2) throws IOException {
+        try (RevWalk walk = new RevWalk(repo)) {
+            walk.setRevFilter(RevFilter.MERGE_BASE);
+            walk.markStart(walk.parseCommit(ObjectId.fromString(commit1)));
+            walk.markStart(walk.parseCommit(ObjectId.fromString(commit2)));
+            RevCommit base = walk.next();
+            return base == null ? null : base.name();
+        }
+    }
+
+    @Override
+    public boolean isModified(String path, String from, String to) throws IOException {
+        try (RevWalk walk = new RevWalk(repo); TreeWalk treeWalk = new TreeWalk(repo)) {
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(AndTreeFilter.create(PathFilter.create(path), TreeFilter.ANY_DIFF));
+            treeWalk.addTree(walk.parseCommit(ObjectId.fromString(from)).getTree());
+            treeWalk.addTree(walk.parseCommit(ObjectId.fromString(to)).getTree());
+            return treeWalk.next();
+        }
+    }
+
+    @Override
+    public Path getWorkTree() {
+        return repo.getWorkTree().toPath();
+    }
+
+    @Override
+    public Path getGitDir() {
+        return repo.getDirectory() == null ? null : repo.getDirectory().toPath();
+    }
+
+    @Override
+    public boolean isShallow() throws IOException {
+        return !repo.getObjectDatabase().getShallowCommits().isEmpty();
+    }
+
+    @Override
+    public void deepen(int depth, GitCredentials credentials) throws IOException, GitAPIException {
+        verifyNotPartialClone();
+        String branch = repo.getBranch();
+        RefSpec refSpec = new RefSpec(String.format("+%s%s:%s%s/%s", Constants.R_HEADS, branch, Constants.R_REMOTES,
+                Constants.DEFAULT_REMOTE_NAME, branch));
+        executeTransportCommand(git.fetch().setRemote(Constants.DEFAULT_REMOTE_NAME).setRefSpecs(refSpec)
+                .setDepth(depth).setTagOpt(TagOpt.AUTO_FOLLOW).setProgressMonitor(monitors.create("fetch", "objects")),
+                credentials);
+    }
+
+    @Override
+    public void fetchMissingObjects(String since, GitCredentials credentials) {
+        verifyNotPartialClone();
+    }
+
+    @Override
+    public Map<String, Long> getLfsObjects(Collection<String> since, GitCredentials credentials) throws IOException {
+        // JGit cannot fetch the blobs that the filter omitted, so it would fail to read their size
+        verifyNotPartialClone();
+        Map<String, Long> objects = new HashMap<>();
+        ObjectId head = repo.resolve(Constants.HEAD);
+        if (head == null) {
+            return objects;
+        }
+
+        // like git rev-list --objects, each blob that the excluded commits do not reach is returned once
+        try (ObjectWalk walk = new ObjectWalk(repo)) {
+            walk.markStart(walk.parseCommit(head));
+            for (String commit : since) {
+                walk.markUninteresting(walk.parseCommit(ObjectId.fromString(commit)));
+            }
+            while (walk.next() != null) {
+                // the trees of the commits are walked once every commit is known
+            }
+
+            ObjectReader reader = walk.getObjectReader();
+            RevObject object;
+            while ((object = walk.nextObject()) != null) {
+                if (object.getType() == Constants.OBJ_BLOB
+                        && reader.getObjectSize(object, Constants.OBJ_BLOB) <= LfsObjects.MAX_POINTER_SIZE) {
+                    LfsObjects.Pointer pointer = LfsObjects
+                            .parsePointer(reader.open(object, Constants.OBJ_BLOB).getCachedBytes());
+                    if (pointer != null) {
+                        objects.put(pointer.getOid(), pointer.getSize());
+                    }
+                }
+            }
+        }
+        return objects;
+    }
+
+    @Override
+    public URI getLfsEndpoint() throws IOException {
+        if (!hasOrigin()) {
+            return null;
+        }
+
+        FileBasedConfig lfsConfig = new FileBasedConfig(new File(repo.getWorkTree(), ".lfsconfig"), repo.getFS());
+        try {
+            lfsConfig.load();
+        } catch (ConfigInvalidException e) {
+            throw new IOException(e);
+        }
+
+        // the configuration of the repository overrides .lfsconfig
+        String lfsUrl = null;
+        for (Config config : List.of(repo.getConfig(), lfsConfig)) {
+            if (lfsUrl == null) {
+                lfsUrl = config.getString("lfs", null, ConfigConstants.CONFIG_KEY_URL);
+            }
+        }
+        for (Config config : List.of(repo.getConfig(), lfsConfig)) {
+            if (lfsUrl == null) {
+                lfsUrl = config.getString(ConfigConstants.CONFIG_REMOTE_SECTION, Constants.DEFAULT_REMOTE_NAME,
+                        "lfsurl");
+            }
+        }
+        return LfsObjects.getEndpoint(lfsUrl, repo.getConfig().getString(ConfigConstants.CONFIG_REMOTE_SECTION,
+                Constants.DEFAULT_REMOTE_NAME, ConfigConstants.CONFIG_KEY_URL), getWorkTree());
+    }
+
+    /**
+     * Add the tags of a ref database to a map of tag names keyed by commit id
+     *
+     * @param refs The ref database
+     * @param tags The map to which the tags are added
+     * @throws IOException If an error occurs reading the tags
+     */
+    static void addTagsByCommit(RefDatabase refs, Map<String, List<String>> tags) throws IOException {
+        // packed refs are already peeled, so only loose annotated tags are read from the object database
+        for (Ref ref : refs.getRefsByPrefix(Constants.R_TAGS)) {
+            tags.computeIfAbsent(peel(refs, ref).name(), commit -> new ArrayList<>())
+                    .add(ref.getName().substring(Constants.R_TAGS.length()));
+        }
+    }
+
+    /**
+     * Get the id of the object that a ref ultimately points to
+     *
+     * @param refs The ref database containing the ref
+     * @param ref The ref
+     * @return The peeled object id or the object id if the ref does not point to an annotated tag
+     * @throws IOException If an error occurs reading the ref
+     */
+    static ObjectId peel(RefDatabase refs, Ref ref) throws IOException {
+        Ref peeled = ref.isPeeled() ? ref : refs.peel(ref);
+        return peeled.getPeeledObjectId() == null ? peeled.getObjectId() : peeled.getPeeledObjectId();
+    }
+
+    @Override
+    public void verifyNoUncommitedChanges() throws IOException, GitAPIException {
+        WorkingTreeStatus.verifyNoUncommitedChanges(git, monitors.create("status", "files"), statusParallelism);
+    }
+
+    @Override
+    public String commit(Map<String, byte[]> files, String message) throws IOException, GitAPIException {
+        AddCommand add = git.add();
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            Files.write(getWorkTree().resolve(file.getKey()), file.getValue());
+            add.addFilepattern(file.getKey());
+        }
+        add.call();
+        return git.commit().setMessage(message).call().name();
+    }
+
+    @Override
+    public void tag(String name, String commit, String message) throws IOException, GitAPIException {
+        git.tag().setMessage(message).setName(name).setAnnotated(true)
+                .setObjectId(repo.parseCommit(ObjectId.fromString(commit))).call();
+    }
+
+    @Override
+    public void addNote(String commit, String message) throws IOException, GitAPIException {
+        try (RevWalk walk = new RevWalk(repo)) {
+            git.notesAdd().setNotesRef(NOTES_REF).setObjectId(walk.parseCommit(ObjectId.fromString(commit)))
+                    .setMessage(message).call();
+        }
+    }
+
+    @Override
+    public List<String> push(GitCredentials credentials) throws IOException, GitAPIException {
+        StoredConfig config = repo.getConfig();
+        Objects.requireNonNull(config, "config is null");
+        String branch = repo.getBranch();
+        config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, branch, "remote", "origin");
+        config.setString(ConfigConstants.CONFIG_BRANCH_SECTION, branch, "merge", "refs/heads/" + branch);
+        config.save();
+
+        List<String> results = new ArrayList<>();
+        executePushCommand(git.push(), credentials, branch, results);
+        executePushCommand(git.push().setPushTags().setForce(true), credentials, branch, results);
+        if (repo.exactRef(NOTES_REF) != null) {
+            executePushCommand(git.push().add(NOTES_REF), credentials, branch, results);
+        }
+        return results;
+    }
+
+    /**
+     * Determine whether a repository is a partial clone, whose objects were fetched with a filter that omitted some of
+     * them
+     *
+     * @param config The configuration of the repository
+     * @return True if the repository is a partial clone
+     */
+    static boolean isPartialClone(Config config) {
+        return config.getString("extensions", null, "partialclone") != null || config
+                .getBoolean(ConfigConstants.CONFIG_REMOTE_SECTION, Constants.DEFAULT_REMOTE_NAME, "promisor", false);
+    }
+
+    private boolean hasOrigin() {
+        return repo.getConfig().getSubsections(ConfigConstants.CONFIG_REMOTE_SECTION)
+                .contains(Constants.DEFAULT_REMOTE_NAME);
+    }
+
+    private Transport openOrigin(GitCredentials credentials) throws IOException {
+        try {
+            Transport transport = Transport.open(repo, Constants.DEFAULT_REMOTE_NAME);
+            if (credentials.isSsh()) {
+                configureSsh(transport, credentials);
+            } else if (credentials.getUsername() != null) {
+                transport.setCredentialsProvider(new UsernamePasswordCredentialsProvider(credentials.getUsername(),
+                        credentials.getPassword()));
+            }
+            return transport;
+        } catch (URISyntaxException e) {
+            throw new IOException(e);
+        }
+    }
+
+    // JGit reads a partial clone, but it does not write the promisor packs that mark the objects fetched from a
+    // promisor remote, so a fetch would either fetch every blob or leave objects that native git cannot account for
+    private void verifyNotPartialClone() {
+        if (isPartialClone(repo.getConfig())) {
+            throw new IllegalStateException(String.format(
+                    "Unable to fetch into the partial clone %s with JGit. Use the native git backend instead",
+                    repo.getDirectory()));
+        }
+    }
+
+    private void executePushCommand(PushCommand command, GitCredentials credentials, String branch,
+            List<String> results) throws GitAPIException {
+        command.setProgressMonitor(monitors.create("push", "objects"));
+        Iterable<PushResult> pushResult = executeTransportCommand(command, credentials);
+        pushResult.forEach(result -> results.add(String.format("%s %s branch: %s updates: %s",
+                result.getMessages(),
+                result.getURI(),
+                branch,
+                result.getRemoteUpdates())));
+    }
+
+    @SuppressWarnings("rawtypes")
+    private <T> T executeTransportCommand(TransportCommand<? extends GitCommand, T> command,
+            GitCredentials credentials) throws GitAPIException {
+
+        if (credentials.isSsh()) {
+            return executeTransportCommandSsh(command, credentials);
+        }
+
+        if (credentials.getUsername() != null) {
+            command.setCredentialsProvider(new UsernamePasswordCredentialsProvider(credentials.getUsername(),
+                    credentials.getPassword()));
+        }
+
+        return command.call();
+    }
+
+    @SuppressWarnings("rawtypes")
+    private <T> T executeTransportCommandSsh(TransportCommand<? extends GitCommand, T> command,
+            GitCredentials credentials) throws GitAPIException {
+        command.setTransportConfigCallback(transport -> configureSsh(transport, credentials));
+        return command.call();
+    }
+
+    private void configureSsh(Transport transport, GitCredentials credentials) {
+        SshTransport sshTransport = (SshTransport) transport;
+        sshTransport.setSshSessionFactory(new CustomSshSessionFactory(credentials));
+
+        JSch.setConfig("StrictHostKeyChecking", "no");
+    }
+
+    private class CustomSshSessionFactory extends JschConfigSessionFactory {
+
+        private final String privateKeyFile;
+        private final byte[] privateKey;
+        private final String passphrase;
+
+        CustomSshSessionFactory(GitCredentials credentials) {
+            passphrase = credentials.getSshPassphrase();
+
+            if (credentials.getSshPrivateKeyFile() != null) {
+                privateKeyFile = credentials.getSshPrivateKeyFile().toPath().toString();
+                privateKey = null;
+            } else {
+                privateKey = credentials.getSshPrivateKey().getBytes();
+                privateKeyFile = null;
+            }
+        }
+
+        @Override
+        protected JSch createDefaultJSch(FS fs) throws JSchException {
+            JSch defaultJSch = super.createDefaultJSch(fs);
+            try {
+                defaultJSch.setKnownHosts(getSshKey());
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+                throw new JSchException(ie.getMessage(), ie);
+            } catch (IOException | GitAPIException e) {
+                throw new JSchException(e.getMessage(), e);
+            }
+
+            if (privateKeyFile != null) {
+                if (passphrase == null) {
+                    defaultJSch.addIdentity(privateKeyFile);
+                } else {
+                    defaultJSch.addIdentity(privateKeyFile, passphrase);
+                }
+            } else {
+                if (passphrase == null) {
+                    defaultJSch.addIdentity("key", privateKey, (byte[]) null, null);
+                } else {
+                    defaultJSch.addIdentity("key", privateKey, (byte[]) null, passphrase.getBytes());
+                }
+            }
+
+            return defaultJSch;
+        }
+
+        private InputStream getSshKey() throws IOException, GitAPIException, InterruptedException {
+            java.util.Optional<URIish> uri =
+                    git.remoteList().call().stream()
+                            .filter(remote -> remote.getName().equals("origin"))
+                            .map(RemoteConfig::getURIs)
+                            .map(list -> list.iterator().next())
+                            .findFirst();
+
+            if (uri.isPresent()) {
+                uri.get().getHost();
+                final String[] keyscanCommand = { "ssh-keyscan", uri.get().getHost() };
+                final Process p = new ProcessBuilder(keyscanCommand).start();
+                p.waitFor();
+                if (p.exitValue() == 0) {
+                    return p.getInputStream();
+                } else {
+                    throw new AssertionError("Bad return code from ssh-keyscan");
+                }
+            } else {
+                throw new AssertionError("Unable to find remote host");
+            }
+        }
+    }
+}
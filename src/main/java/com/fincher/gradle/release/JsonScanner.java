@@ -0,0 +1,228 @@
+package com.fincher.gradle.release;
+
+import java.util.Collection;
+
+/**
+ * Finds the string values at a set of paths in a JSON document in a single pass, without building a model of the
+ * document. A path is the slash separated member names from the root object, for example <code>version</code> or
+ * <code>engines/plugin</code>. The elements of an array are named by their index. The location of each value is
+ * reported rather than the value itself, so that a value can be replaced without otherwise changing the document, and
+ * {@link #decode(CharSequence, int, int)} returns the value with its escape sequences decoded
+ *
+ * @author Brian Fincher
+ *
+ */
+final class JsonScanner {
+
+    /** Receives the location of each string value found by a scan */
+    @FunctionalInterface
+    interface StringListener {
+
+        /**
+         * A string value at one of the paths was found
+         *
+         * @param path The path of the value
+         * @param start The offset of the first character of the value, excluding the quotes
+         * @param end The offset after the last character of the value, excluding the quotes
+         */
+        void value(String path, int start, int end);
+    }
+
+    private final CharSequence content;
+    private final Collection<String> paths;
+    private final StringListener listener;
+    private int pos;
+
+    private JsonScanner(CharSequence content, Collection<String> paths, StringListener listener) {
+        this.content = content;
+        this.paths = paths;
+        this.listener = listener;
+    }
+
+    /**
+     * Scan a JSON document for the string values at a set of paths
+     *
+     * @param content The JSON document
+     * @param paths The paths of the values to find
+     * @param listener Receives the location of each value that is found
+     * @throws IllegalStateException If the content is not a JSON document
+     */
+    static void scan(CharSequence content, Collection<String> paths, StringListener listener) {
+        JsonScanner scanner = new JsonScanner(content, paths, listener);
+        scanner.value("");
+        scanner.skipWhitespace();
+        if (scanner.pos != content.length()) {
+            throw scanner.error("Unexpected content");
+        }
+    }
+
+    /**
+     * Decode the escape sequences of a string value
+     *
+     * @param content The JSON document
+     * @param start The offset of the first character of the value, excluding the quotes
+     * @param end The offset after the last character of the value, excluding the quotes
+     * @return The value
+     * @throws IllegalStateException If the value has an invalid escape sequence
+     */
+    static String decode(CharSequence content, int start, int end) {
+        StringBuilder value = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            char c = content.charAt(i++);
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= end) {
+                throw new IllegalStateException(String.format("Incomplete escape sequence at offset %d", i - 1));
+            }
+
+            char escaped = content.charAt(i++);
+            switch (escaped) {
+            case 'b':
+                value.append('\b');
+                break;
+            case 'f':
+                value.append('\f');
+                break;
+            case 'n':
+                value.append('\n');
+                break;
+            case 'r':
+                value.append('\r');
+                break;
+            case 't':
+                value.append('\t');
+                break;
+            case 'u':
+                if (i + 4 > end) {
+                    throw new IllegalStateException(
+                            String.format("Incomplete escape sequence at offset %d", i - 2));
+                }
+                try {
+                    value.append((char) Integer.parseInt(content.subSequence(i, i + 4).toString(), 16));
+                } catch (NumberFormatException e) {
+                    throw new IllegalStateException(String.format("Invalid escape sequence at offset %d", i - 2),
+                            e);
+                }
+                i += 4;
+                break;
+            default:
+                // a quote, backslash or slash is escaped by itself
+                value.append(escaped);
+            }
+        }
+        return value.toString();
+    }
+
+    private void value(String path) {
+        skipWhitespace();
+        if (pos >= content.length()) {
+            throw error("Unexpected end of document");
+        }
+
+        char c = content.charAt(pos);
+        if (c == '{') {
+            object(path);
+        } else if (c == '[') {
+            array(path);
+        } else if (c == '"') {
+            int start = pos + 1;
+            string();
+            if (paths.contains(path)) {
+                listener.value(path, start, pos - 1);
+            }
+        } else {
+            // numbers, booleans and null
+            while (pos < content.length() && ",]} \t\r\n".indexOf(content.charAt(pos)) < 0) {
+                pos++;
+            }
+        }
+    }
+
+    private void object(String path) {
+        pos++;
+        skipWhitespace();
+        if (peek() == '}') {
+            pos++;
+            return;
+        }
+
+        while (true) {
+            skipWhitespace();
+            if (peek() != '"') {
+                throw error("Expected a member name");
+            }
+            int start = pos + 1;
+            string();
+            String name = decode(content, start, pos - 1);
+            skipWhitespace();
+            expect(':');
+            value(path.isEmpty() ? name : path + "/" + name);
+            skipWhitespace();
+            if (peek() == '}') {
+                pos++;
+                return;
+            }
+            expect(',');
+        }
+    }
+
+    private void array(String path) {
+        pos++;
+        skipWhitespace();
+        if (peek() == ']') {
+            pos++;
+            return;
+        }
+
+        for (int index = 0;; index++) {
+            value(path.isEmpty() ? String.valueOf(index) : path + "/" + index);
+            skipWhitespace();
+            if (peek() == ']') {
+                pos++;
+                return;
+            }
+            expect(',');
+        }
+    }
+
+    // Leaves the position after the closing quote
+    private void string() {
+        pos++;
+        while (pos < content.length()) {
+            char c = content.charAt(pos++);
+            if (c == '\\') {
+                pos++;
+            } else if (c == '"') {
+                return;
+            }
+        }
+        throw error("Unterminated string");
+    }
+
+    private void skipWhitespace() {
+        while (pos < content.length() && Character.isWhitespace(content.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private char peek() {
+        if (pos >= content.length()) {
+            throw error("Unexpected end of document");
+        }
+        return content.charAt(pos);
+    }
+
+    private void expect(char c) {
+        if (peek() != c) {
+            throw error(String.format("Expected '%c'", c));
+        }
+        pos++;
+    }
+
+    private IllegalStateException error(String message) {
+        return new IllegalStateException(String.format("%s at offset %d of the JSON document", message, pos));
+    }
+}
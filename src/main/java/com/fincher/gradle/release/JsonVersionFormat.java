@@ -0,0 +1,19 @@
+package com.fincher.gradle.release;
+
+import java.util.List;
+
+/**
+ * Finds versions in the string values of a JSON document, such as a package.json. A key is the slash separated path
+ * of member names from the root object, for example <code>version</code> or <code>engines/plugin</code>. The elements
+ * of an array are named by their index
+ *
+ * @author Brian Fincher
+ *
+ */
+class JsonVersionFormat implements VersionFormat {
+
+    @Override
+    public void scan(CharSequence content, List<String> keys, ValueListener listener) {
+        JsonScanner.scan(content, keys, listener::value);
+    }
+}
@@ -0,0 +1,273 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.lib.Config;
+
+/**
+ * Reads Git LFS pointer files and verifies that the LFS objects they reference are stored by the LFS server of
+ * origin. The objects are checked in batches through the
+ * <a href="https://github.com/git-lfs/git-lfs/blob/main/docs/api/batch.md">batch API</a>, so nothing is uploaded or
+ * downloaded. An origin that is a local repository stores its LFS objects in the <code>lfs/objects</code> directory of
+ * its git directory, which is checked directly
+ *
+ * @author Brian Fincher
+ *
+ */
+final class LfsObjects {
+
+    /** The pointer files written by git-lfs are well below this size, so the content of larger blobs is not read */
+    static final int MAX_POINTER_SIZE = 1024;
+
+    // the current version and the pre-release version that git-lfs still reads
+    private static final Pattern POINTER_PATTERN = Pattern.compile(
+            "version https://(?:git-lfs\\.github\\.com/spec/v1|hawser\\.github\\.com/spec/v1)\n"
+                    + "(?:ext-[0-9]-[a-z0-9]+ sha256:[0-9a-f]{64}\n)*"
+                    + "oid sha256:([0-9a-f]{64})\nsize ([0-9]+)\n");
+    private static final String MEDIA_TYPE = "application/vnd.git-lfs+json";
+    // the batch size of git-lfs, which servers are expected to accept
+    private static final int BATCH_SIZE = 100;
+    private static final Duration TIMEOUT = Duration.ofSeconds(30);
+
+    /** The object that a pointer file references */
+    static final class Pointer {
+        private final String oid;
+        private final long size;
+
+        Pointer(String oid, long size) {
+            this.oid = oid;
+            this.size = size;
+        }
+
+        /**
+         * @return The SHA-256 of the object in lower case hex
+         */
+        String getOid() {
+            return oid;
+        }
+
+        /**
+         * @return The size of the object
+         */
+        long getSize() {
+            return size;
+        }
+    }
+
+    private LfsObjects() {
+    }
+
+    /**
+     * Parse the content of a blob as an LFS pointer file
+     *
+     * @param content The content of the blob
+     * @return The pointer or null if the content is not a pointer file
+     */
+    static Pointer parsePointer(byte[] content) {
+        if (content.length > MAX_POINTER_SIZE) {
+            return null;
+        }
+        Matcher m = POINTER_PATTERN.matcher(new String(content, StandardCharsets.UTF_8));
+        if (!m.matches()) {
+            return null;
+        }
+        try {
+            return new Pointer(m.group(1), Long.parseLong(m.group(2)));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Determine whether the LFS filter is configured, in which case git replaces the content of the files tracked by
+     * LFS with pointer files when they are added, and the reverse when they are checked out
+     *
+     * @param config The configuration of the repository, including the user and system configuration
+     * @return True if the LFS filter is configured
+     */
+    static boolean isFilterConfigured(Config config) {
+        return config.getString("filter", "lfs", "clean") != null
+                || config.getString("filter", "lfs", "process") != null;
+    }
+
+    /**
+     * Get the LFS endpoint of origin in the same way as git-lfs. An explicit URL is used as is. Otherwise the endpoint
+     * is derived from the URL of origin, where an SSH URL is served by HTTPS on the same host
+     *
+     * @param lfsUrl The value of <code>lfs.url</code> or <code>remote.origin.lfsurl</code>, or null if neither is set
+     * @param remoteUrl The URL of origin or null if there is no origin
+     * @param workTree The directory relative to which a local path of origin is resolved
+     * @return The endpoint or null if there is no origin
+     */
+    static URI getEndpoint(String lfsUrl, String remoteUrl, Path workTree) {
+        if (lfsUrl != null) {
+            return URI.create(lfsUrl);
+        }
+        if (remoteUrl == null) {
+            return null;
+        }
+
+        Matcher scp = Pattern.compile("^(?:[^@/]+@)?([^:/]+):(?!//)(.*)$").matcher(remoteUrl);
+        if (remoteUrl.matches("^[A-Za-z][A-Za-z0-9+.-]*://.*")) {
+            URI uri = URI.create(remoteUrl);
+            if ("file".equals(uri.getScheme())) {
+                return Paths.get(uri).toUri();
+            }
+            String scheme = "http".equals(uri.getScheme()) ? "http" : "https";
+            int port = scheme.equals(uri.getScheme()) ? uri.getPort() : -1;
+            return createUri(scheme, uri.getHost(), port, uri.getPath());
+        } else if (scp.matches() && !Files.exists(workTree.resolve(remoteUrl))) {
+            return createUri("https", scp.group(1), -1, "/" + scp.group(2));
+        }
+        return workTree.resolve(remoteUrl).toAbsolutePath().normalize().toUri();
+    }
+
+    /**
+     * Verify that the LFS server of origin stores every one of a set of objects
+     *
+     * @param endpoint The LFS endpoint of origin
+     * @param objects The size of each object, keyed by its SHA-256
+     * @param credentials The credentials used to authenticate with origin. Only a username and password are sent
+     * @throws IOException If an error occurs contacting the server
+     * @throws IllegalStateException If any of the objects is missing
+     */
+    static void verifyPresent(URI endpoint, Map<String, Long> objects, GitCredentials credentials)
+            throws IOException {
+        List<String> missing = findMissing(endpoint, objects, credentials);
+        if (!missing.isEmpty()) {
+            throw new IllegalStateException(String.format(
+                    "Unable to push the release because %d LFS objects are missing from %s, including %s. "
+                            + "Push them with git lfs push --all origin",
+                    missing.size(), endpoint, String.join(", ", missing.subList(0, Math.min(5, missing.size())))));
+        }
+    }
+
+    /**
+     * Find the objects that the LFS server of origin does not store
+     *
+     * @param endpoint The LFS endpoint of origin
+     * @param objects The size of each object, keyed by its SHA-256
+     * @param credentials The credentials used to authenticate with origin. Only a username and password are sent
+     * @return The SHA-256 of each missing object
+     * @throws IOException If an error occurs contacting the server
+     */
+    static List<String> findMissing(URI endpoint, Map<String, Long> objects, GitCredentials credentials)
+            throws IOException {
+        List<String> missing = new ArrayList<>();
+        if ("file".equals(endpoint.getScheme())) {
+            Path lfsDir = findGitDir(Paths.get(endpoint)).resolve("lfs/objects");
+            for (String oid : objects.keySet()) {
+                Path object = lfsDir.resolve(oid.substring(0, 2)).resolve(oid.substring(2, 4)).resolve(oid);
+                if (!Files.isRegularFile(object) || Files.size(object) != objects.get(oid)) {
+                    missing.add(oid);
+                }
+            }
+            return missing;
+        }
+
+        HttpClient client = HttpClient.newBuilder().connectTimeout(TIMEOUT)
+                .followRedirects(HttpClient.Redirect.NORMAL).build();
+        List<Map.Entry<String, Long>> entries = new ArrayList<>(objects.entrySet());
+        for (int i = 0; i < entries.size(); i += BATCH_SIZE) {
+            List<Map.Entry<String, Long>> batch = entries.subList(i, Math.min(i + BATCH_SIZE, entries.size()));
+            Set<String> present = requestBatch(client, endpoint, batch, credentials);
+            batch.stream().map(Map.Entry::getKey).filter(oid -> !present.contains(oid)).forEach(missing::add);
+        }
+        return missing;
+    }
+
+    // A download request returns an action for each object that the server stores and an error for each other object
+    private static Set<String> requestBatch(HttpClient client, URI endpoint, List<Map.Entry<String, Long>> batch,
+            GitCredentials credentials) throws IOException {
+        StringBuilder body = new StringBuilder("{\"operation\":\"download\",\"transfers\":[\"basic\"],\"objects\":[");
+        for (int i = 0; i < batch.size(); i++) {
+            body.append(i == 0 ? "" : ",").append(String.format("{\"oid\":\"%s\",\"size\":%d}",
+                    batch.get(i).getKey(), batch.get(i).getValue()));
+        }
+        body.append("]}");
+
+        String base = endpoint.toString();
+        HttpRequest.Builder request = HttpRequest
+                .newBuilder(URI.create(base + (base.endsWith("/") ? "" : "/") + "objects/batch"))
+                .timeout(TIMEOUT).header("Accept", MEDIA_TYPE).header("Content-Type", MEDIA_TYPE)
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8));
+        if (credentials.getUsername() != null) {
+            String userInfo = credentials.getUsername() + ":" + credentials.getPassword();
+            request.header("Authorization",
+                    "Basic " + Base64.getEncoder().encodeToString(userInfo.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        HttpResponse<String> response;
+        try {
+            response = client.send(request.build(), HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while checking the LFS objects on " + endpoint);
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException(String.format("The LFS batch request to %s failed with HTTP status %d: %s", endpoint,
+                    response.statusCode(), response.body()));
+        }
+
+        Set<String> paths = new HashSet<>();
+        for (int i = 0; i < batch.size(); i++) {
+            paths.add("objects/" + i + "/oid");
+            paths.add("objects/" + i + "/actions/download/href");
+        }
+        String content = response.body();
+        Map<String, String> oids = new HashMap<>();
+        Set<String> present = new HashSet<>();
+        try {
+            JsonScanner.scan(content, paths, (path, start, end) -> {
+                String object = path.substring(0, path.indexOf('/', "objects/".length()));
+                if (path.endsWith("/oid")) {
+                    oids.put(object, JsonScanner.decode(content, start, end));
+                } else {
+                    present.add(object);
+                }
+            });
+        } catch (IllegalStateException e) {
+            throw new IOException(String.format("The LFS batch response of %s is not valid JSON: %s", endpoint,
+                    e.getMessage()), e);
+        }
+        Set<String> result = new HashSet<>();
+        present.stream().map(oids::get).forEach(result::add);
+        return result;
+    }
+
+    // The git directory of a local repository, which is the repository itself if it is bare
+    private static Path findGitDir(Path repository) {
+        Path dotGit = repository.resolve(".git");
+        return Files.isDirectory(dotGit) ? dotGit : repository;
+    }
+
+    private static URI createUri(String scheme, String host, int port, String path) {
+        String lfsPath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+        lfsPath = (lfsPath.endsWith(".git") ? lfsPath : lfsPath + ".git") + "/info/lfs";
+        try {
+            return new URI(scheme, null, host, port, lfsPath, null, null);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException(String.format("Unable to derive the LFS endpoint of %s", host), e);
+        }
+    }
+}
@@ -0,0 +1,663 @@
+package com.fincher.gradle.release;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+/**
+ * A git backend that runs the native git executable. On very large repositories this allows the release to benefit
+ * from native git features such as fsmonitor, the untracked cache and protocol v2. The output of each git process is
+ * parsed as it is streamed. The progress that git reports on stderr is forwarded to a JGit progress monitor
+ *
+ * @author Brian Fincher
+ *
+ */
+class NativeGitBackend implements GitBackend {
+
+    // For example "Writing objects:  45% (9/20), 1.20 MiB | 2.00 MiB/s"
+    private static final Pattern PROGRESS_PATTERN = Pattern
+            .compile("^(?:remote: )?([A-Za-z][A-Za-z ]*):\\s+\\d+% \\((\\d+)/(\\d+)\\)");
+    private static final int MAX_MESSAGES = 100;
+    // keeps the command line of each fetch of missing objects well below the limit of the operating system
+    private static final int MAX_FETCHED_OBJECTS = 1000;
+
+    private final Path workTree;
+    private final String executable;
+    private final MonitorFactory monitors;
+
+    /**
+     * Constructs a new NativeGitBackend
+     *
+     * @param workTree The root of the working tree
+     * @param executable The git executable
+     * @param monitors Creates the monitors that receive the progress reported by git
+     */
+    NativeGitBackend(Path workTree, String executable, MonitorFactory monitors) {
+        this.workTree = workTree;
+        this.executable = executable;
+        this.monitors = monitors;
+    }
+
+    @Override
+    public String getBranch() throws IOException {
+        return run("rev-parse", "--abbrev-ref", "HEAD").get(0);
+    }
+
+    @Override
+    public String getHead() throws IOException {
+        List<String> head = runOptional("rev-parse", "-q", "--verify", "HEAD^{commit}");
+        return head.isEmpty() ? null : head.get(0);
+    }
+
+    @Override
+    public String getTaggedCommit(String name) throws IOException {
+        List<String> commit = runOptional("rev-parse", "-q", "--verify", "refs/tags/" + name + "^{commit}");
+        return commit.isEmpty() ? null : commit.get(0);
+    }
+
+    @Override
+    public Map<String, List<String>> getTagsByCommit() throws IOException {
+        // the peeled object name is empty for lightweight tags
+        Map<String, List<String>> tags = new HashMap<>();
+        for (String line : run("for-each-ref", "--format=%(objectname)%09%(*objectname)%09%(refname:strip=2)",
+                "refs/tags")) {
+            String[] fields = line.split("\t", 3);
+            String commit = fields[1].isEmpty() ? fields[0] : fields[1];
+            tags.computeIfAbsent(commit, c -> new ArrayList<>()).add(fields[2]);
+        }
+        return tags;
+    }
+
+    @Override
+    public Set<String> getRemoteTags(String prefix, GitCredentials credentials) throws IOException {
+        if (runOptional("remote", "get-url", "origin").isEmpty()) {
+            return Collections.emptySet();
+        }
+
+        // protocol v2 sends the pattern to the server as a ref prefix, so other refs are not advertised
+        String refPrefix = "refs/tags/" + prefix;
+        List<Path> tempFiles = new ArrayList<>();
+        try {
+            GitProcess process = new GitProcess(List.of("-c", "protocol.version=2", "ls-remote", "--refs", "origin",
+                    refPrefix + "*"), getCredentialsEnvironment(credentials, tempFiles), NullProgressMonitor.INSTANCE);
+            Set<String> tags = new HashSet<>();
+            process.readStdout(line -> {
+                String ref = line.substring(line.indexOf('\t') + 1);
+                if (ref.startsWith(refPrefix)) {
+                    tags.add(ref.substring("refs/tags/".length()));
+                }
+                return true;
+            });
+            process.waitForSuccess();
+            return tags;
+        } finally {
+            for (Path tempFile : tempFiles) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    @Override
+    public String fetchBranch(GitCredentials credentials) throws IOException {
+        if (runOptional("remote", "get-url", "origin").isEmpty()) {
+            return null;
+        }
+
+        String branch = getBranch();
+        String branchRef = "refs/heads/" + branch;
+        String trackingRef = "refs/remotes/origin/" + branch;
+        List<Path> tempFiles = new ArrayList<>();
+        try {
+            Map<String, String> environment = getCredentialsEnvironment(credentials, tempFiles);
+            GitProcess lsRemote = new GitProcess(List.of("-c", "protocol.version=2", "ls-remote", "origin", branchRef),
+                    environment, NullProgressMonitor.INSTANCE);
+            List<String> remoteHead = new ArrayList<>();
+            lsRemote.readStdout(line -> {
+                if (line.endsWith("\t" + branchRef)) {
+                    remoteHead.add(line.substring(0, line.indexOf('\t')));
+                }
+                return true;
+            });
+            lsRemote.waitForSuccess();
+            if (remoteHead.isEmpty() || !runOptional("rev-parse", "-q", "--verify", remoteHead.get(0) + "^{commit}")
+                    .isEmpty()) {
+                return remoteHead.isEmpty() ? null : remoteHead.get(0);
+            }
+
+            // only the commits of HEAD are offered to origin, rather than the tips of every local ref
+            GitProcess fetch = new GitProcess(List.of("-c", "protocol.version=2", "fetch", "--progress", "--no-tags",
+                    "--negotiation-tip=HEAD", "origin", String.format("+%s:%s", branchRef, trackingRef)), environment,
+                    monitors.create("fetch", "objects"));
+            fetch.readStdout(line -> true);
+            fetch.waitForSuccess();
+            return run("rev-parse", "--verify", trackingRef + "^{commit}").get(0);
+        } finally {
+            for (Path tempFile : tempFiles) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    @Override
+    public String getMergeBase(String commit1, String commit2) throws IOException {
+        // git exits with 1 if there is no common ancestor
+        List<String> base = runOptional("merge-base", commit1, commit2);
+        return base.isEmpty() ? null : base.get(0);
+    }
+
+    @Override
+    public boolean isModified(String path, String from, String to) throws IOException {
+        // diff-tree does not detect renames, which could read the blobs of a partial clone
+        return !run("diff-tree", "-r", "--name-only", from, to, "--", path).isEmpty();
+    }
+
+    @Override
+    public Path getWorkTree() {
+        return workTree;
+    }
+
+    @Override
+    public Path getGitDir() throws IOException {
+        return Paths.get(run("rev-parse", "--absolute-git-dir").get(0));
+    }
+
+    @Override
+    public boolean isShallow() throws IOException {
+        return run("rev-parse", "--is-shallow-repository").get(0).equals("true");
+    }
+
+    @Override
+    public void deepen(int depth, GitCredentials credentials) throws IOException {
+        // tags are only followed when the refspec has a destination
+        String branch = getBranch();
+        fetch(List.of("fetch", "--progress", "--depth=" + depth, "origin",
+                String.format("+refs/heads/%s:refs/remotes/origin/%s", branch, branch)), credentials);
+    }
+
+    @Override
+    public void fetchMissingObjects(String since, GitCredentials credentials) throws IOException {
+        if (findPromisor() == null) {
+            return;
+        }
+
+        List<String> revListArgs = new ArrayList<>(List.of("rev-list", "--objects", "--missing=print", "HEAD"));
+        if (since != null) {
+            revListArgs.add("^" + since);
+        }
+        List<String> missing = new ArrayList<>();
+        GitProcess revList = new GitProcess(revListArgs, Collections.emptyMap(), NullProgressMonitor.INSTANCE);
+        revList.readStdout(line -> {
+            if (line.startsWith("?")) {
+                missing.add(line.substring(1));
+            }
+            return true;
+        });
+        revList.waitForSuccess();
+        fetchObjects(missing, credentials);
+    }
+
+    @Override
+    public Map<String, Long> getLfsObjects(Collection<String> since, GitCredentials credentials) throws IOException {
+        Map<String, Long> objects = new HashMap<>();
+        if (getHead() == null) {
+            return objects;
+        }
+
+        Path input = Files.createTempFile("releaseObjects", null);
+        try {
+            // the excluded commits are read from stdin, so that their number is not limited by the command line. The
+            // filter omits the blobs that are too large to be a pointer file. The size of a blob that the filter of a
+            // partial clone omitted is unknown, so it is listed as missing rather than fetched on its own
+            List<String> revisions = new ArrayList<>(List.of("HEAD"));
+            since.forEach(commit -> revisions.add("^" + commit));
+            Files.write(input, revisions, StandardCharsets.UTF_8);
+            List<String> listed = new ArrayList<>();
+            List<String> missing = new ArrayList<>();
+            for (String line : run(input, "rev-list", "--objects", "--no-object-names", "--missing=print",
+                    "--filter=blob:limit=" + (LfsObjects.MAX_POINTER_SIZE + 1), "--stdin")) {
+                if (line.startsWith("?")) {
+                    missing.add(line.substring(1));
+                } else {
+                    listed.add(line);
+                }
+            }
+            fetchObjects(missing, credentials);
+            listed.addAll(missing);
+
+            Files.write(input, listed, StandardCharsets.UTF_8);
+            List<String> blobs = new ArrayList<>();
+            // the fetched blobs were not filtered by size
+            for (String line : run(input, "cat-file", "--batch-check=%(objecttype) %(objectname) %(objectsize)")) {
+                String[] fields = line.split(" ");
+                if (fields[0].equals("blob") && Long.parseLong(fields[2]) <= LfsObjects.MAX_POINTER_SIZE) {
+                    blobs.add(fields[1]);
+                }
+            }
+            if (blobs.isEmpty()) {
+                return objects;
+            }
+
+            // each blob is a header line of its id, type and size followed by its content and a newline
+            Files.write(input, blobs, StandardCharsets.UTF_8);
+            GitProcess process = new GitProcess(List.of("cat-file", "--batch"), Collections.emptyMap(),
+                    NullProgressMonitor.INSTANCE, input);
+            byte[] output = process.readStdoutBytes();
+            process.waitForSuccess();
+            for (int pos = 0; pos < output.length;) {
+                int newline = pos;
+                while (output[newline] != '\n') {
+                    newline++;
+                }
+                String[] header = new String(output, pos, newline - pos, StandardCharsets.UTF_8).split(" ");
+                if (header.length < 3) {
+                    // an object that is missing has no content
+                    pos = newline + 1;
+                    continue;
+                }
+                int size = Integer.parseInt(header[2]);
+                byte[] content = new byte[size];
+                System.arraycopy(output, newline + 1, content, 0, size);
+                LfsObjects.Pointer pointer = LfsObjects.parsePointer(content);
+                if (pointer != null) {
+                    objects.put(pointer.getOid(), pointer.getSize());
+                }
+                pos = newline + 1 + size + 1;
+            }
+            return objects;
+        } finally {
+            Files.deleteIfExists(input);
+        }
+    }
+
+    @Override
+    public URI getLfsEndpoint() throws IOException {
+        List<String> remoteUrl = runOptional("remote", "get-url", "origin");
+        if (remoteUrl.isEmpty()) {
+            return null;
+        }
+
+        // the configuration of the repository overrides .lfsconfig
+        String lfsUrl = null;
+        boolean lfsConfig = Files.exists(workTree.resolve(".lfsconfig"));
+        for (String key : List.of("lfs.url", "remote.origin.lfsurl")) {
+            List<String> value = runOptional("config", "--get", key);
+            if (value.isEmpty() && lfsConfig) {
+                value = runOptional("config", "--file", ".lfsconfig", "--get", key);
+            }
+            if (lfsUrl == null && !value.isEmpty()) {
+                lfsUrl = value.get(0);
+            }
+        }
+        return LfsObjects.getEndpoint(lfsUrl, remoteUrl.get(0), workTree);
+    }
+
+    @Override
+    public void verifyNoUncommitedChanges() throws IOException {
+        GitProcess process = new GitProcess(List.of("status", "--porcelain", "--untracked-files=no"),
+                Collections.emptyMap(), NullProgressMonitor.INSTANCE);
+
+        // any output is an uncommitted change, so stop reading at the first line
+        if (process.readStdout(line -> false)) {
+            throw new IllegalStateException("Unable to release with uncommitted changes");
+        }
+        process.waitForSuccess();
+    }
+
+    @Override
+    public String commit(Map<String, byte[]> files, String message) throws IOException {
+        List<String> add = new ArrayList<>(List.of("add", "--"));
+        for (Map.Entry<String, byte[]> file : files.entrySet()) {
+            Files.write(workTree.resolve(file.getKey()), file.getValue());
+            add.add(file.getKey());
+        }
+        run(add.toArray(new String[0]));
+        run("commit", "--quiet", "-m", message);
+        return run("rev-parse", "HEAD").get(0);
+    }
+
+    @Override
+    public void tag(String name, String commit, String message) throws IOException {
+        run("tag", "-a", "-m", message, name, commit);
+    }
+
+    @Override
+    public void addNote(String commit, String message) throws IOException {
+        run("notes", "--ref", NOTES_REF, "add", "--force", "-m", message, commit);
+    }
+
+    @Override
+    public List<String> push(GitCredentials credentials) throws IOException {
+        String branchRef = "refs/heads/" + getBranch();
+        List<Path> tempFiles = new ArrayList<>();
+        try {
+            Map<String, String> environment = getCredentialsEnvironment(credentials, tempFiles);
+            List<String> results = new ArrayList<>();
+            results.addAll(push(List.of("push", "--progress", "--porcelain", "origin", branchRef + ":" + branchRef),
+                    environment));
+            results.addAll(push(List.of("push", "--progress", "--porcelain", "--force", "--tags", "origin"),
+                    environment));
+            if (!runOptional("rev-parse", "--verify", "--quiet", NOTES_REF).isEmpty()) {
+                results.addAll(push(List.of("push", "--progress", "--porcelain", "origin",
+                        NOTES_REF + ":" + NOTES_REF), environment));
+            }
+            return results;
+        } finally {
+            for (Path tempFile : tempFiles) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    private List<String> push(List<String> args, Map<String, String> environment) throws IOException {
+        GitProcess process = new GitProcess(args, environment, monitors.create("push", "objects"));
+        List<String> results = new ArrayList<>();
+        process.readStdout(line -> {
+            if (!line.equals("Done")) {
+                results.add(line);
+            }
+            return true;
+        });
+        process.waitForSuccess();
+        return results;
+    }
+
+    /**
+     * Get the names of the local branches
+     *
+     * @return The branch names, without the refs/heads/ prefix
+     * @throws IOException If git fails
+     */
+    List<String> getBranches() throws IOException {
+        return run("for-each-ref", "--format=%(refname:strip=2)", "refs/heads");
+    }
+
+    /**
+     * Check out a branch in a linked working tree that shares the object database of this repository. Working trees
+     * whose directories have been deleted are pruned first
+     *
+     * @param dir The directory of the new working tree
+     * @param branch The branch to check out
+     * @throws IOException If git fails, for example if the branch is checked out in another working tree
+     */
+    void addWorktree(Path dir, String branch) throws IOException {
+        run("worktree", "prune");
+        run("worktree", "add", "--quiet", dir.toString(), branch);
+    }
+
+    private void fetch(List<String> args, GitCredentials credentials) throws IOException {
+        List<Path> tempFiles = new ArrayList<>();
+        try {
+            GitProcess process = new GitProcess(args, getCredentialsEnvironment(credentials, tempFiles),
+                    monitors.create("fetch", "objects"));
+            process.readStdout(line -> true);
+            process.waitForSuccess();
+        } finally {
+            for (Path tempFile : tempFiles) {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+    }
+
+    // The promisor remote of a partial clone, or null if the repository is not a partial clone
+    private String findPromisor() throws IOException {
+        // older versions of git name the promisor remote in an extension
+        List<String> promisor = runOptional("config", "--get", "extensions.partialClone");
+        if (promisor.isEmpty() && runOptional("config", "--bool", "--get", "remote.origin.promisor").contains("true")) {
+            return "origin";
+        }
+        return promisor.isEmpty() ? null : promisor.get(0);
+    }
+
+    // The same fetch that git runs to lazily fetch a missing object, but of many objects at once
+    private void fetchObjects(List<String> objects, GitCredentials credentials) throws IOException {
+        String promisor = objects.isEmpty() ? null : findPromisor();
+        if (promisor == null) {
+            return;
+        }
+        for (int i = 0; i < objects.size(); i += MAX_FETCHED_OBJECTS) {
+            List<String> args = new ArrayList<>(List.of("-c", "fetch.negotiationAlgorithm=noop", "fetch", "--progress",
+                    "--no-tags", "--no-write-fetch-head", "--recurse-submodules=no", "--filter=blob:none", promisor));
+            args.addAll(objects.subList(i, Math.min(i + MAX_FETCHED_OBJECTS, objects.size())));
+            fetch(args, credentials);
+        }
+    }
+
+    private List<String> run(String... args) throws IOException {
+        return run(null, args);
+    }
+
+    // Runs git with stdin read from a file, or from nothing if the file is null
+    private List<String> run(Path input, String... args) throws IOException {
+        GitProcess process = new GitProcess(List.of(args), Collections.emptyMap(), NullProgressMonitor.INSTANCE,
+                input);
+        List<String> stdout = new ArrayList<>();
+        process.readStdout(stdout::add);
+        process.waitForSuccess();
+        return stdout;
+    }
+
+    // Returns no output instead of failing if git exits with a non-zero exit code
+    private List<String> runOptional(String... args) throws IOException {
+        GitProcess process = new GitProcess(List.of(args), Collections.emptyMap(), NullProgressMonitor.INSTANCE);
+        List<String> stdout = new ArrayList<>();
+        process.readStdout(stdout::add);
+        return process.waitFor() == 0 ? stdout : Collections.emptyList();
+    }
+
+    private static Map<String, String> getCredentialsEnvironment(GitCredentials credentials, List<Path> tempFiles)
+            throws IOException {
+        Map<String, String> environment = new HashMap<>();
+        environment.put("GIT_TERMINAL_PROMPT", "0");
+
+        if (credentials.getSshPassphrase() != null) {
+            throw new IllegalStateException("An SSH passphrase is not supported by the native git backend. "
+                    + "Add the key to an ssh-agent instead");
+        }
+
+        if (credentials.isSsh()) {
+            Path keyFile;
+            if (credentials.getSshPrivateKeyFile() != null) {
+                keyFile = credentials.getSshPrivateKeyFile().toPath();
+            } else {
+                keyFile = createPrivateTempFile("releaseKey", "rw-------");
+                tempFiles.add(keyFile);
+                Files.writeString(keyFile, credentials.getSshPrivateKey());
+            }
+            // Matches the JGit backend, which also does not check host keys
+            environment.put("GIT_SSH_COMMAND", String.format(
+                    "ssh -i '%s' -o IdentitiesOnly=yes -o StrictHostKeyChecking=no",
+                    keyFile.toAbsolutePath().toString().replace("'", "'\\''")));
+        } else if (credentials.getUsername() != null) {
+            // The credentials are passed through the environment so they never appear on a command line
+            Path askPass = createPrivateTempFile("releaseAskPass", "rwx------");
+            tempFiles.add(askPass);
+            Files.writeString(askPass, "#!/bin/sh\n"
+                    + "case \"$1\" in\n"
+                    + "  Username*) echo \"$GIT_RELEASE_USERNAME\" ;;\n"
+                    + "  *) echo \"$GIT_RELEASE_PASSWORD\" ;;\n"
+                    + "esac\n");
+            environment.put("GIT_ASKPASS", askPass.toAbsolutePath().toString());
+            environment.put("GIT_RELEASE_USERNAME", credentials.getUsername());
+            environment.put("GIT_RELEASE_PASSWORD", credentials.getPassword());
+        }
+
+        return environment;
+    }
+
+    private static Path createPrivateTempFile(String prefix, String permissions) throws IOException {
+        return Files.createTempFile(prefix, null,
+                PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString(permissions)));
+    }
+
+    /** A running git process whose stderr is read on a separate thread */
+    private final class GitProcess {
+
+        private final List<String> command;
+        private final Process process;
+        private final Thread stderrReader;
+        private final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+        // only accessed by the stderr reader thread
+        private final ProgressMonitor monitor;
+        private String progressTask;
+        private int progressDone;
+
+        GitProcess(List<String> args, Map<String, String> environment, ProgressMonitor monitor) throws IOException {
+            this(args, environment, monitor, null);
+        }
+
+        GitProcess(List<String> args, Map<String, String> environment, ProgressMonitor monitor, Path input)
+                throws IOException {
+            this.monitor = monitor;
+            command = new ArrayList<>(args.size() + 1);
+            command.add(executable);
+            command.addAll(args);
+
+            ProcessBuilder builder = new ProcessBuilder(command).directory(workTree.toFile());
+            builder.environment().putAll(environment);
+            if (input != null) {
+                builder.redirectInput(input.toFile());
+            }
+            process = builder.start();
+            process.getOutputStream().close();
+
+            stderrReader = new Thread(this::readStderr, "git " + args.get(0) + " stderr");
+            stderrReader.setDaemon(true);
+            stderrReader.start();
+        }
+
+        /**
+         * Read stdout one line at a time until it is exhausted or the handler returns false. If the handler returns
+         * false, the process is destroyed
+         *
+         * @param handler Handles each line. Returns false to stop reading
+         * @return true if the handler stopped the read
+         * @throws IOException If an error occurs reading stdout
+         */
+        boolean readStdout(Predicate<String> handler) throws IOException {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!handler.test(line)) {
+                        process.destroy();
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Read the whole of stdout, which may be binary
+         *
+         * @return The content of stdout
+         * @throws IOException If an error occurs reading stdout
+         */
+        byte[] readStdoutBytes() throws IOException {
+            try (InputStream stdout = process.getInputStream()) {
+                return stdout.readAllBytes();
+            }
+        }
+
+        void waitForSuccess() throws IOException {
+            int exitCode = waitFor();
+            if (exitCode != 0) {
+                throw new IOException(String.format("%s failed with exit code %d: %s", String.join(" ", command),
+                        exitCode, String.join(System.lineSeparator(), messages)));
+            }
+        }
+
+        int waitFor() throws IOException {
+            try {
+                int exitCode = process.waitFor();
+                stderrReader.join();
+                return exitCode;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+                throw new InterruptedIOException(String.join(" ", command) + " was interrupted");
+            }
+        }
+
+        private void readStderr() {
+            // git separates progress updates with carriage returns
+            StringBuilder line = new StringBuilder();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+                int c;
+                while ((c = reader.read()) != -1) {
+                    if (c == '\r' || c == '\n') {
+                        handleStderrLine(line.toString());
+                        line.setLength(0);
+                    } else {
+                        line.append((char) c);
+                    }
+                }
+                handleStderrLine(line.toString());
+            } catch (IOException e) {
+                messages.add(e.getMessage());
+            }
+
+            if (progressTask != null) {
+                monitor.endTask();
+            }
+        }
+
+        private void handleStderrLine(String line) {
+            if (line.isEmpty()) {
+                return;
+            }
+
+            Matcher m = PROGRESS_PATTERN.matcher(line);
+            if (!m.find()) {
+                if (messages.size() >= MAX_MESSAGES) {
+                    messages.remove(0);
+                }
+                messages.add(line);
+                return;
+            }
+
+            String task = m.group(1);
+            int done = Integer.parseInt(m.group(2));
+            if (!task.equals(progressTask)) {
+                if (progressTask != null) {
+                    monitor.endTask();
+                }
+                monitor.beginTask(task, Integer.parseInt(m.group(3)));
+                progressTask = task;
+                progressDone = 0;
+            }
+
+            monitor.update(done - progressDone);
+            progressDone = done;
+
+            if (line.contains(", done.")) {
+                monitor.endTask();
+                progressTask = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,422 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.StatusCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.dircache.DirCacheIterator;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.CoreConfig;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+/**
+ * Checks the working tree for uncommitted changes on a {@link ForkJoinPool}. The index is split into shards of the
+ * entries below each top level directory, and the shards of the largest directories are split further. The entries
+ * of each shard are compared with the working tree, and the index entries below each top level directory that
+ * differs from HEAD are compared with HEAD. A file is only read if its modification time or size differs from its
+ * index entry, or if it was modified so recently that its index entry may be racily clean. Every shard stops as soon
+ * as any shard finds an uncommitted change.
+ *
+ * <p>
+ * A file whose mode differs from its index entry, or whose content differs when the repository may convert the
+ * content of files, such as with <code>core.autocrlf</code> or a <code>.gitattributes</code> file, is only a
+ * candidate. The candidates are checked by a JGit status of their paths once every shard is done.
+ *
+ * <p>
+ * If the LFS filter is configured, a file whose blob is an LFS pointer file is compared with the pointer rather than
+ * passed through the filter. The file is unchanged if it is the pointer itself, or if its size and SHA-256 are those
+ * of the object that the pointer references, so it is only read if its size matches
+ *
+ * @author Brian Fincher
+ *
+ */
+final class ParallelWorkingTreeStatus {
+
+    // shards with more entries are split, so that the threads are kept busy by a repository with few top level
+    // directories
+    private static final int SHARD_SIZE = 1024;
+    private static final long PROGRESS_INTERVAL_MILLIS = 100;
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private final Repository repo;
+    private final Path workTree;
+    private final DirCache index;
+    private final ObjectId headTree;
+    private final Instant indexModified;
+    private final boolean convert;
+    private final boolean lfs;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicInteger checked = new AtomicInteger();
+    private final Queue<String> candidates = new ConcurrentLinkedQueue<>();
+
+    private ParallelWorkingTreeStatus(Repository repo, DirCache index, ObjectId headTree, Instant indexModified,
+            boolean convert, boolean lfs) {
+        this.repo = repo;
+        this.workTree = repo.getWorkTree().toPath();
+        this.index = index;
+        this.headTree = headTree;
+        this.indexModified = indexModified;
+        this.convert = convert;
+        this.lfs = lfs;
+    }
+
+    /**
+     * Determine whether the working tree has uncommitted changes, which are the same changes as those of
+     * {@link org.eclipse.jgit.api.Status#hasUncommittedChanges()}
+     *
+     * @param git The git repository
+     * @param monitor Receives the progress of the check
+     * @param parallelism The number of threads that check the working tree
+     * @return True if there are uncommitted changes
+     * @throws IOException If an error occurs reading the index, HEAD or the working tree
+     * @throws GitAPIException If an error occurs checking the candidates
+     */
+    static boolean hasUncommittedChanges(Git git, ProgressMonitor monitor, int parallelism)
+            throws IOException, GitAPIException {
+        Repository repo = git.getRepository();
+        Instant indexModified = Files.getLastModifiedTime(repo.getIndexFile().toPath()).toInstant();
+        DirCache index = repo.readDirCache();
+        ObjectId head = repo.resolve(Constants.HEAD);
+        ObjectId headTree = null;
+        if (head != null) {
+            try (RevWalk walk = new RevWalk(repo)) {
+                headTree = walk.parseCommit(head).getTree();
+            }
+        }
+
+        ParallelWorkingTreeStatus status = new ParallelWorkingTreeStatus(repo, index, headTree, indexModified,
+                mayConvert(repo, index), LfsObjects.isFilterConfigured(repo.getConfig()));
+        List<String> candidates = status.check(monitor, parallelism);
+        if (status.dirty.get()) {
+            return true;
+        }
+        if (candidates.isEmpty()) {
+            return false;
+        }
+
+        StatusCommand command = git.status();
+        candidates.forEach(command::addPath);
+        return command.call().hasUncommittedChanges();
+    }
+
+    // The content of a file is only compared byte for byte with its blob if the repository does not convert it
+    private static boolean mayConvert(Repository repo, DirCache index) {
+        if (repo.getConfig().getEnum(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_KEY_AUTOCRLF,
+                CoreConfig.AutoCRLF.FALSE) != CoreConfig.AutoCRLF.FALSE
+                || repo.getConfig().getString(ConfigConstants.CONFIG_CORE_SECTION, null,
+                        ConfigConstants.CONFIG_KEY_ATTRIBUTESFILE) != null
+                || Files.exists(repo.getDirectory().toPath().resolve(Constants.INFO_ATTRIBUTES))) {
+            return true;
+        }
+
+        for (int i = 0; i < index.getEntryCount(); i++) {
+            String path = index.getEntry(i).getPathString();
+            if (path.equals(Constants.DOT_GIT_ATTRIBUTES) || path.endsWith("/" + Constants.DOT_GIT_ATTRIBUTES)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Returns the candidates, which are only complete if no shard found an uncommitted change
+    private List<String> check(ProgressMonitor monitor, int parallelism) throws IOException {
+        monitor.beginTask("status", index.getEntryCount());
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, parallelism));
+        try {
+            List<RecursiveAction> shards = new ArrayList<>();
+            addStagedShards(shards);
+            if (dirty.get()) {
+                return Collections.emptyList();
+            }
+            addWorkTreeShards(shards);
+            ForkJoinTask<?> task = pool.submit(() -> ForkJoinTask.invokeAll(shards));
+
+            int reported = 0;
+            for (boolean done = false; !done;) {
+                try {
+                    task.get(PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    done = true;
+                } catch (TimeoutException e) {
+                    // report the progress and wait again
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while checking the working tree", e);
+                } catch (ExecutionException e) {
+                    // the pool may wrap the exception of a shard again when it is rethrown in another thread
+                    for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+                        if (cause instanceof IOException) {
+                            throw (IOException) cause;
+                        }
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+
+                int current = checked.get();
+                monitor.update(current - reported);
+                reported = current;
+            }
+        } finally {
+            pool.shutdownNow();
+            monitor.endTask();
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    // Compares the top level of HEAD with the index. A top level directory whose tree differs is a shard, unless
+    // the cached tree of the index shows that it is unchanged
+    private void addStagedShards(List<RecursiveAction> shards) throws IOException {
+        try (TreeWalk walk = new TreeWalk(repo)) {
+            addHeadTree(walk);
+            walk.addTree(new DirCacheIterator(index));
+            walk.setFilter(TreeFilter.ANY_DIFF);
+            while (walk.next()) {
+                if (FileMode.TREE.equals(walk.getRawMode(0)) && FileMode.TREE.equals(walk.getRawMode(1))) {
+                    String path = walk.getPathString();
+                    shards.add(action(() -> checkStaged(path)));
+                } else {
+                    dirty.set(true);
+                    return;
+                }
+            }
+        }
+    }
+
+    // Splits the index into the ranges of entries below each top level directory. The files at the top level are
+    // grouped with their neighbours
+    private void addWorkTreeShards(List<RecursiveAction> shards) {
+        int start = 0;
+        String shard = null;
+        for (int i = 0; i < index.getEntryCount(); i++) {
+            String path = index.getEntry(i).getPathString();
+            int slash = path.indexOf('/');
+            String topLevel = slash < 0 ? "" : path.substring(0, slash);
+            if (shard != null && !shard.equals(topLevel)) {
+                shards.add(new WorkTreeShard(start, i));
+                start = i;
+            }
+            shard = topLevel;
+        }
+        if (start < index.getEntryCount()) {
+            shards.add(new WorkTreeShard(start, index.getEntryCount()));
+        }
+    }
+
+    private void addHeadTree(TreeWalk walk) throws IOException {
+        if (headTree == null) {
+            walk.addTree(new EmptyTreeIterator());
+        } else {
+            walk.addTree(headTree);
+        }
+    }
+
+    // Compares the entries of the index below a top level directory with HEAD
+    private void checkStaged(String directory) throws IOException {
+        try (TreeWalk walk = new TreeWalk(repo)) {
+            addHeadTree(walk);
+            walk.addTree(new DirCacheIterator(index));
+            walk.setRecursive(true);
+            walk.setFilter(AndTreeFilter.create(PathFilter.create(directory), TreeFilter.ANY_DIFF));
+            if (!dirty.get() && walk.next()) {
+                dirty.set(true);
+            }
+        }
+    }
+
+    private void checkWorkTree(DirCacheEntry entry, ObjectReader reader) throws IOException {
+        checked.incrementAndGet();
+        if (entry.getStage() != DirCacheEntry.STAGE_0) {
+            // a conflict
+            dirty.set(true);
+            return;
+        }
+        if (entry.isAssumeValid() || entry.isSkipWorkTree()) {
+            return;
+        }
+        if (entry.getFileMode() == FileMode.GITLINK) {
+            // the state of a submodule is the HEAD of its own repository
+            candidates.add(entry.getPathString());
+            return;
+        }
+
+        Path file = workTree.resolve(entry.getPathString());
+        BasicFileAttributes attributes;
+        try {
+            attributes = POSIX
+                    ? Files.readAttributes(file, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                    : Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            dirty.set(true);
+            return;
+        }
+        if (attributes.isDirectory()) {
+            // the file was replaced by a directory
+            dirty.set(true);
+            return;
+        }
+        if (getFileMode(attributes, entry.getFileMode()) != entry.getFileMode()) {
+            // core.fileMode or core.symlinks may ignore the difference
+            candidates.add(entry.getPathString());
+            return;
+        }
+
+        if (entry.getLength() == (int) attributes.size()
+                && entry.getLastModifiedInstant().equals(attributes.lastModifiedTime().toInstant())
+                && !entry.mightBeRacilyClean(indexModified)) {
+            return;
+        }
+
+        LfsObjects.Pointer pointer = lfs && !attributes.isSymbolicLink() ? readPointer(reader, entry.getObjectId())
+                : null;
+        if (pointer != null) {
+            if (!isPointerContent(file, attributes, entry.getObjectId(), pointer)) {
+                dirty.set(true);
+            }
+        } else if (!hash(file, attributes).equals(entry.getObjectId())) {
+            if (convert) {
+                candidates.add(entry.getPathString());
+            } else {
+                dirty.set(true);
+            }
+        }
+    }
+
+    // Returns null if the blob is not an LFS pointer file
+    private static LfsObjects.Pointer readPointer(ObjectReader reader, ObjectId blob) throws IOException {
+        try {
+            if (reader.getObjectSize(blob, Constants.OBJ_BLOB) > LfsObjects.MAX_POINTER_SIZE) {
+                return null;
+            }
+            return LfsObjects.parsePointer(reader.open(blob, Constants.OBJ_BLOB).getCachedBytes());
+        } catch (MissingObjectException e) {
+            // a blob omitted from a partial clone is left to the status of JGit
+            return null;
+        }
+    }
+
+    // A file that was not smudged contains the pointer itself rather than the object that it references
+    private static boolean isPointerContent(Path file, BasicFileAttributes attributes, ObjectId blob,
+            LfsObjects.Pointer pointer) throws IOException {
+        if (attributes.size() != pointer.getSize()) {
+            return attributes.size() <= LfsObjects.MAX_POINTER_SIZE && hash(file, attributes).equals(blob);
+        }
+        return ArtifactManifest.sha256(file).equals(pointer.getOid());
+    }
+
+    private static FileMode getFileMode(BasicFileAttributes attributes, FileMode indexMode) {
+        if (attributes.isSymbolicLink()) {
+            return FileMode.SYMLINK;
+        } else if (!(attributes instanceof PosixFileAttributes)) {
+            // the executable bit is not known, so it is taken from the index
+            return indexMode == FileMode.EXECUTABLE_FILE ? FileMode.EXECUTABLE_FILE : FileMode.REGULAR_FILE;
+        }
+        return ((PosixFileAttributes) attributes).permissions().contains(PosixFilePermission.OWNER_EXECUTE)
+                ? FileMode.EXECUTABLE_FILE
+                : FileMode.REGULAR_FILE;
+    }
+
+    // The id of the blob of the file as it is in the working tree
+    private static ObjectId hash(Path file, BasicFileAttributes attributes) throws IOException {
+        ObjectInserter.Formatter formatter = new ObjectInserter.Formatter();
+        if (attributes.isSymbolicLink()) {
+            return formatter.idFor(Constants.OBJ_BLOB,
+                    Files.readSymbolicLink(file).toString().getBytes(StandardCharsets.UTF_8));
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            return formatter.idFor(Constants.OBJ_BLOB, attributes.size(), in);
+        }
+    }
+
+    /** An operation of a shard */
+    @FunctionalInterface
+    private static interface ShardOperation {
+        void run() throws IOException;
+    }
+
+    private static RecursiveAction action(ShardOperation operation) {
+        return new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                try {
+                    operation.run();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /** Compares a range of index entries with the working tree, splitting the range if it is large */
+    private final class WorkTreeShard extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        WorkTreeShard(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SHARD_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new WorkTreeShard(from, middle), new WorkTreeShard(middle, to));
+                return;
+            }
+
+            // a reader is not thread safe, so each shard has its own
+            try (ObjectReader reader = repo.newObjectReader()) {
+                for (int i = from; i < to && !dirty.get(); i++) {
+                    checkWorkTree(index.getEntry(i), reader);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
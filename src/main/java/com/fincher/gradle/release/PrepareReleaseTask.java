@@ -5,6 +5,7 @@ import java.io.IOException;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.options.Option;
 
@@ -17,20 +18,17 @@ import org.gradle.api.tasks.options.Option;
  * 3) Create a tag
  * </pre>
  * 
+ * <p>If HEAD is already tagged with a release tag, for example when a pipeline retries the task, nothing is done and
+ * the version of the existing release is exposed by {@link #getReleasedVersion()}
+ * 
  * @author Brian Fincher
  *
  */
 public abstract class PrepareReleaseTask extends AbstractReleaseTask {
 
-    enum ReleaseType {
-        MAJOR,
-        MINOR,
-        PATCH,
-        MANUAL;
-    }
-
     ReleaseType releaseType;
     String releaseVersionOverride = null;
+    boolean skipRemoteTagCheck = false;
 
     @Option(option = "releaseType",
             description = "The type of release.  One of MAJOR, MINOR, PATCH, MANUAL.  "
@@ -45,6 +43,12 @@ public abstract class PrepareReleaseTask extends AbstractReleaseTask {
         releaseVersionOverride = releaseVersion;
     }
 
+    @Option(option = "skipRemoteTagCheck",
+            description = "Prepare the release without checking that the release tag does not exist on origin")
+    void setSkipRemoteTagCheck(boolean skipRemoteTagCheck) {
+        this.skipRemoteTagCheck = skipRemoteTagCheck;
+    }
+
     /**
      * Gets the optional prefix to be used for created tags. Default is no prefix
      * 
@@ -54,56 +58,36 @@ public abstract class PrepareReleaseTask extends AbstractReleaseTask {
     @Optional
     public abstract Property<String> getTagPrefix();
 
+    /**
+     * The version that was released. Set when the task runs
+     * 
+     * @return The version that was released
+     */
+    @Internal
+    public abstract Property<String> getReleasedVersion();
+
     @Override
     public void releaseTaskAction() throws IOException, GitAPIException {
-        super.releaseTaskAction();
-
-        switch (releaseType) {
-        case MAJOR:
-            String major = String.valueOf(Integer.parseInt(version.getMajor()) + 1);
-            version.replaceMajor(major);
-            version.replaceMinor("0");
-            version.replacePatch("0");
-            version.replaceSuffix("");
-            break;
-
-        case MINOR:
-            String minor = String.valueOf(Integer.parseInt(version.getMinor()) + 1);
-            version.replaceMinor(minor);
-            version.replacePatch("0");
-            version.replaceSuffix("");
-            break;
-
-        case PATCH:
-            // If the current version is a snapshot, just remove the snapshot
-            if (!version.getSuffix().equals("-SNAPSHOT")) {
-                String patch = String.valueOf(Integer.parseInt(version.getPatch()) + 1);
-                version.replacePatch(patch);
-            }
-
-            version.replaceSuffix("");
-            break;
-
-        case MANUAL:
-            if (releaseVersionOverride == null) {
-                throw new IllegalStateException("releaseVersion must be specified with a MANUAL release type");
-            }
-            overrideVersion(releaseVersionOverride);
-            break;
-
-        default:
-            throw new IllegalStateException();
+        if (runsInWorker()) {
+            getReleasedVersion().set(runInWorker(ReleaseSteps.PREPARE, params -> {
+                params.getReleaseType().set(releaseType == null ? null : releaseType.name());
+                params.getReleaseVersion().set(releaseVersionOverride);
+                params.getTagPrefix().set(getTagPrefix().getOrElse(""));
+                params.getSkipRemoteTagCheck().set(skipRemoteTagCheck);
+            }));
+            return;
         }
 
-        version.save();
-
-        git.add().addFilepattern(relativeVersionFile).call();
-
-        String newVersion = version.toString();
-        git.commit().setMessage(String.format("\"Set version for release to %s\"", newVersion)).call();
-
-        String tag = getTagPrefix().getOrElse("") + newVersion;
-        git.tag().setMessage(tag).setName(tag).setAnnotated(true).call();
+        super.releaseTaskAction();
+        String tagPrefix = getTagPrefix().getOrElse("");
+
+        ReleaseSteps.Log log = new GradleReleaseLog(getLogger());
+        String tag = ReleaseSteps.prepareOrSkip(backend, version, relativeVersionFile, releaseType,
+                releaseVersionOverride, tagPrefix, this::loadTagsByCommit,
+                () -> ReleaseSteps.getRemoteTags(backend, tagPrefix, createCredentials(), skipRemoteTagCheck, log),
+                log);
+        tagsChanged();
+        getReleasedVersion().set(tag.substring(tagPrefix.length()));
     }
 
 }
@@ -0,0 +1,49 @@
+package com.fincher.gradle.release;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Finds versions on <code>key = x.y.z</code> lines, as used in properties files and Gradle build files. The value may
+ * be quoted. Each line is a value of at most one key. The longest key that matches a line is used, so that the keys
+ * <code>version</code> and <code>api.version</code> can be used together. As in earlier releases, each key is a
+ * regular expression, so a key such as <code>(app|api)Version</code> matches either key
+ *
+ * @author Brian Fincher
+ *
+ */
+class PropertiesVersionFormat implements VersionFormat {
+
+    private static final String VALUE_GROUP = "value";
+
+    @Override
+    public void scan(CharSequence content, List<String> keys, ValueListener listener) {
+        List<String> longestFirst = keys.stream().sorted(Comparator.comparingInt(String::length).reversed())
+                .collect(Collectors.toList());
+        List<Pattern> patterns = longestFirst.stream()
+                .map(key -> Pattern.compile(String.format("(?<![\\w-])(?:%s)\\s*=\\s*['\"]?(?<%s>%s)", key,
+                        VALUE_GROUP, VersionFile.VALUE_PATTERN_STR)))
+                .collect(Collectors.toList());
+
+        int lineStart = 0;
+        while (lineStart < content.length()) {
+            int lineEnd = lineStart;
+            while (lineEnd < content.length() && content.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+
+            for (int i = 0; i < patterns.size(); i++) {
+                Matcher m = patterns.get(i).matcher(content).region(lineStart, lineEnd);
+                if (m.find()) {
+                    listener.value(longestFirst.get(i), m.start(VALUE_GROUP), m.end(VALUE_GROUP));
+                    break;
+                }
+            }
+
+            lineStart = lineEnd + 1;
+        }
+    }
+}
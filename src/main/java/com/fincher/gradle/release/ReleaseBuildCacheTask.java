@@ -0,0 +1,52 @@
+package com.fincher.gradle.release;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.UntrackedTask;
+
+/**
+ * Releases the Gradle user home directory leased by acquireBuildCache. This replaces the releaseBuildCache script
+ * 
+ * @author Brian Fincher
+ *
+ */
+@UntrackedTask(because = "A lease is held outside of the build")
+public abstract class ReleaseBuildCacheTask extends DefaultTask {
+
+    /**
+     * The file to which acquireBuildCache wrote the lease
+     * 
+     * @return The file to which acquireBuildCache wrote the lease
+     */
+    @Internal
+    public abstract Property<File> getLeaseFile();
+
+    /**
+     * The main task action
+     * 
+     * @throws IOException If an error occurs reading or deleting the lease
+     */
+    @TaskAction
+    public void release() throws IOException {
+        Path leaseFile = getLeaseFile().get().toPath();
+        BuildCacheLease lease = BuildCacheLease.read(leaseFile);
+        if (lease == null) {
+            getLogger().warn("No build cache lease found in {}", leaseFile);
+            return;
+        }
+
+        if (BuildCacheLeaseManager.release(lease)) {
+            getLogger().info("Released build cache lease {}", lease);
+        } else {
+            getLogger().warn("The build cache lease {} had already been reclaimed", lease);
+        }
+        Files.delete(leaseFile);
+    }
+}
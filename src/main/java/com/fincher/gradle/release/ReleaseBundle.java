@@ -0,0 +1,257 @@
+package com.fincher.gradle.release;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ResetCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.storage.pack.PackConfig;
+import org.eclipse.jgit.transport.BundleWriter;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.TrackingRefUpdate;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+
+/**
+ * Writes a release to a git bundle instead of pushing it, and applies such a bundle to another repository. This allows
+ * a release to be carried into an environment that origin cannot reach. The bundle contains the released branch, the
+ * new release tag and the notes that record the checksums of the release artifacts. The commit of the previous release
+ * tag is a prerequisite of the bundle, so only the commits since the previous release are written. Each bundle is
+ * accompanied by a checksum manifest in the format of <code>sha256sum</code>, which is verified before the bundle is
+ * applied
+ *
+ * @author Brian Fincher
+ *
+ */
+final class ReleaseBundle {
+
+    /** The extension appended to the name of a bundle to name its checksum manifest */
+    static final String CHECKSUM_EXTENSION = ".sha256";
+
+    /** The latest release tag of the current branch and the release before it */
+    private static final class Releases {
+        private String tag;
+        private RevCommit previous;
+        private String previousTag;
+    }
+
+    private ReleaseBundle() {
+    }
+
+    /**
+     * Write the current branch, its latest release tag and the artifact notes to a bundle and write the checksum
+     * manifest of the bundle. The bundle is streamed to a temporary file that replaces the bundle once it is complete.
+     * A shallow clone is deepened until the previous release tag is found, and the objects since the previous release
+     * that the filter of a partial clone omitted are fetched in a single request, so that the bundle is complete
+     *
+     * @param backend The git backend of the released repository
+     * @param tagPrefix The prefix of the release tags
+     * @param bundleFile The bundle to write
+     * @param credentials The credentials used to authenticate with origin if the history or objects of a shallow or
+     *            partial clone must be fetched
+     * @param monitor Receives the progress of writing the bundle
+     * @return A description of each ref and prerequisite of the bundle
+     * @throws IOException If an error occurs reading the repository or writing the bundle
+     * @throws GitAPIException If an error occurs fetching the history or objects of a shallow or partial clone
+     * @throws IllegalStateException If the current branch has not been released
+     */
+    static List<String> write(GitBackend backend, String tagPrefix, Path bundleFile, GitCredentials credentials,
+            ProgressMonitor monitor) throws IOException, GitAPIException {
+        String branch = backend.getBranch();
+
+        try (Repository repo = new FileRepositoryBuilder().setGitDir(backend.getGitDir().toFile()).build();
+                RevWalk walk = new RevWalk(repo)) {
+            ObjectId head = repo.resolve(Constants.HEAD);
+            if (head == null) {
+                throw new IllegalStateException(String.format("Unable to bundle %s without any commits", branch));
+            }
+
+            Releases releases = findReleases(backend, repo, branch, head, tagPrefix, credentials);
+            if (releases.tag == null) {
+                throw new IllegalStateException(String.format("Unable to find a release tag on %s", branch));
+            }
+            backend.fetchMissingObjects(releases.previous == null ? null : releases.previous.name(), credentials);
+
+            List<String> contents = new ArrayList<>();
+            BundleWriter writer = new BundleWriter(repo);
+            if (JGitBackend.isPartialClone(repo.getConfig())) {
+                // the blobs of the previous release that the filter omitted cannot be used as delta bases
+                PackConfig packConfig = new PackConfig(repo);
+                packConfig.setDeltaCompress(false);
+                writer.setPackConfig(packConfig);
+            }
+            writer.include(Constants.R_HEADS + branch, head);
+            contents.add(Constants.R_HEADS + branch);
+            Ref tagRef = repo.exactRef(Constants.R_TAGS + releases.tag);
+            writer.include(tagRef.getName(), tagRef.getObjectId());
+            contents.add(tagRef.getName());
+            Ref notesRef = repo.exactRef(GitBackend.NOTES_REF);
+            if (notesRef != null) {
+                writer.include(notesRef.getName(), notesRef.getObjectId());
+                contents.add(notesRef.getName());
+            }
+            if (releases.previous != null) {
+                writer.assume(walk.parseCommit(releases.previous));
+                contents.add(String.format("prerequisite %s %s", releases.previous.name(), releases.previousTag));
+            }
+
+            Path tempFile = bundleFile.resolveSibling(bundleFile.getFileName() + ".tmp");
+            HashCode checksum;
+            try (HashingOutputStream out = new HashingOutputStream(Hashing.sha256(),
+                    new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                writer.writeBundle(monitor, out);
+                checksum = out.hash();
+            } catch (IOException | RuntimeException e) {
+                Files.deleteIfExists(tempFile);
+                throw e;
+            }
+            Files.move(tempFile, bundleFile, StandardCopyOption.REPLACE_EXISTING);
+            Files.writeString(checksumFile(bundleFile), String.format("%s  %s%n",
+                    checksum, bundleFile.getFileName()), StandardCharsets.UTF_8);
+            return contents;
+        }
+    }
+
+    /**
+     * Verify a bundle against its checksum manifest and fetch its branches, tags and notes into a repository. Branches
+     * and notes are only fast forwarded and existing tags are not moved. If the repository has a working tree whose
+     * branch is updated, the working tree is updated to the new commit
+     *
+     * @param repo The repository to which the bundle is applied
+     * @param bundleFile The bundle
+     * @param monitor Receives the progress of the fetch
+     * @return A description of each ref that was updated
+     * @throws IOException If an error occurs reading the bundle
+     * @throws GitAPIException If the bundle cannot be fetched, for example if its prerequisites are missing
+     * @throws IllegalStateException If the checksum does not match, a ref is not a fast forward or the working tree
+     *             has uncommitted changes
+     */
+    static List<String> apply(Repository repo, Path bundleFile, ProgressMonitor monitor)
+            throws IOException, GitAPIException {
+        verifyChecksum(bundleFile);
+
+        try (Git git = Git.wrap(repo)) {
+            String currentBranch = repo.isBare() ? null : repo.getFullBranch();
+            if (currentBranch != null) {
+                WorkingTreeStatus.verifyNoUncommitedChanges(git, monitor);
+            }
+
+            FetchResult fetch = git.fetch().setRemote(bundleFile.toAbsolutePath().toString())
+                    .setRefSpecs(new RefSpec("refs/heads/*:refs/heads/*"), new RefSpec("refs/tags/*:refs/tags/*"),
+                            new RefSpec(Constants.R_NOTES + "*:" + Constants.R_NOTES + "*"))
+                    .setProgressMonitor(monitor).call();
+
+            List<String> results = new ArrayList<>();
+            for (TrackingRefUpdate update : fetch.getTrackingRefUpdates()) {
+                RefUpdate.Result result = update.getResult();
+                if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FAST_FORWARD
+                        && result != RefUpdate.Result.NO_CHANGE) {
+                    throw new IllegalStateException(String.format("Unable to apply %s to %s: %s", update.getLocalName(),
+                            repo.getDirectory(), result));
+                }
+                results.add(String.format("%s %s", update.getLocalName(), result));
+
+                if (update.getLocalName().equals(currentBranch) && result == RefUpdate.Result.FAST_FORWARD) {
+                    git.reset().setMode(ResetCommand.ResetType.HARD)
+                            .setRef(update.getNewObjectId().name()).setProgressMonitor(monitor).call();
+                }
+            }
+            return results;
+        }
+    }
+
+    /**
+     * Verify a bundle against its checksum manifest
+     *
+     * @param bundleFile The bundle
+     * @throws IOException If an error occurs reading the bundle or the manifest
+     * @throws IllegalStateException If the manifest is missing or the checksum does not match
+     */
+    static void verifyChecksum(Path bundleFile) throws IOException {
+        Path checksumFile = checksumFile(bundleFile);
+        if (!Files.exists(checksumFile)) {
+            throw new IllegalStateException(
+                    String.format("Unable to find the checksum manifest %s of %s", checksumFile, bundleFile));
+        }
+        String expected = Files.readString(checksumFile, StandardCharsets.UTF_8).trim().split("\\s+")[0];
+
+        String actual = ArtifactManifest.sha256(bundleFile);
+        if (!actual.equalsIgnoreCase(expected)) {
+            throw new IllegalStateException(String.format("The checksum of %s is %s but %s expects %s", bundleFile,
+                    actual, checksumFile, expected));
+        }
+    }
+
+    /**
+     * Get the checksum manifest of a bundle
+     *
+     * @param bundleFile The bundle
+     * @return The checksum manifest, which is next to the bundle
+     */
+    static Path checksumFile(Path bundleFile) {
+        return bundleFile.resolveSibling(bundleFile.getFileName() + CHECKSUM_EXTENSION);
+    }
+
+    // The release tag and the previous release tag are the first two release tags in the first parent history. While
+    // the history of a shallow clone ends before the previous release tag, the depth below the tip of the branch on
+    // origin is doubled, so at most twice the commits since the previous release are fetched
+    private static Releases findReleases(GitBackend backend, Repository repo, String branch, ObjectId head,
+            String tagPrefix, GitCredentials credentials) throws IOException, GitAPIException {
+        ObjectId originTip = repo.resolve(Constants.R_REMOTES + Constants.DEFAULT_REMOTE_NAME + "/" + branch);
+        ObjectId shallowEnd = null;
+        while (true) {
+            Map<String, List<String>> tagsByCommit = backend.getTagsByCommit();
+            Releases releases = new Releases();
+            RevCommit last = null;
+            int walked = 0;
+            int walkedOnOrigin = 0;
+            try (RevWalk walk = new RevWalk(repo)) {
+                for (RevCommit commit = walk.parseCommit(head); commit != null && releases.previous == null;) {
+                    walked++;
+                    if (walkedOnOrigin > 0 || commit.equals(originTip)) {
+                        walkedOnOrigin++;
+                    }
+                    String tag = ReleaseSteps.findReleaseTag(tagsByCommit, commit.name(), tagPrefix);
+                    if (tag != null && releases.tag == null) {
+                        releases.tag = tag;
+                    } else if (tag != null) {
+                        releases.previous = commit;
+                        releases.previousTag = tag;
+                    }
+                    last = commit;
+                    commit = commit.getParentCount() == 0 ? null : walk.parseCommit(commit.getParent(0));
+                }
+            }
+
+            if (releases.previous != null || !repo.getObjectDatabase().getShallowCommits().contains(last)) {
+                return releases;
+            }
+            if (last.equals(shallowEnd)) {
+                throw new IllegalStateException(String.format("Unable to deepen the history of %s beyond %s", branch,
+                        last.name()));
+            }
+            shallowEnd = last.copy();
+            backend.deepen(2 * (walkedOnOrigin > 0 ? walkedOnOrigin : walked), credentials);
+        }
+    }
+}
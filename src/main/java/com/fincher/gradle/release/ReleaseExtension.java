@@ -2,9 +2,12 @@ package com.fincher.gradle.release;
 
 import java.io.File;
 
+import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
 import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.InputFiles;
 
 /** Gradle plugin extension for the ReleaseTask */
 public abstract class ReleaseExtension {
@@ -36,4 +39,49 @@ public abstract class ReleaseExtension {
     @Input
     abstract Property<String> getGitRepositorySshPassphrase();
 
+    @Input
+    abstract Property<String> getGitBackend();
+
+    @Input
+    abstract Property<String> getWorkerIsolation();
+
+    @Input
+    abstract Property<String> getWorkerMaxHeapSize();
+
+    @Input
+    abstract Property<Integer> getStatusParallelism();
+
+    @Input
+    abstract Property<Boolean> getFileSystemMonitor();
+
+    @InputFile
+    abstract Property<File> getBundleFile();
+
+    @Input
+    abstract Property<Boolean> getVerifyLfsObjects();
+
+    @InputFiles
+    abstract ConfigurableFileCollection getArtifacts();
+
+    @Input
+    abstract Property<String> getTrainBranchRegex();
+
+    @Input
+    abstract Property<Integer> getTrainParallelism();
+
+    @InputDirectory
+    abstract Property<File> getBuildCacheBaseDir();
+
+    @Input
+    abstract Property<String> getBuildCacheName();
+
+    @Input
+    abstract Property<Integer> getBuildCachePoolSize();
+
+    @Input
+    abstract Property<Long> getBuildCacheLeaseExpirationMinutes();
+
+    @Input
+    abstract Property<String> getBuildCacheProject();
+
 }
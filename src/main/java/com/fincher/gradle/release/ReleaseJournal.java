@@ -0,0 +1,211 @@
+package com.fincher.gradle.release;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An append-only journal of the steps of the current release of a version file, stored in
+ * <code>.git/release/journal-&lt;version file&gt;</code>. Each version file has its own journal, so that the projects
+ * of a build that share a repository can be released in parallel. If a release task dies part way through, for
+ * example after the version commit but before the tag or the push, rerunning the task resumes after the last
+ * completed step instead of bumping the version again.
+ *
+ * <p>Each line records one step with the ids of the objects it created. The journal is only forced to disk once per
+ * release, after the version commit, because every later step can be safely repeated: an existing tag of HEAD is
+ * detected and pushes are idempotent
+ *
+ * @author Brian Fincher
+ *
+ */
+class ReleaseJournal implements AutoCloseable {
+
+    /** The steps of a release */
+    enum Step {
+        /** The release started. Records HEAD and the version before the release */
+        STARTED,
+        /** The version was committed. Records the commit id and the new version */
+        COMMITTED,
+        /** The tag was created. Records the tag name and the commit id */
+        TAGGED,
+        /** The branch and tags were pushed */
+        PUSHED,
+        /** The release completed */
+        COMPLETED;
+    }
+
+
+    private static final String SEPARATOR = "\t";
+    private static final ReleaseJournal DISABLED = new ReleaseJournal(null, Collections.emptyList());
+
+    private final Path file;
+    private final List<String[]> entries;
+    private FileChannel channel;
+
+    private ReleaseJournal(Path file, List<String[]> entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * Get the path of the journal of a version file
+     *
+     * @param versionFilePath The path of the version file relative to the root of the working tree
+     * @return The path of the journal relative to the git directory
+     */
+    static Path getPath(String versionFilePath) {
+        String name = versionFilePath.replace(File.separatorChar, '/');
+        return Path.of("release", "journal-" + URLEncoder.encode(name, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Open the journal of a version file
+     *
+     * @param gitDir The git directory or null to disable the journal, for example for a dry run
+     * @param versionFilePath The path of the version file relative to the root of the working tree
+     * @return The journal
+     * @throws IOException If an error occurs reading the journal
+     */
+    static ReleaseJournal open(Path gitDir, String versionFilePath) throws IOException {
+        if (gitDir == null) {
+            return DISABLED;
+        }
+
+        Path file = gitDir.resolve(getPath(versionFilePath));
+        List<String[]> entries = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                // a torn final line from a crash is ignored
+                String[] fields = line.split(SEPARATOR, -1);
+                if (isStep(fields[0])) {
+                    entries.add(fields);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            // no release has been journaled
+        }
+        return new ReleaseJournal(file, entries);
+    }
+
+    /**
+     * Find the commit made by an incomplete release that can be resumed. A release can be resumed if it completed the
+     * version commit but did not complete, and its commit is still HEAD
+     *
+     * @param operation The release operation, for example "prepare"
+     * @param head The id of the commit at HEAD
+     * @return The version recorded with the commit or null if there is nothing to resume
+     */
+    String findResumableVersion(String operation, String head) {
+        String[] started = entries.isEmpty() ? null : entries.get(0);
+        if (started == null || started.length < 2 || !started[1].equals(operation) || head == null) {
+            return null;
+        }
+
+        String version = null;
+        for (String[] entry : entries) {
+            Step step = Step.valueOf(entry[0]);
+            if (step == Step.COMPLETED) {
+                return null;
+            }
+            if (step == Step.COMMITTED && entry.length == 3 && entry[1].equals(head)) {
+                version = entry[2];
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Start journaling a release. Any previous journal is discarded
+     *
+     * @param operation The release operation, for example "prepare"
+     * @param head The id of the commit at HEAD
+     * @param version The version before the release
+     * @throws IOException If an error occurs writing the journal
+     */
+    void begin(String operation, String head, String version) throws IOException {
+        if (file == null) {
+            return;
+        }
+
+        close();
+        Files.createDirectories(file.getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        entries.clear();
+        append(Step.STARTED, operation, head, version);
+    }
+
+    /**
+     * Resume journaling a release
+     *
+     * @throws IOException If an error occurs opening the journal
+     */
+    void resume() throws IOException {
+        if (file != null && channel == null) {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    /**
+     * Append a step to the journal. The step is not forced to disk until {@link #sync()} is called
+     *
+     * @param step The step
+     * @param values The values recorded with the step
+     * @throws IOException If an error occurs writing the journal
+     */
+    void append(Step step, String... values) throws IOException {
+        if (channel == null) {
+            return;
+        }
+
+        String[] entry = new String[values.length + 1];
+        entry[0] = step.name();
+        for (int i = 0; i < values.length; i++) {
+            entry[i + 1] = String.valueOf(values[i]);
+        }
+        entries.add(entry);
+
+        ByteBuffer buffer = StandardCharsets.UTF_8.encode(String.join(SEPARATOR, entry) + "\n");
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Force every appended step to disk
+     *
+     * @throws IOException If an error occurs writing the journal
+     */
+    void sync() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+        }
+    }
+
+    private static boolean isStep(String name) {
+        for (Step step : Step.values()) {
+            if (step.name().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.fincher.gradle.release;
 
+import java.io.File;
 import java.util.function.Supplier;
 
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
 
 public class ReleasePlugin implements Plugin<Project> {
 
@@ -18,12 +20,30 @@ public class ReleasePlugin implements Plugin<Project> {
     public void apply(Project project) {
 
         ReleaseExtension extension = project.getExtensions().create("release", ReleaseExtension.class);
+        Provider<ReleaseRepositoryService> repositoryService = project.getGradle().getSharedServices()
+                .registerIfAbsent(ReleaseRepositoryService.NAME, ReleaseRepositoryService.class, spec -> {
+                });
 
         project.getTasks().register("prepareRelease", PrepareReleaseTask.class, task -> {
             setTaskPropertyFromExtension(extension.getVersionFile(), task::getVersionFile);
             setTaskPropertyFromExtension(extension.getVersionKeyValue(), task::getVersionKeyValue);
             setTaskPropertyFromExtension(extension.getRequiredBranchRegex(), task::getRequiredBranchRegex);
             setTaskPropertyFromExtension(extension.getTagPrefix(), task::getTagPrefix);
+            setTaskPropertyFromExtension(extension.getGitRepositoryUsername(), task::getGitRepositoryUsername);
+            setTaskPropertyFromExtension(extension.getGitRepositoryPassword(), task::getGitRepositoryPassword);
+            setTaskPropertyFromExtension(extension.getGitRepositorySshPrivateKey(),
+                    task::getGitRepositorySshPrivateKey);
+            setTaskPropertyFromExtension(extension.getGitRepositorySshPrivateKeyFile(),
+                    task::getGitRepositorySshPrivateKeyFile);
+            setTaskPropertyFromExtension(extension.getGitRepositorySshPassphrase(),
+                    task::getGitRepositorySshPassphrase);
+            setTaskPropertyFromExtension(extension.getGitBackend(), task::getGitBackend);
+            setTaskPropertyFromExtension(extension.getWorkerIsolation(), task::getWorkerIsolation);
+            setTaskPropertyFromExtension(extension.getWorkerMaxHeapSize(), task::getWorkerMaxHeapSize);
+            setTaskPropertyFromExtension(extension.getStatusParallelism(), task::getStatusParallelism);
+            setTaskPropertyFromExtension(extension.getFileSystemMonitor(), task::getFileSystemMonitor);
+            task.getRepositoryService().set(repositoryService);
+            task.usesService(repositoryService);
             task.setGroup("Publishing");
         });
 
@@ -39,7 +59,66 @@ public class ReleasePlugin implements Plugin<Project> {
                     task::getGitRepositorySshPrivateKeyFile);
             setTaskPropertyFromExtension(extension.getGitRepositorySshPassphrase(),
                     task::getGitRepositorySshPassphrase);
+            setTaskPropertyFromExtension(extension.getGitBackend(), task::getGitBackend);
+            setTaskPropertyFromExtension(extension.getWorkerIsolation(), task::getWorkerIsolation);
+            setTaskPropertyFromExtension(extension.getWorkerMaxHeapSize(), task::getWorkerMaxHeapSize);
+            setTaskPropertyFromExtension(extension.getStatusParallelism(), task::getStatusParallelism);
+            setTaskPropertyFromExtension(extension.getFileSystemMonitor(), task::getFileSystemMonitor);
+            task.getArtifacts().from(extension.getArtifacts());
+            setTaskPropertyFromExtension(extension.getTagPrefix(), task::getTagPrefix);
+            setTaskPropertyFromExtension(extension.getBundleFile(), task::getBundleFile);
+            setTaskPropertyFromExtension(extension.getVerifyLfsObjects(), task::getVerifyLfsObjects);
+            task.getRepositoryService().set(repositoryService);
+            task.usesService(repositoryService);
+            task.setGroup("Publishing");
+        });
+
+        project.getTasks().register("applyReleaseBundle", ApplyReleaseBundleTask.class, task -> {
+            setTaskPropertyFromExtension(extension.getBundleFile(), task::getBundleFile);
+            task.getRepositoryDir().convention(project.getProjectDir());
             task.setGroup("Publishing");
         });
+
+        project.getTasks().register("releaseTrain", ReleaseTrainTask.class, task -> {
+            setTaskPropertyFromExtension(extension.getVersionFile(), task::getVersionFile);
+            setTaskPropertyFromExtension(extension.getVersionKeyValue(), task::getVersionKeyValue);
+            setTaskPropertyFromExtension(extension.getTagPrefix(), task::getTagPrefix);
+            setTaskPropertyFromExtension(extension.getTrainBranchRegex(), task::getTrainBranchRegex);
+            setTaskPropertyFromExtension(extension.getTrainParallelism(), task::getTrainParallelism);
+            setTaskPropertyFromExtension(extension.getGitRepositoryUsername(), task::getGitRepositoryUsername);
+            setTaskPropertyFromExtension(extension.getGitRepositoryPassword(), task::getGitRepositoryPassword);
+            setTaskPropertyFromExtension(extension.getGitRepositorySshPrivateKey(),
+                    task::getGitRepositorySshPrivateKey);
+            setTaskPropertyFromExtension(extension.getGitRepositorySshPrivateKeyFile(),
+                    task::getGitRepositorySshPrivateKeyFile);
+            setTaskPropertyFromExtension(extension.getGitRepositorySshPassphrase(),
+                    task::getGitRepositorySshPassphrase);
+            task.getRepositoryService().set(repositoryService);
+            task.usesService(repositoryService);
+            task.setGroup("Publishing");
+        });
+
+        File leaseFile = new File(project.getProjectDir(), ".gradle/buildCacheLease.properties");
+
+        project.getTasks().register("acquireBuildCache", AcquireBuildCacheTask.class, task -> {
+            setTaskPropertyFromExtension(extension.getBuildCacheBaseDir(), task::getBuildCacheBaseDir);
+            setTaskPropertyFromExtension(extension.getBuildCacheName(), task::getBuildCacheName);
+            setTaskPropertyFromExtension(extension.getBuildCachePoolSize(), task::getBuildCachePoolSize);
+            setTaskPropertyFromExtension(extension.getBuildCacheLeaseExpirationMinutes(),
+                    task::getBuildCacheLeaseExpirationMinutes);
+            setTaskPropertyFromExtension(extension.getBuildCacheProject(), task::getBuildCacheProject);
+            Project root = project.getRootProject();
+            task.getDependencyLockFiles().from(root.file("settings-gradle.lockfile"),
+                    root.file("gradle/libs.versions.toml"), root.file("gradle/wrapper/gradle-wrapper.properties"));
+            root.getAllprojects().forEach(p -> task.getDependencyLockFiles().from(p.file("gradle.lockfile"),
+                    p.file("buildscript-gradle.lockfile")));
+            task.getLeaseFile().convention(leaseFile);
+            task.setGroup("Build Setup");
+        });
+
+        project.getTasks().register("releaseBuildCache", ReleaseBuildCacheTask.class, task -> {
+            task.getLeaseFile().convention(leaseFile);
+            task.setGroup("Build Setup");
+        });
     }
 }
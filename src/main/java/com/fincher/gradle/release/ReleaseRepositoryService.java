@@ -0,0 +1,152 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * A build service shared by the release tasks of every project in a build. Each repository is opened once per build
+ * and the state of a repository that is expensive to compute, such as the tags of each commit, is cached until a
+ * release task changes it. The writes of release tasks that share a repository are coordinated, so that the tasks can
+ * run in parallel. The working trees that are monitored for changes are watched until the end of the build
+ *
+ * @author Brian Fincher
+ *
+ */
+public abstract class ReleaseRepositoryService implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+
+    /** The name under which the service is registered */
+    static final String NAME = "releaseRepositories";
+
+    private final Map<Path, Repository> repositories = new ConcurrentHashMap<>();
+    private final Map<Path, Map<String, List<String>>> tagsByCommit = new ConcurrentHashMap<>();
+    private final Map<Path, RepositoryWriteCoordinator> coordinators = new ConcurrentHashMap<>();
+
+    /**
+     * Get the repository with a git directory, opening it the first time it is requested
+     *
+     * @param gitDir The git directory
+     * @return The repository
+     * @throws IOException If an error occurs opening the repository
+     */
+    Repository getRepository(Path gitDir) throws IOException {
+        Path key = gitDir.toAbsolutePath().normalize();
+        synchronized (repositories) {
+            Repository repo = repositories.get(key);
+            if (repo == null) {
+                repo = new FileRepositoryBuilder().setGitDir(key.toFile()).build();
+                repositories.put(key, repo);
+            }
+            return repo;
+        }
+    }
+
+    /**
+     * Coordinate the writes of a backend with the other release tasks that write to the same repository
+     *
+     * @param backend The backend
+     * @return A backend that coordinates its writes or the backend itself if it does not write to a repository
+     * @throws IOException If an error occurs locating the git directory
+     */
+    GitBackend coordinate(GitBackend backend) throws IOException {
+        Path gitDir = backend.getGitDir();
+        if (gitDir == null) {
+            return backend;
+        }
+        return new CoordinatedGitBackend(backend, getCoordinator(gitDir));
+    }
+
+    /**
+     * Get the coordinator of the writes to a repository
+     *
+     * @param gitDir The git directory of the repository
+     * @return The coordinator shared by every release task that writes to the repository
+     */
+    RepositoryWriteCoordinator getCoordinator(Path gitDir) {
+        return coordinators.computeIfAbsent(gitDir.toAbsolutePath().normalize(),
+                key -> new RepositoryWriteCoordinator());
+    }
+
+    /**
+     * Get the monitor of the working tree of a backend, which watches the working tree until the end of the build
+     *
+     * @param backend The backend
+     * @return The monitor or null if the backend does not write to a repository or the working tree cannot be
+     *         monitored on this platform
+     * @throws IOException If an error occurs locating the working tree
+     */
+    WorkingTreeMonitor getMonitor(GitBackend backend) throws IOException {
+        Path gitDir = backend.getGitDir();
+        if (gitDir == null) {
+            return null;
+        }
+        return getCoordinator(gitDir).monitor(backend.getWorkTree(), gitDir);
+    }
+
+    /**
+     * Get the names of every tag keyed by the id of the commit that each tag points to. The tags are read once and
+     * cached until {@link #tagsChanged(GitBackend)} is called
+     *
+     * @param backend The backend used to read the tags
+     * @return The tag names of each tagged commit
+     * @throws IOException If an error occurs reading the tags
+     */
+    Map<String, List<String>> getTagsByCommit(GitBackend backend) throws IOException {
+        Path gitDir = backend.getGitDir();
+        if (gitDir == null) {
+            return backend.getTagsByCommit();
+        }
+
+        Path key = gitDir.toAbsolutePath().normalize();
+        Map<String, List<String>> tags = tagsByCommit.get(key);
+        if (tags == null) {
+            tags = backend.getTagsByCommit();
+            tagsByCommit.put(key, tags);
+        }
+        return tags;
+    }
+
+    /**
+     * Discard the cached tags of a repository after a tag is created
+     *
+     * @param backend The backend that created the tag
+     * @throws IOException If an error occurs locating the git directory
+     */
+    void tagsChanged(GitBackend backend) throws IOException {
+        Path gitDir = backend.getGitDir();
+        if (gitDir != null) {
+            tagsChanged(gitDir);
+        }
+    }
+
+    /**
+     * Discard the cached tags of a repository after a tag is created
+     *
+     * @param gitDir The git directory of the repository
+     */
+    void tagsChanged(Path gitDir) {
+        tagsByCommit.remove(gitDir.toAbsolutePath().normalize());
+    }
+
+    @Override
+    public void close() {
+        repositories.values().forEach(Repository::close);
+        repositories.clear();
+        tagsByCommit.clear();
+        try {
+            for (RepositoryWriteCoordinator coordinator : coordinators.values()) {
+                coordinator.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
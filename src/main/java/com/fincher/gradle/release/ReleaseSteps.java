@@ -0,0 +1,574 @@
+package com.fincher.gradle.release;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+/**
+ * The steps of a release that are shared by the release tasks and the release CLI
+ *
+ * @author Brian Fincher
+ *
+ */
+final class ReleaseSteps {
+
+    /** By default, releases can only happen on the master or main branch */
+    static final String DEFAULT_BRANCH_PATTERN = "^(master)|(main)$";
+
+    /** The journal operation of prepareRelease */
+    static final String PREPARE = "prepare";
+
+    /** The journal operation of finalizeRelease */
+    static final String FINALIZE = "finalize";
+
+    /** Publishes a finalized release */
+    @FunctionalInterface
+    static interface Publisher {
+        List<String> publish() throws IOException, GitAPIException;
+    }
+
+    /** Reads the names of the tags of each commit, keyed by commit id. Only called if the tags are needed */
+    @FunctionalInterface
+    static interface TagsByCommit {
+        Map<String, List<String>> get() throws IOException;
+    }
+
+    /** Gets the tags on origin that the release tag must not collide with. Only called if a release is prepared */
+    @FunctionalInterface
+    static interface RemoteTags {
+        Set<String> get() throws GitAPIException;
+    }
+
+    /** Receives the messages that describe the progress of a release */
+    static interface Log {
+
+        /** Discards every message */
+        Log NONE = new Log() {
+            @Override
+            public void lifecycle(String message) {
+            }
+
+            @Override
+            public void warn(String message) {
+            }
+        };
+
+        /**
+         * Report the progress of a release
+         *
+         * @param message The message
+         */
+        void lifecycle(String message);
+
+        /**
+         * Report something that the user should act on but that does not stop the release
+         *
+         * @param message The message
+         */
+        void warn(String message);
+    }
+
+    /** How a finalized release is integrated with the current branch on origin */
+    enum Integration {
+        /** origin does not have the branch or HEAD contains it, so the push fast-forwards the branch */
+        FAST_FORWARD,
+        /** origin has commits that are not in HEAD but do not change the version file, so the release can be rebased */
+        REBASE,
+        /** origin has changed the version file, already contains HEAD or has no history in common with HEAD */
+        ABORT
+    }
+
+    private ReleaseSteps() {
+    }
+
+    /**
+     * Verify that there are no uncommitted changes and that the current branch may be released. The working tree is
+     * not scanned again if it has not changed since it was last found to be clean
+     *
+     * @param backend The git backend
+     * @param branchPattern A regular expression that the current branch must match
+     * @throws IOException If an error occurs reading the repository
+     * @throws GitAPIException If an error occurs reading the repository
+     * @throws IllegalStateException If there are uncommitted changes or the branch does not match
+     */
+    static void verifyCanRelease(GitBackend backend, String branchPattern) throws IOException, GitAPIException {
+        verifyCanRelease(backend, branchPattern, null);
+    }
+
+    /**
+     * Verify that there are no uncommitted changes and that the current branch may be released. Only the files that
+     * the monitor reports as changed since the last check are stamped
+     *
+     * @param backend The git backend
+     * @param branchPattern A regular expression that the current branch must match
+     * @param monitor The monitor of the working tree or null to stamp every file
+     * @throws IOException If an error occurs reading the repository
+     * @throws GitAPIException If an error occurs reading the repository
+     * @throws IllegalStateException If there are uncommitted changes or the branch does not match
+     */
+    static void verifyCanRelease(GitBackend backend, String branchPattern, WorkingTreeMonitor monitor)
+            throws IOException, GitAPIException {
+        StatusCache.verifyNoUncommitedChanges(backend, monitor);
+
+        String branch = backend.getBranch();
+        if (!Pattern.compile(branchPattern).matcher(branch).matches()) {
+            String errorMsg = String.format("Expected branch name to match pattern %s but was %s", branchPattern,
+                    branch);
+            throw new IllegalStateException(errorMsg);
+        }
+    }
+
+    /**
+     * Find the release tag of a commit. A release tag is the tag prefix followed by a version. If a commit has several
+     * release tags, the tag of the highest version is returned
+     *
+     * @param tagsByCommit The names of the tags of each commit, keyed by commit id
+     * @param commit The commit id
+     * @param tagPrefix The prefix of the release tag
+     * @return The name of the release tag or null if the commit has not been released
+     */
+    static String findReleaseTag(Map<String, List<String>> tagsByCommit, String commit, String tagPrefix) {
+        String releaseTag = null;
+        SemanticVersion releaseVersion = null;
+        for (String tag : tagsByCommit.getOrDefault(commit, Collections.emptyList())) {
+            if (tag.startsWith(tagPrefix)) {
+                SemanticVersion version = SemanticVersion.tryParse(tag, tagPrefix.length(), tag.length());
+                if (version != null && (releaseVersion == null || version.compareTo(releaseVersion) > 0)) {
+                    releaseTag = tag;
+                    releaseVersion = version;
+                }
+            }
+        }
+        return releaseTag;
+    }
+
+    /**
+     * Get the tags on origin that the release tag must not collide with. finalizeRelease force pushes the tags, so a
+     * collision that is not detected here replaces a release on origin
+     *
+     * @param backend The git backend
+     * @param tagPrefix The prefix of the release tag
+     * @param credentials The credentials used to authenticate with origin
+     * @param skip True to skip the check, for example when origin cannot be reached
+     * @param log Warns that the check is skipped
+     * @return The names of the tags on origin that start with the tag prefix, or an empty set if the check is skipped
+     * @throws GitAPIException If an error occurs contacting origin
+     * @throws IllegalStateException If origin cannot be reached
+     */
+    static Set<String> getRemoteTags(GitBackend backend, String tagPrefix, GitCredentials credentials, boolean skip,
+            Log log) throws GitAPIException {
+        if (skip) {
+            log.warn("The tags on origin are not checked for a collision with the release tag");
+            return Collections.emptySet();
+        }
+        try {
+            return backend.getRemoteTags(tagPrefix, credentials);
+        } catch (IOException e) {
+            throw new IllegalStateException(String.format("Unable to check the tags on origin for a collision with "
+                    + "the release tag: %s. Use --skipRemoteTagCheck to prepare the release without the check",
+                    e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Prepare a release unless HEAD has already been released, for example by a previous prepare whose build failed
+     * before finalizeRelease. HEAD is only released if it has the tag of the version in the version file, because
+     * projects that share a repository may also share a tag prefix, and the tag of another project says nothing about
+     * this one
+     *
+     * @param backend The git backend
+     * @param version The version file
+     * @param versionFilePath The path of the version file relative to the root of the working tree
+     * @param releaseType The type of release
+     * @param releaseVersionOverride The release version. Required for, and only used with, a MANUAL release
+     * @param tagPrefix The prefix of the release tag
+     * @param tagsByCommit Reads the names of the tags of each commit
+     * @param remoteTags The tags on origin that the release tag must not collide with
+     * @param log Receives the release tag
+     * @return The name of the release tag
+     * @throws IOException If an error occurs writing the commit or the tag
+     * @throws GitAPIException If an error occurs writing the commit or the tag
+     */
+    static String prepareOrSkip(GitBackend backend, VersionFile version, String versionFilePath,
+            ReleaseType releaseType, String releaseVersionOverride, String tagPrefix,
+            TagsByCommit tagsByCommit, RemoteTags remoteTags, Log log)
+            throws IOException, GitAPIException {
+        String head = backend.getHead();
+        String tag = tagPrefix + version;
+        if (head != null && tagsByCommit.get().getOrDefault(head, Collections.emptyList()).contains(tag)) {
+            log.lifecycle("HEAD is already released as " + tag);
+            return tag;
+        }
+
+        tag = prepare(backend, version, versionFilePath, releaseType, releaseVersionOverride, tagPrefix,
+                remoteTags.get());
+        log.lifecycle("Tagged " + tag);
+        return tag;
+    }
+
+    /**
+     * Set the release version, commit it and create the release tag. If a previous prepare committed the release
+     * version but did not complete, the commit is reused and only the tag is created
+     *
+     * @param backend The git backend
+     * @param version The version file
+     * @param versionFilePath The path of the version file relative to the root of the working tree
+     * @param releaseType The type of release
+     * @param releaseVersionOverride The release version. Required for, and only used with, a MANUAL release
+     * @param tagPrefix The prefix of the release tag
+     * @param remoteTags The names of the tags on origin that start with the tag prefix
+     * @return The name of the release tag
+     * @throws IOException If an error occurs writing the commit or the tag
+     * @throws GitAPIException If an error occurs writing the commit or the tag
+     */
+    static String prepare(GitBackend backend, VersionFile version, String versionFilePath, ReleaseType releaseType,
+            String releaseVersionOverride, String tagPrefix, Set<String> remoteTags)
+            throws IOException, GitAPIException {
+        try (ReleaseJournal journal = ReleaseJournal.open(backend.getGitDir(), versionFilePath)) {
+            String head = backend.getHead();
+            String newVersion = journal.findResumableVersion(PREPARE, head);
+            String commit;
+            if (newVersion == null) {
+                journal.begin(PREPARE, head, version.toString());
+                newVersion = bumpReleaseVersion(version, releaseType, releaseVersionOverride);
+                verifyTagIsNew(remoteTags, tagPrefix + newVersion);
+                commit = commitVersion(backend, version, versionFilePath,
+                        String.format("\"Set version for release to %s\"", newVersion));
+                journal.append(ReleaseJournal.Step.COMMITTED, commit, newVersion);
+                journal.sync();
+            } else {
+                // only a journal whose commit is HEAD is resumed
+                journal.resume();
+                commit = head;
+            }
+
+            String tag = tagPrefix + newVersion;
+            if (!commit.equals(backend.getTaggedCommit(tag))) {
+                verifyTagIsNew(remoteTags, tag);
+                backend.tag(tag, commit, tag);
+            }
+            journal.append(ReleaseJournal.Step.TAGGED, tag, commit);
+            journal.append(ReleaseJournal.Step.COMPLETED);
+            return tag;
+        }
+    }
+
+    /**
+     * Finalize a release. The checksums of the artifacts are recorded first, so that they are pushed or bundled with
+     * the release. Without a bundle, the LFS objects may be verified and the release is pushed to origin
+     *
+     * @param backend The git backend
+     * @param version The version file
+     * @param versionFilePath The path of the version file relative to the root of the working tree
+     * @param newVersionOverride The new version. If null, the patch version is incremented and -SNAPSHOT is appended
+     * @param tagPrefix The prefix of the release tags
+     * @param tagsByCommit Reads the names of the tags of each commit
+     * @param artifactManifest The checksums of the artifacts of the release or null if there are none
+     * @param verifyLfsObjects True to verify the LFS objects since the previous release before the push
+     * @param bundleFile The bundle to write the release to instead of pushing it, or null to push
+     * @param dryRun True if the backend only previews the release, in which case the bundle is not written
+     * @param credentials The credentials used to authenticate with origin
+     * @param bundleMonitor Reports the progress of writing the bundle
+     * @param log Receives the result of each push or the contents of the bundle
+     * @throws IOException If an error occurs writing the note, the commit, the bundle or pushing
+     * @throws GitAPIException If an error occurs writing the note, the commit, the bundle or pushing
+     * @throws IllegalStateException If the push would not fast-forward the branch on origin
+     */
+    static void finalizeOrBundle(GitBackend backend, VersionFile version, String versionFilePath,
+            String newVersionOverride, String tagPrefix, TagsByCommit tagsByCommit,
+            String artifactManifest, boolean verifyLfsObjects, Path bundleFile, boolean dryRun,
+            GitCredentials credentials, ProgressMonitor bundleMonitor, Log log) throws IOException, GitAPIException {
+        if (artifactManifest != null) {
+            String tag = addArtifactNote(backend, tagsByCommit.get(), tagPrefix, artifactManifest);
+            if (tag == null) {
+                log.warn("HEAD is not a release, so the artifact checksums were not recorded");
+            } else {
+                log.lifecycle("Recorded the artifact checksums of " + tag);
+            }
+        }
+
+        if (bundleFile == null) {
+            if (verifyLfsObjects) {
+                int verified = verifyLfsObjects(backend, tagPrefix, credentials);
+                log.lifecycle(String.format("Verified that origin stores %d LFS objects", verified));
+            }
+            finalizeRelease(backend, version, versionFilePath, newVersionOverride, credentials)
+                    .forEach(result -> log.lifecycle("Pushed " + result));
+            return;
+        }
+
+        finalizeRelease(backend, version, versionFilePath, newVersionOverride, () -> {
+            if (dryRun) {
+                log.lifecycle("Dry run: bundle " + bundleFile);
+                return List.of();
+            }
+            return ReleaseBundle.write(backend, tagPrefix, bundleFile, credentials, bundleMonitor);
+        }).forEach(result -> log.lifecycle("Bundled " + result));
+    }
+
+    /**
+     * Set the version after a release, commit it and push the branch and tags to origin. If a previous finalize
+     * committed the new version but did not complete, the commit is reused and only the push is repeated. The branch
+     * is fetched from origin first, so that the release is not modified unless the push fast-forwards the branch
+     *
+     * @param backend The git backend
+     * @param version The version file
+     * @param versionFilePath The path of the version file relative to the root of the working tree
+     * @param newVersionOverride The new version. If null, the patch version is incremented and -SNAPSHOT is appended
+     * @param credentials The credentials used to authenticate with origin
+     * @return A description of the result of each push
+     * @throws IOException If an error occurs fetching, writing the commit or pushing
+     * @throws GitAPIException If an error occurs fetching, writing the commit or pushing
+     * @throws IllegalStateException If the push would not fast-forward the branch on origin
+     */
+    static List<String> finalizeRelease(GitBackend backend, VersionFile version, String versionFilePath,
+            String newVersionOverride, GitCredentials credentials) throws IOException, GitAPIException {
+        verifyFastForward(backend, versionFilePath, credentials);
+        return finalizeRelease(backend, version, versionFilePath, newVersionOverride,
+                () -> backend.push(credentials));
+    }
+
+    /**
+     * Set the version after a release, commit it and publish the release, for example by pushing it to origin or by
+     * writing it to a bundle. If a previous finalize committed the new version but did not complete, the commit is
+     * reused and only the publish is repeated
+     *
+     * @param backend The git backend
+     * @param version The version file
+     * @param versionFilePath The path of the version file relative to the root of the working tree
+     * @param newVersionOverride The new version. If null, the patch version is incremented and -SNAPSHOT is appended
+     * @param publisher Publishes the release once the new version is committed
+     * @return A description of the result of the publish
+     * @throws IOException If an error occurs writing the commit or publishing
+     * @throws GitAPIException If an error occurs writing the commit or publishing
+     */
+    static List<String> finalizeRelease(GitBackend backend, VersionFile version, String versionFilePath,
+            String newVersionOverride, Publisher publisher) throws IOException, GitAPIException {
+        try (ReleaseJournal journal = ReleaseJournal.open(backend.getGitDir(), versionFilePath)) {
+            String head = backend.getHead();
+            if (journal.findResumableVersion(FINALIZE, head) == null) {
+                journal.begin(FINALIZE, head, version.toString());
+                if (newVersionOverride == null) {
+                    version.setVersion(version.getVersion().incrementPatch().withSuffix("-SNAPSHOT"));
+                } else {
+                    overrideVersion(version, newVersionOverride);
+                }
+
+                String newVersion = version.toString();
+                String commit = commitVersion(backend, version, versionFilePath,
+                        String.format("\"Set version after release to %s\"", newVersion));
+                journal.append(ReleaseJournal.Step.COMMITTED, commit, newVersion);
+                journal.sync();
+            } else {
+                journal.resume();
+            }
+
+            List<String> results = publisher.publish();
+            journal.append(ReleaseJournal.Step.PUSHED);
+            journal.append(ReleaseJournal.Step.COMPLETED);
+            return results;
+        }
+    }
+
+    /**
+     * Decide how HEAD is integrated with the current branch on origin. Only the commits already in the repository are
+     * read, so nothing is fetched or written
+     *
+     * @param backend The git backend
+     * @param versionFilePath The path of the version file relative to the root of the working tree
+     * @param head The id of the commit at HEAD
+     * @param remoteHead The id of the commit of the branch on origin or null if origin does not have the branch
+     * @return How HEAD is integrated with the branch on origin
+     * @throws IOException If an error occurs reading the repository
+     */
+    static Integration planIntegration(GitBackend backend, String versionFilePath, String head, String remoteHead)
+            throws IOException {
+        if (head == null || remoteHead == null || remoteHead.equals(head)) {
+            return Integration.FAST_FORWARD;
+        }
+
+        String base = backend.getMergeBase(head, remoteHead);
+        if (remoteHead.equals(base)) {
+            return Integration.FAST_FORWARD;
+        }
+        if (base == null || base.equals(head)
+                || backend.isModified(versionFilePath.replace(File.separatorChar, '/'), base, remoteHead)) {
+            return Integration.ABORT;
+        }
+        return Integration.REBASE;
+    }
+
+    /**
+     * Verify that the LFS server of origin stores the LFS objects referenced by the pointer files of the commits since
+     * the previous release, so that a release whose LFS files cannot be checked out is not pushed. The commits of every
+     * release tag other than a tag of HEAD are excluded. Only the pointer files are read, and the server is not
+     * contacted if there are none. When a finalize is resumed, HEAD is the commit of the new version, so only that
+     * commit is checked. Its pointer files were checked before it was committed
+     *
+     * @param backend The git backend
+     * @param tagPrefix The prefix of the release tags
+     * @param credentials The credentials used to authenticate with origin
+     * @return The number of LFS objects that were verified
+     * @throws IOException If an error occurs reading the commits or contacting the LFS server
+     * @throws IllegalStateException If the LFS server does not store one of the objects
+     */
+    static int verifyLfsObjects(GitBackend backend, String tagPrefix, GitCredentials credentials)
+            throws IOException {
+        String head = backend.getHead();
+        if (head == null) {
+            return 0;
+        }
+
+        Map<String, List<String>> tagsByCommit = backend.getTagsByCommit();
+        List<String> previousReleases = new ArrayList<>();
+        for (String commit : tagsByCommit.keySet()) {
+            if (!commit.equals(head) && findReleaseTag(tagsByCommit, commit, tagPrefix) != null) {
+                previousReleases.add(commit);
+            }
+        }
+
+        Map<String, Long> objects = backend.getLfsObjects(previousReleases, credentials);
+        URI endpoint = objects.isEmpty() ? null : backend.getLfsEndpoint();
+        if (endpoint == null) {
+            // without origin there is nothing to push
+            return 0;
+        }
+        LfsObjects.verifyPresent(endpoint, objects, credentials);
+        return objects.size();
+    }
+
+    /**
+     * Record the checksums of the artifacts of a release in a note of the released commit. The note is pushed with the
+     * release
+     *
+     * @param backend The git backend
+     * @param tagsByCommit The names of the tags of each commit, keyed by commit id
+     * @param tagPrefix The prefix of the release tag
+     * @param artifactManifest The checksums of the artifacts of the release
+     * @return The release tag of the noted commit, or null if HEAD has not been released
+     * @throws IOException If an error occurs writing the note
+     * @throws GitAPIException If an error occurs writing the note
+     */
+    static String addArtifactNote(GitBackend backend, Map<String, List<String>> tagsByCommit, String tagPrefix,
+            String artifactManifest) throws IOException, GitAPIException {
+        String head = backend.getHead();
+        String tag = head == null ? null : findReleaseTag(tagsByCommit, head, tagPrefix);
+        if (tag != null) {
+            backend.addNote(head, artifactManifest);
+        }
+        return tag;
+    }
+
+    /**
+     * Replace all of the components of a version
+     *
+     * @param version The version file
+     * @param versionOverride The new version
+     * @throws IllegalArgumentException If the new version is not a valid version
+     */
+    static void overrideVersion(VersionFile version, String versionOverride) {
+        Pattern p = Pattern.compile(VersionFile.VERSION_PATTERN_STR);
+        Matcher m = p.matcher(versionOverride);
+        if (!m.find()) {
+            String errorMsg = String.format("The version of %s does not match the pattern %s", versionOverride,
+                    VersionFile.VERSION_PATTERN_STR);
+            throw new IllegalArgumentException(errorMsg);
+        }
+
+        version.setVersion(SemanticVersion.parse(versionOverride, m.start(VersionFile.MAJOR_GROUP),
+                m.end(VersionFile.SUFFIX_GROUP)));
+    }
+
+    private static String bumpReleaseVersion(VersionFile version, ReleaseType releaseType,
+            String releaseVersionOverride) {
+        switch (releaseType) {
+        case MAJOR:
+            version.setVersion(version.getVersion().incrementMajor());
+            break;
+
+        case MINOR:
+            version.setVersion(version.getVersion().incrementMinor());
+            break;
+
+        case PATCH:
+            // If the current version is a snapshot, just remove the snapshot
+            if (version.getVersion().getSuffix().equals("-SNAPSHOT")) {
+                version.setVersion(version.getVersion().withSuffix(""));
+            } else {
+                version.setVersion(version.getVersion().incrementPatch());
+            }
+            break;
+
+        case MANUAL:
+            if (releaseVersionOverride == null) {
+                throw new IllegalStateException("releaseVersion must be specified with a MANUAL release type");
+            }
+            overrideVersion(version, releaseVersionOverride);
+            break;
+
+        default:
+            throw new IllegalStateException();
+        }
+
+        return version.toString();
+    }
+
+    // A rejected push would otherwise leave the new version committed on top of a release that origin has moved past
+    private static void verifyFastForward(GitBackend backend, String versionFilePath, GitCredentials credentials)
+            throws IOException, GitAPIException {
+        String branch = backend.getBranch();
+        String remoteHead = backend.fetchBranch(credentials);
+        String head = backend.getHead();
+        switch (planIntegration(backend, versionFilePath, head, remoteHead)) {
+        case FAST_FORWARD:
+            return;
+
+        case REBASE:
+            throw new IllegalStateException(String.format("origin/%s has moved since the release was prepared. "
+                    + "Rebase %s onto origin/%s and release again", branch, branch, branch));
+
+        case ABORT:
+            String base = backend.getMergeBase(head, remoteHead);
+            String reason;
+            if (base == null) {
+                reason = "has no history in common with HEAD";
+            } else if (base.equals(head)) {
+                reason = "already contains HEAD";
+            } else {
+                reason = String.format("has changed %s since the release was prepared", versionFilePath);
+            }
+            throw new IllegalStateException(
+                    String.format("Unable to push the release because origin/%s %s", branch, reason));
+
+        default:
+            throw new IllegalStateException();
+        }
+    }
+
+    // finalizeRelease force pushes the tags, which would silently replace a release on origin
+    private static void verifyTagIsNew(Set<String> remoteTags, String tag) {
+        if (remoteTags.contains(tag)) {
+            throw new IllegalStateException(String.format("Tag %s already exists on origin", tag));
+        }
+    }
+
+    private static String commitVersion(GitBackend backend, VersionFile version, String versionFilePath,
+            String message) throws IOException, GitAPIException {
+        String parent = backend.getHead();
+        String commit = backend.commit(versionFilePath.replace(File.separatorChar, '/'), version.getContent(),
+                message);
+        StatusCache.committed(backend, parent);
+        return commit;
+    }
+}
@@ -0,0 +1,193 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+
+/**
+ * Releases several branches of a repository at once, such as the maintenance branches of each supported major
+ * version. Each branch is checked out in its own linked working tree, which shares the object database and packs of
+ * the repository, so that no branch has to be cloned and the main working tree is never switched between branches.
+ * The working trees are kept between releases, so later releases of a branch only update the files that changed.
+ *
+ * <p>
+ * The branches are released in parallel. Status checks run concurrently, while the commits, tags and pushes of the
+ * branches are serialized by a shared {@link RepositoryWriteCoordinator}, because the working trees share refs and
+ * push to the same origin
+ * </p>
+ *
+ * @author Brian Fincher
+ *
+ */
+class ReleaseTrain {
+
+    /** The default regular expression of the branches in a release train */
+    static final String DEFAULT_BRANCH_PATTERN = "^(master|main|\\d+\\.x)$";
+
+    /** The result of releasing one branch of the train */
+    static final class BranchRelease {
+        private final String branch;
+        private String tag;
+        private long millis;
+        private Exception failure;
+
+        BranchRelease(String branch) {
+            this.branch = branch;
+        }
+
+        String getBranch() {
+            return branch;
+        }
+
+        /**
+         * @return The release tag, or null if the release failed
+         */
+        String getTag() {
+            return tag;
+        }
+
+        long getMillis() {
+            return millis;
+        }
+
+        /**
+         * @return The failure, or null if the branch was released
+         */
+        Exception getFailure() {
+            return failure;
+        }
+    }
+
+    private final NativeGitBackend main;
+    private final GitBackend.MonitorFactory monitors;
+    private final Path worktreesDir;
+    private final RepositoryWriteCoordinator coordinator;
+
+    /**
+     * Constructs a new ReleaseTrain
+     *
+     * @param main The backend of the main working tree
+     * @param monitors Creates the monitors that receive the progress of each branch
+     * @param worktreesDir The directory that contains the linked working tree of each branch
+     * @param coordinator Serializes the writes of the branches with those of any other task that writes to the
+     *            repository
+     */
+    ReleaseTrain(NativeGitBackend main, GitBackend.MonitorFactory monitors, Path worktreesDir,
+            RepositoryWriteCoordinator coordinator) {
+        this.main = main;
+        this.monitors = monitors;
+        this.worktreesDir = worktreesDir;
+        this.coordinator = coordinator;
+    }
+
+    /**
+     * Find the branches of the train
+     *
+     * @param branchPattern A regular expression that the branches must match
+     * @return The names of the matching local branches
+     * @throws IOException If git fails
+     */
+    List<String> findBranches(String branchPattern) throws IOException {
+        Pattern pattern = Pattern.compile(branchPattern);
+        return main.getBranches().stream().filter(branch -> pattern.matcher(branch).matches())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Prepare and finalize the release of each branch. A branch whose HEAD is already released is only finalized. The
+     * failure of one branch does not stop the release of the others
+     *
+     * @param branches The branches to release
+     * @param parallelism The maximum number of branches released at once
+     * @param versionFilePath The path of the version file relative to the root of the working tree
+     * @param versionKeyValue The key of the version
+     * @param releaseType The type of release of every branch
+     * @param tagPrefix The prefix of the release tags
+     * @param credentials The credentials used to authenticate with origin
+     * @return The result of each branch
+     * @throws IOException If an error occurs creating the working trees
+     * @throws GitAPIException If an error occurs reading the tags on origin
+     * @throws InterruptedException If interrupted while waiting for the branches
+     */
+    List<BranchRelease> release(List<String> branches, int parallelism, String versionFilePath,
+            String versionKeyValue, ReleaseType releaseType, String tagPrefix, GitCredentials credentials)
+            throws IOException, GitAPIException, InterruptedException {
+        Set<String> remoteTags = main.getRemoteTags(tagPrefix, credentials);
+
+        // git locks the repository while it adds a working tree, so they are added one at a time
+        List<GitBackend> backends = new ArrayList<>();
+        for (String branch : branches) {
+            backends.add(new CoordinatedGitBackend(new NativeGitBackend(checkout(branch), "git", monitors),
+                    coordinator));
+        }
+
+        List<BranchRelease> results = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, branches.size())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < branches.size(); i++) {
+                BranchRelease result = new BranchRelease(branches.get(i));
+                GitBackend backend = backends.get(i);
+                results.add(result);
+                futures.add(executor.submit(() -> release(result, backend, versionFilePath, versionKeyValue,
+                        releaseType, tagPrefix, remoteTags, credentials)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private static void release(BranchRelease result, GitBackend backend, String versionFilePath,
+            String versionKeyValue, ReleaseType releaseType, String tagPrefix, Set<String> remoteTags,
+            GitCredentials credentials) {
+        long start = System.nanoTime();
+        try {
+            ReleaseSteps.verifyCanRelease(backend, Pattern.quote(result.branch));
+            VersionFile version = VersionFile.load(backend.getWorkTree().resolve(versionFilePath), versionKeyValue);
+
+            String tag = ReleaseSteps.prepareOrSkip(backend, version, versionFilePath, releaseType, null, tagPrefix,
+                    backend::getTagsByCommit, () -> remoteTags, ReleaseSteps.Log.NONE);
+            ReleaseSteps.finalizeOrBundle(backend, version, versionFilePath, null, tagPrefix, backend::getTagsByCommit,
+                    null, false, null, false, credentials, NullProgressMonitor.INSTANCE, ReleaseSteps.Log.NONE);
+            result.tag = tag;
+        } catch (IOException | GitAPIException | RuntimeException e) {
+            result.failure = e;
+        }
+        result.millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    // Uses the main working tree if the branch is checked out there, and reuses the working tree of a previous train
+    private Path checkout(String branch) throws IOException {
+        if (branch.equals(main.getBranch())) {
+            return main.getWorkTree();
+        }
+
+        Path dir = worktreesDir.resolve(branch.replaceAll("[^A-Za-z0-9._-]", "_")).toAbsolutePath().normalize();
+        if (Files.exists(dir.resolve(".git"))
+                && branch.equals(new NativeGitBackend(dir, "git", monitors).getBranch())) {
+            return dir;
+        }
+        Files.createDirectories(worktreesDir);
+        main.addWorktree(dir, branch);
+        return dir;
+    }
+}
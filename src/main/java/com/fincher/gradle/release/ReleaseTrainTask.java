@@ -0,0 +1,129 @@
+package com.fincher.gradle.release;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.options.Option;
+
+/**
+ * The task to release several maintenance branches at once. Each branch that matches the train branch regular
+ * expression is checked out in a linked working tree under <code>build/releaseTrain</code>, and is then prepared and
+ * finalized in parallel with the other branches. The working trees share the object database of the repository, so
+ * no branch is cloned and the working tree of the project is not switched between branches.
+ *
+ * <p>
+ * Every branch uses the same release type. A branch whose HEAD is already released is only finalized. The release
+ * train always uses the native git backend and does not support a dry run
+ * </p>
+ *
+ * @author Brian Fincher
+ *
+ */
+public abstract class ReleaseTrainTask extends AbstractReleaseTask {
+
+    private ReleaseType releaseType = ReleaseType.PATCH;
+
+    @Option(option = "releaseType",
+            description = "The type of release of every branch.  One of MAJOR, MINOR, PATCH.  Default is PATCH")
+    void setReleaseType(ReleaseType releaseType) {
+        this.releaseType = releaseType;
+    }
+
+    /**
+     * A regular expression that selects the local branches of the release train. Default is
+     * <code>^(master|main|\d+\.x)$</code>, which selects the main branch and maintenance branches such as
+     * <code>1.x</code>
+     *
+     * @return A regular expression that selects the branches of the release train
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getTrainBranchRegex();
+
+    /**
+     * The maximum number of branches that are released at once. Default is the number of branches
+     *
+     * @return The maximum number of branches that are released at once
+     */
+    @Input
+    @Optional
+    public abstract Property<Integer> getTrainParallelism();
+
+    /**
+     * Gets the optional prefix to be used for created tags. Default is no prefix
+     *
+     * @return the optional prefix to be used for created tags
+     */
+    @Input
+    @Optional
+    public abstract Property<String> getTagPrefix();
+
+    @Override
+    public void releaseTaskAction() throws IOException, GitAPIException {
+        if (dryRun) {
+            throw new IllegalStateException("A release train does not support a dry run");
+        }
+        if (releaseType == ReleaseType.MANUAL) {
+            throw new IllegalStateException("A release train does not support a MANUAL release");
+        }
+
+        Path gitDir = findGitDir();
+        Path workTree = gitDir.getParent();
+        File file = getVersionFile().getOrElse(new File(getProject().getProjectDir(), "gradle.properties"));
+        String versionFilePath = workTree.toAbsolutePath().normalize()
+                .relativize(file.toPath().toAbsolutePath().normalize()).toString();
+
+        GitBackend.MonitorFactory monitors = (operation, unit) -> new GradleProgressMonitor(getLogger(), operation,
+                unit);
+        RepositoryWriteCoordinator coordinator = getRepositoryService().isPresent()
+                ? getRepositoryService().get().getCoordinator(gitDir)
+                : new RepositoryWriteCoordinator();
+        ReleaseTrain train = new ReleaseTrain(new NativeGitBackend(workTree, "git", monitors), monitors,
+                getProject().getLayout().getBuildDirectory().dir("releaseTrain").get().getAsFile().toPath(),
+                coordinator);
+
+        List<String> branches = train
+                .findBranches(getTrainBranchRegex().getOrElse(ReleaseTrain.DEFAULT_BRANCH_PATTERN));
+        if (branches.isEmpty()) {
+            throw new IllegalStateException("No branches match " + getTrainBranchRegex()
+                    .getOrElse(ReleaseTrain.DEFAULT_BRANCH_PATTERN));
+        }
+
+        List<ReleaseTrain.BranchRelease> results;
+        try {
+            results = train.release(branches, getTrainParallelism().getOrElse(branches.size()), versionFilePath,
+                    getVersionKeyValue().getOrElse("version"), releaseType, getTagPrefix().getOrElse(""),
+                    createCredentials());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GradleException("Interrupted while releasing " + branches, e);
+        }
+
+        for (ReleaseTrain.BranchRelease result : results) {
+            if (result.getFailure() == null) {
+                getLogger().lifecycle("Released {} as {} in {} ms", result.getBranch(), result.getTag(),
+                        result.getMillis());
+            } else {
+                getLogger().error("Failed to release {}: {}", result.getBranch(), result.getFailure().getMessage());
+            }
+        }
+
+        List<String> failed = results.stream().filter(result -> result.getFailure() != null)
+                .map(ReleaseTrain.BranchRelease::getBranch).collect(Collectors.toList());
+        if (!failed.isEmpty()) {
+            throw new GradleException("Failed to release " + failed, results.stream()
+                    .filter(result -> result.getFailure() != null).findFirst().get().getFailure());
+        }
+        if (getRepositoryService().isPresent()) {
+            getRepositoryService().get().tagsChanged(gitDir);
+        }
+    }
+}
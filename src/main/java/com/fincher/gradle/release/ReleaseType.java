@@ -0,0 +1,14 @@
+package com.fincher.gradle.release;
+
+/**
+ * The type of release performed by prepareRelease
+ *
+ * @author Brian Fincher
+ *
+ */
+enum ReleaseType {
+    MAJOR,
+    MINOR,
+    PATCH,
+    MANUAL;
+}
@@ -0,0 +1,252 @@
+package com.fincher.gradle.release;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Performs the git status, commit, tag and push of a release in a Gradle worker. The worker opens its own repository
+ * and closes it when the release completes, so that the memory used by JGit is released with the worker rather than
+ * held by the Gradle daemon. The version that was released or set is written to the result file
+ *
+ * @author Brian Fincher
+ *
+ */
+public abstract class ReleaseWorkAction implements WorkAction<ReleaseWorkAction.Parameters> {
+
+    private static final Logger LOGGER = Logging.getLogger(ReleaseWorkAction.class);
+
+    /** The isolation of the worker that performs a release */
+    enum Isolation {
+        /** The release is performed directly by the task action */
+        NONE,
+
+        /** The release is performed by a worker in an isolated classloader of the Gradle daemon */
+        CLASSLOADER,
+
+        /** The release is performed by a worker in a separate process */
+        PROCESS;
+
+        /**
+         * Parse an isolation from its case insensitive name
+         *
+         * @param value The name of the isolation
+         * @return The isolation
+         * @throws IllegalStateException If the name is not a known isolation
+         */
+        static Isolation parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(String.format(
+                        "Unknown worker isolation %s. Must be one of none, classloader or process", value), e);
+            }
+        }
+    }
+
+    /** The parameters of a release performed by a worker */
+    public interface Parameters extends WorkParameters {
+
+        /**
+         * @return Either {@link ReleaseSteps#PREPARE} or {@link ReleaseSteps#FINALIZE}
+         */
+        Property<String> getOperation();
+
+        /**
+         * @return The git directory of the repository
+         */
+        DirectoryProperty getGitDir();
+
+        /**
+         * @return The file that contains the version property
+         */
+        RegularFileProperty getVersionFile();
+
+        /**
+         * @return The key of the version property
+         */
+        Property<String> getVersionKeyValue();
+
+        /**
+         * @return The regular expression that the released branch must match
+         */
+        Property<String> getRequiredBranchRegex();
+
+        /**
+         * @return The git implementation used to perform the release
+         */
+        Property<String> getGitBackend();
+
+        /**
+         * @return The number of threads that check the working tree for uncommitted changes
+         */
+        Property<Integer> getStatusParallelism();
+
+        /**
+         * @return True if the release is only previewed
+         */
+        Property<Boolean> getDryRun();
+
+        /**
+         * @return The type of a prepared release
+         */
+        Property<String> getReleaseType();
+
+        /**
+         * @return The version of a MANUAL prepared release
+         */
+        Property<String> getReleaseVersion();
+
+        /**
+         * @return The prefix of the release tag
+         */
+        Property<String> getTagPrefix();
+
+        /**
+         * @return True if a prepared release is not checked for a collision with the tags on origin
+         */
+        Property<Boolean> getSkipRemoteTagCheck();
+
+        /**
+         * @return The version set after a finalized release
+         */
+        Property<String> getNewVersion();
+
+        /**
+         * @return The git bundle to which a finalized release is written instead of pushing it
+         */
+        RegularFileProperty getBundleFile();
+
+        /**
+         * @return The checksums of the artifacts of the release
+         */
+        Property<String> getArtifactManifest();
+
+        /**
+         * @return True if the LFS objects since the previous release are verified before the release is pushed
+         */
+        Property<Boolean> getVerifyLfsObjects();
+
+        /**
+         * @return The HTTPS user name
+         */
+        Property<String> getGitRepositoryUsername();
+
+        /**
+         * @return The HTTPS password
+         */
+        Property<String> getGitRepositoryPassword();
+
+        /**
+         * @return The SSH private key
+         */
+        Property<String> getGitRepositorySshPrivateKey();
+
+        /**
+         * @return The file containing the SSH private key
+         */
+        RegularFileProperty getGitRepositorySshPrivateKeyFile();
+
+        /**
+         * @return The SSH private key pass phrase
+         */
+        Property<String> getGitRepositorySshPassphrase();
+
+        /**
+         * @return The file to which the released or new version is written
+         */
+        RegularFileProperty getResultFile();
+    }
+
+    @Override
+    public void execute() {
+        Parameters params = getParameters();
+        File gitDir = params.getGitDir().get().getAsFile();
+
+        try (Repository repo = new FileRepositoryBuilder().setGitDir(gitDir).build(); Git git = new Git(repo)) {
+            GitBackend.MonitorFactory monitors = (operation, unit) -> new GradleProgressMonitor(LOGGER, operation,
+                    unit);
+            GitBackend backend;
+            if (GitBackend.Type.parse(params.getGitBackend().get()) == GitBackend.Type.NATIVE) {
+                backend = new NativeGitBackend(gitDir.toPath().getParent(), "git", monitors);
+            } else {
+                backend = new JGitBackend(repo, git, monitors, params.getStatusParallelism().get());
+            }
+            if (params.getDryRun().get()) {
+                backend = new DryRunGitBackend(backend, repo, LOGGER::lifecycle);
+            }
+
+            Path file = params.getVersionFile().get().getAsFile().toPath();
+            VersionFile version = VersionFile.load(file, params.getVersionKeyValue().get());
+            String relativeVersionFile = backend.getWorkTree().toAbsolutePath().normalize()
+                    .relativize(file.toAbsolutePath().normalize()).toString();
+
+            ReleaseSteps.verifyCanRelease(backend, params.getRequiredBranchRegex().get());
+
+            GitCredentials credentials = new GitCredentials(params.getGitRepositoryUsername().getOrNull(),
+                    params.getGitRepositoryPassword().getOrNull(),
+                    params.getGitRepositorySshPrivateKey().getOrNull(),
+                    params.getGitRepositorySshPrivateKeyFile().isPresent()
+                            ? params.getGitRepositorySshPrivateKeyFile().get().getAsFile()
+                            : null,
+                    params.getGitRepositorySshPassphrase().getOrNull());
+            credentials.validate();
+
+            String result;
+            if (params.getOperation().get().equals(ReleaseSteps.PREPARE)) {
+                result = prepare(backend, version, relativeVersionFile, credentials);
+            } else {
+                finalizeRelease(backend, version, relativeVersionFile, credentials);
+                result = version.toString();
+            }
+
+            Files.writeString(params.getResultFile().get().getAsFile().toPath(), result);
+        } catch (IOException | GitAPIException e) {
+            throw new GradleException(String.format("Unable to %s the release: %s", params.getOperation().get(),
+                    e.getMessage()), e);
+        }
+    }
+
+    private String prepare(GitBackend backend, VersionFile version, String relativeVersionFile,
+            GitCredentials credentials) throws IOException, GitAPIException {
+        Parameters params = getParameters();
+        String tagPrefix = params.getTagPrefix().get();
+        ReleaseType releaseType = params.getReleaseType().isPresent()
+                ? ReleaseType.valueOf(params.getReleaseType().get())
+                : null;
+        boolean skipRemoteTagCheck = params.getSkipRemoteTagCheck().getOrElse(false);
+        ReleaseSteps.Log log = new GradleReleaseLog(LOGGER);
+
+        String tag = ReleaseSteps.prepareOrSkip(backend, version, relativeVersionFile, releaseType,
+                params.getReleaseVersion().getOrNull(), tagPrefix, backend::getTagsByCommit,
+                () -> ReleaseSteps.getRemoteTags(backend, tagPrefix, credentials, skipRemoteTagCheck, log), log);
+        return tag.substring(tagPrefix.length());
+    }
+
+    private void finalizeRelease(GitBackend backend, VersionFile version, String relativeVersionFile,
+            GitCredentials credentials) throws IOException, GitAPIException {
+        Parameters params = getParameters();
+        String artifactManifest = params.getArtifactManifest().getOrNull();
+        ReleaseSteps.finalizeOrBundle(backend, version, relativeVersionFile, params.getNewVersion().getOrNull(),
+                params.getTagPrefix().getOrElse(""), backend::getTagsByCommit,
+                artifactManifest, params.getVerifyLfsObjects().getOrElse(false),
+                params.getBundleFile().isPresent() ? params.getBundleFile().get().getAsFile().toPath() : null,
+                params.getDryRun().get(), credentials, new GradleProgressMonitor(LOGGER, "bundle", "objects"),
+                new GradleReleaseLog(LOGGER));
+    }
+}
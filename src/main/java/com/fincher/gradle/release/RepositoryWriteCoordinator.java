@@ -0,0 +1,218 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+
+/**
+ * Coordinates the release tasks that write to the same repository when a build runs them in parallel. Status checks
+ * run concurrently with each other, while commits, tags and pushes are serialized. The version file edits of each
+ * task are made in memory in parallel. Commits to the same working tree that are requested while another commit is
+ * being written are batched into a single commit by the next writer, so that the index is updated once for the whole
+ * batch. Linked working trees of a repository share a coordinator but are committed separately. The coordinator also
+ * holds the {@link WorkingTreeMonitor} of each working tree, so that every check of the build shares its stamps
+ *
+ * @author Brian Fincher
+ *
+ */
+class RepositoryWriteCoordinator {
+
+    /** An operation on the repository */
+    @FunctionalInterface
+    static interface Operation<T> {
+        T run() throws IOException, GitAPIException;
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<PendingCommit> pending = new ArrayList<>();
+    private final Map<Path, WorkingTreeMonitor> monitors = new HashMap<>();
+
+    /**
+     * Run an operation that only reads the repository. Reads run concurrently with each other but not with writes
+     *
+     * @param <T> The type of the result
+     * @param operation The operation
+     * @return The result of the operation
+     * @throws IOException If the operation fails
+     * @throws GitAPIException If the operation fails
+     */
+    <T> T read(Operation<T> operation) throws IOException, GitAPIException {
+        lock.readLock().lock();
+        try {
+            return operation.run();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Run an operation that writes to the repository. Writes are serialized
+     *
+     * @param <T> The type of the result
+     * @param operation The operation
+     * @return The result of the operation
+     * @throws IOException If the operation fails
+     * @throws GitAPIException If the operation fails
+     */
+    <T> T write(Operation<T> operation) throws IOException, GitAPIException {
+        lock.writeLock().lock();
+        try {
+            return operation.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the monitor of a working tree of the repository, starting it the first time that it is requested
+     *
+     * @param workTree The root of the working tree
+     * @param gitDir The git directory of the working tree
+     * @return The monitor or null if the working tree cannot be monitored
+     */
+    WorkingTreeMonitor monitor(Path workTree, Path gitDir) {
+        synchronized (monitors) {
+            return monitors.computeIfAbsent(workTree.toAbsolutePath().normalize(),
+                    key -> WorkingTreeMonitor.open(key, gitDir));
+        }
+    }
+
+    /**
+     * Stop monitoring the working trees of the repository
+     *
+     * @throws IOException If an error occurs closing a monitor
+     */
+    void close() throws IOException {
+        synchronized (monitors) {
+            for (WorkingTreeMonitor monitor : monitors.values()) {
+                monitor.close();
+            }
+            monitors.clear();
+        }
+    }
+
+    /**
+     * Commit files, batched with the commits that other tasks request at the same time. Returns once the files are
+     * committed. Another task may commit before this call returns, so the commit is identified by the returned id
+     * rather than by HEAD
+     *
+     * @param backend The backend used if this call writes the batch
+     * @param files The new content of each file, keyed by the path of the file relative to the root of the working
+     *            tree
+     * @param message The commit message
+     * @return The id of the commit of the batch that contains the files
+     * @throws IOException If an error occurs writing the files or the commit
+     * @throws GitAPIException If an error occurs writing the commit
+     * @throws IllegalStateException If another task in the batch commits the same file
+     */
+    String commit(GitBackend backend, Map<String, byte[]> files, String message) throws IOException, GitAPIException {
+        Path workTree = backend.getWorkTree();
+        PendingCommit commit = new PendingCommit(workTree, files, message);
+        synchronized (pending) {
+            pending.add(commit);
+        }
+
+        lock.writeLock().lock();
+        try {
+            // a previous writer may have already committed this request as part of its batch
+            if (!commit.done) {
+                writeBatch(backend, workTree);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        commit.rethrowFailure();
+        return commit.commitId;
+    }
+
+    // Must hold the write lock
+    private void writeBatch(GitBackend backend, Path workTree) {
+        List<PendingCommit> batch = new ArrayList<>();
+        synchronized (pending) {
+            for (Iterator<PendingCommit> it = pending.iterator(); it.hasNext();) {
+                PendingCommit commit = it.next();
+                if (Objects.equals(commit.workTree, workTree)) {
+                    batch.add(commit);
+                    it.remove();
+                }
+            }
+        }
+
+        Map<String, byte[]> files = new LinkedHashMap<>();
+        List<PendingCommit> committed = new ArrayList<>();
+        List<String> messages = new ArrayList<>();
+        for (PendingCommit commit : batch) {
+            if (commit.files.keySet().stream().anyMatch(files::containsKey)) {
+                commit.complete(null, new IllegalStateException(String.format(
+                        "%s is already being committed by another release task", commit.files.keySet())));
+            } else {
+                files.putAll(commit.files);
+                messages.add(commit.message);
+                committed.add(commit);
+            }
+        }
+
+        WorkingTreeMonitor monitor;
+        synchronized (monitors) {
+            monitor = workTree == null ? null : monitors.get(workTree.toAbsolutePath().normalize());
+        }
+
+        String commitId = null;
+        Exception failure = null;
+        try {
+            String parent = backend.getHead();
+            commitId = backend.commit(files, String.join("\n", messages));
+            // restamped under the write lock, so no other task has written files that it has not committed yet
+            StatusCache.committed(backend, parent, monitor);
+        } catch (IOException | GitAPIException | RuntimeException e) {
+            failure = e;
+        }
+        for (PendingCommit commit : committed) {
+            commit.complete(commitId, failure);
+        }
+    }
+
+    /** A commit requested by a task. Completed by whichever task writes the batch that contains it */
+    private static class PendingCommit {
+
+        private final Path workTree;
+        private final Map<String, byte[]> files;
+        private final String message;
+        private volatile boolean done;
+        private volatile String commitId;
+        private volatile Exception failure;
+
+        PendingCommit(Path workTree, Map<String, byte[]> files, String message) {
+            this.workTree = workTree;
+            this.files = files;
+            this.message = message;
+        }
+
+        void complete(String commitId, Exception failure) {
+            this.commitId = commitId;
+            this.failure = failure;
+            done = true;
+        }
+
+        void rethrowFailure() throws IOException, GitAPIException {
+            if (failure instanceof IOException) {
+                throw (IOException) failure;
+            } else if (failure instanceof GitAPIException) {
+                throw (GitAPIException) failure;
+            } else if (failure != null) {
+                throw (RuntimeException) failure;
+            }
+        }
+    }
+}
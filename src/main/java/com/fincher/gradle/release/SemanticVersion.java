@@ -0,0 +1,326 @@
+package com.fincher.gradle.release;
+
+/**
+ * An immutable version of the form <code>major.minor.patch</code> followed by an optional suffix. Versions are ordered
+ * by the precedence rules of Semantic Versioning 2.0.0. A suffix that starts with <code>+</code> is build metadata.
+ * Any other suffix is a pre-release, up to an optional <code>+</code> that starts build metadata. A leading
+ * <code>-</code> of a pre-release is not part of its identifiers, so that <code>-SNAPSHOT</code> and
+ * <code>_SNAPSHOT</code> are both pre-releases.
+ *
+ * <p>
+ * Parsing a range of characters allocates only the version and its suffix, and comparison does not allocate. The
+ * identifiers of a pre-release are compared in place within the suffix, so that sorting and searching large numbers
+ * of versions, such as the versions of every tag of a repository, is cheap. Build metadata is ignored by
+ * {@link #compareTo(SemanticVersion)} but not by {@link #equals(Object)}
+ * </p>
+ *
+ * @author Brian Fincher
+ *
+ */
+final class SemanticVersion implements Comparable<SemanticVersion> {
+
+    private final long major;
+    private final long minor;
+    private final long patch;
+    private final String suffix;
+    private final int preReleaseStart;
+    private final int preReleaseEnd;
+
+    private SemanticVersion(long major, long minor, long patch, String suffix) {
+        this.major = major;
+        this.minor = minor;
+        this.patch = patch;
+        this.suffix = suffix;
+
+        int buildStart = suffix.indexOf('+');
+        preReleaseEnd = buildStart < 0 ? suffix.length() : buildStart;
+        preReleaseStart = preReleaseEnd > 0 && suffix.charAt(0) == '-' ? 1 : 0;
+    }
+
+    /**
+     * Create a version
+     *
+     * @param major The major version
+     * @param minor The minor version
+     * @param patch The patch version
+     * @param suffix The pre-release and build metadata, including their leading separators. Empty if none
+     * @return The version
+     * @throws IllegalStateException If a number is negative
+     */
+    static SemanticVersion of(long major, long minor, long patch, String suffix) {
+        if (major < 0 || minor < 0 || patch < 0) {
+            throw new IllegalStateException(
+                    String.format("Invalid version %d.%d.%d%s", major, minor, patch, suffix));
+        }
+        return new SemanticVersion(major, minor, patch, suffix);
+    }
+
+    /**
+     * Parse a version
+     *
+     * @param text The version
+     * @return The version
+     * @throws IllegalStateException If the text is not a version
+     */
+    static SemanticVersion parse(CharSequence text) {
+        return parse(text, 0, text.length());
+    }
+
+    /**
+     * Parse a version from a range of characters
+     *
+     * @param text The characters
+     * @param start The offset of the first character of the version
+     * @param end The offset after the last character of the version
+     * @return The version
+     * @throws IllegalStateException If the range is not a version
+     */
+    static SemanticVersion parse(CharSequence text, int start, int end) {
+        SemanticVersion version = tryParse(text, start, end);
+        if (version == null) {
+            throw new IllegalStateException(
+                    String.format("%s is not a version", text.subSequence(start, end)));
+        }
+        return version;
+    }
+
+    /**
+     * Parse a version from a range of characters if it is a version
+     *
+     * @param text The characters
+     * @param start The offset of the first character of the version
+     * @param end The offset after the last character of the version
+     * @return The version or null if the range is not a version
+     */
+    static SemanticVersion tryParse(CharSequence text, int start, int end) {
+        int minorStart = numberEnd(text, start, end);
+        if (minorStart < 0 || minorStart >= end || text.charAt(minorStart) != '.') {
+            return null;
+        }
+        int patchStart = numberEnd(text, minorStart + 1, end);
+        if (patchStart < 0 || patchStart >= end || text.charAt(patchStart) != '.') {
+            return null;
+        }
+        int suffixStart = numberEnd(text, patchStart + 1, end);
+        if (suffixStart < 0) {
+            return null;
+        }
+        for (int i = suffixStart; i < end; i++) {
+            if (!isSuffixChar(text.charAt(i))) {
+                return null;
+            }
+        }
+
+        return new SemanticVersion(parseNumber(text, start, minorStart), parseNumber(text, minorStart + 1, patchStart),
+                parseNumber(text, patchStart + 1, suffixStart),
+                suffixStart == end ? "" : text.subSequence(suffixStart, end).toString());
+    }
+
+    long getMajor() {
+        return major;
+    }
+
+    long getMinor() {
+        return minor;
+    }
+
+    long getPatch() {
+        return patch;
+    }
+
+    /**
+     * @return The pre-release and build metadata, including their leading separators. Empty if none
+     */
+    String getSuffix() {
+        return suffix;
+    }
+
+    /**
+     * @return The pre-release identifiers, without the leading separator. Empty if this is not a pre-release
+     */
+    String getPreRelease() {
+        return suffix.substring(preReleaseStart, preReleaseEnd);
+    }
+
+    /**
+     * @return The build metadata, without the leading <code>+</code>. Empty if none
+     */
+    String getBuildMetadata() {
+        return preReleaseEnd < suffix.length() ? suffix.substring(preReleaseEnd + 1) : "";
+    }
+
+    /**
+     * @return True if this version has pre-release identifiers
+     */
+    boolean isPreRelease() {
+        return preReleaseEnd > preReleaseStart;
+    }
+
+    /**
+     * @return The next major version, without a suffix
+     */
+    SemanticVersion incrementMajor() {
+        return of(Math.addExact(major, 1), 0, 0, "");
+    }
+
+    /**
+     * @return The next minor version, without a suffix
+     */
+    SemanticVersion incrementMinor() {
+        return of(major, Math.addExact(minor, 1), 0, "");
+    }
+
+    /**
+     * @return The next patch version, without a suffix
+     */
+    SemanticVersion incrementPatch() {
+        return of(major, minor, Math.addExact(patch, 1), "");
+    }
+
+    /**
+     * Get this version with a different suffix
+     *
+     * @param newSuffix The pre-release and build metadata, including their leading separators. Empty for none
+     * @return The version with the suffix
+     */
+    SemanticVersion withSuffix(String newSuffix) {
+        return suffix.equals(newSuffix) ? this : of(major, minor, patch, newSuffix);
+    }
+
+    @Override
+    public int compareTo(SemanticVersion other) {
+        int result = Long.compare(major, other.major);
+        if (result == 0) {
+            result = Long.compare(minor, other.minor);
+        }
+        if (result == 0) {
+            result = Long.compare(patch, other.patch);
+        }
+        if (result == 0) {
+            result = comparePreRelease(other);
+        }
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof SemanticVersion)) {
+            return false;
+        }
+        SemanticVersion other = (SemanticVersion) obj;
+        return major == other.major && minor == other.minor && patch == other.patch && suffix.equals(other.suffix);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(major);
+        result = 31 * result + Long.hashCode(minor);
+        result = 31 * result + Long.hashCode(patch);
+        return 31 * result + suffix.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return major + "." + minor + "." + patch + suffix;
+    }
+
+    // A version without a pre-release has a higher precedence than a pre-release
+    private int comparePreRelease(SemanticVersion other) {
+        if (!isPreRelease() || !other.isPreRelease()) {
+            return Boolean.compare(!isPreRelease(), !other.isPreRelease());
+        }
+
+        int i = preReleaseStart;
+        int j = other.preReleaseStart;
+        while (i < preReleaseEnd && j < other.preReleaseEnd) {
+            int end = identifierEnd(suffix, i, preReleaseEnd);
+            int otherEnd = identifierEnd(other.suffix, j, other.preReleaseEnd);
+            int result = compareIdentifiers(suffix, i, end, other.suffix, j, otherEnd);
+            if (result != 0) {
+                return result;
+            }
+            i = end + 1;
+            j = otherEnd + 1;
+        }
+
+        // a larger set of identifiers has a higher precedence when all of the preceding identifiers are equal
+        return Boolean.compare(i < preReleaseEnd, j < other.preReleaseEnd);
+    }
+
+    // Numeric identifiers are compared numerically and have a lower precedence than alphanumeric identifiers
+    private static int compareIdentifiers(String first, int firstStart, int firstEnd, String second, int secondStart,
+            int secondEnd) {
+        boolean firstNumeric = isNumeric(first, firstStart, firstEnd);
+        boolean secondNumeric = isNumeric(second, secondStart, secondEnd);
+        if (firstNumeric && secondNumeric) {
+            while (firstStart < firstEnd - 1 && first.charAt(firstStart) == '0') {
+                firstStart++;
+            }
+            while (secondStart < secondEnd - 1 && second.charAt(secondStart) == '0') {
+                secondStart++;
+            }
+            if (firstEnd - firstStart != secondEnd - secondStart) {
+                return Integer.compare(firstEnd - firstStart, secondEnd - secondStart);
+            }
+        } else if (firstNumeric || secondNumeric) {
+            return firstNumeric ? -1 : 1;
+        }
+
+        int length = Math.min(firstEnd - firstStart, secondEnd - secondStart);
+        for (int k = 0; k < length; k++) {
+            int result = Character.compare(first.charAt(firstStart + k), second.charAt(secondStart + k));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(firstEnd - firstStart, secondEnd - secondStart);
+    }
+
+    private static int identifierEnd(String s, int start, int end) {
+        int i = start;
+        while (i < end && s.charAt(i) != '.') {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isNumeric(String s, int start, int end) {
+        if (start == end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSuffixChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '_'
+                || c == '.' || c == '+';
+    }
+
+    // Returns the offset after the digits at start, or -1 if there are none or the number does not fit in a long
+    private static int numberEnd(CharSequence text, int start, int end) {
+        int i = start;
+        while (i < end && text.charAt(i) >= '0' && text.charAt(i) <= '9') {
+            i++;
+        }
+        if (i == start || i - start > 18) {
+            return -1;
+        }
+        return i;
+    }
+
+    private static long parseNumber(CharSequence text, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (text.charAt(i) - '0');
+        }
+        return value;
+    }
+}
@@ -0,0 +1,334 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.util.FS;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Caches the result of the check for uncommitted changes in <code>.git/release/status</code>, so that the status of a
+ * working tree that has not changed is not scanned again, for example by a finalizeRelease that follows a
+ * prepareRelease. A clean result is stored with stamps of the state that it was computed from: the checksum of the
+ * index, the id of HEAD and a fingerprint of the modification time, size and permissions of every tracked file. A
+ * check whose stamps still match returns immediately, and a change to the index, HEAD or any tracked file changes a
+ * stamp, so the working tree is scanned again. Untracked files are not part of the check, so they are not stamped.
+ * Directory modification times are not stamped either, because they change when untracked files are created but not
+ * when a tracked file is modified in place. With a {@link WorkingTreeMonitor}, the stamps of the files that have not
+ * changed since the last check are reused rather than read again
+ *
+ * @author Brian Fincher
+ *
+ */
+final class StatusCache {
+
+    /** The path of the cache relative to the git directory */
+    static final Path PATH = Path.of("release", "status");
+
+    private static final String SEPARATOR = "\t";
+    private static final String MISSING = "missing";
+    private static final String CONTENT = "content ";
+    private static final int CHECKSUM_LENGTH = 20;
+    // the file system clock of Linux only advances every few milliseconds
+    private static final long FINE_RESOLUTION_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    // a file system that does not record fractions of a second may round to two seconds, such as FAT
+    private static final long COARSE_RESOLUTION_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private StatusCache() {
+    }
+
+    /** The stamps of the state of a working tree */
+    private static final class Stamps {
+        // the checksum of the index, the id of HEAD and the fingerprint of the tracked files
+        private final String value;
+        // the paths of the tracked files that are stamped by their content
+        private final Set<String> hashed;
+
+        Stamps(String value, Set<String> hashed) {
+            this.value = value;
+            this.hashed = hashed;
+        }
+    }
+
+    /**
+     * Verify that the working tree has no uncommitted changes. The status is only computed by the backend if the
+     * stamps of the cached clean result no longer match. The cache is not used if the backend has no git directory,
+     * for example for a dry run
+     *
+     * @param backend The git backend
+     * @throws IOException If an error occurs computing the status or reading the cache
+     * @throws GitAPIException If an error occurs computing the status
+     * @throws IllegalStateException If there are uncommitted changes
+     */
+    static void verifyNoUncommitedChanges(GitBackend backend) throws IOException, GitAPIException {
+        verifyNoUncommitedChanges(backend, null);
+    }
+
+    /**
+     * Verify that the working tree has no uncommitted changes. The status is only computed by the backend if the
+     * stamps of the cached clean result no longer match. Only the files that the monitor reports as changed are
+     * stamped, if it has the stamps of the last check
+     *
+     * @param backend The git backend
+     * @param monitor The monitor of the working tree or null to stamp every file
+     * @throws IOException If an error occurs computing the status or reading the cache
+     * @throws GitAPIException If an error occurs computing the status
+     * @throws IllegalStateException If there are uncommitted changes
+     */
+    static void verifyNoUncommitedChanges(GitBackend backend, WorkingTreeMonitor monitor)
+            throws IOException, GitAPIException {
+        Path gitDir = backend.getGitDir();
+        if (gitDir == null) {
+            backend.verifyNoUncommitedChanges();
+            return;
+        }
+
+        // stamped before the scan, so that a change made during the scan invalidates the stored result
+        Path file = gitDir.resolve(PATH);
+        Stamps cached = read(file);
+        Stamps stamps = stamp(gitDir, backend.getWorkTree(), backend.getHead(),
+                cached == null ? Collections.emptySet() : cached.hashed, monitor);
+        if (stamps != null && cached != null && stamps.value.equals(cached.value)) {
+            return;
+        }
+
+        backend.verifyNoUncommitedChanges();
+        write(file, stamps);
+    }
+
+    /**
+     * Update the cached clean result after the release commits files that it wrote to a clean working tree. The
+     * result is only updated if it was stored for the parent of the commit
+     *
+     * @param backend The git backend that made the commit
+     * @param parent The id of the commit that was HEAD before the commit
+     * @throws IOException If an error occurs reading or writing the cache
+     */
+    static void committed(GitBackend backend, String parent) throws IOException {
+        committed(backend, parent, null);
+    }
+
+    /**
+     * Update the cached clean result after the release commits files that it wrote to a clean working tree. The
+     * result is only updated if it was stored for the parent of the commit
+     *
+     * @param backend The git backend that made the commit
+     * @param parent The id of the commit that was HEAD before the commit
+     * @param monitor The monitor of the working tree or null to stamp every file
+     * @throws IOException If an error occurs reading or writing the cache
+     */
+    static void committed(GitBackend backend, String parent, WorkingTreeMonitor monitor) throws IOException {
+        Path gitDir = backend.getGitDir();
+        if (gitDir == null || parent == null) {
+            return;
+        }
+
+        Path file = gitDir.resolve(PATH);
+        Stamps cached = read(file);
+        if (cached != null && cached.value.split(SEPARATOR)[1].equals(parent)) {
+            write(file, stamp(gitDir, backend.getWorkTree(), backend.getHead(), cached.hashed, monitor));
+        }
+    }
+
+    /**
+     * Compute the stamps of the state of a working tree. A tracked file that was modified so recently that it could
+     * be modified again without changing its modification time is stamped by its content instead, and continues to
+     * be stamped by its content by later checks of the same cached result. The monitor, if any, is held while the
+     * files are stamped, so that concurrent checks do not take each other's changes
+     *
+     * @param gitDir The git directory
+     * @param workTree The root of the working tree
+     * @param head The id of the commit at HEAD
+     * @param hashed The paths of the tracked files that are stamped by their content
+     * @param monitor The monitor of the working tree or null to stamp every file
+     * @return The stamps or null if the state cannot be cached, for example if the index has a submodule
+     * @throws IOException If an error occurs reading the index or a tracked file
+     */
+    private static Stamps stamp(Path gitDir, Path workTree, String head, Set<String> hashed,
+            WorkingTreeMonitor monitor) throws IOException {
+        Path indexFile = gitDir.resolve("index");
+        if (head == null || !Files.exists(indexFile)) {
+            return null;
+        }
+
+        // taken before the index is read, so that a file modified while the files are stamped is stamped by content
+        final FileTime start = FileTime.fromMillis(System.currentTimeMillis());
+        String checksum = readChecksum(indexFile);
+        if (checksum == null) {
+            return null;
+        }
+
+        DirCache index;
+        try {
+            index = DirCache.read(indexFile.toFile(), FS.DETECTED);
+        } catch (IOException e) {
+            // for example a split index, which JGit does not read. The working tree is scanned instead
+            return null;
+        }
+
+        List<String> paths = new ArrayList<>(index.getEntryCount());
+        for (int i = 0; i < index.getEntryCount(); i++) {
+            DirCacheEntry entry = index.getEntry(i);
+            // the state of a submodule is the HEAD of its own repository
+            if (entry.getFileMode() == FileMode.GITLINK || entry.getPathString().indexOf('\n') >= 0) {
+                return null;
+            }
+            paths.add(entry.getPathString());
+        }
+
+        if (monitor == null) {
+            return stamp(workTree, checksum, head, paths, start, hashed, null, null);
+        }
+
+        synchronized (monitor) {
+            // watched before the files are stamped, so that a change made while they are stamped is reported
+            monitor.watch(WorkingTreeMonitor.getDirectories(paths));
+            Map<String, String> previous = monitor.takeStamps();
+            Set<String> changes = monitor.sync();
+            if (previous != null && changes != null) {
+                previous.keySet().removeIf(path -> WorkingTreeMonitor.isChanged(changes, path));
+            } else {
+                previous = null;
+            }
+
+            Map<String, String> files = new HashMap<>();
+            Stamps stamps = stamp(workTree, checksum, head, paths, start, hashed, previous, files);
+            monitor.setStamps(files);
+            return stamps;
+        }
+    }
+
+    private static Stamps stamp(Path workTree, String checksum, String head, List<String> paths, FileTime start,
+            Set<String> hashed, Map<String, String> previous, Map<String, String> files) throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher();
+        Set<String> stampedByContent = new TreeSet<>();
+        for (String path : paths) {
+            String stamp = previous == null ? null : previous.get(path);
+            if (stamp == null) {
+                stamp = stampFile(workTree.resolve(path), start, hashed.contains(path));
+            }
+            if (stamp.startsWith(CONTENT) || stamp.equals(MISSING) && hashed.contains(path)) {
+                stampedByContent.add(path);
+            }
+            if (files != null) {
+                files.put(path, stamp);
+            }
+
+            hasher.putString(path, StandardCharsets.UTF_8).putByte((byte) 0);
+            hasher.putString(stamp, StandardCharsets.UTF_8).putByte((byte) 0);
+        }
+
+        return new Stamps(String.join(SEPARATOR, checksum, head, hasher.hash().toString()),
+                stampedByContent);
+    }
+
+    // Returns the stamp of a file, which starts with CONTENT if the file is stamped by its content
+    private static String stampFile(Path file, FileTime start, boolean byContent) throws IOException {
+        BasicFileAttributes attributes;
+        try {
+            attributes = POSIX
+                    ? Files.readAttributes(file, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                    : Files.readAttributes(file, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        } catch (NoSuchFileException e) {
+            return MISSING;
+        }
+
+        boolean executable = attributes instanceof PosixFileAttributes
+                && ((PosixFileAttributes) attributes).permissions().contains(PosixFilePermission.OWNER_EXECUTE);
+        String type = String.format("%b %b %b", attributes.isSymbolicLink(), attributes.isDirectory(), executable);
+
+        // a file modified within the resolution of the file system clock of the stamp could be modified again
+        // without changing its modification time
+        long modified = attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+        long resolution = modified % TimeUnit.SECONDS.toNanos(1) == 0 ? COARSE_RESOLUTION_NANOS : FINE_RESOLUTION_NANOS;
+        if (!byContent && start.to(TimeUnit.NANOSECONDS) - modified >= resolution) {
+            return String.format("%s %d %d %s", type, modified, attributes.size(), attributes.fileKey());
+        }
+
+        if (attributes.isRegularFile()) {
+            return CONTENT + type + " " + ArtifactManifest.sha256(file);
+        }
+        Hasher hasher = Hashing.sha256().newHasher();
+        if (attributes.isSymbolicLink()) {
+            hasher.putString(Files.readSymbolicLink(file).toString(), StandardCharsets.UTF_8);
+        }
+        return CONTENT + type + " " + hasher.hash();
+    }
+
+    // The trailing checksum of the index changes whenever the index is written. It is all zeros if git was
+    // configured not to compute it
+    private static String readChecksum(Path indexFile) throws IOException {
+        byte[] checksum = new byte[CHECKSUM_LENGTH];
+        try (RandomAccessFile file = new RandomAccessFile(indexFile.toFile(), "r")) {
+            if (file.length() < CHECKSUM_LENGTH) {
+                return null;
+            }
+            file.seek(file.length() - CHECKSUM_LENGTH);
+            file.readFully(checksum);
+        }
+
+        String hex = HexFormat.of().formatHex(checksum);
+        return hex.chars().allMatch(c -> c == '0') ? null : hex;
+    }
+
+    // The first line holds the stamps and each following line the path of a file that is stamped by its content
+    private static Stamps read(Path file) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (lines.isEmpty() || lines.get(0).split(SEPARATOR).length != 3) {
+            return null;
+        }
+        return new Stamps(lines.get(0), new TreeSet<>(lines.subList(1, lines.size())));
+    }
+
+    // The cache is replaced atomically, so a concurrent check never reads a partial result
+    private static void write(Path file, Stamps stamps) throws IOException {
+        if (stamps == null) {
+            Files.deleteIfExists(file);
+            return;
+        }
+
+        Files.createDirectories(file.getParent());
+        Path temp = Files.createTempFile(file.getParent(), "status", null);
+        try {
+            List<String> lines = new ArrayList<>();
+            lines.add(stamps.value);
+            lines.addAll(stamps.hashed);
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.fincher.gradle.release;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds versions in a TOML file, such as a Gradle version catalog. A key is the dotted name of the table followed by
+ * the name of the key, for example <code>versions.guava</code> for <code>guava = "33.2.1"</code> in the
+ * <code>[versions]</code> table. Only single line string values are found
+ *
+ * @author Brian Fincher
+ *
+ */
+class TomlVersionFormat implements VersionFormat {
+
+    private static final Pattern TABLE_PATTERN = Pattern.compile("^\\s*\\[(?<table>[^\\[\\]]+)\\]\\s*(#.*)?$");
+    private static final Pattern TABLE_ARRAY_PATTERN = Pattern.compile("^\\s*\\[\\[");
+    private static final Pattern KEY_VALUE_PATTERN = Pattern.compile(
+            "^\\s*(?<key>[A-Za-z0-9_.\\s-]+|\"[^\"]*\"|'[^']*')\\s*=\\s*(?<quote>[\"'])(?<value>[^\"'\\n]*)\\k<quote>");
+
+    @Override
+    public void scan(CharSequence content, List<String> keys, ValueListener listener) {
+        String table = "";
+        int lineStart = 0;
+        while (lineStart < content.length()) {
+            int lineEnd = lineStart;
+            while (lineEnd < content.length() && content.charAt(lineEnd) != '\n') {
+                lineEnd++;
+            }
+
+            Matcher m = TABLE_PATTERN.matcher(content).region(lineStart, lineEnd);
+            if (TABLE_ARRAY_PATTERN.matcher(content).region(lineStart, lineEnd).find()) {
+                // the elements of an array of tables cannot be named by a key
+                table = null;
+            } else if (m.find()) {
+                table = normalizeKey(m.group("table"));
+            } else if (table != null) {
+                m = KEY_VALUE_PATTERN.matcher(content).region(lineStart, lineEnd);
+                if (m.find()) {
+                    String key = normalizeKey(m.group("key"));
+                    if (!table.isEmpty()) {
+                        key = table + "." + key;
+                    }
+                    if (keys.contains(key)) {
+                        listener.value(key, m.start("value"), m.end("value"));
+                    }
+                }
+            }
+
+            lineStart = lineEnd + 1;
+        }
+    }
+
+    // Removes the whitespace around dots and the quotes of quoted keys
+    private static String normalizeKey(String key) {
+        StringBuilder sb = new StringBuilder();
+        for (String part : key.trim().split("\\s*\\.\\s*")) {
+            if (sb.length() > 0) {
+                sb.append('.');
+            }
+            if (part.length() > 1 && (part.startsWith("\"") || part.startsWith("'"))) {
+                part = part.substring(1, part.length() - 1);
+            }
+            sb.append(part);
+        }
+        return sb.toString();
+    }
+}
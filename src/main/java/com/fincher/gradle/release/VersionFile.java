@@ -1,105 +1,111 @@
 package com.fincher.gradle.release;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
-import org.gradle.api.Project;
-import org.gradle.api.provider.Property;
-
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * The version of a project, read from the values of one or more keys of a version file. The format of the file is
+ * chosen by {@link VersionFormat#forFile(Path)}. The version is read from the first key. Every key is set to the same
+ * version when the version is replaced, and all of the values are replaced in a single pass over the content
+ *
+ * @author Brian Fincher
+ *
+ */
 class VersionFile {
 
-    private static final String VERSION_PREFIX_GROUP = "versionPrefix";
     private static final String VERSION_GROUP = "version";
     static final String MAJOR_GROUP = "major";
     static final String MINOR_GROUP = "minor";
     static final String PATCH_GROUP = "patch";
     static final String SUFFIX_GROUP = "suffix";
 
-    static final String VERSION_PATTERN_STR = String.format(
-            "(?<%s>[\'\"]?(?<%s>\\d+)\\.(?<%s>\\d+)\\.(?<%s>\\d+)(?<%s>[a-zA-Z0-9_-]*)[\'\"]?)", VERSION_GROUP,
-            MAJOR_GROUP, MINOR_GROUP, PATCH_GROUP, SUFFIX_GROUP);
+    /** A version without quotes */
+    static final String VALUE_PATTERN_STR = String.format(
+            "(?<%s>\\d+)\\.(?<%s>\\d+)\\.(?<%s>\\d+)(?<%s>[a-zA-Z0-9_.+-]*)", MAJOR_GROUP, MINOR_GROUP, PATCH_GROUP,
+            SUFFIX_GROUP);
 
-    private final Path file;
-    private final Pattern pattern;
-    private final List<String> fileContent;
-    private final int fileContentIndex;
-    private String major;
-    private String minor;
-    private String patch;
-    private String suffix;
-
-    private VersionFile(Path file, Pattern pattern, List<String> fileContent, int fileContentIndex,
-            SemanticVersion version, String suffix) {
-        this.file = file;
-        this.pattern = pattern;
-        this.fileContent = fileContent;
-        this.fileContentIndex = fileContentIndex;
-        this.major = version.major;
-        this.minor = version.minor;
-        this.patch = version.patch;
-        this.suffix = suffix;
-    }
+    static final String VERSION_PATTERN_STR = String.format("(?<%s>[\'\"]?%s[\'\"]?)", VERSION_GROUP,
+            VALUE_PATTERN_STR);
 
-    static VersionFile load(Project project, Property<File> fileProperty, Property<String> versionKeyValue)
-            throws IOException {
-        Path file = fileProperty.getOrElse(new File(project.getProjectDir(), "gradle.properties")).toPath();
-        return load(file, versionKeyValue.getOrElse(VERSION_GROUP));
-    }
+    private final Path file;
+    private final String content;
+    private final int[] valueStarts;
+    private final int[] valueEnds;
+    private SemanticVersion version;
 
+    private VersionFile(Path file, String content, int[] valueStarts, int[] valueEnds, SemanticVersion version) {
+        this.file = file;
+        this.content = content;
+        this.valueStarts = valueStarts;
+        this.valueEnds = valueEnds;
+        this.version = version;
+    }
+
+    /**
+     * Load the version of a file
+     *
+     * @param file The version file
+     * @param versionKeyValue The key of the version, or a comma separated list of keys that are all set to the
+     *            version of the first key
+     * @return The version file
+     * @throws IOException If an error occurs reading the file
+     * @throws IllegalStateException If a key is not found exactly once or its value is not a version
+     */
     static VersionFile load(Path file, String versionKeyValue) throws IOException {
-        List<String> fileContent = Files.readAllLines(file);
-
-        String versionLinePatternStr = String.format("(?<%s>\\s*%s\\s*=\\s*)%s", VERSION_PREFIX_GROUP, versionKeyValue,
-                VERSION_PATTERN_STR);
-        Pattern pattern = Pattern.compile(versionLinePatternStr);
-
-        int lineIndex = -1;
-        String major = null;
-        String minor = null;
-        String patch = null;
-        String suffix = null;
-
-        for (int i = 0; i < fileContent.size(); i++) {
-            Matcher m = pattern.matcher(fileContent.get(i));
-            if (m.find()) {
-                if (lineIndex != -1) {
-                    throw new IllegalStateException("Multiple lines found matching the version pattern");
-                }
-
-                lineIndex = i;
-                major = m.group(MAJOR_GROUP);
-                minor = m.group(MINOR_GROUP);
-                patch = m.group(PATCH_GROUP);
-                suffix = m.group(SUFFIX_GROUP);
+        String content = Files.readString(file);
+        List<String> keys = Arrays.stream(versionKeyValue.split(",")).map(String::trim)
+                .filter(key -> !key.isEmpty()).distinct().collect(Collectors.toList());
+
+        Map<String, int[]> values = new HashMap<>();
+        VersionFormat.forFile(file).scan(content, keys, (key, start, end) -> {
+            if (values.put(key, new int[] { start, end }) != null) {
+                throw new IllegalStateException(
+                        String.format("Multiple lines found matching the version pattern of %s", key));
             }
+        });
+
+        SemanticVersion version = null;
+        List<int[]> ranges = new ArrayList<>();
+        for (String key : keys) {
+            int[] range = values.get(key);
+            if (range == null) {
+                throw new IllegalStateException(String.format("Unable to parse the version of %s", key));
+            }
+            SemanticVersion value = SemanticVersion.tryParse(content, range[0], range[1]);
+            if (value == null) {
+                throw new IllegalStateException(String.format("The value of %s is not a version: %s", key,
+                        content.substring(range[0], range[1])));
+            }
+            if (version == null) {
+                version = value;
+            }
+            ranges.add(range);
         }
 
-        if (lineIndex == -1) {
-            throw new IllegalStateException("Unable to parse the version");
-        }
-
-        return new VersionFile(file, pattern, fileContent, lineIndex, new SemanticVersion(major, minor, patch), suffix);
-    }
-
-    String getMajor() {
-        return major;
-    }
-
-    String getMinor() {
-        return minor;
+        ranges.sort((a, b) -> Integer.compare(a[0], b[0]));
+        return new VersionFile(file, content, ranges.stream().mapToInt(range -> range[0]).toArray(),
+                ranges.stream().mapToInt(range -> range[1]).toArray(), version);
     }
 
-    String getPatch() {
-        return patch;
+    SemanticVersion getVersion() {
+        return version;
     }
 
-    String getSuffix() {
-        return suffix;
+    /**
+     * Set the version of every key. The content is not modified until it is saved or read
+     *
+     * @param newVersion The new version
+     */
+    void setVersion(SemanticVersion newVersion) {
+        version = newVersion;
     }
 
     Path getFile() {
@@ -110,53 +116,29 @@ class VersionFile {
         if (file == null) {
             throw new IllegalStateException("Cannot save when not loaded from a file");
         }
-        Files.write(file, fileContent);
-    }
-
-    void replaceMajor(String newValue) {
-        replace(MAJOR_GROUP, newValue);
-        major = newValue;
-    }
-
-    void replaceMinor(String newValue) {
-        replace(MINOR_GROUP, newValue);
-        minor = newValue;
-    }
-
-    void replacePatch(String newValue) {
-        replace(PATCH_GROUP, newValue);
-        patch = newValue;
-    }
-
-    void replaceSuffix(String newValue) {
-        replace(SUFFIX_GROUP, newValue);
-        suffix = newValue;
+        Files.write(file, getContent());
+    }
+
+    /**
+     * Get the content of the version file including any replacements. This is the content that would be written by
+     * save
+     *
+     * @return The UTF-8 encoded content of the version file
+     */
+    byte[] getContent() {
+        String version = toString();
+        StringBuilder sb = new StringBuilder(content.length() + valueStarts.length * version.length());
+        int copied = 0;
+        for (int i = 0; i < valueStarts.length; i++) {
+            sb.append(content, copied, valueStarts[i]).append(version);
+            copied = valueEnds[i];
+        }
+        sb.append(content, copied, content.length());
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
     }
 
     @Override
     public String toString() {
-        return String.format("%s.%s.%s%s", major, minor, patch, suffix);
-    }
-
-    private void replace(String group, String newValue) {
-        String line = fileContent.get(fileContentIndex);
-        Matcher m = pattern.matcher(line);
-        m.find();
-
-        line = new StringBuilder(line).replace(m.start(group), m.end(group), newValue).toString();
-        fileContent.set(fileContentIndex, line);
-    }
-
-    private static class SemanticVersion {
-        private final String major;
-        private final String minor;
-        private final String patch;
-
-        SemanticVersion(String major, String minor, String patch) {
-            this.major = major;
-            this.minor = minor;
-            this.patch = patch;
-        }
-
+        return version.toString();
     }
 }
@@ -0,0 +1,60 @@
+package com.fincher.gradle.release;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Locates the values of version keys in the content of a version file. Each format scans the content once, without
+ * building a model of the file, and reports the location of the value of each key that it finds so that the values
+ * can be replaced without otherwise changing the file
+ *
+ * @author Brian Fincher
+ *
+ */
+interface VersionFormat {
+
+    /** Receives the location of each value found by a scan */
+    @FunctionalInterface
+    static interface ValueListener {
+
+        /**
+         * A value of a key was found
+         *
+         * @param key The key
+         * @param start The offset of the first character of the value, excluding any quotes
+         * @param end The offset after the last character of the value, excluding any quotes
+         */
+        void value(String key, int start, int end);
+    }
+
+    /**
+     * Scan content for the values of keys
+     *
+     * @param content The content of the version file
+     * @param keys The keys to find
+     * @param listener Receives the location of each value that is found
+     * @throws IllegalStateException If the content cannot be parsed
+     */
+    void scan(CharSequence content, List<String> keys, ValueListener listener);
+
+    /**
+     * Get the format of a file from its extension. <code>.toml</code>, <code>.xml</code> and <code>.json</code> files
+     * are parsed as TOML, XML and JSON. Every other file is parsed as <code>key = value</code> lines, which supports
+     * properties files and Gradle build files
+     *
+     * @param file The version file
+     * @return The format of the file
+     */
+    static VersionFormat forFile(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".toml")) {
+            return new TomlVersionFormat();
+        } else if (name.endsWith(".xml")) {
+            return new XmlVersionFormat();
+        } else if (name.endsWith(".json")) {
+            return new JsonVersionFormat();
+        }
+        return new PropertiesVersionFormat();
+    }
+}
@@ -0,0 +1,286 @@
+package com.fincher.gradle.release;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the directories of the tracked files of a working tree with a {@link WatchService}, which is backed by
+ * inotify on Linux, and holds the stamps of the tracked files computed by the last check of the {@link StatusCache}.
+ * The next check only stamps the tracked files in or below a directory entry that changed since then, so its cost
+ * grows with the number of edits rather than with the size of the working tree.
+ *
+ * <p>
+ * A check first waits for the events of every change made before it. inotify delivers the events of a watch service
+ * in order, so once the event of a cookie file created in the git directory is received, the events of every earlier
+ * change have been received too. If events were lost, for example because the inotify queue overflowed, the caller
+ * stamps every file again. Instances are not thread safe
+ * </p>
+ *
+ * @author Brian Fincher
+ *
+ */
+final class WorkingTreeMonitor implements Closeable {
+
+    // inotify delivers an event within milliseconds, so a cookie that is not received is never received
+    private static final long SYNC_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final Path workTree;
+    private final Path cookieDir;
+    private final WatchService watchService;
+    private final WatchKey cookieKey;
+    // the watched directories relative to the root of the working tree, which is the empty path
+    private final Map<String, WatchKey> keys = new HashMap<>();
+    private final Map<WatchKey, String> directories = new HashMap<>();
+    private final Set<String> changes = new HashSet<>();
+    private boolean lost;
+    private boolean failed;
+    private Map<String, String> stamps;
+
+    private WorkingTreeMonitor(Path workTree, Path cookieDir, WatchService watchService, WatchKey cookieKey) {
+        this.workTree = workTree;
+        this.cookieDir = cookieDir;
+        this.watchService = watchService;
+        this.cookieKey = cookieKey;
+    }
+
+    /**
+     * Start monitoring a working tree. No directory is watched until {@link #watch(Collection)} is called. Only Linux
+     * is supported, because the watch service of the other platforms polls every watched directory, which costs as
+     * much as stamping the files
+     *
+     * @param workTree The root of the working tree
+     * @param gitDir The git directory of the working tree, in which the cookie files are created
+     * @return The monitor or null if the working tree cannot be monitored
+     */
+    static WorkingTreeMonitor open(Path workTree, Path gitDir) {
+        if (!System.getProperty("os.name", "").startsWith("Linux")) {
+            return null;
+        }
+
+        WatchService watchService = null;
+        try {
+            watchService = workTree.getFileSystem().newWatchService();
+            Path cookieDir = Files.createDirectories(gitDir.resolve("release"));
+            WatchKey cookieKey = cookieDir.register(watchService, ENTRY_CREATE);
+            return new WorkingTreeMonitor(workTree, cookieDir, watchService, cookieKey);
+        } catch (IOException e) {
+            // for example the user has reached the limit of inotify instances
+            try {
+                if (watchService != null) {
+                    watchService.close();
+                }
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Get the directories that contain tracked files, which must be watched
+     *
+     * @param paths The paths of the tracked files relative to the root of the working tree, using / as the separator
+     * @return The directories that contain the files and their ancestors, including the root of the working tree,
+     *         which is the empty path
+     */
+    static Set<String> getDirectories(Collection<String> paths) {
+        Set<String> directories = new LinkedHashSet<>();
+        directories.add("");
+        for (String path : paths) {
+            // the ancestors of a directory that was already added were added with it
+            int i = path.lastIndexOf('/');
+            while (i > 0 && directories.add(path.substring(0, i))) {
+                i = path.lastIndexOf('/', i - 1);
+            }
+        }
+        return directories;
+    }
+
+    /**
+     * Determine whether a tracked file may have changed
+     *
+     * @param changes The changed paths returned by {@link #sync()}
+     * @param path The path of the file relative to the root of the working tree, using / as the separator
+     * @return True if the file or one of its ancestor directories changed
+     */
+    static boolean isChanged(Set<String> changes, String path) {
+        for (int i = path.length(); i > 0; i = path.lastIndexOf('/', i - 1)) {
+            if (changes.contains(path.substring(0, i))) {
+                return true;
+            }
+        }
+        return changes.contains("");
+    }
+
+    /**
+     * Watch the directories that are not watched yet. A directory that does not exist is skipped, because its
+     * creation is reported by the watch of an ancestor. Must be called before the files in the directories are
+     * stamped, so that a change made while they are stamped is reported
+     *
+     * @param paths The directories relative to the root of the working tree, using / as the separator
+     */
+    void watch(Collection<String> paths) {
+        for (String path : paths) {
+            WatchKey key = keys.get(path);
+            if (failed || key != null && key.isValid()) {
+                continue;
+            }
+
+            try {
+                key = workTree.resolve(path).register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                WatchKey previous = keys.put(path, key);
+                if (previous != null) {
+                    directories.remove(previous);
+                }
+                directories.put(key, path);
+            } catch (NoSuchFileException | NotDirectoryException e) {
+                // reported by the watch of an ancestor when the directory is created
+            } catch (IOException e) {
+                // for example the user has reached the limit of inotify watches
+                failed = true;
+            }
+        }
+    }
+
+    /**
+     * Wait until the events of every change made before the call have been received and take the paths that changed
+     * since the last call
+     *
+     * @return The changed files and directories relative to the root of the working tree, where a change to a
+     *         directory may change anything below it, or null if changes may have been lost
+     * @throws IOException If an error occurs creating the cookie file
+     */
+    Set<String> sync() throws IOException {
+        if (failed) {
+            return null;
+        }
+
+        Path cookie = Files.createTempFile(cookieDir, "monitor", ".cookie");
+        try {
+            long deadline = System.nanoTime() + SYNC_TIMEOUT_NANOS;
+            boolean synced = false;
+            while (!synced && !failed) {
+                WatchKey key = watchService.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (key == null) {
+                    failed = true;
+                } else {
+                    synced = process(key, cookie.getFileName());
+                }
+            }
+
+            // a key that was signalled again while it was being processed is queued behind the cookie
+            for (WatchKey key : new ArrayList<>(directories.keySet())) {
+                process(key, null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            lost = true;
+        } finally {
+            Files.deleteIfExists(cookie);
+        }
+
+        Set<String> result = lost || failed ? null : new HashSet<>(changes);
+        changes.clear();
+        lost = false;
+        return result;
+    }
+
+    /**
+     * Take the stamps of the tracked files stored by the last check. They are removed, so that a check that fails
+     * after taking the changes of {@link #sync()} does not leave stamps that no longer match the working tree
+     *
+     * @return The stamp of each tracked file keyed by its path, or null if there are none
+     */
+    Map<String, String> takeStamps() {
+        Map<String, String> result = stamps;
+        stamps = null;
+        return result;
+    }
+
+    /**
+     * Store the stamps of the tracked files, which are current as of the last call to {@link #sync()}
+     *
+     * @param stamps The stamp of each tracked file keyed by its path
+     */
+    void setStamps(Map<String, String> stamps) {
+        this.stamps = stamps;
+    }
+
+    @Override
+    public void close() throws IOException {
+        failed = true;
+        stamps = null;
+        watchService.close();
+    }
+
+    // Returns true if the key received the event of the cookie
+    private boolean process(WatchKey key, Path cookie) {
+        String directory = directories.get(key);
+        boolean synced = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW) {
+                // the events of the key were discarded. An overflow of the inotify queue is signalled to every key
+                lost |= key == cookieKey;
+                synced |= key == cookieKey;
+                if (directory != null) {
+                    changes.add(directory);
+                }
+            } else if (key == cookieKey) {
+                synced |= event.context().equals(cookie);
+            } else if (directory != null) {
+                String name = event.context().toString();
+                String path = directory.isEmpty() ? name : directory + "/" + name;
+                changes.add(path);
+                if (event.kind() != ENTRY_MODIFY && keys.containsKey(path)) {
+                    unwatch(path);
+                }
+            }
+        }
+
+        if (!key.reset()) {
+            if (key == cookieKey) {
+                failed = true;
+            } else if (directory != null) {
+                // the directory was deleted or moved
+                changes.add(directory);
+                keys.remove(directory, key);
+                directories.remove(key);
+            }
+        }
+        return synced;
+    }
+
+    // A directory that was moved is still watched, which would report its changes under its old path. It and the
+    // directories below it are watched again by the next call to watch
+    private void unwatch(String path) {
+        for (Iterator<Map.Entry<String, WatchKey>> it = keys.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, WatchKey> entry = it.next();
+            if (entry.getKey().equals(path) || entry.getKey().startsWith(path + "/")) {
+                entry.getValue().cancel();
+                directories.remove(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+}
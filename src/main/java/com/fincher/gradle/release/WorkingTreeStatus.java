@@ -0,0 +1,57 @@
+package com.fincher.gradle.release;
+
+import java.io.IOException;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.Status;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ProgressMonitor;
+
+/**
+ * Checks the working tree for uncommitted changes
+ *
+ * @author Brian Fincher
+ *
+ */
+final class WorkingTreeStatus {
+
+    private WorkingTreeStatus() {
+    }
+
+    /**
+     * Verify that the working tree has no uncommitted changes
+     *
+     * @param git The git repository
+     * @param monitor Receives the progress of the status scan
+     * @throws GitAPIException If an error occurs computing the status
+     * @throws IllegalStateException If there are uncommitted changes
+     */
+    static void verifyNoUncommitedChanges(Git git, ProgressMonitor monitor) throws GitAPIException {
+        Status status = git.status().setProgressMonitor(monitor).call();
+        if (status.hasUncommittedChanges()) {
+            throw new IllegalStateException("Unable to release with uncommitted changes");
+        }
+    }
+
+    /**
+     * Verify that the working tree has no uncommitted changes. With a parallelism greater than one, or if the LFS
+     * filter is configured, the working tree is checked by a {@link ParallelWorkingTreeStatus} rather than by the
+     * single threaded status of JGit. The status of JGit would run the LFS filter on each file tracked by LFS whose
+     * modification time differs from its index entry, which hashes and copies the whole file every time
+     *
+     * @param git The git repository
+     * @param monitor Receives the progress of the status scan
+     * @param parallelism The number of threads that check the working tree
+     * @throws IOException If an error occurs reading the index or the working tree
+     * @throws GitAPIException If an error occurs computing the status
+     * @throws IllegalStateException If there are uncommitted changes
+     */
+    static void verifyNoUncommitedChanges(Git git, ProgressMonitor monitor, int parallelism)
+            throws IOException, GitAPIException {
+        if (parallelism <= 1 && !LfsObjects.isFilterConfigured(git.getRepository().getConfig())) {
+            verifyNoUncommitedChanges(git, monitor);
+        } else if (ParallelWorkingTreeStatus.hasUncommittedChanges(git, monitor, parallelism)) {
+            throw new IllegalStateException("Unable to release with uncommitted changes");
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.fincher.gradle.release;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds versions in the text of XML elements, such as a Maven pom. A key is the slash separated path of element names
+ * from the root element, for example <code>project/version</code> or <code>project/properties/api.version</code>.
+ * Comments, processing instructions, CDATA sections and declarations are skipped
+ *
+ * @author Brian Fincher
+ *
+ */
+class XmlVersionFormat implements VersionFormat {
+
+    @Override
+    public void scan(CharSequence content, List<String> keys, ValueListener listener) {
+        String text = content.toString();
+        List<String> path = new ArrayList<>();
+
+        int i = text.indexOf('<');
+        while (i >= 0) {
+            if (text.startsWith("<!--", i)) {
+                i = skipPast(text, i, "-->");
+            } else if (text.startsWith("<![CDATA[", i)) {
+                i = skipPast(text, i, "]]>");
+            } else if (text.startsWith("<?", i)) {
+                i = skipPast(text, i, "?>");
+            } else if (text.startsWith("<!", i)) {
+                i = skipPast(text, i, ">");
+            } else if (text.startsWith("</", i)) {
+                if (path.isEmpty()) {
+                    throw new IllegalStateException(String.format("Unexpected end tag at offset %d", i));
+                }
+                path.remove(path.size() - 1);
+                i = skipPast(text, i, ">");
+            } else {
+                int tagEnd = findTagEnd(text, i);
+                int nameEnd = i + 1;
+                while (nameEnd < tagEnd && !Character.isWhitespace(text.charAt(nameEnd))
+                        && text.charAt(nameEnd) != '/') {
+                    nameEnd++;
+                }
+
+                String name = text.substring(i + 1, nameEnd);
+                boolean empty = text.charAt(tagEnd - 1) == '/';
+                i = tagEnd + 1;
+                if (!empty) {
+                    path.add(name);
+                    String key = String.join("/", path);
+                    if (keys.contains(key)) {
+                        reportText(text, key, i, listener);
+                    }
+                }
+            }
+            i = text.indexOf('<', i);
+        }
+    }
+
+    // The value is the text up to the next tag, excluding surrounding whitespace
+    private static void reportText(String text, String key, int start, ValueListener listener) {
+        int end = text.indexOf('<', start);
+        if (end < 0) {
+            end = text.length();
+        }
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        listener.value(key, start, end);
+    }
+
+    private static int skipPast(String text, int start, String terminator) {
+        int end = text.indexOf(terminator, start);
+        if (end < 0) {
+            throw new IllegalStateException(String.format("Unterminated markup at offset %d", start));
+        }
+        return end + terminator.length();
+    }
+
+    // Attribute values may contain '>'
+    private static int findTagEnd(String text, int start) {
+        char quote = 0;
+        for (int i = start + 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            }
+        }
+        throw new IllegalStateException(String.format("Unterminated tag at offset %d", start));
+    }
+}
@@ -1,6 +1,8 @@
 package com.fincher.gradle.release;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import org.junit.jupiter.api.Test;
@@ -18,6 +20,12 @@ class AbstractReleaseTaskTest extends BaseReleaseTaskTest<TestAbstractReleaseTas
         task.releaseTaskAction();
     }
 
+    @Test
+    void testStatusProgressMonitor() throws Exception {
+        task.releaseTaskAction();
+        verify(statusCmd).setProgressMonitor(any(GradleProgressMonitor.class));
+    }
+
     @Test
     void testMainBranch() throws Exception {
         when(repo.getBranch()).thenReturn("main");
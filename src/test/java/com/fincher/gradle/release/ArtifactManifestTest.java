@@ -0,0 +1,74 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ArtifactManifestTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testCreate() throws Exception {
+        Path jar = write("libs/app.jar", "jar");
+        Path empty = write("libs/empty.txt", "");
+        Path cacheFile = dir.resolve("cache/checksums.txt");
+
+        assertEquals(sha256("jar") + "  libs/app.jar\n" + sha256("") + "  libs/empty.txt\n",
+                ArtifactManifest.create(dir, List.of(jar, empty), cacheFile, 2));
+        assertEquals(2, Files.readAllLines(cacheFile).size());
+    }
+
+    @Test
+    void testLargeArtifact() throws Exception {
+        // larger than one memory mapped window
+        byte[] content = new byte[64 * 1024 * 1024 + 17];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        Path file = dir.resolve("large.bin");
+        Files.write(file, content);
+
+        assertEquals(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content)),
+                ArtifactManifest.sha256(file));
+    }
+
+    @Test
+    void testCache() throws Exception {
+        Path jar = write("app.jar", "jar");
+        Path cacheFile = dir.resolve("checksums.txt");
+        ArtifactManifest.create(dir, List.of(jar), cacheFile, 1);
+
+        // an artifact with the cached size and modification time is not hashed again
+        String cached = "0".repeat(64);
+        long modified = Files.getLastModifiedTime(jar).toMillis();
+        Files.writeString(cacheFile, String.join("\t", "3", Long.toString(modified), cached,
+                jar.toAbsolutePath().normalize().toString()));
+        assertEquals(cached + "  app.jar\n", ArtifactManifest.create(dir, List.of(jar), cacheFile, 1));
+
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(modified + 1000));
+        assertEquals(sha256("jar") + "  app.jar\n", ArtifactManifest.create(dir, List.of(jar), cacheFile, 1));
+    }
+
+    private Path write(String name, String content) throws Exception {
+        Path file = dir.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private static String sha256(String content) throws Exception {
+        return HexFormat.of().formatHex(
+                MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+}
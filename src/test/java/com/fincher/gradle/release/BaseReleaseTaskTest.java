@@ -20,8 +20,10 @@ import org.eclipse.jgit.api.Status;
 import org.eclipse.jgit.api.StatusCommand;
 import org.eclipse.jgit.api.TagCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
 import org.gradle.api.provider.Property;
@@ -77,6 +79,7 @@ abstract class BaseReleaseTaskTest<T extends AbstractReleaseTask> {
 
         project = ProjectBuilder.builder().build();
         projectDir = project.getProjectDir().toPath();
+        when(repo.getWorkTree()).thenReturn(projectDir.toFile());
         versionFile = projectDir.resolve("gradle.properties");
         Files.writeString(versionFile, "version=" + INITIAL_VERSION);
 
@@ -90,7 +93,9 @@ abstract class BaseReleaseTaskTest<T extends AbstractReleaseTask> {
     }
 
     void initMocks() throws GitAPIException, IOException {
+        when(git.getRepository()).thenReturn(repo);
         when(git.status()).thenReturn(statusCmd);
+        when(statusCmd.setProgressMonitor(any())).thenReturn(statusCmd);
         when(statusCmd.call()).thenReturn(status);
         when(status.hasUncommittedChanges()).thenReturn(false);
 
@@ -100,8 +105,13 @@ abstract class BaseReleaseTaskTest<T extends AbstractReleaseTask> {
         when(git.add()).thenReturn(addCommand);
         when(addCommand.addFilepattern(anyString())).thenReturn(addCommand);
 
+        // the release is tagged by the id of the commit rather than by HEAD
+        RevCommit releaseCommit = new RevCommit(ObjectId.fromString("0123456789abcdef0123456789abcdef01234567")) {
+        };
         when(git.commit()).thenReturn(commitCommand);
         when(commitCommand.setMessage(anyString())).thenReturn(commitCommand);
+        when(commitCommand.call()).thenReturn(releaseCommit);
+        when(repo.parseCommit(any())).thenReturn(releaseCommit);
 
         when(git.push()).thenReturn(pushCommand);
         when(pushCommand.setPushTags()).thenReturn(pushCommand);
@@ -111,6 +121,7 @@ abstract class BaseReleaseTaskTest<T extends AbstractReleaseTask> {
         when(tagCommand.setMessage(anyString())).thenReturn(tagCommand);
         when(tagCommand.setName(anyString())).thenReturn(tagCommand);
         when(tagCommand.setAnnotated(anyBoolean())).thenReturn(tagCommand);
+        when(tagCommand.setObjectId(any())).thenReturn(tagCommand);
 
         when(versionKeyValueProperty.getOrElse(anyString())).then(returnsFirstArg());
         when(versionFileProperty.getOrElse(any(File.class))).then(returnsFirstArg());
@@ -0,0 +1,199 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BuildCacheLeaseManagerTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+    private static final long OWNER_PID = ProcessHandle.current().pid();
+    private static final String PROJECT = "project";
+    private static final String HASH = "hash";
+
+    @TempDir
+    Path baseDir;
+
+    @Test
+    void testAcquireAndRelease() throws Exception {
+        BuildCacheLeaseManager manager = createManager(2, NOW);
+
+        BuildCacheLease first = manager.acquire(OWNER_PID, PROJECT, HASH);
+        BuildCacheLease second = manager.acquire(OWNER_PID, PROJECT, HASH);
+        assertEquals(baseDir.resolve("cache-1").toAbsolutePath(), first.getSlot());
+        assertEquals(baseDir.resolve("cache-2").toAbsolutePath(), second.getSlot());
+        assertTrue(Files.exists(first.getSlot().resolve(BuildCacheLeaseManager.LEASE_FILE)));
+
+        assertThrows(IllegalStateException.class, () -> manager.acquire(OWNER_PID, PROJECT, HASH));
+
+        assertTrue(BuildCacheLeaseManager.release(first));
+        assertFalse(Files.exists(first.getSlot().resolve(BuildCacheLeaseManager.LEASE_FILE)));
+        assertEquals(first.getSlot(), manager.acquire(OWNER_PID, PROJECT, HASH).getSlot());
+    }
+
+    @Test
+    void testReleaseReclaimedLease() throws Exception {
+        BuildCacheLease stale = createManager(1, NOW).acquire(OWNER_PID, PROJECT, HASH);
+        BuildCacheLease reclaimed = createManager(1, NOW.plus(Duration.ofDays(2))).acquire(OWNER_PID, PROJECT, HASH);
+        assertNotEquals(stale.getToken(), reclaimed.getToken());
+
+        // the stale owner must not release the new lease
+        assertFalse(BuildCacheLeaseManager.release(stale));
+        assertEquals(reclaimed.getToken(),
+                BuildCacheLease.read(reclaimed.getSlot().resolve(BuildCacheLeaseManager.LEASE_FILE)).getToken());
+        assertTrue(BuildCacheLeaseManager.release(reclaimed));
+    }
+
+    @Test
+    void testReclaimDeadOwner() throws Exception {
+        Process process = startAndWaitForExit();
+
+        BuildCacheLeaseManager manager = createManager(1, NOW);
+        BuildCacheLease lease = manager.acquire(process.pid(), PROJECT, HASH);
+        assertEquals(lease.getSlot(), manager.acquire(OWNER_PID, PROJECT, HASH).getSlot());
+    }
+
+    @Test
+    void testLiveOwnerOnOtherHost() throws Exception {
+        Process process = startAndWaitForExit();
+
+        // the liveness of a process on another host cannot be checked, so the lease is held until it expires
+        createManager(1, NOW).acquire(process.pid(), PROJECT, HASH);
+        BuildCacheLeaseManager otherHost = new BuildCacheLeaseManager(baseDir, "cache", 1, Duration.ofDays(1),
+                "otherHost", Clock.fixed(NOW, ZoneOffset.UTC));
+        assertThrows(IllegalStateException.class, () -> otherHost.acquire(OWNER_PID, PROJECT, HASH));
+    }
+
+    @Test
+    void testExpirationOfTheLeaseHolder() throws Exception {
+        // a build without an owner process must not reclaim the lease of a live owner after its own expiration
+        createManager(1, NOW).acquire(OWNER_PID, PROJECT, HASH);
+        BuildCacheLeaseManager unowned = createManager(1, NOW.plus(Duration.ofHours(3)),
+                BuildCacheLeaseManager.DEFAULT_UNOWNED_EXPIRATION);
+        assertThrows(IllegalStateException.class, () -> unowned.acquire(BuildCacheLease.NO_PID, PROJECT, HASH));
+
+        // a lease without an owner expires after its own expiration, not after that of the build that finds it
+        BuildCacheLease lease = createManager(1, NOW.plus(Duration.ofDays(2)),
+                BuildCacheLeaseManager.DEFAULT_UNOWNED_EXPIRATION).acquire(BuildCacheLease.NO_PID, PROJECT, HASH);
+        assertEquals(NOW.plus(Duration.ofDays(2)).plus(BuildCacheLeaseManager.DEFAULT_UNOWNED_EXPIRATION),
+                BuildCacheLease.read(lease.getSlot().resolve(BuildCacheLeaseManager.LEASE_FILE)).getExpires());
+        BuildCacheLease reclaimed = createManager(1, NOW.plus(Duration.ofDays(2)).plus(Duration.ofHours(3)))
+                .acquire(OWNER_PID, PROJECT, HASH);
+        assertNotEquals(lease.getToken(), reclaimed.getToken());
+    }
+
+    @Test
+    void testConcurrentAcquire() throws Exception {
+        int poolSize = 8;
+        BuildCacheLeaseManager manager = createManager(poolSize, NOW);
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+        try {
+            List<Callable<BuildCacheLease>> acquires = new ArrayList<>();
+            for (int i = 0; i < poolSize; i++) {
+                acquires.add(() -> manager.acquire(OWNER_PID, PROJECT, HASH));
+            }
+
+            Set<Path> slots = new HashSet<>();
+            for (Future<BuildCacheLease> lease : executor.invokeAll(acquires)) {
+                slots.add(lease.get().getSlot());
+            }
+            assertEquals(poolSize, slots.size());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void testWarmSlotAffinity() throws Exception {
+        BuildCacheLease a = createManager(3, NOW).acquire(OWNER_PID, "a", "1");
+        BuildCacheLease b = createManager(3, NOW.plusSeconds(1)).acquire(OWNER_PID, "b", "1");
+        assertEquals(BuildCacheLease.Warmth.MISS, a.getWarmth());
+        BuildCacheLeaseManager.release(a);
+        BuildCacheLeaseManager.release(b);
+
+        BuildCacheLease b2 = createManager(3, NOW.plusSeconds(2)).acquire(OWNER_PID, "b", "1");
+        assertEquals(b.getSlot(), b2.getSlot());
+        assertEquals(BuildCacheLease.Warmth.HIT, b2.getWarmth());
+
+        BuildCacheLease a2 = createManager(3, NOW.plusSeconds(3)).acquire(OWNER_PID, "a", "2");
+        assertEquals(a.getSlot(), a2.getSlot());
+        assertEquals(BuildCacheLease.Warmth.PARTIAL, a2.getWarmth());
+
+        BuildCacheStatistics statistics = createManager(3, NOW).getStatistics();
+        assertEquals(1, statistics.getHits());
+        assertEquals(1, statistics.getPartialHits());
+        assertEquals(2, statistics.getMisses());
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() throws Exception {
+        List<BuildCacheLease> leases = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            leases.add(createManager(3, NOW.plusSeconds(i)).acquire(OWNER_PID, "project" + i, HASH));
+        }
+        for (BuildCacheLease lease : leases) {
+            BuildCacheLeaseManager.release(lease);
+        }
+
+        // slot 1 is used again, so slot 2 becomes the least recently used
+        BuildCacheLeaseManager.release(createManager(3, NOW.plusSeconds(10)).acquire(OWNER_PID, "project0", HASH));
+        BuildCacheLease lease = createManager(3, NOW.plusSeconds(11)).acquire(OWNER_PID, "other", HASH);
+        assertEquals(leases.get(1).getSlot(), lease.getSlot());
+        assertEquals(BuildCacheLease.Warmth.MISS, lease.getWarmth());
+    }
+
+    @Test
+    void testHistoryIsBounded() throws Exception {
+        for (int i = 0; i <= BuildCacheSlotHistory.MAX_ENTRIES; i++) {
+            BuildCacheLeaseManager.release(createManager(1, NOW.plusSeconds(i)).acquire(OWNER_PID, PROJECT, "" + i));
+        }
+
+        BuildCacheSlotHistory history = BuildCacheSlotHistory.read(baseDir.resolve("cache-1"));
+        assertEquals(BuildCacheLease.Warmth.PARTIAL, history.getWarmth(PROJECT, "0"));
+        assertEquals(BuildCacheLease.Warmth.HIT, history.getWarmth(PROJECT, "1"));
+        assertEquals(NOW.plusSeconds(BuildCacheSlotHistory.MAX_ENTRIES), history.getLastUsed());
+        assertEquals(0, createManager(1, NOW).getStatistics().getHits());
+    }
+
+    @Test
+    void testReadMissingLease() throws Exception {
+        assertNull(BuildCacheLease.read(baseDir.resolve("missing")));
+    }
+
+    private static Process startAndWaitForExit() throws Exception {
+        String java = ProcessHandle.current().info().command().orElse("java");
+        Process process = new ProcessBuilder(java, "-version").start();
+        process.waitFor();
+        return process;
+    }
+
+    private BuildCacheLeaseManager createManager(int poolSize, Instant now) {
+        return createManager(poolSize, now, Duration.ofDays(1));
+    }
+
+    private BuildCacheLeaseManager createManager(int poolSize, Instant now, Duration expiration) {
+        return new BuildCacheLeaseManager(baseDir, "cache", poolSize, expiration, "thisHost",
+                Clock.fixed(now, ZoneOffset.UTC));
+    }
+}
@@ -167,7 +167,8 @@ class FinalizeReleaseTaskTest extends BaseReleaseTaskTest<FinalizeReleaseTask> {
     }
 
     private void verifyResults(String expectedVersion) throws Exception {
-        VersionFile version = VersionFile.load(project, versionFileProperty, versionKeyValueProperty);
+        VersionFile version = AbstractReleaseTask.loadVersionFile(project, versionFileProperty,
+                versionKeyValueProperty);
         assertEquals(expectedVersion, version.toString());
         verify(git).add();
         verify(addCommand).addFilepattern(versionFile.getFileName().toString());
@@ -179,6 +180,7 @@ class FinalizeReleaseTaskTest extends BaseReleaseTaskTest<FinalizeReleaseTask> {
 
         verify(git, times(2)).push();
         verify(pushCommand).setPushTags();
+        verify(pushCommand, times(2)).setProgressMonitor(any(GradleProgressMonitor.class));
         verify(pushCommand, times(2)).call();
     }
 
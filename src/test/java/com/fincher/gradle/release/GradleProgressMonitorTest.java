@@ -0,0 +1,58 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import org.gradle.api.logging.Logger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class GradleProgressMonitorTest {
+
+    @Mock
+    Logger logger;
+
+    GradleProgressMonitor monitor;
+
+    @BeforeEach
+    void beforeEach() {
+        MockitoAnnotations.openMocks(this);
+        monitor = new GradleProgressMonitor(logger, "push", "objects");
+    }
+
+    @Test
+    void testFinalRateReported() {
+        monitor.start(1);
+        monitor.beginTask("Writing objects", 10);
+        monitor.update(4);
+        monitor.update(6);
+        monitor.endTask();
+
+        assertEquals(10, monitor.getCompleted());
+        verify(logger).lifecycle(eq("git {} {}: {} {} in {} ms ({} {}/s)"), eq("push"), eq("Writing objects"),
+                eq(10L), eq("objects"), any(), any(), eq("objects"));
+    }
+
+    @Test
+    void testNoLiveUpdateForFastTask() {
+        monitor.beginTask("Finding sources", 3);
+        monitor.update(3);
+        verify(logger, never()).lifecycle(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void testCountResetPerTask() {
+        monitor.beginTask("first", 5);
+        monitor.update(5);
+        monitor.endTask();
+        monitor.beginTask("second", 2);
+        monitor.update(1);
+        assertEquals(1, monitor.getCompleted());
+    }
+}
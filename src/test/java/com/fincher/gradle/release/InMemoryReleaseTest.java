@@ -0,0 +1,122 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTag;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InMemoryReleaseTest {
+
+    @TempDir
+    Path dir;
+
+    Git git;
+    ObjectId initialHead;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        git = Git.init().setDirectory(dir.toFile()).setInitialBranch("master").call();
+        Files.createDirectories(dir.resolve("sub/dir"));
+        Files.writeString(dir.resolve("sub/dir/gradle.properties"), "version=0.0.1-SNAPSHOT\n");
+        Files.writeString(dir.resolve("sub/other.txt"), "other\n");
+        Files.writeString(dir.resolve("z.txt"), "z\n");
+        git.add().addFilepattern(".").call();
+        initialHead = git.commit().setMessage("initial commit").call().getId();
+    }
+
+    @AfterEach
+    void afterEach() {
+        git.close();
+    }
+
+    @Test
+    void testCommitAndTag() throws Exception {
+        Repository source = git.getRepository();
+        try (InMemoryRelease release = new InMemoryRelease(source)) {
+            ObjectId commitId = release.commit("sub/dir/gradle.properties",
+                    "version=0.0.1\n".getBytes(StandardCharsets.UTF_8), "release");
+            ObjectId tagId = release.tag("0.0.1", commitId, "0.0.1");
+
+            Repository memory = release.getRepository();
+            assertEquals(commitId, memory.resolve(Constants.R_HEADS + "master"));
+            assertEquals(tagId, memory.exactRef(Constants.R_TAGS + "0.0.1").getObjectId());
+
+            try (ObjectReader reader = memory.newObjectReader(); RevWalk walk = new RevWalk(reader)) {
+                RevCommit commit = walk.parseCommit(commitId);
+                assertEquals(initialHead, commit.getParent(0).getId());
+                assertEquals("release", commit.getFullMessage());
+
+                RevTag tag = walk.parseTag(tagId);
+                assertEquals(commitId, tag.getObject().getId());
+
+                // the version file blob is only in memory, so read it from there
+                TreeWalk treeWalk = TreeWalk.forPath(reader, "sub/dir/gradle.properties", commit.getTree());
+                assertEquals("version=0.0.1\n",
+                        new String(reader.open(treeWalk.getObjectId(0)).getBytes(), StandardCharsets.UTF_8));
+            }
+        }
+
+        // the source repository and working tree are untouched
+        assertEquals(initialHead, source.resolve(Constants.HEAD));
+        assertNull(source.exactRef(Constants.R_TAGS + "0.0.1"));
+        assertEquals("version=0.0.1-SNAPSHOT\n", Files.readString(dir.resolve("sub/dir/gradle.properties")));
+    }
+
+    @Test
+    void testUnchangedTreesAreShared() throws Exception {
+        Repository source = git.getRepository();
+        try (InMemoryRelease release = new InMemoryRelease(source); RevWalk walk = new RevWalk(source)) {
+            ObjectId commitId = release.commit("z.txt", "zz\n".getBytes(StandardCharsets.UTF_8), "release");
+
+            ObjectId sourceSubTree = TreeWalk.forPath(source, "sub", walk.parseCommit(initialHead).getTree())
+                    .getObjectId(0);
+            try (RevWalk memoryWalk = new RevWalk(release.getRepository())) {
+                RevCommit commit = memoryWalk.parseCommit(commitId);
+                try (ObjectReader reader = release.getRepository().newObjectReader()) {
+                    TreeWalk treeWalk = new TreeWalk(reader);
+                    treeWalk.addTree(commit.getTree());
+                    ObjectId memorySubTree = null;
+                    while (treeWalk.next()) {
+                        if (treeWalk.getPathString().equals("sub")) {
+                            memorySubTree = treeWalk.getObjectId(0);
+                        }
+                    }
+                    assertEquals(sourceSubTree, memorySubTree);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testFileNotInHead() throws Exception {
+        try (InMemoryRelease release = new InMemoryRelease(git.getRepository())) {
+            assertThrows(IllegalStateException.class,
+                    () -> release.commit("missing.txt", new byte[0], "release"));
+        }
+    }
+
+    @Test
+    void testExistingTag() throws Exception {
+        git.tag().setName("0.0.1").call();
+        try (InMemoryRelease release = new InMemoryRelease(git.getRepository())) {
+            assertThrows(IllegalStateException.class, () -> release.tag("0.0.1", initialHead, "0.0.1"));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class JsonScannerTest {
+
+    @Test
+    void testDecodedValues() {
+        String content = "{\"objects\": [{\"oid\": \"\\u0061b\\\"c\\\\d\", \"actions\": {\"download\": "
+                + "{\"href\": \"https:\\/\\/example.com\\/a\\tb\"}}}], \"escaped\\u002fname\": \"x\"}";
+        Map<String, String> values = new LinkedHashMap<>();
+        JsonScanner.scan(content, Set.of("objects/0/oid", "objects/0/actions/download/href", "escaped/name"),
+                (path, start, end) -> values.put(path, JsonScanner.decode(content, start, end)));
+        assertEquals(Map.of("objects/0/oid", "ab\"c\\d", "objects/0/actions/download/href",
+                "https://example.com/a\tb", "escaped/name", "x"), values);
+    }
+
+    @Test
+    void testInvalidDocument() {
+        assertThrows(IllegalStateException.class, () -> JsonScanner.scan("{\"oid\": \"a\"", Set.of("oid"),
+                (path, start, end) -> {
+                }));
+        assertThrows(IllegalStateException.class, () -> JsonScanner.decode("\\u12", 0, 4));
+    }
+}
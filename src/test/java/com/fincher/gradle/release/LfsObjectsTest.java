@@ -0,0 +1,239 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class LfsObjectsTest {
+
+    @TempDir
+    Path dir;
+
+    Path workTree;
+    Git git;
+    HttpServer server;
+    URI endpoint;
+    // the objects stored by the stand-in LFS server
+    Set<String> stored = new HashSet<>();
+    List<List<String>> batches = new ArrayList<>();
+    List<String> authorizations = new ArrayList<>();
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        workTree = dir.resolve("work");
+        git = Git.init().setDirectory(workTree.toFile()).setInitialBranch("master").call();
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString("user", null, "name", "Test User");
+        config.setString("user", null, "email", "test@example.com");
+        config.save();
+        Files.writeString(workTree.resolve("gradle.properties"), "version=0.0.1-SNAPSHOT\n");
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("initial commit").call();
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/repo.git/info/lfs/objects/batch", this::handleBatch);
+        server.start();
+        endpoint = URI.create(String.format("http://127.0.0.1:%d/repo.git/info/lfs", server.getAddress().getPort()));
+    }
+
+    @AfterEach
+    void afterEach() {
+        server.stop(0);
+        git.close();
+    }
+
+    @Test
+    void testParsePointer() {
+        LfsObjects.Pointer pointer = LfsObjects.parsePointer(pointer(oid('a'), 12345));
+        assertEquals(oid('a'), pointer.getOid());
+        assertEquals(12345, pointer.getSize());
+
+        assertNull(LfsObjects.parsePointer("version=0.0.1\n".getBytes(StandardCharsets.UTF_8)));
+        assertNull(LfsObjects.parsePointer(("version https://git-lfs.github.com/spec/v1\noid sha256:" + oid('a')
+                + "\nsize 12345").getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testEndpoint() {
+        assertEquals(URI.create("https://lfs.example.com/repo"),
+                LfsObjects.getEndpoint("https://lfs.example.com/repo", "https://example.com/repo.git", workTree));
+        assertEquals(URI.create("https://example.com/org/repo.git/info/lfs"),
+                LfsObjects.getEndpoint(null, "https://example.com/org/repo.git", workTree));
+        assertEquals(URI.create("http://example.com:8080/org/repo.git/info/lfs"),
+                LfsObjects.getEndpoint(null, "http://example.com:8080/org/repo", workTree));
+        assertEquals(URI.create("https://example.com/org/repo.git/info/lfs"),
+                LfsObjects.getEndpoint(null, "git@example.com:org/repo.git", workTree));
+        assertEquals(URI.create("https://example.com/org/repo.git/info/lfs"),
+                LfsObjects.getEndpoint(null, "ssh://git@example.com:2222/org/repo", workTree));
+        assertEquals(dir.resolve("remote.git").toUri(), LfsObjects.getEndpoint(null, "../remote.git", workTree));
+        assertNull(LfsObjects.getEndpoint(null, null, workTree));
+    }
+
+    @Test
+    void testObjectsAreCheckedInBatches() throws Exception {
+        Map<String, Long> objects = new LinkedHashMap<>();
+        for (int i = 0; i < 150; i++) {
+            String oid = String.format("%064x", i);
+            objects.put(oid, (long) i + 1);
+            stored.add(oid);
+        }
+        GitCredentials credentials = new GitCredentials("user", "secret", null, null, null);
+        LfsObjects.verifyPresent(endpoint, objects, credentials);
+        assertEquals(List.of(100, 50), List.of(batches.get(0).size(), batches.get(1).size()));
+        assertEquals("Basic " + Base64.getEncoder().encodeToString("user:secret".getBytes(StandardCharsets.UTF_8)),
+                authorizations.get(0));
+
+        stored.remove(String.format("%064x", 120));
+        assertEquals(List.of(String.format("%064x", 120)),
+                LfsObjects.findMissing(endpoint, objects, GitCredentials.NONE));
+        assertThrows(IllegalStateException.class,
+                () -> LfsObjects.verifyPresent(endpoint, objects, GitCredentials.NONE));
+    }
+
+    @Test
+    void testObjectsSincePreviousRelease() throws Exception {
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString("remote", "origin", "url", "https://example.com/repo.git");
+        config.setString("lfs", null, "url", endpoint.toString());
+        config.save();
+
+        commit("assets/first.bin", pointer(oid('1'), 2000));
+        git.tag().setName("v1.0.0").setMessage("v1.0.0").setAnnotated(true).call();
+        commit("assets/second.bin", pointer(oid('2'), 3000));
+        // a large blob is not read, and a small blob that is not a pointer is ignored
+        commit("assets/large.bin", new byte[LfsObjects.MAX_POINTER_SIZE + 1]);
+        commit("notes.txt", "version https://git-lfs.github.com/spec/v1\n".getBytes(StandardCharsets.UTF_8));
+        git.tag().setName("v1.1.0").setMessage("v1.1.0").setAnnotated(true).call();
+
+        JGitBackend jgit = new JGitBackend(git.getRepository(), git, (operation, unit) -> NullProgressMonitor.INSTANCE);
+        NativeGitBackend nativeGit = new NativeGitBackend(workTree, "git",
+                (operation, unit) -> NullProgressMonitor.INSTANCE);
+        for (GitBackend backend : List.of(jgit, nativeGit)) {
+            assertEquals(endpoint, backend.getLfsEndpoint());
+            assertEquals(Map.of(oid('1'), 2000L, oid('2'), 3000L),
+                    backend.getLfsObjects(List.of(), GitCredentials.NONE));
+            assertEquals(Map.of(oid('2'), 3000L),
+                    backend.getLfsObjects(List.of(jgit.getTaggedCommit("v1.0.0")), GitCredentials.NONE));
+        }
+
+        // HEAD is the release, so only the objects since the previous release are checked
+        batches.clear();
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> ReleaseSteps.verifyLfsObjects(jgit, "v", GitCredentials.NONE));
+        assertTrue(e.getMessage().contains(oid('2')), e.getMessage());
+        assertEquals(List.of(List.of(oid('2'))), batches);
+
+        stored.add(oid('2'));
+        assertEquals(1, ReleaseSteps.verifyLfsObjects(nativeGit, "v", GitCredentials.NONE));
+
+        // the server is not contacted if no pointer file was committed since the previous release
+        batches.clear();
+        commit("gradle.properties", "version=1.1.1-SNAPSHOT\n".getBytes(StandardCharsets.UTF_8));
+        assertEquals(0, ReleaseSteps.verifyLfsObjects(jgit, "v", GitCredentials.NONE));
+        assertEquals(List.of(), batches);
+    }
+
+    @Test
+    void testLocalRemote() throws Exception {
+        Path remoteDir = dir.resolve("remote.git");
+        Git.init().setDirectory(remoteDir.toFile()).setBare(true).setInitialBranch("master").call().close();
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString("remote", "origin", "url", remoteDir.toUri().toString());
+        config.save();
+        commit("assets/first.bin", pointer(oid('1'), 4));
+
+        JGitBackend backend = new JGitBackend(git.getRepository(), git,
+                (operation, unit) -> NullProgressMonitor.INSTANCE);
+        assertThrows(IllegalStateException.class,
+                () -> ReleaseSteps.verifyLfsObjects(backend, "v", GitCredentials.NONE));
+
+        // git-lfs stores the objects of a local remote in its git directory
+        Path object = remoteDir.resolve("lfs/objects/11/11").resolve(oid('1'));
+        Files.createDirectories(object.getParent());
+        Files.writeString(object, "data");
+        assertEquals(1, ReleaseSteps.verifyLfsObjects(backend, "v", GitCredentials.NONE));
+    }
+
+    private void commit(String path, byte[] content) throws Exception {
+        Path file = workTree.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content);
+        git.add().addFilepattern(path).call();
+        git.commit().setMessage("add " + path).call();
+    }
+
+    private static String oid(char c) {
+        return String.valueOf(c).repeat(64);
+    }
+
+    private static byte[] pointer(String oid, long size) {
+        return String.format("version https://git-lfs.github.com/spec/v1\noid sha256:%s\nsize %d\n", oid, size)
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Answers a download batch request like an LFS server, with an action for each stored object
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        String request;
+        try (InputStream in = exchange.getRequestBody()) {
+            request = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        authorizations.add(exchange.getRequestHeaders().getFirst("Authorization"));
+
+        List<String> oids = new ArrayList<>();
+        Matcher m = Pattern.compile("\"oid\":\"([0-9a-f]{64})\"").matcher(request);
+        while (m.find()) {
+            oids.add(m.group(1));
+        }
+        batches.add(oids);
+
+        StringBuilder response = new StringBuilder("{\"transfer\": \"basic\", \"objects\": [");
+        for (int i = 0; i < oids.size(); i++) {
+            String oid = oids.get(i);
+            response.append(i == 0 ? "" : ", ").append("{\"oid\": \"").append(oid).append("\", \"size\": 1, ");
+            if (stored.contains(oid)) {
+                response.append("\"actions\": {\"download\": {\"href\": \"https://example.com/").append(oid)
+                        .append("\"}}}");
+            } else {
+                response.append("\"error\": {\"code\": 404, \"message\": \"Object does not exist\"}}");
+            }
+        }
+        response.append("]}");
+
+        byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/vnd.git-lfs+json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
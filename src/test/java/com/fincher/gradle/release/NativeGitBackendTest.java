@@ -0,0 +1,305 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ProgressMonitor;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class NativeGitBackendTest {
+
+    @TempDir
+    Path dir;
+
+    Path workTree;
+    Path remoteDir;
+    Git git;
+    NativeGitBackend backend;
+    List<String> progressTasks;
+
+    @BeforeAll
+    static void beforeAll() {
+        boolean gitAvailable;
+        try {
+            gitAvailable = new ProcessBuilder("git", "--version").start().waitFor() == 0;
+        } catch (IOException e) {
+            gitAvailable = false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            gitAvailable = false;
+        }
+        assumeTrue(gitAvailable, "git executable not available");
+    }
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        workTree = dir.resolve("work");
+        remoteDir = dir.resolve("remote.git");
+        Git.init().setDirectory(remoteDir.toFile()).setBare(true).setInitialBranch("master").call().close();
+
+        git = Git.init().setDirectory(workTree.toFile()).setInitialBranch("master").call();
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString("user", null, "name", "Test User");
+        config.setString("user", null, "email", "test@example.com");
+        config.setString("remote", "origin", "url", remoteDir.toUri().toString());
+        config.save();
+
+        Files.writeString(workTree.resolve("gradle.properties"), "version=0.0.1-SNAPSHOT\n");
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("initial commit").call();
+
+        progressTasks = new ArrayList<>();
+        backend = new NativeGitBackend(workTree, "git", (operation, unit) -> new RecordingMonitor());
+    }
+
+    @AfterEach
+    void afterEach() {
+        git.close();
+    }
+
+    @Test
+    void testGetBranch() throws Exception {
+        assertEquals("master", backend.getBranch());
+        git.checkout().setCreateBranch(true).setName("other").call();
+        assertEquals("other", backend.getBranch());
+    }
+
+    @Test
+    void testClean() throws Exception {
+        backend.verifyNoUncommitedChanges();
+
+        // untracked files are not uncommitted changes
+        Files.writeString(workTree.resolve("untracked.txt"), "untracked");
+        backend.verifyNoUncommitedChanges();
+    }
+
+    @Test
+    void testUncommittedChanges() throws Exception {
+        Files.writeString(workTree.resolve("gradle.properties"), "version=0.0.2\n");
+        assertThrows(IllegalStateException.class, () -> backend.verifyNoUncommitedChanges());
+    }
+
+    @Test
+    void testCommitTagAndPush() throws Exception {
+        String commit = backend.commit("gradle.properties", "version=0.0.1\n".getBytes(StandardCharsets.UTF_8),
+                "release");
+        assertEquals(backend.getHead(), commit);
+        backend.tag("0.0.1", commit, "0.0.1");
+
+        assertEquals("version=0.0.1\n", Files.readString(workTree.resolve("gradle.properties")));
+        assertEquals("release", git.log().call().iterator().next().getFullMessage().trim());
+        backend.verifyNoUncommitedChanges();
+
+        List<String> results = backend.push(GitCredentials.NONE);
+        assertFalse(results.isEmpty());
+        assertTrue(progressTasks.isEmpty() || progressTasks.stream().allMatch(task -> !task.isEmpty()));
+
+        try (Git remote = Git.open(remoteDir.toFile())) {
+            Repository remoteRepo = remote.getRepository();
+            assertEquals(git.getRepository().resolve(Constants.HEAD), remoteRepo.resolve("refs/heads/master"));
+            assertEquals(git.getRepository().exactRef("refs/tags/0.0.1").getObjectId(),
+                    remoteRepo.exactRef("refs/tags/0.0.1").getObjectId());
+        }
+    }
+
+    @Test
+    void testNoteAndPush() throws Exception {
+        String head = backend.getHead();
+        backend.addNote(head, "first");
+        backend.addNote(head, "abc  app.jar");
+        backend.push(GitCredentials.NONE);
+
+        try (Git remote = Git.open(remoteDir.toFile())) {
+            Repository remoteRepo = remote.getRepository();
+            assertEquals(git.getRepository().resolve(GitBackend.NOTES_REF), remoteRepo.resolve(GitBackend.NOTES_REF));
+            assertEquals("abc  app.jar\n", new String(remoteRepo.open(remote.notesShow()
+                    .setNotesRef(GitBackend.NOTES_REF).setObjectId(remote.log().call().iterator().next()).call()
+                    .getData()).getBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testHeadAndTaggedCommit() throws Exception {
+        assertEquals(git.getRepository().resolve(Constants.HEAD).name(), backend.getHead());
+        assertNull(backend.getTaggedCommit("0.0.1"));
+
+        // a tag names its commit, which need not be HEAD
+        String tagged = backend.getHead();
+        backend.commit("gradle.properties", "version=0.0.1\n".getBytes(StandardCharsets.UTF_8), "release");
+        backend.tag("0.0.1", tagged, "0.0.1");
+        assertEquals(tagged, backend.getTaggedCommit("0.0.1"));
+        assertEquals(git.getRepository().getDirectory().toPath().toRealPath(), backend.getGitDir().toRealPath());
+    }
+
+    @Test
+    void testTagsByCommit() throws Exception {
+        backend.tag("0.0.1", backend.getHead(), "0.0.1");
+        git.tag().setName("lightweight").setAnnotated(false).call();
+
+        Map<String, List<String>> tags = backend.getTagsByCommit();
+        assertEquals(Map.of(backend.getHead(), List.of("0.0.1", "lightweight")), tags);
+        assertEquals(tags, new JGitBackend(git.getRepository(), git, (operation, unit) -> new RecordingMonitor())
+                .getTagsByCommit());
+    }
+
+    @Test
+    void testRemoteTags() throws Exception {
+        backend.tag("v0.0.1", backend.getHead(), "v0.0.1");
+        backend.tag("other", backend.getHead(), "other");
+        backend.push(GitCredentials.NONE);
+        backend.tag("v0.0.2", backend.getHead(), "local only");
+
+        assertEquals(Set.of("v0.0.1"), backend.getRemoteTags("v", GitCredentials.NONE));
+        assertEquals(Set.of("v0.0.1", "other"), backend.getRemoteTags("", GitCredentials.NONE));
+        assertEquals(Set.of("v0.0.1"), new JGitBackend(git.getRepository(), git,
+                (operation, unit) -> new RecordingMonitor()).getRemoteTags("v", GitCredentials.NONE));
+
+        git.getRepository().getConfig().unsetSection("remote", "origin");
+        git.getRepository().getConfig().save();
+        assertTrue(backend.getRemoteTags("v", GitCredentials.NONE).isEmpty());
+    }
+
+    @Test
+    void testFetchBranch() throws Exception {
+        JGitBackend jgitBackend = new JGitBackend(git.getRepository(), git,
+                (operation, unit) -> new RecordingMonitor());
+        assertNull(backend.fetchBranch(GitCredentials.NONE));
+        assertNull(jgitBackend.fetchBranch(GitCredentials.NONE));
+
+        backend.push(GitCredentials.NONE);
+        String pushed = backend.getHead();
+        assertEquals(pushed, backend.fetchBranch(GitCredentials.NONE));
+        assertEquals(pushed, jgitBackend.fetchBranch(GitCredentials.NONE));
+        backend.commit("gradle.properties", "version=0.0.1\n".getBytes(StandardCharsets.UTF_8), "release");
+        String head = backend.getHead();
+        assertEquals(ReleaseSteps.Integration.FAST_FORWARD,
+                ReleaseSteps.planIntegration(backend, "gradle.properties", head, pushed));
+
+        // another clone pushes commits that are not in the repository, which are fetched without their tags
+        Path otherDir = dir.resolve("other");
+        try (Git other = Git.cloneRepository().setURI(remoteDir.toUri().toString()).setDirectory(otherDir.toFile())
+                .call()) {
+            for (String name : List.of("first", "second")) {
+                Files.writeString(otherDir.resolve(name + ".txt"), name);
+                other.add().addFilepattern(".").call();
+                other.commit().setMessage(name).call();
+                other.tag().setName(name).call();
+                other.push().call();
+                other.push().setPushTags().call();
+                String moved = other.getRepository().resolve(Constants.HEAD).name();
+
+                GitBackend fetcher = name.equals("first") ? jgitBackend : backend;
+                assertEquals(moved, fetcher.fetchBranch(GitCredentials.NONE));
+                assertEquals(moved, git.getRepository().resolve("refs/remotes/origin/master").name());
+                assertNull(git.getRepository().exactRef("refs/tags/" + name));
+            }
+        }
+
+        String moved = git.getRepository().resolve("refs/remotes/origin/master").name();
+        assertEquals(pushed, backend.getMergeBase(head, moved));
+        assertEquals(pushed, jgitBackend.getMergeBase(head, moved));
+        assertTrue(backend.isModified("gradle.properties", pushed, head));
+        assertFalse(backend.isModified("gradle.properties", pushed, moved));
+        assertTrue(jgitBackend.isModified("second.txt", pushed, moved));
+        assertFalse(jgitBackend.isModified("gradle.properties", pushed, moved));
+        assertEquals(ReleaseSteps.Integration.REBASE,
+                ReleaseSteps.planIntegration(backend, "gradle.properties", head, moved));
+        assertEquals(ReleaseSteps.Integration.ABORT,
+                ReleaseSteps.planIntegration(backend, "first.txt", head, moved));
+        assertEquals(ReleaseSteps.Integration.ABORT,
+                ReleaseSteps.planIntegration(backend, "gradle.properties", pushed, moved));
+    }
+
+    @Test
+    void testLfsObjectsOfPartialClone() throws Exception {
+        String first = "1".repeat(64);
+        String second = "2".repeat(64);
+        for (String oid : List.of(first, second)) {
+            backend.commit("asset.bin", String.format("version https://git-lfs.github.com/spec/v1\noid sha256:%s\n"
+                    + "size %d\n", oid, oid.equals(first) ? 2000 : 3000).getBytes(StandardCharsets.UTF_8), oid);
+        }
+        backend.push(GitCredentials.NONE);
+        try (Git remote = Git.open(remoteDir.toFile())) {
+            StoredConfig config = remote.getRepository().getConfig();
+            config.setBoolean("uploadpack", null, "allowFilter", true);
+            config.save();
+        }
+
+        // only the blobs of HEAD are checked out, so the first pointer file is missing
+        Path cloneDir = dir.resolve("clone");
+        Process clone = new ProcessBuilder("git", "clone", "--quiet", "--filter=blob:none",
+                remoteDir.toUri().toString(), cloneDir.toString()).redirectErrorStream(true).start();
+        assertEquals(0, clone.waitFor(), new String(clone.getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        NativeGitBackend partial = new NativeGitBackend(cloneDir, "git", (operation, unit) -> new RecordingMonitor());
+        assertEquals(Map.of(first, 2000L, second, 3000L), partial.getLfsObjects(List.of(), GitCredentials.NONE));
+
+        try (Git cloneGit = Git.open(cloneDir.toFile())) {
+            JGitBackend jgitBackend = new JGitBackend(cloneGit.getRepository(), cloneGit,
+                    (operation, unit) -> new RecordingMonitor());
+            IllegalStateException e = assertThrows(IllegalStateException.class,
+                    () -> jgitBackend.getLfsObjects(List.of(), GitCredentials.NONE));
+            assertTrue(e.getMessage().contains("Use the native git backend"), e.getMessage());
+        }
+    }
+
+    @Test
+    void testFailedCommandReportsError() {
+        IOException e = assertThrows(IOException.class, () -> backend.tag("bad..name", backend.getHead(), "bad"));
+        assertTrue(e.getMessage().contains("git tag"));
+    }
+
+    @Test
+    void testSshPassphraseNotSupported() {
+        GitCredentials credentials = new GitCredentials(null, null, "key", null, "passphrase");
+        assertThrows(IllegalStateException.class, () -> backend.push(credentials));
+    }
+
+    private class RecordingMonitor implements ProgressMonitor {
+
+        @Override
+        public void start(int totalTasks) {
+        }
+
+        @Override
+        public void beginTask(String title, int totalWork) {
+            progressTasks.add(title);
+        }
+
+        @Override
+        public void update(int completed) {
+        }
+
+        @Override
+        public void endTask() {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        public void showDuration(boolean enabled) {
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermission;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Set;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ParallelWorkingTreeStatusTest {
+
+    @TempDir
+    Path workTree;
+
+    Git git;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        git = Git.init().setDirectory(workTree.toFile()).setInitialBranch("master").call();
+        Files.writeString(workTree.resolve("gradle.properties"), "version=0.0.1-SNAPSHOT\n");
+        for (String dir : new String[] { "a", "b/c", "b/d" }) {
+            Files.createDirectories(workTree.resolve(dir));
+            for (int i = 0; i < 1500; i++) {
+                Files.writeString(workTree.resolve(dir).resolve("file" + i + ".txt"), dir + " " + i + "\n");
+            }
+        }
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("initial commit").call();
+    }
+
+    @AfterEach
+    void afterEach() {
+        git.close();
+    }
+
+    @Test
+    void testCleanTree() throws Exception {
+        Files.writeString(workTree.resolve("untracked.txt"), "untracked");
+        assertStatus(false);
+
+        // a file modified after the index was written is read, but is clean if its content is unchanged
+        Path file = workTree.resolve("b/c/file7.txt");
+        Files.writeString(file, "b/c 7\n");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plus(1, ChronoUnit.MINUTES)));
+        assertStatus(false);
+    }
+
+    @Test
+    void testModifiedFile() throws Exception {
+        Files.writeString(workTree.resolve("b/d/file1499.txt"), "modified\n");
+        assertStatus(true);
+    }
+
+    @Test
+    void testMissingFile() throws Exception {
+        Files.delete(workTree.resolve("a/file0.txt"));
+        assertStatus(true);
+    }
+
+    @Test
+    void testStagedChanges() throws Exception {
+        Files.writeString(workTree.resolve("added.txt"), "added");
+        git.add().addFilepattern("added.txt").call();
+        assertStatus(true);
+        git.reset().addPath("added.txt").call();
+        assertStatus(false);
+
+        // a directory removed from the index is not a shard of the index
+        git.rm().setCached(true).addFilepattern("a").call();
+        assertStatus(true);
+    }
+
+    @Test
+    void testExecutableFile() throws Exception {
+        Path file = workTree.resolve("gradle.properties");
+        Set<PosixFilePermission> permissions = Files.getPosixFilePermissions(file);
+        permissions.add(PosixFilePermission.OWNER_EXECUTE);
+        Files.setPosixFilePermissions(file, permissions);
+        assertStatus(true);
+
+        // the mode is ignored if core.fileMode is false
+        StoredConfig config = git.getRepository().getConfig();
+        config.setBoolean("core", null, "fileMode", false);
+        config.save();
+        assertStatus(false);
+    }
+
+    @Test
+    void testConvertedFile() throws Exception {
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString("core", null, "autocrlf", "true");
+        config.save();
+
+        // a file whose content differs from its blob may be converted, so JGit decides whether it is modified
+        Files.writeString(workTree.resolve("a/file3.txt"), "a 3\r\n");
+        assertStatus(git.status().call().hasUncommittedChanges());
+        Files.writeString(workTree.resolve("a/file3.txt"), "a 4\r\n");
+        assertStatus(true);
+    }
+
+    @Test
+    void testLfsPointers() throws Exception {
+        // a stand-in for git-lfs clean that logs each file it hashes and passes a pointer file through
+        Path log = workTree.resolve(".git/clean.log");
+        Path filter = workTree.resolve(".git/clean.sh");
+        Files.writeString(filter, String.join("\n", "content=$(mktemp)", "cat > \"$content\"",
+                "if head -c 43 \"$content\" | grep -q '^version https://git-lfs'; then cat \"$content\"; else",
+                "  echo hashed >> '" + log + "'",
+                "  printf 'version https://git-lfs.github.com/spec/v1\\noid sha256:%s\\nsize %s\\n' \\",
+                "    \"$(sha256sum < \"$content\" | cut -d ' ' -f 1)\" \"$(wc -c < \"$content\" | tr -d ' ')\"",
+                "fi", "rm \"$content\"", ""));
+        StoredConfig config = git.getRepository().getConfig();
+        config.setString("filter", "lfs", "clean", "sh '" + filter + "'");
+        config.save();
+        Files.writeString(workTree.resolve(".gitattributes"), "*.bin filter=lfs -text\n");
+        Path file = workTree.resolve("a/large.bin");
+        Files.write(file, new byte[4096]);
+        git.add().addFilepattern(".gitattributes").addFilepattern("a/large.bin").call();
+        git.commit().setMessage("add a file tracked by LFS").call();
+        byte[] pointer = git.getRepository().open(git.getRepository().resolve("HEAD:a/large.bin")).getBytes();
+        assertEquals(4096, LfsObjects.parsePointer(pointer).getSize());
+
+        // a file whose modification time changed is compared with its pointer rather than passed through the filter
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plus(1, ChronoUnit.MINUTES)));
+        assertLfsStatus(false, log);
+
+        // a file that was not smudged is the pointer itself
+        Files.write(file, pointer);
+        assertLfsStatus(false, log);
+
+        byte[] modified = new byte[4096];
+        modified[7] = 1;
+        Files.write(file, modified);
+        assertLfsStatus(true, log);
+        Files.write(file, new byte[4097]);
+        assertLfsStatus(true, log);
+    }
+
+    // The LFS filter is only run by the status of JGit
+    private void assertLfsStatus(boolean dirty, Path log) throws Exception {
+        assertEquals(dirty, git.status().call().hasUncommittedChanges());
+        long hashed = Files.exists(log) ? Files.readAllLines(log).size() : 0;
+        for (int parallelism : new int[] { 1, 4 }) {
+            assertEquals(dirty,
+                    ParallelWorkingTreeStatus.hasUncommittedChanges(git, NullProgressMonitor.INSTANCE, parallelism));
+        }
+        if (dirty) {
+            assertThrows(IllegalStateException.class, () -> WorkingTreeStatus.verifyNoUncommitedChanges(git,
+                    NullProgressMonitor.INSTANCE, 1));
+        } else {
+            WorkingTreeStatus.verifyNoUncommitedChanges(git, NullProgressMonitor.INSTANCE, 1);
+        }
+        assertEquals(hashed, Files.exists(log) ? Files.readAllLines(log).size() : 0);
+    }
+
+    // The parallel status must agree with the status of JGit
+    private void assertStatus(boolean dirty) throws Exception {
+        assertEquals(dirty, git.status().call().hasUncommittedChanges());
+        for (int parallelism : new int[] { 1, 4 }) {
+            assertEquals(dirty,
+                    ParallelWorkingTreeStatus.hasUncommittedChanges(git, NullProgressMonitor.INSTANCE, parallelism));
+        }
+    }
+}
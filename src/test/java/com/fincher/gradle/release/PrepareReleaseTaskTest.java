@@ -15,7 +15,6 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 
-import com.fincher.gradle.release.PrepareReleaseTask.ReleaseType;
 import com.google.common.collect.Lists;
 
 class PrepareReleaseTaskTest extends BaseReleaseTaskTest<PrepareReleaseTask> {
@@ -149,7 +148,8 @@ class PrepareReleaseTaskTest extends BaseReleaseTaskTest<PrepareReleaseTask> {
     }
 
     private void verifyResults(String expectedVersion, String tagPrefix) throws Exception {
-        VersionFile version = VersionFile.load(project, versionFileProperty, versionKeyValueProperty);
+        VersionFile version = AbstractReleaseTask.loadVersionFile(project, versionFileProperty,
+                versionKeyValueProperty);
         assertEquals(expectedVersion, version.toString());
         verify(git).add();
         verify(addCommand).addFilepattern(versionFile.getFileName().toString());
@@ -167,7 +167,8 @@ class PrepareReleaseTaskTest extends BaseReleaseTaskTest<PrepareReleaseTask> {
     }
 
     private void verifyNoResults() throws Exception {
-        VersionFile version = VersionFile.load(project, versionFileProperty, versionKeyValueProperty);
+        VersionFile version = AbstractReleaseTask.loadVersionFile(project, versionFileProperty,
+                versionKeyValueProperty);
         assertEquals(INITIAL_VERSION, version.toString());
         verify(git, never()).add();
         verify(git, never()).commit();
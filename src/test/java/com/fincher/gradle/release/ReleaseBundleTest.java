@@ -0,0 +1,140 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReleaseBundleTest {
+
+    @TempDir
+    Path dir;
+
+    Path workTree;
+    Path bundleFile;
+    Git git;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        workTree = dir.resolve("work");
+        bundleFile = dir.resolve("release.bundle");
+        git = Git.init().setDirectory(workTree.toFile()).setInitialBranch("master").call();
+        commit("1.0.0");
+        git.tag().setName("v1.0.0").setMessage("v1.0.0").call();
+        commit("1.0.1-SNAPSHOT");
+    }
+
+    @AfterEach
+    void afterEach() {
+        git.close();
+    }
+
+    @Test
+    void testWriteAndApply() throws Exception {
+        try (Git mirror = Git.cloneRepository().setURI(workTree.toUri().toString())
+                .setDirectory(dir.resolve("mirror.git").toFile()).setBare(true).call()) {
+            String previousRelease = git.getRepository().resolve("v1.0.0^{commit}").name();
+            release("1.1.0");
+            backend(git).addNote(git.getRepository().resolve("v1.1.0^{commit}").name(), "abc  app.jar");
+
+            List<String> contents = write();
+            assertEquals(List.of("refs/heads/master", "refs/tags/v1.1.0", GitBackend.NOTES_REF,
+                    "prerequisite " + previousRelease + " v1.0.0"), contents);
+            assertTrue(Files.readString(ReleaseBundle.checksumFile(bundleFile)).endsWith("  release.bundle\n"));
+
+            ReleaseBundle.apply(mirror.getRepository(), bundleFile, NullProgressMonitor.INSTANCE);
+            assertEquals(git.getRepository().resolve(Constants.HEAD),
+                    mirror.getRepository().resolve("refs/heads/master"));
+            assertNotNull(mirror.getRepository().exactRef("refs/tags/v1.1.0"));
+            assertEquals(git.getRepository().exactRef(GitBackend.NOTES_REF).getObjectId(),
+                    mirror.getRepository().exactRef(GitBackend.NOTES_REF).getObjectId());
+        }
+    }
+
+    @Test
+    void testApplyToCheckedOutBranch() throws Exception {
+        Path cloneDir = dir.resolve("clone");
+        try (Git clone = Git.cloneRepository().setURI(workTree.toUri().toString()).setDirectory(cloneDir.toFile())
+                .call()) {
+            release("1.1.0");
+            write();
+
+            ReleaseBundle.apply(clone.getRepository(), bundleFile, NullProgressMonitor.INSTANCE);
+            assertEquals(git.getRepository().resolve(Constants.HEAD), clone.getRepository().resolve(Constants.HEAD));
+            assertEquals("version=1.1.1-SNAPSHOT\n", Files.readString(cloneDir.resolve("gradle.properties")));
+            assertTrue(clone.status().call().isClean());
+        }
+    }
+
+    @Test
+    void testChecksumMismatch() throws Exception {
+        try (Git mirror = Git.cloneRepository().setURI(workTree.toUri().toString())
+                .setDirectory(dir.resolve("mirror.git").toFile()).setBare(true).call()) {
+            release("1.1.0");
+            write();
+            Files.writeString(ReleaseBundle.checksumFile(bundleFile), "0".repeat(64) + "  release.bundle\n");
+
+            assertThrows(IllegalStateException.class,
+                    () -> ReleaseBundle.apply(mirror.getRepository(), bundleFile, NullProgressMonitor.INSTANCE));
+            assertNull(mirror.getRepository().exactRef("refs/tags/v1.1.0"));
+        }
+    }
+
+    @Test
+    void testMissingPrerequisite() throws Exception {
+        release("1.1.0");
+        write();
+
+        try (Git empty = Git.init().setDirectory(dir.resolve("empty.git").toFile()).setBare(true).call()) {
+            assertThrows(GitAPIException.class,
+                    () -> ReleaseBundle.apply(empty.getRepository(), bundleFile, NullProgressMonitor.INSTANCE));
+        }
+    }
+
+    @Test
+    void testUnreleasedBranch() throws Exception {
+        try (Git other = Git.init().setDirectory(dir.resolve("other").toFile()).setInitialBranch("master").call()) {
+            Files.writeString(dir.resolve("other").resolve("gradle.properties"), "version=0.0.1-SNAPSHOT\n");
+            other.add().addFilepattern(".").call();
+            other.commit().setMessage("initial commit").call();
+
+            assertThrows(IllegalStateException.class, () -> ReleaseBundle.write(backend(other), "v", bundleFile,
+                    GitCredentials.NONE, NullProgressMonitor.INSTANCE));
+        }
+    }
+
+    private void release(String version) throws Exception {
+        commit(version);
+        git.tag().setName("v" + version).setMessage("v" + version).call();
+        SemanticVersion released = SemanticVersion.parse(version);
+        commit(released.incrementPatch().withSuffix("-SNAPSHOT").toString());
+    }
+
+    private List<String> write() throws Exception {
+        return ReleaseBundle.write(backend(git), "v", bundleFile, GitCredentials.NONE, NullProgressMonitor.INSTANCE);
+    }
+
+    private void commit(String version) throws Exception {
+        Files.writeString(workTree.resolve("gradle.properties"), "version=" + version + "\n");
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("Set version to " + version).call();
+    }
+
+    private static GitBackend backend(Git git) {
+        return new JGitBackend(git.getRepository(), git, (operation, unit) -> NullProgressMonitor.INSTANCE);
+    }
+}
@@ -0,0 +1,94 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fincher.gradle.release.ReleaseJournal.Step;
+
+class ReleaseJournalTest {
+
+    @TempDir
+    Path gitDir;
+
+    @Test
+    void testResumeAfterCommit() throws Exception {
+        try (ReleaseJournal journal = ReleaseJournal.open(gitDir, "gradle.properties")) {
+            assertNull(journal.findResumableVersion("prepare", "head"));
+            journal.begin("prepare", "start", "0.0.1-SNAPSHOT");
+            journal.append(Step.COMMITTED, "head", "0.1.0");
+            journal.sync();
+        }
+
+        try (ReleaseJournal journal = ReleaseJournal.open(gitDir, "gradle.properties")) {
+            assertEquals("0.1.0", journal.findResumableVersion("prepare", "head"));
+            assertNull(journal.findResumableVersion("finalize", "head"));
+            assertNull(journal.findResumableVersion("prepare", "other"));
+
+            journal.resume();
+            journal.append(Step.TAGGED, "0.1.0", "head");
+            journal.append(Step.COMPLETED);
+        }
+
+        try (ReleaseJournal journal = ReleaseJournal.open(gitDir, "gradle.properties")) {
+            assertNull(journal.findResumableVersion("prepare", "head"));
+        }
+    }
+
+    @Test
+    void testNoResumeBeforeCommit() throws Exception {
+        try (ReleaseJournal journal = ReleaseJournal.open(gitDir, "gradle.properties")) {
+            journal.begin("prepare", "start", "0.0.1-SNAPSHOT");
+        }
+
+        try (ReleaseJournal journal = ReleaseJournal.open(gitDir, "gradle.properties")) {
+            assertNull(journal.findResumableVersion("prepare", "start"));
+        }
+    }
+
+    @Test
+    void testTornLineIgnored() throws Exception {
+        try (ReleaseJournal journal = ReleaseJournal.open(gitDir, "gradle.properties")) {
+            journal.begin("finalize", "start", "0.1.0");
+            journal.append(Step.COMMITTED, "head", "0.1.1-SNAPSHOT");
+        }
+        Files.writeString(gitDir.resolve(ReleaseJournal.getPath("gradle.properties")), "COMPL", StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND);
+
+        try (ReleaseJournal journal = ReleaseJournal.open(gitDir, "gradle.properties")) {
+            assertEquals("0.1.1-SNAPSHOT", journal.findResumableVersion("finalize", "head"));
+        }
+    }
+
+    @Test
+    void testJournalPerVersionFile() throws Exception {
+        try (ReleaseJournal journal = ReleaseJournal.open(gitDir, "a/gradle.properties")) {
+            journal.begin("prepare", "start", "0.0.1-SNAPSHOT");
+            journal.append(Step.COMMITTED, "head", "0.1.0");
+        }
+
+        try (ReleaseJournal journal = ReleaseJournal.open(gitDir, "b/gradle.properties")) {
+            assertNull(journal.findResumableVersion("prepare", "head"));
+        }
+        try (ReleaseJournal journal = ReleaseJournal.open(gitDir, "a/gradle.properties")) {
+            assertEquals("0.1.0", journal.findResumableVersion("prepare", "head"));
+        }
+    }
+
+    @Test
+    void testDisabled() throws Exception {
+        try (ReleaseJournal journal = ReleaseJournal.open(null, "gradle.properties")) {
+            journal.begin("prepare", "start", "0.0.1-SNAPSHOT");
+            journal.append(Step.COMMITTED, "head", "0.1.0");
+            journal.sync();
+            assertNull(journal.findResumableVersion("prepare", "head"));
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RepositoryWriteCoordinatorTest {
+
+    private static final int TASKS = 4;
+
+    RepositoryWriteCoordinator coordinator;
+    GitBackend backend;
+    List<Set<String>> batches;
+    CountDownLatch started;
+    ExecutorService executor;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void beforeEach() throws Exception {
+        coordinator = new RepositoryWriteCoordinator();
+        batches = Collections.synchronizedList(new ArrayList<>());
+        started = new CountDownLatch(TASKS);
+        executor = Executors.newFixedThreadPool(TASKS);
+
+        backend = mock(GitBackend.class);
+        doAnswer(invocation -> {
+            // hold the first batch until every task has requested its commit
+            if (batches.isEmpty()) {
+                started.await(10, TimeUnit.SECONDS);
+                Thread.sleep(200);
+            }
+            // the id of a commit is the index of its batch
+            batches.add(new HashSet<>(((Map<String, byte[]>) invocation.getArgument(0)).keySet()));
+            return String.valueOf(batches.size() - 1);
+        }).when(backend).commit(any(Map.class), anyString());
+    }
+
+    @AfterEach
+    void afterEach() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testCommitsAreBatched() throws Exception {
+        List<Future<String>> futures = new ArrayList<>();
+        for (int i = 0; i < TASKS; i++) {
+            String path = "project" + i + "/gradle.properties";
+            futures.add(executor.submit(() -> {
+                started.countDown();
+                return coordinator.commit(backend, Map.of(path, content()), "release " + path);
+            }));
+        }
+
+        // each task is given the commit of the batch that contains its files, whichever task wrote the batch
+        for (int i = 0; i < TASKS; i++) {
+            String commit = futures.get(i).get(30, TimeUnit.SECONDS);
+            assertTrue(batches.get(Integer.parseInt(commit)).contains("project" + i + "/gradle.properties"),
+                    batches::toString);
+        }
+
+        Set<String> committed = new HashSet<>();
+        batches.forEach(committed::addAll);
+        assertEquals(TASKS, committed.size());
+        assertTrue(batches.size() < TASKS, batches::toString);
+    }
+
+    @Test
+    void testSameFileInBatchFails() throws Exception {
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < TASKS; i++) {
+            futures.add(executor.submit(() -> {
+                started.countDown();
+                coordinator.commit(backend, Map.of("gradle.properties", content()), "release");
+                return null;
+            }));
+        }
+
+        int failures = 0;
+        for (Future<?> future : futures) {
+            try {
+                future.get(30, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException, e::toString);
+                failures++;
+            }
+        }
+        assertTrue(failures > 0);
+        assertEquals(TASKS - failures, batches.size());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFailureIsReported() throws Exception {
+        GitBackend failing = mock(GitBackend.class);
+        doAnswer(invocation -> {
+            throw new IllegalStateException("commit failed");
+        }).when(failing).commit(any(Map.class), anyString());
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> coordinator.commit(failing, Map.of("gradle.properties", content()), "release"));
+        assertEquals("commit failed", e.getMessage());
+    }
+
+    private static byte[] content() {
+        return "version=1.0.0".getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,73 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class SemanticVersionTest {
+
+    @Test
+    void testParse() {
+        SemanticVersion version = SemanticVersion.parse("10.20.30-rc.1+build.5");
+        assertEquals(10, version.getMajor());
+        assertEquals(20, version.getMinor());
+        assertEquals(30, version.getPatch());
+        assertEquals("-rc.1+build.5", version.getSuffix());
+        assertEquals("rc.1", version.getPreRelease());
+        assertEquals("build.5", version.getBuildMetadata());
+        assertTrue(version.isPreRelease());
+        assertEquals("10.20.30-rc.1+build.5", version.toString());
+
+        assertEquals(SemanticVersion.parse("1.2.3"), SemanticVersion.tryParse("v1.2.3 ", 1, 6));
+        assertFalse(SemanticVersion.parse("1.2.3+build").isPreRelease());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = { "", "1", "1.2", "1.2.", "a.2.3", "1.2.3 ", "1.2.3-a/b", "1234567890123456789.0.0" })
+    void testInvalid(String text) {
+        assertNull(SemanticVersion.tryParse(text, 0, text.length()));
+        assertThrows(IllegalStateException.class, () -> SemanticVersion.parse(text));
+    }
+
+    @Test
+    void testPrecedence() {
+        List<String> ordered = List.of("1.0.0-alpha", "1.0.0-alpha.1", "1.0.0-alpha.beta", "1.0.0-beta",
+                "1.0.0-beta.2", "1.0.0-beta.11", "1.0.0-rc.1", "1.0.0", "1.0.1-SNAPSHOT", "1.0.1", "1.2.0", "2.0.0",
+                "10.0.0");
+
+        List<SemanticVersion> versions = ordered.stream().map(SemanticVersion::parse).collect(Collectors.toList());
+        List<SemanticVersion> shuffled = new ArrayList<>(versions);
+        Collections.shuffle(shuffled);
+        Collections.sort(shuffled);
+        assertEquals(versions, shuffled);
+    }
+
+    @Test
+    void testBuildMetadataIgnoredByPrecedence() {
+        SemanticVersion a = SemanticVersion.parse("1.0.0+a");
+        SemanticVersion b = SemanticVersion.parse("1.0.0+b");
+        assertEquals(0, a.compareTo(b));
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    void testIncrement() {
+        SemanticVersion version = SemanticVersion.parse("1.2.3-SNAPSHOT");
+        assertEquals("2.0.0", version.incrementMajor().toString());
+        assertEquals("1.3.0", version.incrementMinor().toString());
+        assertEquals("1.2.4", version.incrementPatch().toString());
+        assertEquals("1.2.4-SNAPSHOT", version.incrementPatch().withSuffix("-SNAPSHOT").toString());
+    }
+}
@@ -0,0 +1,186 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StatusCacheTest {
+
+    @TempDir
+    Path dir;
+
+    Path workTree;
+    Path versionFile;
+    Git git;
+    GitBackend backend;
+
+    @BeforeEach
+    void beforeEach() throws Exception {
+        workTree = dir.resolve("work");
+        git = Git.init().setDirectory(workTree.toFile()).setInitialBranch("master").call();
+        versionFile = workTree.resolve("gradle.properties");
+        Files.writeString(versionFile, "version=0.0.1-SNAPSHOT\n");
+        Files.writeString(workTree.resolve("build.gradle"), "plugins {}\n");
+        git.add().addFilepattern(".").call();
+        git.commit().setMessage("initial commit").call();
+        age(versionFile);
+        age(workTree.resolve("build.gradle"));
+
+        backend = spy(new JGitBackend(git.getRepository(), git, (operation, unit) -> NullProgressMonitor.INSTANCE));
+    }
+
+    @AfterEach
+    void afterEach() {
+        git.close();
+    }
+
+    @Test
+    void testUnchangedTreeIsNotScannedAgain() throws Exception {
+        StatusCache.verifyNoUncommitedChanges(backend);
+        assertTrue(Files.exists(backend.getGitDir().resolve(StatusCache.PATH)));
+        StatusCache.verifyNoUncommitedChanges(backend);
+        verify(backend, times(1)).verifyNoUncommitedChanges();
+
+        // untracked files are not part of the check
+        Files.writeString(workTree.resolve("untracked.txt"), "untracked");
+        StatusCache.verifyNoUncommitedChanges(backend);
+        verify(backend, times(1)).verifyNoUncommitedChanges();
+
+        // the modification time of a file changes its stamp, even if its content is the same
+        Files.setLastModifiedTime(versionFile, FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS)));
+        StatusCache.verifyNoUncommitedChanges(backend);
+        verify(backend, times(2)).verifyNoUncommitedChanges();
+        StatusCache.verifyNoUncommitedChanges(backend);
+        verify(backend, times(2)).verifyNoUncommitedChanges();
+    }
+
+    @Test
+    void testModifiedTreeIsScanned() throws Exception {
+        StatusCache.verifyNoUncommitedChanges(backend);
+
+        // the same size and modification time, so only the content of the file differs from the index
+        FileTime modified = Files.getLastModifiedTime(versionFile);
+        Files.writeString(versionFile, "version=0.0.2-SNAPSHOT\n");
+        Files.setLastModifiedTime(versionFile, modified);
+        git.add().addFilepattern("gradle.properties").call();
+        assertThrows(IllegalStateException.class, () -> StatusCache.verifyNoUncommitedChanges(backend));
+
+        // a dirty result is never cached
+        git.commit().setMessage("update the version").call();
+        Files.delete(workTree.resolve("build.gradle"));
+        assertThrows(IllegalStateException.class, () -> StatusCache.verifyNoUncommitedChanges(backend));
+        assertThrows(IllegalStateException.class, () -> StatusCache.verifyNoUncommitedChanges(backend));
+        verify(backend, times(4)).verifyNoUncommitedChanges();
+    }
+
+    @Test
+    void testReleaseCommitKeepsTheCachedResult() throws Exception {
+        StatusCache.verifyNoUncommitedChanges(backend);
+        String parent = backend.getHead();
+        backend.commit("gradle.properties", "version=0.1.0\n".getBytes(StandardCharsets.UTF_8), "release");
+        StatusCache.committed(backend, parent);
+
+        // the version file was just written, so it is stamped by its content
+        StatusCache.verifyNoUncommitedChanges(backend);
+        verify(backend, times(1)).verifyNoUncommitedChanges();
+        Files.writeString(versionFile, "version=0.1.1\n");
+        assertThrows(IllegalStateException.class, () -> StatusCache.verifyNoUncommitedChanges(backend));
+        verify(backend, times(2)).verifyNoUncommitedChanges();
+
+        // a commit on top of a HEAD other than the one of the cached result does not update it
+        git.add().addFilepattern("gradle.properties").call();
+        git.commit().setMessage("another commit").call();
+        StatusCache.committed(backend, parent);
+        StatusCache.verifyNoUncommitedChanges(backend);
+        verify(backend, times(3)).verifyNoUncommitedChanges();
+    }
+
+    @Test
+    void testMonitorReusesTheStampsOfUnchangedFiles() throws Exception {
+        try (WorkingTreeMonitor monitor = WorkingTreeMonitor.open(workTree, backend.getGitDir())) {
+            StatusCache.verifyNoUncommitedChanges(backend, monitor);
+
+            // a stamp that is reused rather than read again changes the fingerprint
+            Map<String, String> stamps = monitor.takeStamps();
+            assertEquals(Set.of("build.gradle", "gradle.properties"), stamps.keySet());
+            stamps.put("build.gradle", "reused");
+            monitor.setStamps(stamps);
+            StatusCache.verifyNoUncommitedChanges(backend, monitor);
+            verify(backend, times(2)).verifyNoUncommitedChanges();
+            StatusCache.verifyNoUncommitedChanges(backend, monitor);
+            verify(backend, times(2)).verifyNoUncommitedChanges();
+            assertEquals("reused", monitor.takeStamps().get("build.gradle"));
+        }
+    }
+
+    @Test
+    void testMonitorRestampsChangedFiles() throws Exception {
+        try (WorkingTreeMonitor monitor = WorkingTreeMonitor.open(workTree, backend.getGitDir())) {
+            StatusCache.verifyNoUncommitedChanges(backend, monitor);
+
+            // the file is written again, so its stamp is read again rather than reused
+            Map<String, String> stamps = monitor.takeStamps();
+            stamps.put("build.gradle", "reused");
+            monitor.setStamps(stamps);
+            rewrite(workTree.resolve("build.gradle"));
+            StatusCache.verifyNoUncommitedChanges(backend, monitor);
+            verify(backend, times(1)).verifyNoUncommitedChanges();
+
+            // the files of a directory that is replaced are stamped again
+            Path dir = Files.createDirectories(workTree.resolve("src/main"));
+            Files.writeString(dir.resolve("Main.java"), "class Main {}\n");
+            git.add().addFilepattern("src").call();
+            git.commit().setMessage("add a source file").call();
+            StatusCache.verifyNoUncommitedChanges(backend, monitor);
+            verify(backend, times(2)).verifyNoUncommitedChanges();
+            Files.move(workTree.resolve("src"), workTree.resolve("moved"));
+            Files.createDirectories(dir);
+            Files.writeString(dir.resolve("Main.java"), "class Main { }\n");
+            assertThrows(IllegalStateException.class, () -> StatusCache.verifyNoUncommitedChanges(backend, monitor));
+
+            // the directory that replaced it is watched rather than the one that was moved
+            git.add().addFilepattern("src").call();
+            git.commit().setMessage("update the source file").call();
+            age(dir.resolve("Main.java"));
+            StatusCache.verifyNoUncommitedChanges(backend, monitor);
+            verify(backend, times(4)).verifyNoUncommitedChanges();
+            stamps = monitor.takeStamps();
+            stamps.put("src/main/Main.java", "reused");
+            monitor.setStamps(stamps);
+            rewrite(dir.resolve("Main.java"));
+            StatusCache.verifyNoUncommitedChanges(backend, monitor);
+            verify(backend, times(4)).verifyNoUncommitedChanges();
+        }
+    }
+
+    // Writes the same content and modification time, so the stamp of the file is unchanged
+    private static void rewrite(Path file) throws Exception {
+        FileTime modified = Files.getLastModifiedTime(file);
+        Files.write(file, Files.readAllBytes(file));
+        Files.setLastModifiedTime(file, modified);
+    }
+
+    // Files older than the resolution of the file system clock are stamped by their modification time
+    private static void age(Path file) throws Exception {
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minus(1, ChronoUnit.DAYS)));
+    }
+}
@@ -0,0 +1,110 @@
+package com.fincher.gradle.release;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class VersionFileTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testMultipleProperties() throws Exception {
+        Path file = write("gradle.properties",
+                "version = 1.2.3-SNAPSHOT\r\napiVersion=1.0.0\r\napi.version = '1.1.0'\r\nother = 4.5.6");
+        VersionFile version = VersionFile.load(file, "version, apiVersion, api.version");
+        assertEquals("1.2.3-SNAPSHOT", version.toString());
+
+        version.setVersion(version.getVersion().withSuffix(""));
+        version.save();
+        assertEquals("version = 1.2.3\r\napiVersion=1.2.3\r\napi.version = '1.2.3'\r\nother = 4.5.6",
+                Files.readString(file));
+    }
+
+    @Test
+    void testRegularExpressionKey() throws Exception {
+        Path file = write("gradle.properties", "other = 4.5.6\napiVersion=1.2.3-SNAPSHOT\n");
+        VersionFile version = VersionFile.load(file, "(app|api)Version");
+        assertEquals("1.2.3-SNAPSHOT", version.toString());
+
+        version.setVersion(version.getVersion().withSuffix(""));
+        assertEquals("other = 4.5.6\napiVersion=1.2.3\n", new String(version.getContent(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testDuplicateProperty() throws Exception {
+        Path file = write("gradle.properties", "version = 1.2.3\nversion = 1.2.4\n");
+        assertThrows(IllegalStateException.class, () -> VersionFile.load(file, "version"));
+    }
+
+    @Test
+    void testMissingKey() throws Exception {
+        Path file = write("gradle.properties", "version = 1.2.3\n");
+        assertThrows(IllegalStateException.class, () -> VersionFile.load(file, "version, apiVersion"));
+    }
+
+    @Test
+    void testToml() throws Exception {
+        Path file = write("libs.versions.toml", String.join("\n", "[versions]", "guava = \"33.2.1-jre\"",
+                "myProject = \"0.1.0-SNAPSHOT\" # the released version", "", "[libraries]",
+                "myProject = { module = \"com.example:my-project\", version.ref = \"myProject\" }", ""));
+        VersionFile version = VersionFile.load(file, "versions.myProject");
+        assertEquals("0.1.0-SNAPSHOT", version.toString());
+
+        version.setVersion(version.getVersion().incrementMinor().withSuffix("-SNAPSHOT"));
+        assertEquals(String.join("\n", "[versions]", "guava = \"33.2.1-jre\"",
+                "myProject = \"0.2.0-SNAPSHOT\" # the released version", "", "[libraries]",
+                "myProject = { module = \"com.example:my-project\", version.ref = \"myProject\" }", ""),
+                new String(version.getContent(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testXml() throws Exception {
+        Path file = write("pom.xml", String.join("\n", "<?xml version=\"1.0\"?>", "<project>",
+                "  <!-- <version>9.9.9</version> -->",
+                "  <parent><artifactId>parent</artifactId><version>5.0.0</version></parent>",
+                "  <version>", "    1.0.0-SNAPSHOT", "  </version>", "  <properties>",
+                "    <api.version>1.0.0-SNAPSHOT</api.version>", "    <empty/>", "  </properties>", "</project>"));
+        VersionFile version = VersionFile.load(file, "project/version, project/properties/api.version");
+        assertEquals("1.0.0-SNAPSHOT", version.toString());
+
+        version.setVersion(version.getVersion().incrementMajor().withSuffix("-SNAPSHOT"));
+        assertEquals(String.join("\n", "<?xml version=\"1.0\"?>", "<project>", "  <!-- <version>9.9.9</version> -->",
+                "  <parent><artifactId>parent</artifactId><version>5.0.0</version></parent>", "  <version>",
+                "    2.0.0-SNAPSHOT", "  </version>", "  <properties>",
+                "    <api.version>2.0.0-SNAPSHOT</api.version>", "    <empty/>", "  </properties>", "</project>"),
+                new String(version.getContent(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testJson() throws Exception {
+        Path file = write("package.json", "{\"name\": \"a\\\"b\", \"version\": \"0.0.1\", "
+                + "\"engines\": {\"plugin\": \"0.0.1\"}, \"files\": [\"0.0.1\", 1, true, null]}");
+        VersionFile version = VersionFile.load(file, "version, engines/plugin");
+        assertEquals("0.0.1", version.toString());
+
+        version.setVersion(version.getVersion().incrementPatch());
+        assertEquals("{\"name\": \"a\\\"b\", \"version\": \"0.0.2\", "
+                + "\"engines\": {\"plugin\": \"0.0.2\"}, \"files\": [\"0.0.1\", 1, true, null]}",
+                new String(version.getContent(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testNotAVersion() throws Exception {
+        Path file = write("package.json", "{\"version\": \"latest\"}");
+        assertThrows(IllegalStateException.class, () -> VersionFile.load(file, "version"));
+    }
+
+    private Path write(String name, String content) throws Exception {
+        Path file = dir.resolve(name);
+        Files.writeString(file, content);
+        return file;
+    }
+}